@@ -13,3 +13,45 @@ dependencies {
   runtimeOnly("org.jogamp.jogl:jogl-all-main:2.3.2")
   runtimeOnly("org.jogamp.gluegen:gluegen-rt-main:2.3.2")
 }
+
+// H3VectorBulkTransform uses the incubating Vector API.  At run time it is
+// only used if the JVM is started with --add-modules jdk.incubator.vector;
+// otherwise H3BulkTransform falls back to plain scalar code.
+tasks.withType<JavaCompile>().configureEach {
+  options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+}
+
+// JMH benchmarks for the hot paths (layout, transformation, the transform
+// and render queues, and picking).  These run headless:
+//
+//   gradle jmh
+//   gradle jmh -PjmhArgs="H3GraphLayoutBench -p numNodes=100000"
+//
+// The benchmarks build their graphs with the generators in src/test.
+//
+// Unlike everything else, JMH (jmh-core and its annotation processor,
+// 1.37) isn't in libs/ but comes from Maven Central, so the jmh source
+// set only compiles with network access or with JMH already in the
+// Gradle cache; `gradle --offline jmh` fails otherwise.  `gradle build`
+// doesn't compile it, so the rest of the build still works offline.
+val jmh by sourceSets.creating {
+  compileClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+  runtimeClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+}
+
+configurations["jmhImplementation"].extendsFrom(configurations.implementation.get())
+
+dependencies {
+  "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+  "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+tasks.register<JavaExec>("jmh") {
+  group = "verification"
+  description = "Runs the JMH benchmarks."
+  classpath = jmh.runtimeClasspath
+  mainClass.set("org.openjdk.jmh.Main")
+  // Forked benchmark JVMs inherit these.
+  jvmArgs("-Djava.awt.headless=true", "--add-modules", "jdk.incubator.vector")
+  args((findProperty("jmhArgs") as String?)?.split(" ") ?: listOf<String>())
+}
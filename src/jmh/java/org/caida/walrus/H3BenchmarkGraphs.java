@@ -0,0 +1,67 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+// Synthetic graphs for the JMH benchmarks, built with the generators in
+// H3TestGraphs.  Shapes are named so they can be given as @Param values:
+//
+//    balanced  => a complete tree with fanout BALANCED_FANOUT
+//    powerlaw  => a preferential-attachment tree, like an AS-level topology
+//    random    => a random recursive tree
+//    path      => a path, the deepest possible tree
+public class H3BenchmarkGraphs {
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public static int[] makeTree(String shape, int numNodes) {
+        if (shape.equals("balanced")) {
+            return H3TestGraphs.makeBalancedTree(numNodes, BALANCED_FANOUT);
+        } else if (shape.equals("powerlaw")) {
+            return H3TestGraphs.makePowerLawTree(numNodes, SEED);
+        } else if (shape.equals("random")) {
+            return H3TestGraphs.makeRandomTree(numNodes, SEED);
+        } else if (shape.equals("path")) {
+            return H3TestGraphs.makePath(numNodes);
+        } else {
+            throw new IllegalArgumentException("unknown graph shape: "
+                    + shape);
+        }
+    }
+
+    public static H3Graph makeGraph(String shape, int numNodes) {
+        return H3TestGraphs.buildGraph(makeTree(shape, numNodes));
+    }
+
+    // Builds a graph and lays it out in parallel.
+    public static H3Graph makeLaidOutGraph(String shape, int numNodes) {
+        H3Graph retval = makeGraph(shape, numNodes);
+        new H3GraphLayout(false, true).layoutHyperbolic(retval, false);
+        return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final int BALANCED_FANOUT = 8;
+    private static final long SEED = 20021104L;
+}
@@ -0,0 +1,228 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import org.jogamp.vecmath.Point4d;
+
+// The extended-precision kernel of H3Transform as it was before the switch
+// to double-double arithmetic, on java.math.BigDecimal at the 32 digits of
+// the old mpfun.MPGlobal.mathContext.  It is kept only as the baseline for
+// H3TransformMPBench.
+//
+// A point is an array of its four homogeneous coordinates x, y, z, w, and
+// a matrix an array of its sixteen elements in row-major order.
+final class H3BigDecimalTransform {
+    private H3BigDecimalTransform() {
+    }
+
+    public static BigDecimal[] newPoint(Point4d p) {
+        return new BigDecimal[] {
+            new BigDecimal(p.x, MC), new BigDecimal(p.y, MC),
+            new BigDecimal(p.z, MC), new BigDecimal(p.w, MC)
+        };
+    }
+
+    // NOTE: The points a and b must not both be the origin.
+    public static BigDecimal[] buildCanonicalOrientation
+        (BigDecimal[] a, BigDecimal[] b) {
+        BigDecimal[] pa = a.clone();
+        BigDecimal[] pb = b.clone();
+
+        BigDecimal[] pivot = findPivotPoint(pa, pb);
+
+        BigDecimal[] retval = buildTranslation(ORIGIN4, pivot);
+
+        BigDecimal[] t1 = buildTranslation(pivot, ORIGIN4);
+        transform(t1, pa);
+        transform(t1, pb);
+
+        retval = mul(retval, buildTranslation(ORIGIN4, pa));
+
+        BigDecimal[] t2 = buildTranslation(pa, ORIGIN4);
+        transform(t2, pa);
+        transform(t2, pb);
+
+        // Spherical coordinates (rho, phi, theta) of pb, in affine
+        // coordinates.
+        double x = pb[0].divide(pb[3], MC).doubleValue();
+        double y = pb[1].divide(pb[3], MC).doubleValue();
+        double z = pb[2].divide(pb[3], MC).doubleValue();
+
+        double rho = Math.sqrt(x * x + y * y + z * z);
+        double phi = Math.acos(x / rho);
+        double theta = Math.atan2(z, y);
+
+        if (!H3Math.epsilonZero(phi)) {
+            // rotate line to achieve alignment on positive x-axis
+            double cosTheta = Math.cos(theta);
+            double sinTheta = Math.sin(theta);
+            retval = mul(retval, newMatrix
+                         (1.0, 0.0, 0.0, 0.0,
+                          0.0, cosTheta, -sinTheta, 0.0,
+                          0.0, sinTheta, cosTheta, 0.0,
+                          0.0, 0.0, 0.0, 1.0));
+
+            double cosPhi = Math.cos(phi);
+            double sinPhi = Math.sin(phi);
+            retval = mul(retval, newMatrix
+                         (cosPhi, -sinPhi, 0.0, 0.0,
+                          sinPhi, cosPhi, 0.0, 0.0,
+                          0.0, 0.0, 1.0, 0.0,
+                          0.0, 0.0, 0.0, 1.0));
+        }
+
+        return retval;
+    }
+
+    // v = m v
+    public static void transform(BigDecimal[] m, BigDecimal[] v) {
+        BigDecimal x = row(m, 0, v);
+        BigDecimal y = row(m, 4, v);
+        BigDecimal z = row(m, 8, v);
+        BigDecimal w = row(m, 12, v);
+        v[0] = x;
+        v[1] = y;
+        v[2] = z;
+        v[3] = w;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // translate(source,dest)  =  reflect(midpoint) . reflect(source)
+    private static BigDecimal[] buildTranslation
+        (BigDecimal[] source, BigDecimal[] dest) {
+        BigDecimal aa_h = minkowski(source, source);
+        BigDecimal bb_h = minkowski(dest, dest);
+        BigDecimal ab_h = minkowski(source, dest);
+        BigDecimal sourceScale = bb_h.multiply(ab_h, MC).sqrt(MC);
+        BigDecimal destScale = aa_h.multiply(ab_h, MC).sqrt(MC);
+
+        BigDecimal[] midpoint = new BigDecimal[4];
+        for (int i = 0; i < 4; i++) {
+            midpoint[i] = sourceScale.multiply(source[i], MC)
+                .add(destScale.multiply(dest[i], MC), MC);
+        }
+
+        return mul(buildReflection(midpoint), buildReflection(source));
+    }
+
+    // reflect_p = I(4) - 2 * p . pT * I(3,1) / <p,p>_h
+    private static BigDecimal[] buildReflection(BigDecimal[] p) {
+        BigDecimal scale = TWO.negate().divide(minkowski(p, p), MC);
+
+        BigDecimal[] retval = new BigDecimal[16];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                BigDecimal pp = p[i].multiply(p[j], MC);
+                if (j == 3) {
+                    pp = pp.negate();
+                }
+                pp = pp.multiply(scale, MC);
+                retval[4 * i + j] = (i == j ? pp.add(BigDecimal.ONE, MC) : pp);
+            }
+        }
+        return retval;
+    }
+
+    // p = [ (a . d)b - (b . d)a ] / (d . d), where d = a - b, computed in
+    // affine coordinates with d . d as the new w.
+    private static BigDecimal[] findPivotPoint
+        (BigDecimal[] a4, BigDecimal[] b4) {
+        BigDecimal[] a = project(a4);
+        BigDecimal[] b = project(b4);
+
+        BigDecimal[] aMinusB = new BigDecimal[3];
+        for (int i = 0; i < 3; i++) {
+            aMinusB[i] = a[i].subtract(b[i], MC);
+        }
+
+        BigDecimal p = dot3(a, aMinusB);
+        BigDecimal q = dot3(b, aMinusB);
+        BigDecimal r = dot3(aMinusB, aMinusB);
+
+        BigDecimal[] retval = new BigDecimal[4];
+        for (int i = 0; i < 3; i++) {
+            retval[i] = p.multiply(b[i], MC)
+                .subtract(q.multiply(a[i], MC), MC);
+        }
+        retval[3] = r;
+        return retval;
+    }
+
+    private static BigDecimal[] project(BigDecimal[] p) {
+        BigDecimal[] retval = new BigDecimal[3];
+        for (int i = 0; i < 3; i++) {
+            retval[i] = p[i].divide(p[3], MC);
+        }
+        return retval;
+    }
+
+    private static BigDecimal dot3(BigDecimal[] u, BigDecimal[] v) {
+        return u[0].multiply(v[0], MC)
+            .add(u[1].multiply(v[1], MC), MC)
+            .add(u[2].multiply(v[2], MC), MC);
+    }
+
+    private static BigDecimal minkowski(BigDecimal[] u, BigDecimal[] v) {
+        return dot3(u, v).subtract(u[3].multiply(v[3], MC), MC);
+    }
+
+    private static BigDecimal row(BigDecimal[] m, int offset, BigDecimal[] v) {
+        return m[offset].multiply(v[0], MC)
+            .add(m[offset + 1].multiply(v[1], MC), MC)
+            .add(m[offset + 2].multiply(v[2], MC), MC)
+            .add(m[offset + 3].multiply(v[3], MC), MC);
+    }
+
+    // retval = lhs rhs
+    private static BigDecimal[] mul(BigDecimal[] lhs, BigDecimal[] rhs) {
+        BigDecimal[] retval = new BigDecimal[16];
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                BigDecimal sum = BigDecimal.ZERO;
+                for (int k = 0; k < 4; k++) {
+                    sum = sum.add(lhs[4 * i + k].multiply(rhs[4 * k + j], MC),
+                                  MC);
+                }
+                retval[4 * i + j] = sum;
+            }
+        }
+        return retval;
+    }
+
+    private static BigDecimal[] newMatrix(double... elements) {
+        BigDecimal[] retval = new BigDecimal[16];
+        for (int i = 0; i < 16; i++) {
+            retval[i] = new BigDecimal(elements[i], MC);
+        }
+        return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final MathContext MC = new MathContext(32);
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    private static final BigDecimal[] ORIGIN4 =
+        newPoint(new Point4d(0.0, 0.0, 0.0, 1.0));
+}
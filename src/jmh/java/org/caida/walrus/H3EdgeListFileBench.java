@@ -0,0 +1,110 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Measures the wall time of going from an edge list to an H3Graph with a
+// breadth-first spanning tree: reading the file with H3EdgeListFile
+// (sequentially, and with a thread per available processor) and then
+// building the tree.  The edge list has a power-law tree plus as many
+// random nontree links, and a numeric attribute per link, as measurement
+// pipelines produce.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class H3EdgeListFileBench {
+    @Param({"1000000", "5000000"})
+    public int numNodes;
+
+    @Param({"edges", "csv"})
+    public String format;
+
+    private File m_file;
+    private H3EdgeListFile m_edgeListFile;
+
+    @Setup
+    public void setup() throws Exception {
+        m_file = File.createTempFile("walrus", "." + format);
+        char separator = (format.equals("csv") ? ',' : ' ');
+        int[] parent = H3BenchmarkGraphs.makeTree("powerlaw", numNodes);
+        Random random = new Random(1L);
+
+        Writer out = new BufferedWriter(new FileWriter(m_file));
+        try {
+            for (int i = 1; i < 2 * numNodes; i++) {
+                int source = (i < numNodes ? parent[i]
+                              : random.nextInt(numNodes));
+                int destination = (i < numNodes ? i
+                                   : random.nextInt(numNodes));
+                out.write(source + "" + separator + destination + separator
+                        + random.nextInt(100000) + "\n");
+            }
+        } finally {
+            out.close();
+        }
+
+        m_edgeListFile = H3EdgeListFile.read(m_file);
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_file.delete();
+    }
+
+    @Benchmark
+    public H3EdgeListFile readSequential() throws Exception {
+        return H3EdgeListFile.read(m_file, 1);
+    }
+
+    @Benchmark
+    public H3EdgeListFile readParallel() throws Exception {
+        return H3EdgeListFile.read
+                (m_file, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public H3Graph buildSpanningTree() throws Exception {
+        return m_edgeListFile.load(H3SpanningTreeBuilder.BREADTH_FIRST_TREE);
+    }
+}
@@ -0,0 +1,83 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times reading a LibSea file with H3GraphFile at increasing parallelism,
+// to show how the chunked parse scales with the number of cores.  The file
+// is written once per trial, with numNodes / 5 nontree links, and is
+// usually in the page cache by the time it's measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class H3GraphFileBench {
+    @Param({"1000000", "5000000"})
+    public int numNodes;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int parallelism;
+
+    private File m_file;
+
+    @Setup
+    public void setup() throws IOException {
+        m_file = File.createTempFile("walrus", ".graph");
+        Writer out = new BufferedWriter(new FileWriter(m_file));
+        try {
+            int[] parent = H3BenchmarkGraphs.makeTree("powerlaw", numNodes);
+            H3TestGraphs.writeLibSeaGraph(parent, numNodes / 5, 1L, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_file.delete();
+    }
+
+    @Benchmark
+    public H3GraphFile read() throws Exception {
+        return H3GraphFile.read(m_file, parallelism);
+    }
+}
@@ -0,0 +1,83 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times a complete H3GraphLayout.layoutHyperbolic() run.  A layout only
+// writes the layout coordinates of the graph, so the same graph is simply
+// laid out again in every iteration.
+//
+// Run it with the GC profiler to see the allocation of a layout as well:
+//
+//   gradle jmh -PjmhArgs="H3GraphLayoutBench -prof gc"
+//
+// gc.alloc.rate.norm is then the number of bytes allocated per layout,
+// which should be dominated by the per-node arrays of the layout state
+// rather than growing with the number of matrices computed.
+// H3LayoutKernelBench checks the per-child builders on their own.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class H3GraphLayoutBench {
+    @Param({"10000", "100000", "1000000", "5000000"})
+    public int numNodes;
+
+    @Param({"balanced", "powerlaw", "path"})
+    public String shape;
+
+    // The speedup of the parallel layout over the sequential one (1) at
+    // each thread count.
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int parallelism;
+
+    @Param({"false"})
+    public boolean extendedPrecision;
+
+    private H3Graph m_graph;
+    private H3GraphLayout m_layout;
+
+    @Setup
+    public void setup() {
+        m_graph = H3BenchmarkGraphs.makeGraph(shape, numNodes);
+        m_layout = new H3GraphLayout(false, parallelism);
+    }
+
+    @Benchmark
+    public H3GraphLayout.LayoutState layoutHyperbolic() {
+        return m_layout.layoutHyperbolic(m_graph, extendedPrecision);
+    }
+}
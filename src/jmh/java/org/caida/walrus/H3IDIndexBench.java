@@ -0,0 +1,105 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Compares H3IDIndex with binary search on the sorted IDs (the mapping
+// H3GraphLoader used before) for looking up the endpoints of a link list
+// of 4 links per node.  Dense IDs are 0 to numNodes - 1, as in a graph
+// read from a file; sparse IDs are random ints.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class H3IDIndexBench {
+    @Param({"100000", "1000000", "5000000"})
+    public int numNodes;
+
+    @Param({"dense", "sparse"})
+    public String ids;
+
+    private int[] m_sortedIDs;
+    private int[] m_endpoints;
+    private H3IDIndex m_index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(SEED);
+        m_sortedIDs = new int[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            m_sortedIDs[i] = (ids.equals("dense") ? i : random.nextInt());
+        }
+        Arrays.sort(m_sortedIDs);
+        for (int i = 1; i < numNodes; i++) {
+            if (m_sortedIDs[i] <= m_sortedIDs[i - 1]) {
+                m_sortedIDs[i] = m_sortedIDs[i - 1] + 1;
+            }
+        }
+
+        m_endpoints = new int[4 * numNodes];
+        for (int i = 0; i < m_endpoints.length; i++) {
+            m_endpoints[i] = m_sortedIDs[random.nextInt(numNodes)];
+        }
+        m_index = new H3IDIndex(m_sortedIDs);
+    }
+
+    @Benchmark
+    public long binarySearch() {
+        long retval = 0;
+        for (int i = 0; i < m_endpoints.length; i++) {
+            retval += Arrays.binarySearch(m_sortedIDs, m_endpoints[i]);
+        }
+        return retval;
+    }
+
+    @Benchmark
+    public long index() {
+        long retval = 0;
+        for (int i = 0; i < m_endpoints.length; i++) {
+            retval += m_index.getIndex(m_endpoints[i]);
+        }
+        return retval;
+    }
+
+    @Benchmark
+    public H3IDIndex build() {
+        return new H3IDIndex(m_sortedIDs);
+    }
+
+    private static final long SEED = 20021104L;
+}
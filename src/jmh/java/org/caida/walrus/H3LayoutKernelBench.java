@@ -0,0 +1,131 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point4d;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times the H3Transform builders that H3GraphLayout calls for every child
+// it places, both the allocating versions and the in-place variants that
+// write into a caller's Matrix4d and take their temporaries from an
+// H3Transform.Workspace.  Run it with the GC profiler:
+//
+//   gradle jmh -PjmhArgs="H3LayoutKernelBench -prof gc"
+//
+// gc.alloc.rate.norm must come out at (about) 0 B/op for the *InPlace
+// benchmarks, against the result matrix (and for the translations, a
+// Workspace) for the allocating ones: 144 and 744 B/op on a 64-bit JVM.
+// H3GraphLayoutBench does the same for whole layouts.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class H3LayoutKernelBench {
+    private final Point4d[] m_points = new Point4d[NUM_POINTS];
+    private final double[] m_angles = new double[NUM_POINTS];
+
+    private final Matrix4d m_result = new Matrix4d();
+    private final H3Transform.Workspace m_workspace =
+            new H3Transform.Workspace();
+
+    private int m_next = 0;
+
+    // Points spread through the ball like the centers and poles of
+    // children in a layout, with the angles of their placements.
+    @Setup
+    public void setup() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            double r = 0.9 * random.nextDouble();
+            double theta = Math.PI * random.nextDouble();
+            double phi = 2.0 * Math.PI * random.nextDouble();
+            m_points[i] = new Point4d(r * Math.sin(theta) * Math.cos(phi),
+                    r * Math.sin(theta) * Math.sin(phi),
+                    r * Math.cos(theta), 1.0);
+            m_angles[i] = phi;
+        }
+    }
+
+    @Benchmark
+    public Matrix4d buildCanonicalOrientation() {
+        int i = nextIndex();
+        return H3Transform.buildCanonicalOrientation
+                (m_points[i], m_points[i + 1]);
+    }
+
+    @Benchmark
+    public Matrix4d buildCanonicalOrientationInPlace() {
+        int i = nextIndex();
+        H3Transform.buildCanonicalOrientation
+                (m_points[i], m_points[i + 1], m_result, m_workspace);
+        return m_result;
+    }
+
+    @Benchmark
+    public Matrix4d buildTranslation() {
+        int i = nextIndex();
+        return H3Transform.buildTranslation(m_points[i], m_points[i + 1]);
+    }
+
+    @Benchmark
+    public Matrix4d buildTranslationInPlace() {
+        int i = nextIndex();
+        H3Transform.buildTranslation(m_points[i], m_points[i + 1],
+                m_result, m_workspace);
+        return m_result;
+    }
+
+    @Benchmark
+    public Matrix4d buildZRotation() {
+        return H3Transform.buildZRotation(m_angles[nextIndex()]);
+    }
+
+    @Benchmark
+    public Matrix4d buildZRotationInPlace() {
+        H3Transform.buildZRotation(m_angles[nextIndex()], m_result);
+        return m_result;
+    }
+
+    // Cycles through the points, leaving room for the one after.
+    private int nextIndex() {
+        int retval = m_next;
+        m_next = (m_next + 1) % (NUM_POINTS - 1);
+        return retval;
+    }
+
+    private static final long SEED = 20021104L;
+    private static final int NUM_POINTS = 1000;
+}
@@ -0,0 +1,146 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jogamp.vecmath.Point3d;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times the search for the picked node in H3PickerCommon, over every node
+// of the graph as with H3NonadaptivePicker.  There is no canvas, so the
+// eye and pick radii are fixed to plausible values in meters instead of
+// being taken from H3ViewParameters, and node coordinates are taken
+// directly as image plate coordinates.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class H3PickerBench {
+    @Param({"10000", "100000", "1000000", "5000000"})
+    public int numNodes;
+
+    @Param({"balanced", "powerlaw"})
+    public String shape;
+
+    private HeadlessPicker m_picker;
+    private final double[] m_pickX = new double[NUM_PICK_POINTS];
+    private final double[] m_pickY = new double[NUM_PICK_POINTS];
+    private int m_numPicks = 0;
+
+    @Setup
+    public void setup() {
+        H3Graph graph = H3BenchmarkGraphs.makeLaidOutGraph(shape, numNodes);
+        graph.transformNodes(H3Transform.I4);
+
+        m_picker = new HeadlessPicker(graph);
+
+        // Pick near the center of the display, where nodes are dense.
+        Random random = new Random(numNodes);
+        for (int i = 0; i < NUM_PICK_POINTS; i++) {
+            m_pickX[i] = SCALE * (random.nextDouble() - 0.5);
+            m_pickY[i] = SCALE * (random.nextDouble() - 0.5);
+        }
+    }
+
+    // Picking again without moving the display.
+    @Benchmark
+    public int pick() {
+        int i = m_numPicks++ & (NUM_PICK_POINTS - 1);
+        m_picker.computePointsInEye();
+        return m_picker.findClosestPointInEye(m_pickX[i], m_pickY[i],
+                EYE_Z, PICK_RADIUS, PICK_EQUIVALENCE_RADIUS, NODE_RADIUS);
+    }
+
+    // The first pick after the display has moved.
+    @Benchmark
+    public int computePointsAndPick() {
+        m_picker.reset();
+        return pick();
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class HeadlessPicker extends H3PickerCommon {
+        public HeadlessPicker(H3Graph graph) {
+            super(graph, null, null);
+            m_numNodes = graph.getNumNodes();
+        }
+
+        public void reset() {
+            m_computedPointsInEye = false;
+        }
+
+        // The scaling stands in for the object-to-eye transform of the
+        // canvas, with the unit ball SCALE meters across.
+        protected void computePointsInEye() {
+            if (!m_computedPointsInEye) {
+                m_computedPointsInEye = true;
+
+                Point3d p = new Point3d();
+                for (int i = 0; i < m_numNodes; i++) {
+                    m_graph.getNodeCoordinates(i, p);
+                    m_pointsInEyeX[i] = SCALE * p.x;
+                    m_pointsInEyeY[i] = SCALE * p.y;
+                    m_pointsInEyeZ[i] = SCALE * p.z;
+                }
+            }
+        }
+
+        protected int getNumComputedPointsInEye() {
+            return m_numNodes;
+        }
+
+        protected int getNodeInEye(int index) {
+            return index;
+        }
+
+        private final int m_numNodes;
+        private boolean m_computedPointsInEye = false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final int NUM_PICK_POINTS = 1024; // A power of two.
+
+    private static final double SCALE = 0.25;
+    private static final double EYE_Z = 0.5;
+    private static final double PICK_RADIUS = 0.002;
+    private static final double PICK_EQUIVALENCE_RADIUS = 0.0005;
+    private static final double NODE_RADIUS = 0.001;
+}
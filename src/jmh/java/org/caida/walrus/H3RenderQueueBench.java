@@ -0,0 +1,114 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times one frame's worth of H3RenderQueue traffic for a graph of numNodes
+// nodes and about as many links: the producer adds entries in the batches
+// H3Transformer uses, and then the consumer reads them back, either one
+// at a time with get() as the old renderers did or in decoded batches with
+// getBatch().  Producer and consumer run on the benchmark thread, so this
+// measures the per-element cost without thread handoff.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class H3RenderQueueBench {
+    @Param({"10000", "100000", "1000000", "5000000"})
+    public int numNodes;
+
+    private H3RenderQueue m_queue;
+    private final long[] m_data = new long[PRODUCER_BATCH_SIZE];
+    private final H3RenderQueue.Element m_element =
+            new H3RenderQueue.Element();
+    private final H3RenderQueue.Batch m_batch =
+            new H3RenderQueue.Batch(CONSUMER_BATCH_SIZE);
+
+    @Setup
+    public void setup() {
+        m_queue = new H3RenderQueue(2 * numNodes);
+    }
+
+    @Benchmark
+    public int fillAndGet() {
+        fill();
+
+        int retval = 0;
+        int i = 0;
+        while (m_queue.get(i, m_element)) {
+            retval += m_element.data;
+            ++i;
+        }
+        return retval;
+    }
+
+    @Benchmark
+    public int fillAndGetBatch() {
+        fill();
+
+        int retval = 0;
+        int i = 0;
+        while (m_queue.getBatch(i, CONSUMER_BATCH_SIZE, m_batch)) {
+            i += m_batch.getNumElements();
+            retval += m_batch.numNodes + m_batch.numTreeLinks;
+        }
+        return retval;
+    }
+
+    // Alternates a node and the tree link to it, as for a tree.
+    private void fill() {
+        m_queue.clear();
+
+        int numElements = 2 * numNodes;
+        int i = 0;
+        while (i < numElements) {
+            int count = Math.min(PRODUCER_BATCH_SIZE, numElements - i);
+            for (int j = 0; j < count; j++) {
+                int type = ((i + j) & 1) == 0
+                        ? H3RenderQueue.Element.TYPE_NODE
+                        : H3RenderQueue.Element.TYPE_TREE_LINK;
+                m_data[j] = ((long) type << 32) | ((i + j) >> 1);
+            }
+            m_queue.add(count, m_data);
+            i += count;
+        }
+        m_queue.end();
+    }
+
+    // H3Transformer.NUM_PER_ITERATION
+    private static final int PRODUCER_BATCH_SIZE = 100;
+    private static final int CONSUMER_BATCH_SIZE = 1024;
+}
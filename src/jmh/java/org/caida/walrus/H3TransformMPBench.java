@@ -0,0 +1,145 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point4d;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times the extended-precision kernel of H3Transform, on H3Point4d and
+// H3Matrix4d, against the BigDecimal kernel it replaced
+// (H3BigDecimalTransform) and the double precision kernel on the same
+// points, for the operations of computeCoordinatesSubtreeMP():
+// buildCanonicalOrientation() and transforming a point.  The points lie
+// close to the sphere at infinity, as in the layout of deep trees.
+// H3TransformMPTester checks the accuracy.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class H3TransformMPBench {
+    private final H3Point4d[] m_points = new H3Point4d[NUM_POINTS];
+    private final Point4d[] m_doublePoints = new Point4d[NUM_POINTS];
+    private final BigDecimal[][] m_bigDecimalPoints =
+        new BigDecimal[NUM_POINTS][];
+
+    private H3Matrix4d m_transform;
+    private Matrix4d m_doubleTransform;
+    private BigDecimal[] m_bigDecimalTransform;
+    private final H3Point4d m_point = new H3Point4d();
+    private final Point4d m_doublePoint = new Point4d();
+    private final BigDecimal[] m_bigDecimalPoint = new BigDecimal[4];
+
+    private int m_next = 0;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < NUM_POINTS; i++) {
+            double r = 1.0 - Math.pow(10.0, -1.0 - 14.0 * random.nextDouble());
+            double theta = Math.PI * random.nextDouble();
+            double phi = 2.0 * Math.PI * random.nextDouble();
+            m_doublePoints[i] = new Point4d
+                    (r * Math.sin(theta) * Math.cos(phi),
+                     r * Math.sin(theta) * Math.sin(phi),
+                     r * Math.cos(theta), 1.0);
+            m_points[i] = new H3Point4d(m_doublePoints[i]);
+            m_bigDecimalPoints[i] =
+                H3BigDecimalTransform.newPoint(m_doublePoints[i]);
+        }
+
+        m_transform = H3Transform.buildCanonicalOrientation
+                (m_points[0], m_points[1]);
+        m_doubleTransform = H3Transform.buildCanonicalOrientation
+                (m_doublePoints[0], m_doublePoints[1]);
+        m_bigDecimalTransform = H3BigDecimalTransform.buildCanonicalOrientation
+                (m_bigDecimalPoints[0], m_bigDecimalPoints[1]);
+    }
+
+    @Benchmark
+    public H3Matrix4d buildCanonicalOrientationMP() {
+        int i = nextIndex();
+        return H3Transform.buildCanonicalOrientation
+                (m_points[i], m_points[i + 1]);
+    }
+
+    @Benchmark
+    public BigDecimal[] buildCanonicalOrientationBigDecimal() {
+        int i = nextIndex();
+        return H3BigDecimalTransform.buildCanonicalOrientation
+                (m_bigDecimalPoints[i], m_bigDecimalPoints[i + 1]);
+    }
+
+    @Benchmark
+    public Matrix4d buildCanonicalOrientation() {
+        int i = nextIndex();
+        return H3Transform.buildCanonicalOrientation
+                (m_doublePoints[i], m_doublePoints[i + 1]);
+    }
+
+    @Benchmark
+    public H3Point4d transformMP() {
+        m_point.set(m_points[nextIndex()]);
+        m_transform.transform(m_point);
+        return m_point;
+    }
+
+    @Benchmark
+    public BigDecimal[] transformBigDecimal() {
+        BigDecimal[] point = m_bigDecimalPoints[nextIndex()];
+        System.arraycopy(point, 0, m_bigDecimalPoint, 0, 4);
+        H3BigDecimalTransform.transform(m_bigDecimalTransform,
+                                        m_bigDecimalPoint);
+        return m_bigDecimalPoint;
+    }
+
+    @Benchmark
+    public Point4d transform() {
+        m_doublePoint.set(m_doublePoints[nextIndex()]);
+        m_doubleTransform.transform(m_doublePoint);
+        return m_doublePoint;
+    }
+
+    // Cycles through the points, leaving room for the one after.
+    private int nextIndex() {
+        int retval = m_next;
+        m_next = (m_next + 1) % (NUM_POINTS - 1);
+        return retval;
+    }
+
+    private static final long SEED = 20021104L;
+    private static final int NUM_POINTS = 1000;
+}
@@ -0,0 +1,103 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times filling H3TransformQueue with every node and emptying it again.
+// The radii are those of a laid-out graph seen from its root, so the
+// priority queue sees the same distribution of keys as in H3Transformer.
+// Optionally, nodes are enqueued in shuffled order rather than node order.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class H3TransformQueueBench {
+    @Param({"10000", "100000", "1000000", "5000000"})
+    public int numNodes;
+
+    @Param({"powerlaw"})
+    public String shape;
+
+    @Param({"false", "true"})
+    public boolean shuffled;
+
+    private H3TransformQueue m_queue;
+    private int[] m_nodes;
+    private double[] m_radii;
+
+    @Setup
+    public void setup() {
+        H3Graph graph = H3BenchmarkGraphs.makeLaidOutGraph(shape, numNodes);
+        graph.transformNodes(H3Transform.I4);
+
+        m_nodes = new int[numNodes];
+        m_radii = new double[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            m_nodes[i] = i;
+        }
+
+        if (shuffled) {
+            Random random = new Random(numNodes);
+            for (int i = numNodes - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = m_nodes[i];
+                m_nodes[i] = m_nodes[j];
+                m_nodes[j] = t;
+            }
+        }
+
+        for (int i = 0; i < numNodes; i++) {
+            m_radii[i] = graph.getNodeRadius(m_nodes[i]);
+        }
+
+        m_queue = new H3TransformQueue(numNodes);
+    }
+
+    @Benchmark
+    public int enqueueAndDequeueAll() {
+        m_queue.clear();
+        for (int i = 0; i < numNodes; i++) {
+            m_queue.enqueue(m_nodes[i], m_radii[i]);
+        }
+
+        int retval = 0;
+        while (!m_queue.isEmpty()) {
+            retval += m_queue.dequeue();
+        }
+        return retval;
+    }
+}
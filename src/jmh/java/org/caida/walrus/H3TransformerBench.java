@@ -0,0 +1,135 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point4d;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Times moving the display to a new focus: from H3Transformer.transform()
+// until the transformer has put the whole graph in the render queue, as
+// the adaptive render loop sees it.  Also times the bare bulk transform of
+// all nodes done by the nonadaptive render loop, against transforming the
+// nodes one at a time through Matrix4d.transform(Point4d), as
+// H3Transformer did before the bulk kernel.  Pass -jvmArgs without
+// --add-modules jdk.incubator.vector to time the scalar bulk loop instead
+// of the SIMD one.
+//
+// Each invocation alternately translates the focus out and back, so that
+// the graph never drifts off towards the sphere at infinity.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class H3TransformerBench {
+    @Param({"10000", "100000", "1000000", "5000000"})
+    public int numNodes;
+
+    @Param({"balanced", "powerlaw"})
+    public String shape;
+
+    // 0 means as many threads as there are available processors.
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private H3Graph m_graph;
+    private H3RenderQueue m_queue;
+    private H3Transformer m_transformer;
+
+    private final Matrix4d[] m_translations = new Matrix4d[2];
+    private int m_numTransforms = 0;
+
+    private final long[] m_buffer = new long[DRAIN_BUFFER_SIZE];
+    private final Point4d m_point = new Point4d();
+
+    @Setup
+    public void setup() {
+        m_graph = H3BenchmarkGraphs.makeLaidOutGraph(shape, numNodes);
+        m_queue = new H3RenderQueue(m_graph.getNumNodes()
+                + m_graph.getTotalNumLinks());
+
+        int threads = (parallelism > 0 ? parallelism
+                : Runtime.getRuntime().availableProcessors());
+        m_transformer = new H3Transformer(m_graph, m_queue, true, threads);
+        new Thread(m_transformer).start();
+        drainQueue();
+
+        Point4d origin = new Point4d(0.0, 0.0, 0.0, 1.0);
+        Point4d focus = new Point4d(0.5, 0.3, -0.2, 1.0);
+        m_translations[0] = H3Transform.buildTranslation(origin, focus);
+        m_translations[1] = H3Transform.buildTranslation(focus, origin);
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_transformer.shutdown();
+    }
+
+    @Benchmark
+    public int transformAndDrain() {
+        m_transformer.transform(m_translations[m_numTransforms++ & 1]);
+        return drainQueue();
+    }
+
+    @Benchmark
+    public void transformNodes() {
+        m_graph.transformNodes(m_translations[m_numTransforms++ & 1]);
+    }
+
+    @Benchmark
+    public void transformNodesPerNode() {
+        Matrix4d t = m_translations[m_numTransforms++ & 1];
+        Point4d p = m_point;
+        for (int i = m_graph.getNumNodes() - 1; i >= 0; i--) {
+            m_graph.getNodeLayoutCoordinates(i, p);
+            t.transform(p);
+            m_graph.setNodeRadius(i, H3Math.computeRadiusEuclidean(p));
+            m_graph.setNodeCoordinates(i, p);
+        }
+    }
+
+    // Reads the render queue until the transformer marks it complete.
+    private int drainQueue() {
+        int numElements = 0;
+        int count;
+        while ((count = m_queue.drainTo(numElements, m_buffer)) > 0) {
+            numElements += count;
+        }
+        return numElements;
+    }
+
+    private static final int DRAIN_BUFFER_SIZE = 4096;
+}
@@ -0,0 +1,539 @@
+package mpfun;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+// A mutable double-double number: an unevaluated sum hi + lo of two doubles
+// with |lo| <= ulp(hi) / 2, giving about 32 significant decimal digits.
+//
+// All arithmetic is done in place on primitive doubles and returns this,
+// so a computation can be chained without allocating any intermediate
+// objects.  The algorithms are the usual error-free transformations of
+// Dekker and of Hida, Li, and Bailey's QD library, with the products
+// computed exactly by Math.fma().
+//
+// Unlike BigDecimal, special values follow IEEE semantics: dividing by zero
+// gives an infinity or NaN rather than an exception, just as in the double
+// precision layout code.
+//
+// The elementary functions (sin, cos, exp, and the hyperbolic functions)
+// are also computed in place to full double-double precision, by range
+// reduction followed by a Taylor series evaluated with Horner's rule.
+public final class DoubleDouble {
+    private static final MathContext PRINT_CONTEXT = new MathContext(32);
+
+    // Taylor coefficients, split into high and low parts:
+    //
+    //   SIN[k] = (-1)^k / (2k+1)!,  COS[k] = (-1)^k / (2k)!,
+    //   EXPM1[k] = 1 / (k+1)!
+    //
+    // The series are long enough for |x| <= pi/4 (sin and cos) and
+    // |x| <= ln(2)/2^11 (expm1) to converge to double-double precision.
+    private static final int NUM_SIN_TERMS = 15;
+    private static final int NUM_EXPM1_TERMS = 10;
+
+    private static final double[] SIN_HI = new double[NUM_SIN_TERMS];
+    private static final double[] SIN_LO = new double[NUM_SIN_TERMS];
+    private static final double[] COS_HI = new double[NUM_SIN_TERMS];
+    private static final double[] COS_LO = new double[NUM_SIN_TERMS];
+    private static final double[] EXPM1_HI = new double[NUM_EXPM1_TERMS];
+    private static final double[] EXPM1_LO = new double[NUM_EXPM1_TERMS];
+
+    private static final double HALF_PI_HI;
+    private static final double HALF_PI_LO;
+    private static final double LN2_HI;
+    private static final double LN2_LO;
+
+    // The reduced argument of exp() is divided by 2^EXP_SQUARINGS before
+    // the series is evaluated, and the result squared back up.
+    private static final int EXP_SQUARINGS = 10;
+
+    // exp(x) overflows above this and is zero below MIN_EXP_ARGUMENT.
+    private static final double MAX_EXP_ARGUMENT = 709.782712893384;
+    private static final double MIN_EXP_ARGUMENT = -745.2;
+
+    // tanh(x) rounds to +-1 beyond this.
+    private static final double MAX_TANH_ARGUMENT = 40.0;
+
+    static {
+        MathContext mc = new MathContext(40);
+
+        BigDecimal halfPi = new BigDecimal
+                ("1.570796326794896619231321691639751442098584699687");
+        HALF_PI_HI = halfPi.doubleValue();
+        HALF_PI_LO = halfPi.subtract(new BigDecimal(HALF_PI_HI)).doubleValue();
+
+        BigDecimal ln2 = new BigDecimal
+                ("0.693147180559945309417232121458176568075500134360");
+        LN2_HI = ln2.doubleValue();
+        LN2_LO = ln2.subtract(new BigDecimal(LN2_HI)).doubleValue();
+
+        BigDecimal factorial = BigDecimal.ONE;
+        for (int n = 0; n < 2 * NUM_SIN_TERMS; n++) {
+            if (n > 0) {
+                factorial = factorial.multiply(BigDecimal.valueOf(n));
+            }
+
+            BigDecimal c = BigDecimal.ONE.divide(factorial, mc);
+            if (n % 4 >= 2) {
+                c = c.negate();
+            }
+
+            double chi = c.doubleValue();
+            double clo = c.subtract(new BigDecimal(chi)).doubleValue();
+            if (n % 2 == 0) {
+                COS_HI[n / 2] = chi;
+                COS_LO[n / 2] = clo;
+            } else {
+                SIN_HI[n / 2] = chi;
+                SIN_LO[n / 2] = clo;
+            }
+
+            if (n >= 1 && n <= NUM_EXPM1_TERMS) {
+                c = c.abs();
+                EXPM1_HI[n - 1] = Math.abs(chi);
+                EXPM1_LO[n - 1] = c.subtract(new BigDecimal(Math.abs(chi)))
+                        .doubleValue();
+            }
+        }
+    }
+
+    private double hi;
+    private double lo;
+
+    public DoubleDouble() {
+    }
+
+    public DoubleDouble(double x) {
+        hi = x;
+    }
+
+    public DoubleDouble(double hi, double lo) {
+        set(hi, lo);
+    }
+
+    public DoubleDouble(DoubleDouble x) {
+        hi = x.hi;
+        lo = x.lo;
+    }
+
+    public double hi() {
+        return hi;
+    }
+
+    public double lo() {
+        return lo;
+    }
+
+    public double doubleValue() {
+        return (Double.isFinite(hi) ? hi + lo : hi);
+    }
+
+    public boolean isFinite() {
+        return Double.isFinite(hi);
+    }
+
+    public DoubleDouble set(double x) {
+        hi = x;
+        lo = 0.0;
+        return this;
+    }
+
+    // The two parts need not be normalized.
+    public DoubleDouble set(double hi, double lo) {
+        double s = hi + lo;
+        this.lo = lo - (s - hi);
+        this.hi = s;
+        return this;
+    }
+
+    public DoubleDouble set(DoubleDouble x) {
+        hi = x.hi;
+        lo = x.lo;
+        return this;
+    }
+
+    public DoubleDouble add(DoubleDouble x) {
+        return addParts(x.hi, x.lo);
+    }
+
+    public DoubleDouble add(double x) {
+        double s = hi + x;
+        double bb = s - hi;
+        double e = (hi - (s - bb)) + (x - bb) + lo;
+        return normalize(s, e);
+    }
+
+    public DoubleDouble subtract(DoubleDouble x) {
+        return addParts(-x.hi, -x.lo);
+    }
+
+    public DoubleDouble multiply(DoubleDouble x) {
+        return multiplyParts(x.hi, x.lo);
+    }
+
+    public DoubleDouble multiply(double x) {
+        double p = hi * x;
+        double e = Math.fma(hi, x, -p) + lo * x;
+        return normalize(p, e);
+    }
+
+    // this += a * b
+    public DoubleDouble multiplyAdd(DoubleDouble a, DoubleDouble b) {
+        double p = a.hi * b.hi;
+        double e = Math.fma(a.hi, b.hi, -p) + (a.hi * b.lo + a.lo * b.hi);
+        return addParts(p, e);
+    }
+
+    // this -= a * b
+    public DoubleDouble multiplySubtract(DoubleDouble a, DoubleDouble b) {
+        double p = a.hi * b.hi;
+        double e = Math.fma(a.hi, b.hi, -p) + (a.hi * b.lo + a.lo * b.hi);
+        return addParts(-p, -e);
+    }
+
+    public DoubleDouble divide(DoubleDouble x) {
+        return divideParts(x.hi, x.lo);
+    }
+
+    public DoubleDouble sqrt() {
+        if (!(hi > 0.0) || hi == Double.POSITIVE_INFINITY) {
+            // Zero, infinity, negative values, and NaN.
+            hi = Math.sqrt(hi);
+            lo = 0.0;
+            return this;
+        }
+
+        // One Newton step from the double precision square root, which
+        // doubles the number of correct digits:
+        //
+        //    sqrt(a) ~= ax + (a - ax^2) * x / 2,
+        //
+        // where x = 1 / sqrt(a.hi) and ax = a.hi * x.
+        double x = 1.0 / Math.sqrt(hi);
+        double ax = hi * x;
+
+        double p = ax * ax;
+        double pe = Math.fma(ax, ax, -p);
+        double d = ((hi - p) - pe) + lo;
+
+        double correction = d * x * 0.5;
+        double s = ax + correction;
+        hi = s;
+        lo = correction - (s - ax);
+        return this;
+    }
+
+    // Accurate for arguments of moderate size (up to about 10^6 or so);
+    // the range reduction uses a two-part pi/2.
+    public DoubleDouble sin() {
+        if (!isFinite()) {
+            return set(Double.NaN);
+        }
+
+        switch (reduceHalfPi()) {
+            case 0:
+                return sinReduced();
+            case 1:
+                return cosReduced();
+            case 2:
+                return sinReduced().negate();
+            default:
+                return cosReduced().negate();
+        }
+    }
+
+    public DoubleDouble cos() {
+        if (!isFinite()) {
+            return set(Double.NaN);
+        }
+
+        switch (reduceHalfPi()) {
+            case 0:
+                return cosReduced();
+            case 1:
+                return sinReduced().negate();
+            case 2:
+                return cosReduced().negate();
+            default:
+                return sinReduced();
+        }
+    }
+
+    public DoubleDouble exp() {
+        if (hi > MAX_EXP_ARGUMENT) {
+            return set(Double.POSITIVE_INFINITY);
+        } else if (hi < MIN_EXP_ARGUMENT) {
+            return set(0.0);
+        }
+
+        int k = expm1Reduced();
+        add(1.0);
+        return scalb(k);
+    }
+
+    // exp(x) - 1, without the loss of precision for small x.
+    public DoubleDouble expm1() {
+        if (hi > MAX_EXP_ARGUMENT) {
+            return set(Double.POSITIVE_INFINITY);
+        } else if (hi < -2.0 * MAX_TANH_ARGUMENT) {
+            return set(-1.0);
+        }
+
+        int k = expm1Reduced();
+        if (k != 0) {
+            add(1.0);
+            scalb(k);
+            add(-1.0);
+        }
+        return this;
+    }
+
+    public DoubleDouble sinh() {
+        if (Math.abs(hi) < 1.0) {
+            // sinh(x) = (t + t / (t + 1)) / 2, where t = expm1(x).
+            expm1();
+            double thi = hi;
+            double tlo = lo;
+            add(1.0);
+            double uhi = hi;
+            double ulo = lo;
+            hi = thi;
+            lo = tlo;
+            divideParts(uhi, ulo);
+            addParts(thi, tlo);
+        } else {
+            // sinh(x) = (e - 1/e) / 2, where e = exp(x).
+            exp();
+            if (hi == 0.0) {
+                return set(Double.NEGATIVE_INFINITY);
+            } else if (!isFinite()) {
+                return this;
+            }
+            double ehi = hi;
+            double elo = lo;
+            set(-1.0);
+            divideParts(ehi, elo);
+            addParts(ehi, elo);
+        }
+        return multiply(0.5);
+    }
+
+    public DoubleDouble cosh() {
+        // cosh(x) = (e + 1/e) / 2, where e = exp(|x|).
+        abs();
+        exp();
+        if (!isFinite()) {
+            return this;
+        }
+
+        double ehi = hi;
+        double elo = lo;
+        set(1.0);
+        divideParts(ehi, elo);
+        addParts(ehi, elo);
+        return multiply(0.5);
+    }
+
+    public DoubleDouble tanh() {
+        boolean isNegative = (hi < 0.0);
+        abs();
+
+        if (hi > MAX_TANH_ARGUMENT) {
+            set(1.0);
+        } else {
+            // tanh(x) = t / (t + 2), where t = expm1(2x).  This keeps full
+            // precision both near zero and in the 1 - tanh(x) tail.
+            multiply(2.0);
+            expm1();
+            double thi = hi;
+            double tlo = lo;
+            add(2.0);
+            double uhi = hi;
+            double ulo = lo;
+            hi = thi;
+            lo = tlo;
+            divideParts(uhi, ulo);
+        }
+
+        return (isNegative ? negate() : this);
+    }
+
+    public DoubleDouble negate() {
+        hi = -hi;
+        lo = -lo;
+        return this;
+    }
+
+    public DoubleDouble abs() {
+        return (hi < 0.0 ? negate() : this);
+    }
+
+    public int compareTo(DoubleDouble x) {
+        int retval = Double.compare(hi, x.hi);
+        return (retval != 0 ? retval : Double.compare(lo, x.lo));
+    }
+
+    // Exact conversion to BigDecimal, for printing and testing.
+    public BigDecimal bigDecimalValue() {
+        return new BigDecimal(hi).add(new BigDecimal(lo));
+    }
+
+    public String toString() {
+        if (!isFinite()) {
+            return Double.toString(hi);
+        }
+        return bigDecimalValue().round(PRINT_CONTEXT).toString();
+    }
+
+    // this += (bhi + blo), with the accurate (IEEE-style) double-double sum
+    // that keeps the error bound relative even under cancellation.
+    private DoubleDouble addParts(double bhi, double blo) {
+        double s1 = hi + bhi;
+        double v1 = s1 - hi;
+        double s2 = (hi - (s1 - v1)) + (bhi - v1);
+
+        double t1 = lo + blo;
+        double v2 = t1 - lo;
+        double t2 = (lo - (t1 - v2)) + (blo - v2);
+
+        s2 += t1;
+        double h = s1 + s2;
+        s2 = s2 - (h - s1);
+        s2 += t2;
+        return normalize(h, s2);
+    }
+
+    private DoubleDouble divideParts(double bhi, double blo) {
+        // Long division: three quotient digits, each followed by
+        // subtracting its product with the divisor from the remainder.
+        double q1 = hi / bhi;
+        if (!Double.isFinite(q1)) {
+            hi = q1;
+            lo = 0.0;
+            return this;
+        }
+
+        double rhi = hi;
+        double rlo = lo;
+        {
+            double p = q1 * bhi;
+            double e = Math.fma(q1, bhi, -p) + q1 * blo;
+            double s = rhi - p;
+            double bb = s - rhi;
+            double t = (rhi - (s - bb)) + (-p - bb) + (rlo - e);
+            rhi = s + t;
+            rlo = t - (rhi - s);
+        }
+
+        double q2 = rhi / bhi;
+        {
+            double p = q2 * bhi;
+            double e = Math.fma(q2, bhi, -p) + q2 * blo;
+            double s = rhi - p;
+            double bb = s - rhi;
+            double t = (rhi - (s - bb)) + (-p - bb) + (rlo - e);
+            rhi = s + t;
+        }
+
+        double q3 = rhi / bhi;
+
+        double s = q1 + q2;
+        double e = q2 - (s - q1);
+        hi = s;
+        lo = e;
+        return add(q3);
+    }
+
+    // Replaces this with the remainder r of this modulo pi/2, with
+    // |r| <= pi/4, and returns the quadrant (0 to 3) of the original value.
+    private int reduceHalfPi() {
+        double k = Math.rint(hi / HALF_PI_HI);
+        subtractProduct(k, HALF_PI_HI, HALF_PI_LO);
+        return (int) ((long) k & 3);
+    }
+
+    // Assumes |this| <= pi/4.
+    private DoubleDouble sinReduced() {
+        double rhi = hi;
+        double rlo = lo;
+        multiplyParts(rhi, rlo);
+        evaluatePolynomial(SIN_HI, SIN_LO, hi, lo);
+        return multiplyParts(rhi, rlo);
+    }
+
+    // Assumes |this| <= pi/4.
+    private DoubleDouble cosReduced() {
+        multiplyParts(hi, lo);
+        return evaluatePolynomial(COS_HI, COS_LO, hi, lo);
+    }
+
+    // Replaces this with expm1(r), where this = k ln(2) + r, and returns k.
+    private int expm1Reduced() {
+        double k = Math.rint(hi / LN2_HI);
+        subtractProduct(k, LN2_HI, LN2_LO);
+
+        hi = Math.scalb(hi, -EXP_SQUARINGS);
+        lo = Math.scalb(lo, -EXP_SQUARINGS);
+
+        double rhi = hi;
+        double rlo = lo;
+        evaluatePolynomial(EXPM1_HI, EXPM1_LO, rhi, rlo);
+        multiplyParts(rhi, rlo);
+
+        // expm1(2r) = expm1(r) * (expm1(r) + 2)
+        for (int i = 0; i < EXP_SQUARINGS; i++) {
+            double thi = hi;
+            double tlo = lo;
+            add(2.0);
+            multiplyParts(thi, tlo);
+        }
+
+        return (int) k;
+    }
+
+    // this -= k * (chi + clo)
+    private void subtractProduct(double k, double chi, double clo) {
+        double p = k * chi;
+        double e = Math.fma(k, chi, -p) + k * clo;
+        addParts(-p, -e);
+    }
+
+    // Replaces this with the polynomial with the given coefficients
+    // evaluated at x = (xhi + xlo).
+    private DoubleDouble evaluatePolynomial(double[] chi, double[] clo,
+                                            double xhi, double xlo) {
+        int n = chi.length - 1;
+        hi = chi[n];
+        lo = clo[n];
+        while (--n >= 0) {
+            multiplyParts(xhi, xlo);
+            addParts(chi[n], clo[n]);
+        }
+        return this;
+    }
+
+    // this *= 2^k, in two steps so that an intermediate 2^k doesn't
+    // overflow when the result itself doesn't.
+    private DoubleDouble scalb(int k) {
+        int k1 = k / 2;
+        int k2 = k - k1;
+        hi = Math.scalb(Math.scalb(hi, k1), k2);
+        lo = Math.scalb(Math.scalb(lo, k1), k2);
+        return this;
+    }
+
+    private DoubleDouble multiplyParts(double bhi, double blo) {
+        double p = hi * bhi;
+        double e = Math.fma(hi, bhi, -p) + (hi * blo + lo * bhi);
+        return normalize(p, e);
+    }
+
+    // Assumes |s| >= |e| (or s == 0).
+    private DoubleDouble normalize(double s, double e) {
+        double h = s + e;
+        lo = e - (h - s);
+        hi = h;
+        return this;
+    }
+}
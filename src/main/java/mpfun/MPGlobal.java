@@ -1,11 +1,20 @@
 package mpfun;
 
-import java.math.MathContext;
-
+// The precision of MPReal and DoubleDouble is fixed at about 32 significant
+// digits by the double-double representation.  The maximum precision is
+// still recorded for code written against the MPJava interface, but
+// requests beyond MAXIMUM_DIGITS have no further effect.
 public class MPGlobal {
-    public static MathContext mathContext = new MathContext(32);
+    public static final int MAXIMUM_DIGITS = 32;
+
+    private static MPPrecision maximumPrecision =
+            new MPPrecision(MAXIMUM_DIGITS);
 
     public static void setMaximumPrecision(MPPrecision mpPrecision) {
-        mathContext = new MathContext(mpPrecision.getPrecision());
+        maximumPrecision = mpPrecision;
+    }
+
+    public static MPPrecision getMaximumPrecision() {
+        return maximumPrecision;
     }
 }
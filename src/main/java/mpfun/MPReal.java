@@ -1,61 +1,91 @@
 package mpfun;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-
+// An immutable extended-precision real number, kept for code written
+// against the MPJava interface.  Every operation returns a new MPReal and
+// leaves its operands untouched.
+//
+// The value is held as a double-double (about 32 significant digits).
+// Code on a hot path should use DoubleDouble directly, which does the same
+// arithmetic in place without allocating.
 public class MPReal {
-    private BigDecimal real;
+    private final DoubleDouble real;
 
     public MPReal(int i) {
-        this.real = new BigDecimal(i, MPGlobal.mathContext);
+        this.real = new DoubleDouble(i);
     }
 
     public MPReal(double i) {
-        this.real = new BigDecimal(i, MPGlobal.mathContext);
+        this.real = new DoubleDouble(i);
+    }
+
+    public MPReal(DoubleDouble x) {
+        this.real = new DoubleDouble(x);
     }
 
     public MPReal multiply(MPReal s) {
-        real = real.multiply(s.real);
-        return this;
+        return new MPReal(copy().multiply(s.real));
     }
 
     public MPReal add(MPReal s) {
-        real = real.add(s.real);
-        return this;
+        return new MPReal(copy().add(s.real));
     }
 
     public MPReal divide(MPReal s) {
-        if(s.doubleValue() == 0) {
+        if (s.doubleValue() == 0) {
             return new MPReal(0);
         }
-        real = real.divide(s.real, RoundingMode.HALF_UP);
-        return this;
+        return new MPReal(copy().divide(s.real));
     }
 
     public MPReal subtract(MPReal s) {
-        real = real.subtract(s.real);
-        return this;
+        return new MPReal(copy().subtract(s.real));
     }
 
     public MPReal sqrt() {
-        real = real.sqrt(MPGlobal.mathContext);
-        return this;
+        return new MPReal(copy().sqrt());
     }
 
     public double doubleValue() {
         return real.doubleValue();
     }
 
+    public DoubleDouble doubleDoubleValue() {
+        return new DoubleDouble(real);
+    }
+
     public MPReal cos() {
-        return new MPReal(Math.cos(real.doubleValue()));
+        return new MPReal(copy().cos());
     }
 
     public MPReal sin() {
-        return new MPReal(Math.sin(real.doubleValue()));
+        return new MPReal(copy().sin());
+    }
+
+    public MPReal exp() {
+        return new MPReal(copy().exp());
+    }
+
+    public MPReal cosh() {
+        return new MPReal(copy().cosh());
+    }
+
+    public MPReal sinh() {
+        return new MPReal(copy().sinh());
+    }
+
+    public MPReal tanh() {
+        return new MPReal(copy().tanh());
     }
 
     public MPReal negate() {
-        real = real.multiply(new BigDecimal(-1));
-        return this;
+        return new MPReal(copy().negate());
+    }
+
+    public String toString() {
+        return real.toString();
+    }
+
+    private DoubleDouble copy() {
+        return new DoubleDouble(real);
     }
 }
@@ -70,13 +70,20 @@ public class H3AdaptivePicker
             Transform3D transform = m_parameters.getObjectToEyeTransform();
 
             Point3d p = new Point3d();
-            H3RenderQueue.Element element = new H3RenderQueue.Element();
-            for (int i = m_numExaminedElements; i < currentNumElements; i++) {
-                m_renderQueue.get(i, element);
-                if (element.type == H3RenderQueue.Element.TYPE_NODE) {
-                    m_nodesInEye[m_numComputedPointsInEye] = element.data;
-
-                    m_graph.getNodeCoordinates(element.data, p);
+            int index = m_numExaminedElements;
+            while (index < currentNumElements) {
+                // The entries below currentNumElements are all available,
+                // so this never waits.
+                m_renderQueue.getBatch(index, currentNumElements - index,
+                        m_batch);
+                index += m_batch.getNumElements();
+
+                int[] nodes = m_batch.nodes;
+                for (int i = 0; i < m_batch.numNodes; i++) {
+                    int node = nodes[i];
+                    m_nodesInEye[m_numComputedPointsInEye] = node;
+
+                    m_graph.getNodeCoordinates(node, p);
                     transform.transform(p);
 
                     m_pointsInEyeX[m_numComputedPointsInEye] = p.x;
@@ -103,8 +110,14 @@ public class H3AdaptivePicker
     // PRIVATE FIELDS
     ////////////////////////////////////////////////////////////////////////
 
+    // The maximum number of queue entries decoded at a time.
+    private static final int BATCH_SIZE = 1024;
+
     private final H3RenderQueue m_renderQueue;
 
+    private final H3RenderQueue.Batch m_batch =
+            new H3RenderQueue.Batch(BATCH_SIZE);
+
     private int m_numExaminedElements = 0;
     private int m_numComputedPointsInEye = 0;
 
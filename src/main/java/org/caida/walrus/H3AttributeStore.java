@@ -0,0 +1,331 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.caida.libsea.*;
+
+// Holds the values of attributes of the nodes and links of an H3Graph in
+// columns: a primitive array (or a BitSet, for booleans) per attribute,
+// indexed by H3Graph node or link index, with a BitSet recording which
+// objects have a value.  A column is filled from the backing libsea
+// Graph the first time it's asked for, by iterating over the values of
+// the attribute with an AttributesByAttributeIterator and mapping the
+// IDs with an H3IDIndex, and it's kept for later requests.
+//
+// Looking up a value in a column is then an array access, where asking
+// the libsea Graph for the value of an object costs a ValueIterator, and
+// an AttributeUnavailableException if the object has no value.  So
+// coloring or selecting all the objects of a large graph by an attribute
+// takes milliseconds once its column has been loaded.
+//
+// If an attribute has a default value, objects without a value of their
+// own are given the default when the column is loaded, so they have a
+// value in the column.  Only attributes of the base types have columns;
+// list attributes must still be read from the libsea Graph.
+public class H3AttributeStore {
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    // {graph} must have been loaded from {backingGraph}.
+    public H3AttributeStore(Graph backingGraph, H3Graph graph) {
+        m_backingGraph = backingGraph;
+        m_graph = graph;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public Graph getBackingGraph() {
+        return m_backingGraph;
+    }
+
+    public H3Graph getGraph() {
+        return m_graph;
+    }
+
+    public synchronized H3IDIndex getNodeIndex() {
+        if (m_nodeIndex == null) {
+            m_nodeIndex = H3IDIndex.createNodeIndex(m_graph);
+        }
+        return m_nodeIndex;
+    }
+
+    public synchronized H3IDIndex getLinkIndex() {
+        if (m_linkIndex == null) {
+            m_linkIndex = H3IDIndex.createLinkIndex(m_graph);
+        }
+        return m_linkIndex;
+    }
+
+    // Returns null if {attribute} has a list type.
+    public synchronized Column getNodeColumn(int attribute) {
+        Column retval = m_nodeColumns.get(attribute);
+        if (retval == null) {
+            retval = loadColumn(ObjectType.NODE, attribute);
+            if (retval != null) {
+                m_nodeColumns.put(attribute, retval);
+            }
+        }
+        return retval;
+    }
+
+    // Returns null if {attribute} has a list type.
+    public synchronized Column getLinkColumn(int attribute) {
+        Column retval = m_linkColumns.get(attribute);
+        if (retval == null) {
+            retval = loadColumn(ObjectType.LINK, attribute);
+            if (retval != null) {
+                m_linkColumns.put(attribute, retval);
+            }
+        }
+        return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private Column loadColumn(ObjectType objectType, int attribute) {
+        AttributeDefinitionIterator definition =
+                m_backingGraph.getAttributeDefinition(attribute);
+        ValueType type = definition.getType();
+        if (type.isListType()) {
+            return null;
+        }
+
+        boolean isNode = (objectType == ObjectType.NODE);
+        H3IDIndex index = (isNode ? getNodeIndex() : getLinkIndex());
+        int size = (isNode ? m_graph.getNumNodes()
+                    : m_graph.getTotalNumLinks());
+        Column retval = new Column(type.getBaseType(), size);
+
+        AttributesByAttributeIterator iterator =
+                (isNode ? definition.getNodeAttributes()
+                 : definition.getLinkAttributes());
+        while (!iterator.atEnd()) {
+            int i = index.getIndex(iterator.getObjectID());
+            if (i >= 0) {
+                retval.setValue(i, iterator.getAttributeValues());
+            }
+            iterator.advance();
+        }
+
+        // The libsea Graph gives the default value, already parsed, for
+        // any object without a value of its own, so it need only be asked
+        // once, for the first such object.  (Objects with negative IDs,
+        // the virtual root and links of a breadth-first tree, aren't in
+        // the libsea Graph, but they come last.)
+        int missing = retval.m_present.nextClearBit(0);
+        int id = (missing >= size ? -1
+                  : isNode ? m_graph.getNodeID(missing)
+                  : m_graph.getLinkID(missing));
+        if (definition.getDefault() != null && id >= 0) {
+            try {
+                ValueIterator value = (isNode
+                        ? m_backingGraph.getNodeAttribute(id, attribute)
+                        : m_backingGraph.getLinkAttribute(id, attribute));
+                for (int i = missing; i < size;
+                     i = retval.m_present.nextClearBit(i + 1)) {
+                    retval.setValue(i, value);
+                }
+            } catch (AttributeUnavailableException e) {
+                // Leave the objects without values.
+            }
+        }
+
+        return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private final Graph m_backingGraph;
+    private final H3Graph m_graph;
+    private H3IDIndex m_nodeIndex; // Built on demand; see getNodeIndex().
+    private H3IDIndex m_linkIndex; // Built on demand; see getLinkIndex().
+
+    private final Map<Integer, Column> m_nodeColumns =
+            new HashMap<Integer, Column>();
+    private final Map<Integer, Column> m_linkColumns =
+            new HashMap<Integer, Column>();
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // The values of one attribute, of the base type getType() (one of the
+    // ValueType._* constants other than the list types), for all nodes or
+    // all links.  Only the getter for the type of the column may be used,
+    // and only for objects that have a value.  Integer and enumeration
+    // values are both read with getInteger().
+    public static final class Column {
+        private Column(int type, int size) {
+            m_type = type;
+            m_size = size;
+            m_present = new BitSet(size);
+
+            switch (type) {
+                case ValueType._BOOLEAN:
+                    m_booleans = new BitSet(size);
+                    break;
+
+                case ValueType._INTEGER:
+                    //FALLTHROUGH
+                case ValueType._ENUMERATION:
+                    m_integers = new int[size];
+                    break;
+
+                case ValueType._FLOAT:
+                    m_floats = new float[size];
+                    break;
+
+                case ValueType._FLOAT3:
+                    m_floats = new float[3 * size];
+                    break;
+
+                case ValueType._DOUBLE:
+                    m_doubles = new double[size];
+                    break;
+
+                case ValueType._DOUBLE3:
+                    m_doubles = new double[3 * size];
+                    break;
+
+                case ValueType._STRING:
+                    m_strings = new String[size];
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("type " + type);
+            }
+        }
+
+        public int getType() {
+            return m_type;
+        }
+
+        public int getSize() {
+            return m_size;
+        }
+
+        public int getNumValues() {
+            return m_present.cardinality();
+        }
+
+        public boolean hasValue(int index) {
+            return m_present.get(index);
+        }
+
+        public boolean getBoolean(int index) {
+            return m_booleans.get(index);
+        }
+
+        public int getInteger(int index) {
+            return m_integers[index];
+        }
+
+        public float getFloat(int index) {
+            return m_floats[index];
+        }
+
+        public double getDouble(int index) {
+            return m_doubles[index];
+        }
+
+        public String getString(int index) {
+            return m_strings[index];
+        }
+
+        public void getFloat3(int index, float[] value) {
+            System.arraycopy(m_floats, 3 * index, value, 0, 3);
+        }
+
+        public void getDouble3(int index, double[] value) {
+            System.arraycopy(m_doubles, 3 * index, value, 0, 3);
+        }
+
+        private void setValue(int index, ValueIterator value) {
+            switch (m_type) {
+                case ValueType._BOOLEAN:
+                    m_booleans.set(index, value.getBooleanValue());
+                    break;
+
+                case ValueType._INTEGER:
+                    m_integers[index] = value.getIntegerValue();
+                    break;
+
+                case ValueType._ENUMERATION:
+                    m_integers[index] = value.getEnumerationValue();
+                    break;
+
+                case ValueType._FLOAT:
+                    m_floats[index] = value.getFloatValue();
+                    break;
+
+                case ValueType._FLOAT3:
+                    value.getFloat3Value(m_float3Temporary);
+                    System.arraycopy(m_float3Temporary, 0,
+                                     m_floats, 3 * index, 3);
+                    break;
+
+                case ValueType._DOUBLE:
+                    m_doubles[index] = value.getDoubleValue();
+                    break;
+
+                case ValueType._DOUBLE3:
+                    value.getDouble3Value(m_double3Temporary);
+                    System.arraycopy(m_double3Temporary, 0,
+                                     m_doubles, 3 * index, 3);
+                    break;
+
+                case ValueType._STRING:
+                    m_strings[index] = value.getStringValue();
+                    break;
+
+                default:
+                    throw new RuntimeException();
+            }
+            m_present.set(index);
+        }
+
+        private final int m_type;
+        private final int m_size;
+        private final BitSet m_present;
+
+        // Only the array for m_type is allocated.
+        private BitSet m_booleans;
+        private int[] m_integers;
+        private float[] m_floats;     // ...three per object for FLOAT3.
+        private double[] m_doubles;   // ...three per object for DOUBLE3.
+        private String[] m_strings;
+
+        private final float[] m_float3Temporary = new float[3];
+        private final double[] m_double3Temporary = new double[3];
+    }
+}
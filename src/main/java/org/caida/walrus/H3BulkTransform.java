@@ -0,0 +1,117 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+import org.jogamp.vecmath.Matrix4d;
+
+// Transforms a range of nodes at once, working directly on the
+// structure-of-arrays node storage of H3Graph: the layout coordinates
+// (layoutX, layoutY, layoutZ, layoutW) are multiplied by a matrix, and the
+// resulting display coordinates (x, y, z) and radius are stored back.
+//
+// When the jdk.incubator.vector module is available (that is, the JVM was
+// started with --add-modules jdk.incubator.vector), the bulk of the range is
+// done with SIMD instructions by H3VectorBulkTransform.  Otherwise, or for
+// the leftover tail, the plain scalar loop below is used.  Both perform
+// exactly the same operations in the same order as Matrix4d.transform()
+// followed by H3Math.computeRadiusEuclidean(), so the results are identical
+// either way.  Setting the system property walrus.disableVector forces the
+// scalar loop.
+final class H3BulkTransform {
+    private H3BulkTransform() {
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public static boolean isVectorized() {
+        return USE_VECTOR;
+    }
+
+    // Transforms nodes begin .. end-1.
+    public static void transform(Matrix4d t, int begin, int end,
+                                 double[] layoutX, double[] layoutY,
+                                 double[] layoutZ, double[] layoutW,
+                                 double[] x, double[] y, double[] z,
+                                 double[] radius) {
+        int i = begin;
+        if (USE_VECTOR) {
+            i = H3VectorBulkTransform.transform(t, begin, end,
+                    layoutX, layoutY, layoutZ, layoutW, x, y, z, radius);
+        }
+        transformScalar(t, i, end,
+                layoutX, layoutY, layoutZ, layoutW, x, y, z, radius);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static void transformScalar(Matrix4d t, int begin, int end,
+                                        double[] layoutX, double[] layoutY,
+                                        double[] layoutZ, double[] layoutW,
+                                        double[] x, double[] y, double[] z,
+                                        double[] radius) {
+        double m00 = t.m00, m01 = t.m01, m02 = t.m02, m03 = t.m03;
+        double m10 = t.m10, m11 = t.m11, m12 = t.m12, m13 = t.m13;
+        double m20 = t.m20, m21 = t.m21, m22 = t.m22, m23 = t.m23;
+        double m30 = t.m30, m31 = t.m31, m32 = t.m32, m33 = t.m33;
+
+        for (int i = begin; i < end; i++) {
+            double lx = layoutX[i];
+            double ly = layoutY[i];
+            double lz = layoutZ[i];
+            double lw = layoutW[i];
+
+            double px = m00 * lx + m01 * ly + m02 * lz + m03 * lw;
+            double py = m10 * lx + m11 * ly + m12 * lz + m13 * lw;
+            double pz = m20 * lx + m21 * ly + m22 * lz + m23 * lw;
+            double pw = m30 * lx + m31 * ly + m32 * lz + m33 * lw;
+
+            x[i] = px / pw;
+            y[i] = py / pw;
+            z[i] = pz / pw;
+            radius[i] = 1.0 - (px * px + py * py + pz * pz) / (pw * pw);
+        }
+    }
+
+    private static boolean checkVectorSupport() {
+        if (Boolean.getBoolean("walrus.disableVector")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector")
+                .isEmpty()) {
+            return false;
+        }
+
+        try {
+            return H3VectorBulkTransform.getNumLanes() > 1;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final boolean USE_VECTOR = checkVectorSupport();
+}
@@ -148,37 +148,33 @@ public class H3CircleRenderer
 
         Point3d node = new Point3d();
 
-        H3RenderQueue.Element element = new H3RenderQueue.Element();
-
-        boolean more = true;
-        while (more && count-- > 0) {
-            if (m_renderQueue.get(m_numDisplayedElements, element)) {
-                ++m_numDisplayedElements;
-
-                if (element.type == H3RenderQueue.Element.TYPE_NODE) {
-                    m_renderList.addNode(element.data);
-
-                    // Render as a circle.
-                    m_graph.getNodeCoordinates(element.data, node);
-                    transform.transform(node);
-
-                    double perspectiveScale = 1.0 / (1.0 - node.z / eye.z);
-                    double radius = m_graph.getNodeRadius(element.data)
-                            * nodeRadius * perspectiveScale;
-
-                    double centerX = eye.x + node.x * perspectiveScale;
-                    double centerY = eye.y + node.y * perspectiveScale;
-
-                    nodeImage.draw(gc, radius, centerX, centerY);
-                } else if (element.type == H3RenderQueue.Element.TYPE_TREE_LINK) {
-                    m_renderList.addTreeLink(element.data);
-                } else //(type == H3RenderQueue.Element.TYPE_NONTREE_LINK)
-                {
-                    m_renderList.addNontreeLink(element.data);
-                }
-            } else {
+        while (count > 0) {
+            if (!m_renderQueue.getBatch(m_numDisplayedElements, count,
+                    m_batch)) {
                 retval = false;
-                more = false;
+                break;
+            }
+
+            int numElements = m_batch.getNumElements();
+            m_numDisplayedElements += numElements;
+            count -= numElements;
+
+            m_renderList.addBatch(m_batch);
+
+            // Render the nodes as circles.
+            int[] nodes = m_batch.nodes;
+            for (int i = 0; i < m_batch.numNodes; i++) {
+                m_graph.getNodeCoordinates(nodes[i], node);
+                transform.transform(node);
+
+                double perspectiveScale = 1.0 / (1.0 - node.z / eye.z);
+                double radius = m_graph.getNodeRadius(nodes[i])
+                        * nodeRadius * perspectiveScale;
+
+                double centerX = eye.x + node.x * perspectiveScale;
+                double centerY = eye.y + node.y * perspectiveScale;
+
+                nodeImage.draw(gc, radius, centerX, centerY);
             }
         }
 
@@ -192,6 +188,10 @@ public class H3CircleRenderer
     private static final boolean DEBUG_PRINT = false;
     private static final int NUM_PER_ITERATION = 25;
 
+    // The maximum number of queue entries decoded at a time when
+    // redisplaying the elements of earlier frames.
+    private static final int BATCH_SIZE = 1024;
+
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
     private long m_maxDuration = Long.MAX_VALUE;
@@ -202,4 +202,7 @@ public class H3CircleRenderer
     private final H3RenderList m_renderList;
 
     private int m_numDisplayedElements = 0;
+
+    private final H3RenderQueue.Batch m_batch =
+            new H3RenderQueue.Batch(BATCH_SIZE);
 }
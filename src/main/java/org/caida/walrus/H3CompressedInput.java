@@ -0,0 +1,181 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.zip.GZIPInputStream;
+
+// Recognizes compressed graph files by their magic numbers and opens them
+// for reading, so that topology dumps can be loaded without first
+// decompressing them to temporary files.
+//
+// Gzip is handled by java.util.zip.  Xz and zstd need the XZ for Java and
+// zstd-jni libraries, which Walrus doesn't ship; they're used if they're
+// on the class path, and otherwise such files are rejected with an
+// IOException saying so.
+//
+// H3GraphFile does the decompression on the thread of an
+// H3ReadAheadInputStream, so that it overlaps with parsing.
+final class H3CompressedInput {
+    ////////////////////////////////////////////////////////////////////////
+    // FORMATS
+    ////////////////////////////////////////////////////////////////////////
+
+    static final String NONE = "none";
+    static final String GZIP = "gzip";
+    static final String XZ = "xz";
+    static final String ZSTD = "zstd";
+
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    private H3CompressedInput() {
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PACKAGE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Returns the compression format of {file}, judged by its first bytes.
+    static String detectFormat(File file) throws IOException {
+        byte[] magic = new byte[XZ_MAGIC.length];
+        int length = 0;
+        InputStream in = new FileInputStream(file);
+        try {
+            while (length < magic.length) {
+                int n = in.read(magic, length, magic.length - length);
+                if (n < 0) {
+                    break;
+                }
+                length += n;
+            }
+        } finally {
+            in.close();
+        }
+
+        if (startsWith(magic, length, GZIP_MAGIC)) {
+            return GZIP;
+        } else if (startsWith(magic, length, XZ_MAGIC)) {
+            return XZ;
+        } else if (startsWith(magic, length, ZSTD_MAGIC)) {
+            return ZSTD;
+        }
+        return NONE;
+    }
+
+    // Wraps {in}, positioned at the start of a file in {format}, in a
+    // stream returning the decompressed bytes.
+    static InputStream decompress(InputStream in, String format)
+            throws IOException {
+        if (format.equals(NONE)) {
+            return in;
+        } else if (format.equals(GZIP)) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        } else if (format.equals(XZ)) {
+            return decompressWith(in, format, XZ_CLASS);
+        } else if (format.equals(ZSTD)) {
+            return decompressWith(in, format, ZSTD_CLASS);
+        }
+
+        String msg = "unknown compression format " + format;
+        throw new IllegalArgumentException(msg);
+    }
+
+    // Opens {file}, decompressing it on the calling thread if necessary.
+    static InputStream open(File file) throws IOException {
+        String format = detectFormat(file);
+        InputStream in = new FileInputStream(file);
+        try {
+            return decompress(in, format);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static boolean startsWith(byte[] data, int length,
+                                      byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Both optional libraries provide a FilterInputStream with a
+    // constructor taking the compressed stream.
+    private static InputStream decompressWith(InputStream in, String format,
+                                              String className)
+            throws IOException {
+        Constructor<?> constructor;
+        try {
+            constructor = Class.forName(className)
+                    .getConstructor(InputStream.class);
+        } catch (ReflectiveOperationException e) {
+            String msg = format + "-compressed input needs " + className
+                    + " on the class path";
+            throw new IOException(msg);
+        }
+
+        try {
+            return (InputStream) constructor.newInstance(in);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] GZIP_MAGIC = { (byte) 0x1F, (byte) 0x8B };
+    private static final byte[] XZ_MAGIC =
+            { (byte) 0xFD, '7', 'z', 'X', 'Z', 0x00 };
+    private static final byte[] ZSTD_MAGIC =
+            { (byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD };
+
+    private static final String XZ_CLASS = "org.tukaani.xz.XZInputStream";
+    private static final String ZSTD_CLASS =
+            "com.github.luben.zstd.ZstdInputStream";
+}
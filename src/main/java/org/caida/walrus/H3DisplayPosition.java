@@ -23,6 +23,13 @@ package org.caida.walrus;
 import org.jogamp.java3d.Transform3D;
 import org.jogamp.vecmath.Matrix4d;
 
+// The translation follows the convention of H3Transformer: for a graph
+// with a relative layout (see H3Graph.hasRelativeLayout()), it places the
+// coordinate system of the center node in the display, and otherwise it
+// transforms the layout coordinates.  A render loop that always works with
+// the layout coordinates converts with getLayoutTranslation() and
+// createFromLayoutTranslation(), so that positions carry over between
+// render loops.
 public class H3DisplayPosition {
     ////////////////////////////////////////////////////////////////////////
     // CONSTRUCTORS
@@ -51,6 +58,33 @@ public class H3DisplayPosition {
         return m_translation;
     }
 
+    // Returns the translation as a transform of the layout coordinates of
+    // {graph}, as H3Graph.transformNodes() takes it.
+    public Matrix4d getLayoutTranslation(H3Graph graph) {
+        Matrix4d retval = new Matrix4d(m_translation);
+        if (graph.hasRelativeLayout()) {
+            Matrix4d frame = new Matrix4d();
+            graph.getNodeAbsoluteFrameInverse(m_centerNode, frame);
+            retval.mul(frame);
+        }
+        return retval;
+    }
+
+    // Creates the position whose getLayoutTranslation() is
+    // {layoutTranslation}, a transform of the layout coordinates of
+    // {graph}.
+    public static H3DisplayPosition createFromLayoutTranslation
+            (H3Graph graph, int centerNode, Transform3D rotation,
+             Matrix4d layoutTranslation) {
+        Matrix4d translation = new Matrix4d(layoutTranslation);
+        if (graph.hasRelativeLayout()) {
+            Matrix4d frame = new Matrix4d();
+            graph.getNodeAbsoluteFrame(centerNode, frame);
+            translation.mul(frame);
+        }
+        return new H3DisplayPosition(centerNode, rotation, translation);
+    }
+
     ///////////////////////////////////////////////////////////////////////
     // PRIVATE FIELDS
     ///////////////////////////////////////////////////////////////////////
@@ -0,0 +1,1000 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// A graph read from a plain edge list, the alternative to a LibSea file
+// for the output of measurement pipelines.  Each line gives one link, as
+// the integer IDs of its source and destination nodes followed by any
+// number of numeric attribute values:
+//
+//    src dst [value ...]
+//
+// The fields are separated by spaces or tabs (WHITESPACE, the default),
+// by commas (CSV), or by single tabs (TSV), as chosen by the suffix of the
+// file (see getFormat()).  Blank lines and lines starting with `#' or `%'
+// are skipped.  If the first other line doesn't start with an integer,
+// it's a header naming the columns; otherwise the attribute columns are
+// named `column3', `column4', and so on.  An attribute value that's empty
+// or missing from the end of a line is NaN.
+//
+// The file is mapped into memory in chunks that end at line boundaries,
+// and read in two passes over the chunks, each split among threads: the
+// first counts the lines, which bounds the number of links, and the
+// second parses each chunk straight into its place in the link arrays and
+// the attribute columns (primitive double arrays), so no per-chunk
+// buffers are held.  The node IDs are then gathered into a sorted array
+// and an H3IDIndex, and the links are rewritten in terms of node indices.
+// Apart from the attribute columns, the graph takes two ints per link
+// while it's read, and the H3Graph built from it takes several times
+// that.
+//
+// An edge list has no spanning tree, so load() builds a breadth-first one
+// with H3SpanningTreeBuilder.  In the H3Graph, the nodes are in order of
+// ID and the link with ID i is the one on the i-th line of links, which
+// is also its position in the attribute columns of the links.  Attribute
+// columns of the nodes can be read from a separate file of the same
+// format with one node ID per line (see readNodeAttributes()).
+//
+// (Compressed files can't be mapped, so they're not supported.)
+public class H3EdgeListFile {
+    public static final String WHITESPACE = "whitespace";
+    public static final String CSV = "csv";
+    public static final String TSV = "tsv";
+
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    private H3EdgeListFile(File file, String format, int parallelism) {
+        m_file = file;
+        m_format = format;
+        m_parallelism = parallelism;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Returns the format given by the suffix of the name of {file}: CSV for
+    // `.csv', TSV for `.tsv', WHITESPACE for `.edges', `.edgelist', `.el',
+    // and `.txt', and null for anything else, which isn't taken to be an
+    // edge list.
+    public static String getFormat(File file) {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".csv")) {
+            return CSV;
+        } else if (name.endsWith(".tsv")) {
+            return TSV;
+        } else if (name.endsWith(".edges") || name.endsWith(".edgelist")
+                   || name.endsWith(".el") || name.endsWith(".txt")) {
+            return WHITESPACE;
+        }
+        return null;
+    }
+
+    public static boolean isEdgeList(File file) {
+        return getFormat(file) != null;
+    }
+
+    public static H3EdgeListFile read(File file)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        return read(file, 1);
+    }
+
+    public static H3EdgeListFile read(File file, int parallelism)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        return read(file, parallelism, new H3LoadMonitor());
+    }
+
+    // Reads the file with {parallelism} threads; the result is the same
+    // for any number.  A file whose format isn't given by its suffix is
+    // read as WHITESPACE.  Reports the READ (counting lines), PARSE, and
+    // MAP_IDS phases to {monitor}, and stops with a CancellationException
+    // if the load is cancelled.
+    public static H3EdgeListFile read(File file, int parallelism,
+                                      H3LoadMonitor monitor)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        if (parallelism < 1) {
+            String msg = "parallelism must be at least 1; found "
+                    + parallelism;
+            throw new IllegalArgumentException(msg);
+        }
+
+        String format = getFormat(file);
+        H3EdgeListFile retval = new H3EdgeListFile
+                (file, (format != null ? format : WHITESPACE), parallelism);
+
+        Table table = retval.readTable(file, retval.m_format, 2, monitor);
+        retval.m_numLinks = table.numRows;
+        retval.m_linkSources = table.ids[0];
+        retval.m_linkDestinations = table.ids[1];
+        retval.m_linkAttributes = table.names;
+        retval.m_linkColumns = table.values;
+
+        retval.mapNodeIDs(monitor);
+        return retval;
+    }
+
+    // Reads attribute columns of the nodes from {file}, which has the
+    // format given by its suffix (or WHITESPACE) and a node ID and the
+    // attribute values on each line.  Nodes without a line get NaN, and
+    // lines for nodes that aren't in the graph are ignored.  A column with
+    // the name of an existing one replaces it.
+    public void readNodeAttributes(File file, H3LoadMonitor monitor)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        String format = getFormat(file);
+        Table table = readTable(file, (format != null ? format : WHITESPACE),
+                1, monitor);
+
+        int[] index = new int[table.numRows];
+        for (int i = 0; i < table.numRows; i++) {
+            index[i] = m_nodeIndex.getIndex(table.ids[0][i]);
+        }
+
+        for (int k = 0; k < table.names.size(); k++) {
+            double[] column = new double[m_numNodes];
+            Arrays.fill(column, Double.NaN);
+            for (int i = 0; i < table.numRows; i++) {
+                if (index[i] >= 0) {
+                    column[index[i]] = table.values[k][i];
+                }
+            }
+
+            String name = table.names.get(k);
+            int existing = m_nodeAttributes.indexOf(name);
+            if (existing >= 0) {
+                m_nodeColumns.set(existing, column);
+            } else {
+                m_nodeAttributes.add(name);
+                m_nodeColumns.add(column);
+            }
+        }
+    }
+
+    public File getFile() {
+        return m_file;
+    }
+
+    public String getFormat() {
+        return m_format;
+    }
+
+    public int getNumNodes() {
+        return m_numNodes;
+    }
+
+    public int getNumLinks() {
+        return m_numLinks;
+    }
+
+    // The ID of the node at {node} in the H3Graph.
+    public int getNodeID(int node) {
+        return m_nodeIDs[node];
+    }
+
+    // Maps node IDs to the indices of the nodes in the H3Graph.
+    public H3IDIndex getNodeIndex() {
+        return m_nodeIndex;
+    }
+
+    // Returns List<String>, the names of the attribute columns of the links
+    // in the order they appear in the file.
+    public List getLinkAttributes() {
+        return Collections.unmodifiableList(m_linkAttributes);
+    }
+
+    // Returns the values of attribute {name} indexed by link ID, or null if
+    // there's no such attribute.  The array is shared, not copied.
+    public double[] getLinkColumn(String name) {
+        int i = m_linkAttributes.indexOf(name);
+        return (i >= 0 ? m_linkColumns[i] : null);
+    }
+
+    // Returns List<String>, the names of the attribute columns of the nodes
+    // read by readNodeAttributes().
+    public List getNodeAttributes() {
+        return Collections.unmodifiableList(m_nodeAttributes);
+    }
+
+    // Returns the values of attribute {name} indexed by node (in the
+    // H3Graph), or null if there's no such attribute.  The array is shared,
+    // not copied.
+    public double[] getNodeColumn(String name) {
+        int i = m_nodeAttributes.indexOf(name);
+        return (i >= 0 ? m_nodeColumns.get(i) : null);
+    }
+
+    // The only spanning tree of an edge list is
+    // H3SpanningTreeBuilder.BREADTH_FIRST_TREE.
+    public List<String> loadSpanningTreeQualifiers() {
+        List<String> retval = new ArrayList<String>();
+        retval.add(H3SpanningTreeBuilder.BREADTH_FIRST_TREE);
+        return retval;
+    }
+
+    public H3Graph load(String spanningTree)
+            throws H3GraphLoader.InvalidGraphDataException {
+        return load(spanningTree, new H3LoadMonitor());
+    }
+
+    // {spanningTree} must be H3SpanningTreeBuilder.BREADTH_FIRST_TREE; see
+    // loadBreadthFirst().
+    public H3Graph load(String spanningTree, H3LoadMonitor monitor)
+            throws H3GraphLoader.InvalidGraphDataException {
+        if (!spanningTree.equals(H3SpanningTreeBuilder.BREADTH_FIRST_TREE)) {
+            String msg = "spanning tree qualifier `" + spanningTree
+                    + "' not found";
+            throw new IllegalArgumentException(msg);
+        }
+        return loadBreadthFirst(-1, monitor);
+    }
+
+    // Builds the H3Graph with a breadth-first spanning tree rooted at the
+    // node with ID {rootID}, or at the node with the most outgoing links if
+    // {rootID} is -1.  See H3SpanningTreeBuilder, which reports the
+    // SPANNING_TREE and LINKS phases to {monitor}.
+    public H3Graph loadBreadthFirst(int rootID, H3LoadMonitor monitor)
+            throws H3GraphLoader.InvalidGraphDataException {
+        if (m_numNodes == 0) {
+            String msg = "no root node found for spanning tree";
+            throw new H3GraphLoader.InvalidGraphDataException(msg);
+        }
+
+        int rootNode = (rootID == -1
+                        ? H3SpanningTreeBuilder.findHighestDegreeNode
+                                (m_numNodes, m_linkSources)
+                        : m_nodeIndex.getIndex(rootID));
+        if (rootNode < 0) {
+            String msg = "root node id[" + rootID + "] not found";
+            throw new IllegalArgumentException(msg);
+        }
+
+        H3SpanningTreeBuilder builder =
+                new H3SpanningTreeBuilder(m_parallelism);
+        H3Graph retval = builder.build(m_numNodes, m_linkSources,
+                m_linkDestinations, rootNode, monitor);
+        for (int i = 0; i < m_numNodes; i++) {
+            retval.setNodeID(i, m_nodeIDs[i]);
+        }
+        return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Replaces the node IDs in the link arrays by node indices, numbering
+    // the nodes in order of ID.  The IDs are gathered with a bit set over
+    // their range if it's small enough, and by sorting them otherwise.
+    private void mapNodeIDs(H3LoadMonitor monitor) {
+        H3LoadMonitor.Phase phase = monitor.startPhase
+                (H3LoadMonitor.MAP_IDS, H3LoadMonitor.LINK_UNITS, m_numLinks);
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < m_numLinks; i++) {
+            min = Math.min(min, Math.min(m_linkSources[i],
+                    m_linkDestinations[i]));
+            max = Math.max(max, Math.max(m_linkSources[i],
+                    m_linkDestinations[i]));
+        }
+        phase.checkCancelled();
+
+        long range = (m_numLinks == 0 ? 0 : (long) max - min + 1);
+        if (range <= (long) DENSE_RANGE_FACTOR * m_numLinks) {
+            BitSet present = new BitSet((int) range);
+            for (int i = 0; i < m_numLinks; i++) {
+                present.set(m_linkSources[i] - min);
+                present.set(m_linkDestinations[i] - min);
+            }
+
+            m_nodeIDs = new int[present.cardinality()];
+            int n = 0;
+            for (int i = present.nextSetBit(0); i >= 0;
+                 i = present.nextSetBit(i + 1)) {
+                m_nodeIDs[n++] = i + min;
+            }
+        } else {
+            int[] ids = Arrays.copyOf(m_linkSources, 2 * m_numLinks);
+            System.arraycopy(m_linkDestinations, 0, ids, m_numLinks,
+                    m_numLinks);
+            if (m_parallelism > 1) {
+                Arrays.parallelSort(ids);
+            } else {
+                Arrays.sort(ids);
+            }
+
+            int n = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (n == 0 || ids[i] != ids[n - 1]) {
+                    ids[n++] = ids[i];
+                }
+            }
+            m_nodeIDs = Arrays.copyOf(ids, n);
+        }
+        phase.checkCancelled();
+
+        m_numNodes = m_nodeIDs.length;
+        m_nodeIndex = new H3IDIndex(m_nodeIDs);
+
+        ForkJoinPool pool = new ForkJoinPool(m_parallelism);
+        try {
+            pool.invoke(new MapTask(phase, 0, m_numLinks));
+        } finally {
+            pool.shutdown();
+        }
+        phase.finish();
+    }
+
+    private Table readTable(File file, String format, int numIDColumns,
+                            H3LoadMonitor monitor)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        ForkJoinPool pool = new ForkJoinPool(m_parallelism);
+        try {
+            TableReader reader = new TableReader(raf.getChannel(), format,
+                    numIDColumns, m_parallelism);
+            return reader.read(pool, monitor);
+        } finally {
+            pool.shutdown();
+            raf.close();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The node IDs are gathered with a bit set if they span a range of at
+    // most this many times the number of links.
+    private static final int DENSE_RANGE_FACTOR = 4;
+
+    // Link ranges of at least this many links are split among threads.
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    // The header is read from a mapping of at most this many bytes at the
+    // start of the file.
+    private static final long MAX_HEADER_SIZE = 1024 * 1024;
+
+    // The file is split into chunks of about 1/CHUNKS_PER_THREAD of the
+    // share of each thread, but at least MIN_CHUNK_SIZE bytes and at most
+    // MAX_CHUNK_SIZE bytes (so that offsets within chunks are ints).
+    private static final int CHUNKS_PER_THREAD = 16;
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final long MAX_CHUNK_SIZE = 256 * 1024 * 1024;
+
+    // Bytes read at a time when looking for the ends of chunks.
+    private static final int SCAN_SIZE = 4096;
+
+    // Progress is reported after every so many bytes of a chunk.
+    private static final int PROGRESS_BYTES = 1024 * 1024;
+
+    // Decimals of at most this many digits have mantissas that doubles
+    // hold exactly.
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private final File m_file;
+    private final String m_format;
+    private final int m_parallelism;
+
+    private int m_numNodes;
+    private int m_numLinks;
+
+    private int[] m_nodeIDs; // Sorted.
+    private H3IDIndex m_nodeIndex;
+
+    // Node indices, once mapNodeIDs() has run.
+    private int[] m_linkSources;
+    private int[] m_linkDestinations;
+
+    private List<String> m_linkAttributes;
+    private double[][] m_linkColumns;
+    private final List<String> m_nodeAttributes = new ArrayList<String>();
+    private final List<double[]> m_nodeColumns = new ArrayList<double[]>();
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // The lines of a file, as {numRows} rows of integer ID columns and
+    // double attribute columns.
+    private static class Table {
+        public int numRows;
+        public int[][] ids;
+        public List<String> names;
+        public double[][] values;
+    }
+
+    // Rewrites the links [first, last) in terms of node indices.
+    private class MapTask extends RecursiveAction {
+        public MapTask(H3LoadMonitor.Phase phase, int first, int last) {
+            m_phase = phase;
+            m_first = first;
+            m_last = last;
+        }
+
+        protected void compute() {
+            if (m_last - m_first > PARALLEL_THRESHOLD) {
+                int middle = (m_first + m_last) >>> 1;
+                invokeAll(new MapTask(m_phase, m_first, middle),
+                        new MapTask(m_phase, middle, m_last));
+            } else {
+                for (int i = m_first; i < m_last; i++) {
+                    m_linkSources[i] = m_nodeIndex.getIndex(m_linkSources[i]);
+                    m_linkDestinations[i] =
+                            m_nodeIndex.getIndex(m_linkDestinations[i]);
+                }
+                m_phase.advance(m_last - m_first);
+            }
+        }
+
+        private final H3LoadMonitor.Phase m_phase;
+        private final int m_first;
+        private final int m_last;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Reads a file into a Table.  The header, if any, is read first, and
+    // the rest of the file is split into chunks at line boundaries.  The
+    // lines of each chunk are counted, which gives each chunk the first of
+    // the rows it may fill (blank lines and comments leave gaps, which are
+    // closed up afterwards), and then the chunks are parsed.
+    private static class TableReader {
+        public TableReader(FileChannel channel, String format,
+                           int numIDColumns, int parallelism) {
+            m_channel = channel;
+            m_numIDColumns = numIDColumns;
+            m_parallelism = parallelism;
+            m_separator = (format.equals(CSV) ? ','
+                           : format.equals(TSV) ? '\t' : ' ');
+        }
+
+        public Table read(ForkJoinPool pool, H3LoadMonitor monitor)
+                throws IOException, H3GraphLoader.InvalidGraphDataException {
+            long size = m_channel.size();
+            H3LoadMonitor.Phase phase = monitor.startPhase
+                    (H3LoadMonitor.READ, H3LoadMonitor.BYTES, size);
+
+            Table retval = new Table();
+            long dataStart = readHeader(retval, size);
+            long[] chunks = split(dataStart, size);
+            int numChunks = chunks.length - 1;
+
+            ChunkTask[] tasks = new ChunkTask[numChunks];
+            for (int i = 0; i < numChunks; i++) {
+                tasks[i] = new ChunkTask(chunks[i], chunks[i + 1], phase);
+            }
+            runChunkTasks(pool, tasks);
+            phase.finish();
+
+            // Each chunk may fill as many rows as it has lines.
+            long numLines = m_firstLine - 1;
+            long capacity = 0;
+            for (ChunkTask task : tasks) {
+                task.firstLine = numLines + 1;
+                task.firstRow = (int) capacity;
+                numLines += task.numLines;
+                capacity += task.numLines;
+            }
+            if (capacity > Integer.MAX_VALUE - 8) {
+                String msg = "too many lines: " + capacity;
+                throw new H3GraphLoader.InvalidGraphDataException(msg);
+            }
+
+            int numValueColumns = retval.names.size();
+            retval.ids = new int[m_numIDColumns][(int) capacity];
+            retval.values = new double[numValueColumns][(int) capacity];
+
+            phase = monitor.startPhase
+                    (H3LoadMonitor.PARSE, H3LoadMonitor.BYTES, size);
+            for (ChunkTask task : tasks) {
+                task.start(retval, phase);
+            }
+            runChunkTasks(pool, tasks);
+
+            // Close up the gaps left by lines without rows.
+            int numRows = 0;
+            for (ChunkTask task : tasks) {
+                if (task.firstRow != numRows) {
+                    for (int[] column : retval.ids) {
+                        System.arraycopy(column, task.firstRow, column,
+                                numRows, task.numRows);
+                    }
+                    for (double[] column : retval.values) {
+                        System.arraycopy(column, task.firstRow, column,
+                                numRows, task.numRows);
+                    }
+                }
+                numRows += task.numRows;
+            }
+            if (numRows < capacity) {
+                for (int k = 0; k < m_numIDColumns; k++) {
+                    retval.ids[k] = Arrays.copyOf(retval.ids[k], numRows);
+                }
+                for (int k = 0; k < numValueColumns; k++) {
+                    retval.values[k] =
+                            Arrays.copyOf(retval.values[k], numRows);
+                }
+            }
+            retval.numRows = numRows;
+            phase.finish();
+
+            return retval;
+        }
+
+        // Reads the comments and blank lines at the start of the file and
+        // the header, if there is one, and names the attribute columns.
+        // Returns the offset of the first line after them.
+        private long readHeader(Table table, long size)
+                throws IOException, H3GraphLoader.InvalidGraphDataException {
+            ByteBuffer buffer = m_channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, Math.min(size, MAX_HEADER_SIZE));
+            int end = buffer.limit();
+
+            int offset = 0;
+            m_firstLine = 1;
+            while (offset < end) {
+                int lineEnd = offset;
+                while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                    ++lineEnd;
+                }
+                if (lineEnd == end && end < size) {
+                    String msg = "line " + m_firstLine + ": line too long";
+                    throw new H3GraphLoader.InvalidGraphDataException(msg);
+                }
+
+                byte[] bytes = new byte[lineEnd - offset];
+                buffer.position(offset);
+                buffer.get(bytes);
+                String line = new String(bytes, StandardCharsets.UTF_8);
+                String trimmed = line.trim();
+                if (trimmed.length() > 0 && !trimmed.startsWith("#")
+                        && !trimmed.startsWith("%")) {
+                    String[] fields = splitFields(trimmed);
+                    int numValueColumns =
+                            Math.max(fields.length - m_numIDColumns, 0);
+                    table.names = new ArrayList<String>(numValueColumns);
+
+                    if (isInteger(fields[0])) {
+                        for (int i = 0; i < numValueColumns; i++) {
+                            table.names.add("column"
+                                    + (m_numIDColumns + i + 1));
+                        }
+                        return offset;
+                    }
+
+                    for (int i = 0; i < numValueColumns; i++) {
+                        table.names.add(unquote
+                                (fields[m_numIDColumns + i]));
+                    }
+                    ++m_firstLine;
+                    return Math.min(lineEnd + 1, size);
+                }
+
+                ++m_firstLine;
+                offset = lineEnd + 1;
+            }
+
+            table.names = new ArrayList<String>();
+            return Math.min(offset, size);
+        }
+
+        private String[] splitFields(String line) {
+            if (m_separator == ' ') {
+                return line.split("[ \t]+");
+            }
+
+            String[] retval = line.split(m_separator == ',' ? "," : "\t", -1);
+            for (int i = 0; i < retval.length; i++) {
+                retval[i] = retval[i].trim();
+            }
+            return retval;
+        }
+
+        private static boolean isInteger(String field) {
+            int i = (field.startsWith("-") || field.startsWith("+") ? 1 : 0);
+            if (i == field.length()) {
+                return false;
+            }
+            for (; i < field.length(); i++) {
+                if (!Character.isDigit(field.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String unquote(String field) {
+            if (field.length() >= 2 && field.startsWith("\"")
+                    && field.endsWith("\"")) {
+                return field.substring(1, field.length() - 1);
+            }
+            return field;
+        }
+
+        // Returns the offsets of the starts of the chunks of [begin, end),
+        // followed by {end}.  Each chunk starts at the start of a line.
+        private long[] split(long begin, long end) throws IOException {
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE,
+                    (end - begin) / (m_parallelism * CHUNKS_PER_THREAD)));
+
+            List<Long> offsets = new ArrayList<Long>();
+            offsets.add(begin);
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+            long offset = begin + chunkSize;
+            while (offset < end) {
+                // Find the start of the next line after {offset}.
+                long lineStart = -1;
+                while (lineStart < 0 && offset < end) {
+                    buffer.clear();
+                    int n = m_channel.read(buffer, offset);
+                    for (int i = 0; i < n; i++) {
+                        if (buffer.get(i) == '\n') {
+                            lineStart = offset + i + 1;
+                            break;
+                        }
+                    }
+                    offset += Math.max(n, 1);
+                }
+
+                if (lineStart < 0 || lineStart >= end) {
+                    break;
+                }
+                offsets.add(lineStart);
+                offset = lineStart + chunkSize;
+            }
+            offsets.add(end);
+
+            long[] retval = new long[offsets.size()];
+            for (int i = 0; i < retval.length; i++) {
+                retval[i] = offsets.get(i);
+            }
+            return retval;
+        }
+
+        private void runChunkTasks(ForkJoinPool pool, final ChunkTask[] tasks)
+                throws IOException, H3GraphLoader.InvalidGraphDataException {
+            pool.invoke(new RecursiveAction() {
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+
+            // Report the first error in the file.
+            for (ChunkTask task : tasks) {
+                if (task.ioException != null) {
+                    throw task.ioException;
+                }
+                if (task.dataException != null) {
+                    throw task.dataException;
+                }
+            }
+        }
+
+        private final FileChannel m_channel;
+        private final int m_numIDColumns;
+        private final int m_parallelism;
+        private final char m_separator; // ' ' for WHITESPACE.
+        private long m_firstLine; // The line number of the first data line.
+
+        // Counts the lines of the range [begin, end) of the file, and then,
+        // once start() has been called, parses them into rows of the table
+        // starting at {firstRow}.
+        private class ChunkTask extends RecursiveAction {
+            public ChunkTask(long begin, long end, H3LoadMonitor.Phase phase) {
+                m_begin = begin;
+                m_end = end;
+                m_phase = phase;
+            }
+
+            public void start(Table table, H3LoadMonitor.Phase phase) {
+                m_table = table;
+                m_phase = phase;
+                reinitialize();
+            }
+
+            protected void compute() {
+                try {
+                    m_buffer = m_channel.map(FileChannel.MapMode.READ_ONLY,
+                            m_begin, m_end - m_begin);
+                    if (m_table == null) {
+                        countLines();
+                    } else {
+                        parseLines();
+                    }
+                } catch (IOException e) {
+                    ioException = e;
+                } catch (H3GraphLoader.InvalidGraphDataException e) {
+                    dataException = e;
+                } finally {
+                    m_buffer = null;
+                }
+            }
+
+            private void countLines() {
+                int end = m_buffer.limit();
+                int reported = 0;
+                for (int i = 0; i < end; i++) {
+                    if (m_buffer.get(i) == '\n') {
+                        ++numLines;
+                    }
+                    if (i - reported >= PROGRESS_BYTES) {
+                        m_phase.advance(i - reported);
+                        reported = i;
+                    }
+                }
+                if (end > 0 && m_buffer.get(end - 1) != '\n') {
+                    ++numLines;
+                }
+                m_phase.advance(end - reported);
+            }
+
+            private void parseLines()
+                    throws H3GraphLoader.InvalidGraphDataException {
+                int[][] ids = m_table.ids;
+                double[][] values = m_table.values;
+                int numValueColumns = values.length;
+                int end = m_buffer.limit();
+                int reported = 0;
+
+                m_line = firstLine;
+                m_offset = 0;
+                while (m_offset < end) {
+                    skipBlanks();
+                    int c = peek();
+                    if (c == '#' || c == '%' || isEndOfLine(c)) {
+                        skipLine();
+                        continue;
+                    }
+
+                    int row = firstRow + numRows;
+                    for (int k = 0; k < m_numIDColumns; k++) {
+                        if (k > 0) {
+                            matchSeparator();
+                        }
+                        ids[k][row] = parseID();
+                    }
+                    for (int k = 0; k < numValueColumns; k++) {
+                        values[k][row] = (atEndOfLine() ? Double.NaN
+                                          : parseValue());
+                    }
+
+                    skipBlanks();
+                    if (!isEndOfLine(peek())) {
+                        throw error("expected end of line");
+                    }
+                    skipLine();
+                    ++numRows;
+
+                    if (m_offset - reported >= PROGRESS_BYTES) {
+                        m_phase.advance(m_offset - reported);
+                        reported = m_offset;
+                    }
+                }
+                m_phase.advance(end - reported);
+            }
+
+            // Returns -1 at the end of the chunk.
+            private int peek() {
+                return (m_offset < m_buffer.limit()
+                        ? m_buffer.get(m_offset) : -1);
+            }
+
+            private boolean isEndOfLine(int c) {
+                return c == '\n' || c == '\r' || c == -1;
+            }
+
+            private boolean isDelimiter(int c) {
+                return c == ' ' || c == '\t' || c == ',' || isEndOfLine(c);
+            }
+
+            private void skipBlanks() {
+                int c = peek();
+                while (c == ' ' || (c == '\t' && m_separator != '\t')) {
+                    ++m_offset;
+                    c = peek();
+                }
+            }
+
+            private void skipLine() {
+                int end = m_buffer.limit();
+                while (m_offset < end && m_buffer.get(m_offset) != '\n') {
+                    ++m_offset;
+                }
+                ++m_offset;
+                ++m_line;
+            }
+
+            // Whether no more fields follow on the current line.
+            private boolean atEndOfLine() {
+                int offset = m_offset;
+                skipBlanks();
+                boolean retval = isEndOfLine(peek());
+                m_offset = offset;
+                return retval;
+            }
+
+            private void matchSeparator()
+                    throws H3GraphLoader.InvalidGraphDataException {
+                if (m_separator == ' ') {
+                    int c = peek();
+                    if (c != ' ' && c != '\t') {
+                        throw error("expected a space or tab");
+                    }
+                    skipBlanks();
+                } else {
+                    skipBlanks();
+                    if (peek() != m_separator) {
+                        throw error(m_separator == ','
+                                    ? "expected `,'" : "expected a tab");
+                    }
+                    ++m_offset;
+                    skipBlanks();
+                }
+            }
+
+            private int parseID()
+                    throws H3GraphLoader.InvalidGraphDataException {
+                int c = peek();
+                boolean isNegative = (c == '-');
+                if (c == '-' || c == '+') {
+                    ++m_offset;
+                    c = peek();
+                }
+
+                long value = 0;
+                int numDigits = 0;
+                while (c >= '0' && c <= '9') {
+                    value = 10 * value + (c - '0');
+                    if (value > 1L + Integer.MAX_VALUE) {
+                        throw error("node ID out of range");
+                    }
+                    ++numDigits;
+                    ++m_offset;
+                    c = peek();
+                }
+
+                if (numDigits == 0 || !isDelimiter(c)) {
+                    throw error("expected a node ID");
+                }
+                if (isNegative) {
+                    value = -value;
+                }
+                if (value > Integer.MAX_VALUE) {
+                    throw error("node ID out of range");
+                }
+                return (int) value;
+            }
+
+            // Parses a separator and an attribute value, which is NaN if
+            // it's empty.  Plain decimals of up to MAX_FAST_DIGITS digits
+            // are converted directly, with a single correctly rounded
+            // division; anything else goes through Double.parseDouble().
+            private double parseValue()
+                    throws H3GraphLoader.InvalidGraphDataException {
+                matchSeparator();
+
+                int begin = m_offset;
+                int c = peek();
+                if (isDelimiter(c)) {
+                    return Double.NaN;
+                }
+
+                boolean isNegative = (c == '-');
+                if (c == '-' || c == '+') {
+                    ++m_offset;
+                    c = peek();
+                }
+
+                long mantissa = 0;
+                int numDigits = 0;
+                int numFractionDigits = -1;
+                while ((c >= '0' && c <= '9')
+                       || (c == '.' && numFractionDigits < 0)) {
+                    if (c == '.') {
+                        numFractionDigits = 0;
+                    } else {
+                        mantissa = 10 * mantissa + (c - '0');
+                        ++numDigits;
+                        if (numFractionDigits >= 0) {
+                            ++numFractionDigits;
+                        }
+                    }
+                    ++m_offset;
+                    c = peek();
+                    if (numDigits > MAX_FAST_DIGITS) {
+                        break;
+                    }
+                }
+
+                if (numDigits > 0 && numDigits <= MAX_FAST_DIGITS
+                        && isDelimiter(c)) {
+                    double value = (numFractionDigits > 0
+                                    ? mantissa / POWERS_OF_10
+                                            [numFractionDigits]
+                                    : mantissa);
+                    return (isNegative ? -value : value);
+                }
+
+                while (!isDelimiter(c)) {
+                    ++m_offset;
+                    c = peek();
+                }
+                byte[] bytes = new byte[m_offset - begin];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = m_buffer.get(begin + i);
+                }
+                String field = new String(bytes, StandardCharsets.UTF_8);
+                try {
+                    return Double.parseDouble(field);
+                } catch (NumberFormatException e) {
+                    throw error("malformed number `" + field + "'");
+                }
+            }
+
+            private H3GraphLoader.InvalidGraphDataException error
+                    (String message) {
+                return new H3GraphLoader.InvalidGraphDataException
+                        ("line " + m_line + ": " + message);
+            }
+
+            public long firstLine;
+            public int firstRow;
+            public long numLines;
+            public int numRows;
+
+            public IOException ioException;
+            public H3GraphLoader.InvalidGraphDataException dataException;
+
+            private final long m_begin;
+            private final long m_end;
+            private H3LoadMonitor.Phase m_phase;
+            private Table m_table; // Null while counting lines.
+
+            // Set only while running.
+            private ByteBuffer m_buffer;
+            private int m_offset;
+            private long m_line;
+
+            private static final long serialVersionUID = 1L;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.jogamp.vecmath.Matrix4d;
 import org.jogamp.vecmath.Point3d;
 import org.jogamp.vecmath.Point4d;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.BitSet;
 
@@ -177,6 +178,60 @@ public class H3Graph {
         point.w = m_nodes.layoutW[node];
     }
 
+    // Whether the layout records the placement of each node relative to
+    // the coordinate system of its parent; see setNodeRelativePlacement().
+    public boolean hasRelativeLayout() {
+        return m_nodes.relativeDistance != null;
+    }
+
+    // Builds the transform from the coordinate system of the parent of
+    // {node} to that of {node} itself, which is the identity for the root.
+    public void getNodeRelativeFrame(int node, Matrix4d frame) {
+        if (m_nodes.parent[node] == -1) {
+            frame.setIdentity();
+        } else {
+            H3Transform.buildRelativeFrame(m_nodes.relativeDistance[node],
+                    m_nodes.relativeTheta[node], m_nodes.relativePhi[node],
+                    frame);
+        }
+    }
+
+    // Builds the inverse of the transform given by getNodeRelativeFrame().
+    public void getNodeRelativeFrameInverse(int node, Matrix4d frame) {
+        if (m_nodes.parent[node] == -1) {
+            frame.setIdentity();
+        } else {
+            H3Transform.buildRelativeFrameInverse
+                    (m_nodes.relativeDistance[node],
+                            m_nodes.relativeTheta[node],
+                            m_nodes.relativePhi[node], frame);
+        }
+    }
+
+    // Builds the transform from the coordinate system of the root to that
+    // of {node}, by composing the relative frames along the tree path, so
+    // that it carries the origin to the layout coordinates of {node}.
+    // Like those coordinates, it is ill-conditioned deep in the tree.
+    // Requires a relative layout.
+    public void getNodeAbsoluteFrame(int node, Matrix4d frame) {
+        Matrix4d relative = new Matrix4d();
+        getNodeRelativeFrame(node, frame);
+        for (int i = getNodeParent(node); i != -1; i = getNodeParent(i)) {
+            getNodeRelativeFrame(i, relative);
+            frame.mul(relative, frame);
+        }
+    }
+
+    // Builds the inverse of the transform given by getNodeAbsoluteFrame().
+    public void getNodeAbsoluteFrameInverse(int node, Matrix4d frame) {
+        Matrix4d relative = new Matrix4d();
+        getNodeRelativeFrameInverse(node, frame);
+        for (int i = getNodeParent(node); i != -1; i = getNodeParent(i)) {
+            getNodeRelativeFrameInverse(i, relative);
+            frame.mul(relative);
+        }
+    }
+
     public int getNodeParent(int node) {
         int i = m_nodes.parent[node];
         return (i == -1 ? -1 : m_links.source[i]);
@@ -288,22 +343,60 @@ public class H3Graph {
     // PUBLIC MUTATOR METHODS
     ////////////////////////////////////////////////////////////////////////
 
-    // Computes new display coordinates for each node by transforming the
-    // layout coordinates of nodes with the supplied matrix.
+    // Computes new display coordinates and radius for each node by
+    // transforming the layout coordinates of nodes with the supplied matrix.
     public void transformNodes(Matrix4d t) {
-        Point4d p = new Point4d();
-        for (int i = 0; i < m_numNodes; i++) {
-            p.x = m_nodes.layoutX[i];
-            p.y = m_nodes.layoutY[i];
-            p.z = m_nodes.layoutZ[i];
-            p.w = m_nodes.layoutW[i];
+        transformNodes(t, 0, m_numNodes);
+    }
+
+    // Does the same as transformNodes(Matrix4d) for nodes begin .. end-1.
+    // Disjoint ranges may be transformed concurrently.
+    public void transformNodes(Matrix4d t, int begin, int end) {
+        H3BulkTransform.transform(t, begin, end,
+                m_nodes.layoutX, m_nodes.layoutY,
+                m_nodes.layoutZ, m_nodes.layoutW,
+                m_nodes.x, m_nodes.y, m_nodes.z, m_nodes.radius);
+    }
+
+    // Computes new display coordinates and radius for {node} alone, given
+    // the transform of the node's own coordinate system in a relative
+    // layout.  The node lies at the origin of that system, so only the
+    // last column of {frame} matters.
+    public void transformNode(Matrix4d frame, int node) {
+        double px = frame.m03;
+        double py = frame.m13;
+        double pz = frame.m23;
+        double pw = frame.m33;
+        m_nodes.x[node] = px / pw;
+        m_nodes.y[node] = py / pw;
+        m_nodes.z[node] = pz / pw;
+        m_nodes.radius[node] = 1.0 - (px * px + py * py + pz * pz) / (pw * pw);
+    }
+
+    // Records the placement of {node} relative to the coordinate system of
+    // its parent: the node lies at hyperbolic {distance} from the parent,
+    // in the direction given by the spherical angles {theta} and {phi}.
+    // See H3Transform.buildRelativeFrame().  The first call allocates the
+    // storage for all nodes.
+    public void setNodeRelativePlacement(int node, double distance,
+                                         double theta, double phi) {
+        if (m_nodes.relativeDistance == null) {
+            m_nodes.relativeDistance = new double[m_numNodes];
+            m_nodes.relativeTheta = new double[m_numNodes];
+            m_nodes.relativePhi = new double[m_numNodes];
+        }
 
-            t.transform(p);
+        m_nodes.relativeDistance[node] = distance;
+        m_nodes.relativeTheta[node] = theta;
+        m_nodes.relativePhi[node] = phi;
+    }
 
-            m_nodes.x[i] = p.x / p.w;
-            m_nodes.y[i] = p.y / p.w;
-            m_nodes.z[i] = p.z / p.w;
-        }
+    // Discards the relative placements of nodes, leaving only the layout
+    // coordinates.
+    public void clearRelativeLayout() {
+        m_nodes.relativeDistance = null;
+        m_nodes.relativeTheta = null;
+        m_nodes.relativePhi = null;
     }
 
     public void setRootNode(int node) {
@@ -311,6 +404,216 @@ public class H3Graph {
         m_rootNode = node;
     }
 
+    // Re-roots the spanning tree at {node} in place, in time linear in the
+    // size of the graph, and returns the number of tree links reversed.
+    //
+    // The tree links on the path from {node} up to the old root are
+    // reversed, so that each node on the path becomes the child of its
+    // former child.  A reversed link keeps its ID, color, and visibility
+    // properties, but it must move to the links of its new source.  It takes
+    // the place of the path link that its new source loses (so the former
+    // parent appears where the former child was among the children), except
+    // that {node}, which loses no child link, gets the link to its former
+    // parent as an extra last child.  The links stored between those of
+    // {node} and the old root shift over by one place to make room.  Hence
+    // the indices of links, unlike those of nodes, change, and anything
+    // indexed by link (such as an H3AttributeStore) must be rebuilt.
+    //
+    // The layout coordinates are left as they are, and the relative
+    // placements are discarded; the graph must be laid out again.
+    public int rerootSpanningTree(int node) {
+        if (node < 0 || node >= m_numNodes) {
+            String msg = "node " + node + " is out of range; graph has "
+                    + m_numNodes + " nodes";
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (node == m_rootNode) {
+            return 0;
+        }
+
+        clearRelativeLayout();
+
+        // The link indices of a node without links may have any value, even
+        // one in the middle of the links of another node, so move them to
+        // the start of the links of the old root, where the fewest links
+        // have to shift over.
+        if (m_nodes.treeLinks[node] == m_nodes.linksEnd[node]) {
+            int start = m_nodes.treeLinks[m_rootNode];
+            m_nodes.treeLinks[node] = start;
+            m_nodes.nontreeLinks[node] = start;
+            m_nodes.linksEnd[node] = start;
+        }
+
+        // Save the link from the parent of {node}, which goes last.
+        int free = m_nodes.parent[node];
+        int firstID = m_links.id[free];
+        int firstColor = m_links.color[free];
+        boolean firstVisible = m_links.isVisible.check(free);
+        boolean firstDisplayable = m_links.isDisplayable.check(free);
+        boolean firstSelected = m_links.isSelected.check(free);
+
+        // Walk up the path, moving each link into the place of the link
+        // below it, reversed.  The new parent link of the former parent of
+        // {node} isn't known until the end, so it's left at -1 for now.
+        int formerParent = m_links.source[free];
+        int numReversed = 1;
+        int current = formerParent;
+        int previous = -1;
+        m_nodes.parent[node] = -1;
+        while (true) {
+            int next = m_nodes.parent[current];
+            m_nodes.parent[current] = previous;
+            if (next == -1) {
+                break;
+            }
+
+            int above = m_links.source[next];
+            copyLink(next, free);
+            m_links.source[free] = current;
+            m_links.destination[free] = above;
+
+            ++numReversed;
+            previous = free;
+            free = next;
+            current = above;
+        }
+
+        // {free} is now an unused place among the child links of the old
+        // root.  Shift the links in between over to move it to the end of
+        // the child links of {node}.
+        int oldRoot = current;
+        int insert = m_nodes.nontreeLinks[node];
+        int begin, end, delta;
+        if (insert <= free) {
+            for (int i = free; i > insert; i--) {
+                copyLink(i - 1, i);
+            }
+            begin = insert;
+            end = free;
+            delta = 1;
+
+            ++m_nodes.nontreeLinks[node];
+            ++m_nodes.linksEnd[node];
+            ++m_nodes.treeLinks[oldRoot];
+        } else {
+            for (int i = free; i < insert - 1; i++) {
+                copyLink(i + 1, i);
+            }
+            begin = free + 1;
+            end = insert;
+            delta = -1;
+            --insert;
+
+            --m_nodes.treeLinks[node];
+            --m_nodes.nontreeLinks[oldRoot];
+            --m_nodes.linksEnd[oldRoot];
+        }
+
+        // Every other node has either all or none of its links in the
+        // shifted range [begin, end).
+        for (int i = 0; i < m_numNodes; i++) {
+            int parent = m_nodes.parent[i];
+            if (parent >= begin && parent < end) {
+                m_nodes.parent[i] = parent + delta;
+            }
+
+            int treeLinks = m_nodes.treeLinks[i];
+            int linksEnd = m_nodes.linksEnd[i];
+            if (i != node && i != oldRoot && treeLinks != linksEnd
+                    && treeLinks >= begin && linksEnd <= end) {
+                m_nodes.treeLinks[i] = treeLinks + delta;
+                m_nodes.nontreeLinks[i] += delta;
+                m_nodes.linksEnd[i] = linksEnd + delta;
+            }
+        }
+
+        m_links.id[insert] = firstID;
+        m_links.source[insert] = node;
+        m_links.destination[insert] = formerParent;
+        m_links.color[insert] = firstColor;
+        m_links.isTreeLink.set(insert);
+        m_links.isVisible.set(insert, firstVisible);
+        m_links.isDisplayable.set(insert, firstDisplayable);
+        m_links.isSelected.set(insert, firstSelected);
+        m_nodes.parent[formerParent] = insert;
+
+        m_rootNode = node;
+        return numReversed;
+    }
+
+    // Moves {node}, with its subtree, to be the last child of {parent} in
+    // the spanning tree, in place, and returns its old parent.  No link is
+    // added or removed: the graph must already have a nontree link from
+    // {parent} to {node}, which becomes the tree link, and the old tree
+    // link becomes a nontree link of the old parent.  Each of the two links
+    // moves to the boundary between the tree and nontree links of its
+    // source, and the links in between shift over by one place, so the
+    // other children keep their order.  This takes time proportional to
+    // the number of links of the two parents (and the depth of {parent},
+    // to check that it isn't in the subtree of {node}).  As with
+    // rerootSpanningTree(), the indices of links change, though only those
+    // of the two parents.
+    //
+    // The layout coordinates and relative placements are left as they
+    // are; see H3GraphLayout.updateHyperbolicLayout().
+    public int reparentNode(int node, int parent) {
+        if (node < 0 || node >= m_numNodes
+                || parent < 0 || parent >= m_numNodes) {
+            String msg = "node " + node + " or " + parent
+                    + " is out of range; graph has " + m_numNodes + " nodes";
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (node == m_rootNode) {
+            String msg = "node " + node + " is the root";
+            throw new IllegalArgumentException(msg);
+        }
+
+        int oldParent = getNodeParent(node);
+        if (oldParent == parent) {
+            return oldParent;
+        }
+
+        for (int x = parent; x != -1; x = getNodeParent(x)) {
+            if (x == node) {
+                String msg = "node " + parent + " is in the subtree of node "
+                        + node;
+                throw new IllegalArgumentException(msg);
+            }
+        }
+
+        int link = -1;
+        for (int i = m_nodes.nontreeLinks[parent];
+             i < m_nodes.linksEnd[parent]; i++) {
+            if (m_links.destination[i] == node) {
+                link = i;
+                break;
+            }
+        }
+        if (link == -1) {
+            String msg = "node " + parent + " has no nontree link to node "
+                    + node;
+            throw new IllegalArgumentException(msg);
+        }
+
+        // The old tree link becomes the first nontree link of the old
+        // parent.
+        int last = m_nodes.nontreeLinks[oldParent] - 1;
+        moveLink(m_nodes.parent[node], last);
+        m_links.isTreeLink.clear(last);
+        --m_nodes.nontreeLinks[oldParent];
+
+        // The nontree link becomes the last tree link of {parent}.
+        int first = m_nodes.nontreeLinks[parent];
+        moveLink(link, first);
+        m_links.isTreeLink.set(first);
+        ++m_nodes.nontreeLinks[parent];
+        m_nodes.parent[node] = first;
+
+        return oldParent;
+    }
+
     public void setNodeID(int node, int id) {
         m_nodes.id[node] = id;
     }
@@ -411,6 +714,50 @@ public class H3Graph {
         m_nodes.linksEnd[node] = m_links.nextIndex;
     }
 
+    // The following methods are an alternative to the calling sequence
+    // above for loaders that know in advance where the links of each node
+    // go, as from a prefix sum of node degrees.  The tree links of a node
+    // occupy [treeLinks, nontreeLinks) and its nontree links
+    // [nontreeLinks, linksEnd), and the segments of all nodes must
+    // together cover every link exactly once.
+    //
+    // Different threads may call setNodeLinks(), setChildLink(), and
+    // setNontreeLink() concurrently, as long as each link and node is
+    // written by only one of them.  After they've all finished, a single
+    // thread must call endLinks(), which fills in the state that's shared
+    // between links.
+
+    public void setNodeLinks(int node, int treeLinks, int nontreeLinks,
+                             int linksEnd) {
+        m_nodes.treeLinks[node] = treeLinks;
+        m_nodes.nontreeLinks[node] = nontreeLinks;
+        m_nodes.linksEnd[node] = linksEnd;
+    }
+
+    public void setChildLink(int link, int node, int child, int linkID) {
+        m_nodes.parent[child] = link;
+        m_links.id[link] = linkID;
+        m_links.source[link] = node;
+        m_links.destination[link] = child;
+    }
+
+    public void setNontreeLink(int link, int node, int target, int linkID) {
+        m_links.id[link] = linkID;
+        m_links.source[link] = node;
+        m_links.destination[link] = target;
+    }
+
+    public void endLinks() {
+        for (int i = 0; i < m_numNodes; i++) {
+            m_links.isTreeLink.set(m_nodes.treeLinks[i],
+                    m_nodes.nontreeLinks[i]);
+        }
+
+        m_numTreeLinks = m_links.isTreeLink.cardinality();
+        m_numNontreeLinks = m_numLinks - m_numTreeLinks;
+        m_links.nextIndex = m_numLinks;
+    }
+
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
     public void setNodeColor(int node, int color) {
@@ -599,6 +946,87 @@ public class H3Graph {
                 (m_links.isDisplayable, m_links.isSelected);
     }
 
+    ////////////////////////////////////////////////////////////////////////
+    // PACKAGE METHODS (snapshots)
+    ////////////////////////////////////////////////////////////////////////
+
+    // These write and read the arrays of the graph for H3GraphSnapshot.
+    // The two must list the arrays in the same order.  The transformed
+    // coordinates and radii, and the visibility properties, aren't saved;
+    // they are recomputed whenever a graph is rendered.
+
+    void writeSnapshotArrays(H3GraphSnapshot.Output out)
+            throws IOException {
+        out.writeInts(m_nodes.id);
+        out.writeInts(m_nodes.parent);
+        out.writeInts(m_nodes.treeLinks);
+        out.writeInts(m_nodes.nontreeLinks);
+        out.writeInts(m_nodes.linksEnd);
+        out.writeInts(m_nodes.color);
+        out.writeDoubles(m_nodes.layoutX);
+        out.writeDoubles(m_nodes.layoutY);
+        out.writeDoubles(m_nodes.layoutZ);
+        out.writeDoubles(m_nodes.layoutW);
+
+        out.writeInts(m_links.id);
+        out.writeInts(m_links.source);
+        out.writeInts(m_links.destination);
+        out.writeInts(m_links.color);
+        out.writeLongs(m_links.isTreeLink.toLongArray());
+    }
+
+    void readSnapshotArrays(H3GraphSnapshot.Input in, int rootNode)
+            throws IOException {
+        in.readInts(m_nodes.id);
+        in.readInts(m_nodes.parent);
+        in.readInts(m_nodes.treeLinks);
+        in.readInts(m_nodes.nontreeLinks);
+        in.readInts(m_nodes.linksEnd);
+        in.readInts(m_nodes.color);
+        in.readDoubles(m_nodes.layoutX);
+        in.readDoubles(m_nodes.layoutY);
+        in.readDoubles(m_nodes.layoutZ);
+        in.readDoubles(m_nodes.layoutW);
+
+        in.readInts(m_links.id);
+        in.readInts(m_links.source);
+        in.readInts(m_links.destination);
+        in.readInts(m_links.color);
+
+        // The link properties share m_links.isTreeLink, so it must be
+        // filled in rather than replaced.
+        m_links.isTreeLink.or(BitSet.valueOf(in.readLongs()));
+        if (m_links.isTreeLink.length() > m_numLinks) {
+            throw new IOException("corrupt snapshot");
+        }
+
+        m_numTreeLinks = m_links.isTreeLink.cardinality();
+        m_numNontreeLinks = m_numLinks - m_numTreeLinks;
+        m_links.nextIndex = m_numLinks;
+        m_rootNode = rootNode;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PACKAGE METHODS (layout cache)
+    ////////////////////////////////////////////////////////////////////////
+
+    // These write and read just the layout coordinates, 32 bytes per node,
+    // for H3LayoutCache.
+
+    void writeLayoutArrays(H3GraphSnapshot.Output out) throws IOException {
+        out.writeDoubles(m_nodes.layoutX);
+        out.writeDoubles(m_nodes.layoutY);
+        out.writeDoubles(m_nodes.layoutZ);
+        out.writeDoubles(m_nodes.layoutW);
+    }
+
+    void readLayoutArrays(H3GraphSnapshot.Input in) throws IOException {
+        in.readDoubles(m_nodes.layoutX);
+        in.readDoubles(m_nodes.layoutY);
+        in.readDoubles(m_nodes.layoutZ);
+        in.readDoubles(m_nodes.layoutW);
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE METHODS
     ////////////////////////////////////////////////////////////////////////
@@ -634,33 +1062,107 @@ public class H3Graph {
     }
 
     // The input node itself is assumed to have been taken care of.
+    //
+    // This and the other traversals of the spanning tree below use an
+    // explicit stack rather than recursion, so that arbitrarily deep trees
+    // (e.g., long paths) don't overflow the thread stack.
     private void setSubtreeDisplayability(int node, boolean isDisplayable) {
-        int start = getNodeChildIndex(node);
-        int end = getNodeLinksEndIndex(node);
-        int nontreeStart = getNodeNontreeIndex(node);
-
-        for (int i = start; i < nontreeStart; i++) {
-            int child = getLinkDestination(i);
-            setNodeDisplayability(child, isDisplayable);
-            setLinkDisplayability(i, isDisplayable);
-            setSubtreeDisplayability(child, isDisplayable);
+        int[] stack = new int[INITIAL_STACK_CAPACITY];
+        int top = 0;
+        stack[top++] = node;
+
+        while (top > 0) {
+            int current = stack[--top];
+            int start = getNodeChildIndex(current);
+            int nontreeStart = getNodeNontreeIndex(current);
+
+            for (int i = start; i < nontreeStart; i++) {
+                int child = getLinkDestination(i);
+                setNodeDisplayability(child, isDisplayable);
+                setLinkDisplayability(i, isDisplayable);
+
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                }
+                stack[top++] = child;
+            }
         }
     }
 
     // The input node itself is assumed to have been taken care of.
     private void setNeighborhoodDisplayability
     (int node, int distance, int maxDistance) {
-        boolean isDisplayable = (distance < maxDistance);
+        // Holds pairs of (node, distance).
+        int[] stack = new int[INITIAL_STACK_CAPACITY];
+        int top = 0;
+        stack[top++] = node;
+        stack[top++] = distance;
+
+        while (top > 0) {
+            int currentDistance = stack[--top];
+            int current = stack[--top];
+            boolean isDisplayable = (currentDistance < maxDistance);
+
+            int start = getNodeChildIndex(current);
+            int nontreeStart = getNodeNontreeIndex(current);
+
+            for (int i = start; i < nontreeStart; i++) {
+                int child = getLinkDestination(i);
+                setNodeDisplayability(child, isDisplayable);
+                setLinkDisplayability(i, isDisplayable);
+
+                if (top + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+                }
+                stack[top++] = child;
+                stack[top++] = currentDistance + 1;
+            }
+        }
+    }
 
-        int start = getNodeChildIndex(node);
-        int end = getNodeLinksEndIndex(node);
-        int nontreeStart = getNodeNontreeIndex(node);
+    // Copies everything about link {from} to link {to}.
+    private void copyLink(int from, int to) {
+        m_links.id[to] = m_links.id[from];
+        m_links.source[to] = m_links.source[from];
+        m_links.destination[to] = m_links.destination[from];
+        m_links.color[to] = m_links.color[from];
+        m_links.isTreeLink.set(to, m_links.isTreeLink.get(from));
+        m_links.isVisible.set(to, m_links.isVisible.check(from));
+        m_links.isDisplayable.set(to, m_links.isDisplayable.check(from));
+        m_links.isSelected.set(to, m_links.isSelected.check(from));
+    }
+
+    // Moves link {from} to {to}, shifting the links in between over by one
+    // place toward {from}, and keeps the parent link of each node pointing
+    // at its tree link.
+    private void moveLink(int from, int to) {
+        int id = m_links.id[from];
+        int source = m_links.source[from];
+        int destination = m_links.destination[from];
+        int color = m_links.color[from];
+        boolean isTreeLink = m_links.isTreeLink.get(from);
+        boolean visible = m_links.isVisible.check(from);
+        boolean displayable = m_links.isDisplayable.check(from);
+        boolean selected = m_links.isSelected.check(from);
+
+        int delta = (from < to ? 1 : -1);
+        for (int i = from; i != to; i += delta) {
+            copyLink(i + delta, i);
+        }
 
-        for (int i = start; i < nontreeStart; i++) {
-            int child = getLinkDestination(i);
-            setNodeDisplayability(child, isDisplayable);
-            setLinkDisplayability(i, isDisplayable);
-            setNeighborhoodDisplayability(child, distance + 1, maxDistance);
+        m_links.id[to] = id;
+        m_links.source[to] = source;
+        m_links.destination[to] = destination;
+        m_links.color[to] = color;
+        m_links.isTreeLink.set(to, isTreeLink);
+        m_links.isVisible.set(to, visible);
+        m_links.isDisplayable.set(to, displayable);
+        m_links.isSelected.set(to, selected);
+
+        for (int i = Math.min(from, to); i <= Math.max(from, to); i++) {
+            if (m_links.isTreeLink.get(i)) {
+                m_nodes.parent[m_links.destination[i]] = i;
+            }
         }
     }
 
@@ -668,6 +1170,8 @@ public class H3Graph {
     // PRIVATE FIELDS
     ////////////////////////////////////////////////////////////////////////
 
+    private static final int INITIAL_STACK_CAPACITY = 64;
+
     private final int m_numNodes;
     private final int m_numLinks;
 
@@ -734,6 +1238,14 @@ public class H3Graph {
         public double[] layoutZ;
         public double[] layoutW;
 
+        // The placement of nodes relative to the coordinate systems of
+        // their parents in a relative layout, or null.  Unlike the layout
+        // coordinates, these stay well-conditioned however deep a node
+        // lies in the tree.
+        public double[] relativeDistance;
+        public double[] relativeTheta;
+        public double[] relativePhi;
+
         // The parent value of a node gives the index of the link that
         // connects the parent to that node.  Hence the source of the parent
         // link gives the parent node and the destination gives the child node.
@@ -1066,22 +1578,29 @@ public class H3Graph {
     }
 
     private int checkSpanningTree(BitSet visited, int node) {
-        if (visited.get(node)) {
-            return -1;
-        }
-        visited.set(node);
-
-        int start = getNodeChildIndex(node);
-        int nontreeStart = getNodeNontreeIndex(node);
+        int[] stack = new int[INITIAL_STACK_CAPACITY];
+        int top = 0;
+        stack[top++] = node;
 
-        int retval = 1;
-        for (int i = start; i < nontreeStart; i++) {
-            int child = getLinkDestination(i);
-            int numReachable = checkSpanningTree(visited, child);
-            if (numReachable == -1) {
+        int retval = 0;
+        while (top > 0) {
+            int current = stack[--top];
+            if (visited.get(current)) {
                 return -1;
             }
-            retval += numReachable;
+            visited.set(current);
+            ++retval;
+
+            int start = getNodeChildIndex(current);
+            int nontreeStart = getNodeNontreeIndex(current);
+
+            // Push the children in reverse so they're visited in order.
+            for (int i = nontreeStart - 1; i >= start; i--) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                }
+                stack[top++] = getLinkDestination(i);
+            }
         }
 
         return retval;
@@ -1116,23 +1635,33 @@ public class H3Graph {
     }
 
     private int checkReachability(BitSet visited, int node) {
-        int retval = 1;
+        int[] stack = new int[INITIAL_STACK_CAPACITY];
+        int top = 0;
+        stack[top++] = node;
 
-        if (visited.get(node)) {
-            String msg = "ERROR: Encountered node " + node
-                    + " more than once in the spanning tree; there could be"
-                    + " cycles or parallel links.";
-            System.out.println(msg);
-            return 0;
-        }
-        visited.set(node);
+        int retval = 0;
+        while (top > 0) {
+            int current = stack[--top];
+            if (visited.get(current)) {
+                String msg = "ERROR: Encountered node " + current
+                        + " more than once in the spanning tree; there could"
+                        + " be cycles or parallel links.";
+                System.out.println(msg);
+                continue;
+            }
+            visited.set(current);
+            ++retval;
 
-        int treeLinks = m_nodes.treeLinks[node];
-        int nontreeLinks = m_nodes.nontreeLinks[node];
+            int treeLinks = m_nodes.treeLinks[current];
+            int nontreeLinks = m_nodes.nontreeLinks[current];
 
-        while (treeLinks < nontreeLinks) {
-            int child = m_links.destination[treeLinks++];
-            retval += checkReachability(visited, child);
+            // Push the children in reverse so they're visited in order.
+            while (nontreeLinks > treeLinks) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * top);
+                }
+                stack[top++] = m_links.destination[--nontreeLinks];
+            }
         }
 
         return retval;
@@ -0,0 +1,1061 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.caida.libsea.*;
+
+// A LibSea graph file read in a single streaming pass, without building a
+// libsea Graph.  H3GraphLoader needs the whole libsea Graph in memory, and
+// then builds an H3Graph from it, so that two copies of the topology are
+// held at once; here the links are tokenized straight from the file (with
+// H3GraphFileTokenizer) into a pair of int arrays, and load() builds the
+// H3Graph from those.
+//
+// Of the attributes, only the definitions and the values of boolean
+// attributes (one bit per object, which covers the `root' and `tree_link'
+// attributes of all spanning tree qualifiers) are kept.  All other
+// attribute values are deferred to a side store, the libsea Graph returned
+// by getBackingGraph(), which is only parsed the first time it's asked for.
+//
+// Large files can also be read in parallel.  The file is mapped into
+// memory, and the long lists of a graph -- the links and the values of
+// boolean attributes -- are split into chunks at element boundaries and
+// parsed concurrently into per-chunk buffers, which are merged in file
+// order.  The values of other attributes are skipped by a plain byte scan.
+//
+// A graph without a spanning tree qualifier can still be loaded, with a
+// spanning tree found by a breadth-first search (see loadBreadthFirst()),
+// which load() also gives for H3SpanningTreeBuilder.BREADTH_FIRST_TREE.
+//
+// This relies on libsea assigning IDs to nodes and links in the order they
+// appear in the file, starting at zero, which is true of the immutable
+// graphs that H3Main has always loaded.
+public class H3GraphFile {
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    private H3GraphFile(File file, int parallelism) {
+        m_file = file;
+        m_parallelism = parallelism;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public static H3GraphFile read(File file)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        return read(file, 1);
+    }
+
+    // A {parallelism} of 1 selects a single sequential pass over the file.
+    // Any larger value maps the file into memory and parses the link list
+    // and the lists of boolean attribute values in chunks, concurrently,
+    // with that many threads.  The results are identical in both modes.
+    //
+    // Files compressed with gzip (or xz or zstd, given their libraries;
+    // see H3CompressedInput) are recognized by their contents and are
+    // always read in a single pass, decompressed on a thread of their own.
+    public static H3GraphFile read(File file, int parallelism)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        return read(file, parallelism, new H3LoadMonitor());
+    }
+
+    // Reports the READ and PARSE phases to {monitor}, and stops with a
+    // CancellationException if the load is cancelled.  When reading
+    // sequentially, the file is read on a thread of its own, overlapping
+    // with parsing.
+    public static H3GraphFile read(File file, int parallelism,
+                                   H3LoadMonitor monitor)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        if (parallelism < 1) {
+            String msg = "parallelism must be at least 1; found "
+                    + parallelism;
+            throw new IllegalArgumentException(msg);
+        }
+
+        H3GraphFile retval = new H3GraphFile(file, parallelism);
+
+        // Offsets into the mapping are ints, so larger files are always
+        // read sequentially, as are compressed files, which can't be
+        // split into chunks.
+        long size = file.length();
+        String format = H3CompressedInput.detectFormat(file);
+        if (parallelism > 1 && size <= Integer.MAX_VALUE
+                && format.equals(H3CompressedInput.NONE)) {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                // The mapping is paged in as it's parsed, so the reading
+                // is really part of the PARSE phase.
+                H3LoadMonitor.Phase readPhase = monitor.startPhase
+                        (H3LoadMonitor.READ, H3LoadMonitor.BYTES, size);
+                ByteBuffer source = raf.getChannel().map
+                        (FileChannel.MapMode.READ_ONLY, 0, size);
+                readPhase.finish();
+
+                H3LoadMonitor.Phase parsePhase = monitor.startPhase
+                        (H3LoadMonitor.PARSE, H3LoadMonitor.BYTES, size);
+                retval.parseParallel(source, parallelism, parsePhase);
+                parsePhase.finish();
+            } finally {
+                raf.close();
+            }
+        } else {
+            // The size of a compressed file once decompressed isn't known
+            // in advance.
+            long parseSize = (format.equals(H3CompressedInput.NONE)
+                              ? size : -1);
+            H3LoadMonitor.Phase readPhase = monitor.startPhase
+                    (H3LoadMonitor.READ, H3LoadMonitor.BYTES, size);
+            H3LoadMonitor.Phase parsePhase = monitor.startPhase
+                    (H3LoadMonitor.PARSE, H3LoadMonitor.BYTES, parseSize);
+
+            InputStream in = new H3ReadAheadInputStream
+                    (new FileInputStream(file), format, readPhase);
+            try {
+                retval.parse(new H3GraphFileTokenizer(in, parsePhase));
+            } finally {
+                in.close();
+            }
+            parsePhase.finish();
+        }
+
+        return retval;
+    }
+
+    public File getFile() {
+        return m_file;
+    }
+
+    public int getNumNodes() {
+        return m_numNodes;
+    }
+
+    public int getNumLinks() {
+        return m_numLinks;
+    }
+
+    // See H3GraphLoader.load().
+    public H3Graph load(String spanningTree)
+            throws H3GraphLoader.InvalidGraphDataException {
+        return load(spanningTree, new H3LoadMonitor());
+    }
+
+    // Reports the MAP_IDS and LINKS phases to {monitor}, and stops with a
+    // CancellationException if the load is cancelled.
+    public H3Graph load(String spanningTree, H3LoadMonitor monitor)
+            throws H3GraphLoader.InvalidGraphDataException {
+        if (spanningTree.equals(H3SpanningTreeBuilder.BREADTH_FIRST_TREE)) {
+            return loadBreadthFirst(-1, monitor);
+        }
+
+        Qualifier qualifier = findQualifier(spanningTree);
+        AttributeDefinition rootAttribute =
+                findSpanningTreeAttribute(qualifier, ROOT_ATTRIBUTE);
+        AttributeDefinition treeLinkAttribute =
+                findSpanningTreeAttribute(qualifier, TREE_LINK_ATTRIBUTE);
+
+        int rootNode = rootAttribute.nodeValues.nextSetBit(0);
+        if (rootNode < 0) {
+            String msg = "no root node found for spanning tree";
+            throw new H3GraphLoader.InvalidGraphDataException(msg);
+        }
+
+        H3LoadMonitor.Phase phase = monitor.startPhase
+                (H3LoadMonitor.MAP_IDS, H3LoadMonitor.NODES, m_numNodes);
+        H3Graph retval = new H3Graph(m_numNodes, m_numLinks);
+        for (int i = 0; i < m_numNodes; i++) {
+            retval.setNodeID(i, i);
+        }
+        retval.setRootNode(rootNode);
+        phase.finish();
+
+        phase = monitor.startPhase
+                (H3LoadMonitor.LINKS, H3LoadMonitor.LINK_UNITS, m_numLinks);
+        populateLinks(retval, treeLinkAttribute.linkValues, phase);
+        phase.finish();
+
+        return retval;
+    }
+
+    // Builds the H3Graph with a breadth-first spanning tree rooted at the
+    // node with ID {rootID}, or at the node with the most outgoing links if
+    // {rootID} is -1, using as many threads as the file was read with.
+    // See H3SpanningTreeBuilder, which reports the SPANNING_TREE and LINKS
+    // phases to {monitor}.
+    public H3Graph loadBreadthFirst(int rootID, H3LoadMonitor monitor)
+            throws H3GraphLoader.InvalidGraphDataException {
+        if (m_numNodes == 0) {
+            String msg = "no root node found for spanning tree";
+            throw new H3GraphLoader.InvalidGraphDataException(msg);
+        }
+
+        int rootNode = rootID;
+        if (rootID == -1) {
+            rootNode = H3SpanningTreeBuilder.findHighestDegreeNode
+                    (m_numNodes, m_linkSources);
+        } else if (rootID < 0 || rootID >= m_numNodes) {
+            String msg = "root node id[" + rootID + "] not found";
+            throw new IllegalArgumentException(msg);
+        }
+
+        H3SpanningTreeBuilder builder =
+                new H3SpanningTreeBuilder(m_parallelism);
+        return builder.build(m_numNodes, m_linkSources, m_linkDestinations,
+                rootNode, monitor);
+    }
+
+    // See H3GraphLoader.loadSpanningTreeQualifiers().
+    public List<String> loadSpanningTreeQualifiers() {
+        List<String> retval = new ArrayList<String>();
+        for (Qualifier qualifier : m_qualifiers) {
+            if (qualifier.type.equals(SPANNING_TREE_QUALIFIER)) {
+                retval.add(qualifier.name);
+            }
+        }
+
+        Collections.sort(retval);
+        return retval;
+    }
+
+    // Returns List<String>.  See H3GraphLoader.loadAttributes().
+    public List loadAttributes(H3GraphLoader.AttributeTypeMatcher matcher) {
+        List<String> retval = new ArrayList<String>();
+        for (AttributeDefinition attribute : m_attributes) {
+            if (matcher.match(attribute.type)) {
+                retval.add(attribute.name);
+            }
+        }
+
+        Collections.sort(retval);
+        return retval;
+    }
+
+    // Returns the complete libsea Graph, for access to attribute values.
+    // The file is parsed again, with libsea, on the first call.
+    public synchronized Graph getBackingGraph()
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        if (m_backingGraph == null) {
+            InputStream in = new BufferedInputStream
+                    (H3CompressedInput.open(m_file));
+            try {
+                GraphBuilder builder = GraphFactory.makeImmutableGraph();
+
+                GraphFileLexer lexer =
+                        new GraphFileLexer(new ASCIIInputStreamReader(in));
+                GraphFileParser parser = new GraphFileParser(lexer);
+                parser.file(builder);
+
+                m_backingGraph = builder.endConstruction();
+            } catch (antlr.ANTLRException e) {
+                // NOTE: ANTLRException.toMessage() doesn't include position.
+                throw new H3GraphLoader.InvalidGraphDataException
+                        (e.toString());
+            } finally {
+                in.close();
+            }
+        }
+        return m_backingGraph;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS (loading)
+    ////////////////////////////////////////////////////////////////////////
+
+    private Qualifier findQualifier(String name) {
+        for (Qualifier qualifier : m_qualifiers) {
+            if (qualifier.name.equals(name)) {
+                return qualifier;
+            }
+        }
+
+        String msg = "spanning tree qualifier `" + name + "' not found";
+        throw new IllegalArgumentException(msg);
+    }
+
+    private AttributeDefinition findSpanningTreeAttribute
+            (Qualifier qualifier, String name)
+            throws H3GraphLoader.InvalidGraphDataException {
+        for (int i = 0; i < qualifier.attributeNames.size(); i++) {
+            if (qualifier.attributeNames.get(i).equals(name)) {
+                AttributeDefinition retval =
+                        m_attributes.get(qualifier.attributeIDs.get(i));
+                if (retval.type != ValueType.BOOLEAN) {
+                    String msg = "attribute `" + name
+                            + "' of qualifier type `" + SPANNING_TREE_QUALIFIER
+                            + "' must have type " + ValueType.BOOLEAN.getName()
+                            + "; found " + retval.type.getName();
+                    throw new H3GraphLoader.InvalidGraphDataException(msg);
+                }
+                return retval;
+            }
+        }
+
+        String msg = "missing attribute `" + name
+                + "' of qualifier type `" + SPANNING_TREE_QUALIFIER + "'";
+        throw new H3GraphLoader.InvalidGraphDataException(msg);
+    }
+
+    // Adds the links of each node in the same order as H3GraphLoader,
+    // which is the reverse of the order of the links in the file (libsea
+    // prepends each link to the outgoing links of its source), so that
+    // layouts don't depend on the loader.  The links are first bucketed by
+    // source node with a counting sort.
+    private void populateLinks(H3Graph graph, BitSet treeLinks,
+                               H3LoadMonitor.Phase phase) {
+        int[] end = new int[m_numNodes + 1];
+        for (int i = 0; i < m_numLinks; i++) {
+            ++end[m_linkSources[i] + 1];
+        }
+        for (int i = 0; i < m_numNodes; i++) {
+            end[i + 1] += end[i];
+        }
+
+        // This leaves end[i] at the end of the links of node i.
+        int[] links = new int[m_numLinks];
+        for (int i = 0; i < m_numLinks; i++) {
+            links[end[m_linkSources[i]]++] = i;
+        }
+
+        int begin = 0;
+        int reported = 0; // Links reported to {phase}.
+        for (int node = 0; node < m_numNodes; node++) {
+            graph.startChildLinks(node);
+            for (int i = end[node] - 1; i >= begin; i--) {
+                int link = links[i];
+                if (treeLinks.get(link)) {
+                    graph.addChildLink(node, m_linkDestinations[link], link);
+                }
+            }
+            graph.startNontreeLinks(node);
+            for (int i = end[node] - 1; i >= begin; i--) {
+                int link = links[i];
+                if (!treeLinks.get(link)) {
+                    graph.addNontreeLink(node, m_linkDestinations[link], link);
+                }
+            }
+            graph.endNodeLinks(node);
+
+            if (node % PROGRESS_NODES == PROGRESS_NODES - 1) {
+                phase.advance(end[node] - reported);
+                reported = end[node];
+            }
+            begin = end[node];
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS (parsing)
+    ////////////////////////////////////////////////////////////////////////
+
+    private void parseParallel(ByteBuffer source, int parallelism,
+                               H3LoadMonitor.Phase phase)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        m_source = source;
+        m_parsePhase = phase;
+        m_chunkSize = Math.max(MIN_CHUNK_SIZE,
+                source.limit() / (parallelism * CHUNKS_PER_THREAD));
+        m_pool = new ForkJoinPool(parallelism);
+        try {
+            parse(new H3GraphFileTokenizer(source, 0, source.limit(), phase));
+        } finally {
+            m_pool.shutdown();
+            m_pool = null;
+            m_source = null;
+            m_parsePhase = null;
+        }
+    }
+
+    // The fields of a graph are positional; the labels such as `@links='
+    // are merely comments, and the tokenizer skips them.
+    private void parse(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        if (!in.isKeyword("Graph")) {
+            throw in.error("expected `Graph'");
+        }
+        in.advance();
+        match(in, H3GraphFileTokenizer.LCURLY);
+
+        skipField(in); // name
+        skipField(in); // description
+        m_numNodes = parseCount(in);
+        m_numLinks = parseCount(in);
+        m_numPaths = parseCount(in);
+        parseCount(in); // numPathLinks
+
+        parseLinks(in);
+        skipField(in); // paths
+        skipField(in); // enumerations
+        parseAttributeDefinitions(in);
+        parseQualifiers(in);
+
+        // Filters, selectors, displays, presentations, and the menus.
+        for (int i = 0; i < NUM_TRAILING_FIELDS; i++) {
+            skipField(in);
+        }
+
+        match(in, H3GraphFileTokenizer.RCURLY);
+        match(in, H3GraphFileTokenizer.EOF);
+    }
+
+    private void parseLinks(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        m_linkSources = new int[m_numLinks];
+        m_linkDestinations = new int[m_numLinks];
+
+        int numLinks = 0;
+        if (startList(in)) {
+            int[] chunks = splitSimpleList(in);
+            if (chunks != null) {
+                numLinks = parseLinksParallel(in, chunks);
+            } else {
+                do {
+                    if (numLinks == m_numLinks) {
+                        throw in.error("more links than the " + m_numLinks
+                                + " declared");
+                    }
+
+                    parseLink(in, m_linkSources, m_linkDestinations,
+                            numLinks);
+                    ++numLinks;
+                } while (continueList(in));
+            }
+        }
+
+        if (numLinks != m_numLinks) {
+            throw in.error("found " + numLinks + " links; expected "
+                    + m_numLinks);
+        }
+    }
+
+    private void parseAttributeDefinitions(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        if (startList(in)) {
+            do {
+                match(in, H3GraphFileTokenizer.LCURLY);
+                AttributeDefinition attribute = new AttributeDefinition();
+                attribute.name = parseIdentifier(in);
+                match(in, H3GraphFileTokenizer.SEMI);
+                attribute.type = parseType(in);
+                match(in, H3GraphFileTokenizer.SEMI);
+                skipField(in); // default value
+
+                attribute.nodeValues = parseValues
+                        (in, attribute.type, m_numNodes, "node");
+                attribute.linkValues = parseValues
+                        (in, attribute.type, m_numLinks, "link");
+                parseValues(in, attribute.type, m_numPaths, "path");
+                match(in, H3GraphFileTokenizer.RCURLY);
+
+                m_attributes.add(attribute);
+            } while (continueList(in));
+        }
+    }
+
+    // Returns the values of a boolean attribute as a set of the IDs of the
+    // objects having the value true, or null for other types.
+    private BitSet parseValues(H3GraphFileTokenizer in, ValueType type,
+                               int numObjects, String objectType)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        boolean isBoolean = (type == ValueType.BOOLEAN);
+        BitSet retval = (isBoolean ? new BitSet() : null);
+
+        if (startList(in)) {
+            int[] chunks = (isBoolean ? splitSimpleList(in) : null);
+            if (chunks != null) {
+                parseValuesParallel(in, chunks, retval, numObjects,
+                        objectType);
+            } else if (!isBoolean && skipListParallel(in)) {
+                // Nothing else to do.
+            } else {
+                do {
+                    parseValue(in, retval, numObjects, objectType);
+                } while (continueList(in));
+            }
+        }
+
+        return retval;
+    }
+
+    private void parseLink(H3GraphFileTokenizer in, int[] sources,
+                           int[] destinations, int index)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        match(in, H3GraphFileTokenizer.LCURLY);
+        sources[index] = parseID(in, m_numNodes, "node");
+        match(in, H3GraphFileTokenizer.SEMI);
+        destinations[index] = parseID(in, m_numNodes, "node");
+        match(in, H3GraphFileTokenizer.SEMI);
+        match(in, H3GraphFileTokenizer.RCURLY);
+    }
+
+    // Parses one `{ id; value; }', recording the value in {values} if it's
+    // non-null (that is, if the attribute is boolean).
+    private void parseValue(H3GraphFileTokenizer in, BitSet values,
+                            int numObjects, String objectType)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        match(in, H3GraphFileTokenizer.LCURLY);
+        int id = parseID(in, numObjects, objectType);
+        match(in, H3GraphFileTokenizer.SEMI);
+        if (values != null) {
+            if (in.isKeyword("T")) {
+                values.set(id);
+            } else if (!in.isKeyword("F")) {
+                throw in.error("wrong type of value for attribute:"
+                        + " need bool value");
+            }
+            in.advance();
+        } else {
+            skipValue(in);
+        }
+        match(in, H3GraphFileTokenizer.SEMI);
+        match(in, H3GraphFileTokenizer.RCURLY);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
+    private int parseLinksParallel(H3GraphFileTokenizer in, int[] chunks)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        LinkChunkTask[] tasks = new LinkChunkTask[chunks.length - 1];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new LinkChunkTask(chunks[i], chunks[i + 1],
+                    i == tasks.length - 1);
+        }
+        runChunkTasks(tasks);
+
+        int retval = 0;
+        for (LinkChunkTask task : tasks) {
+            retval += task.numLinks;
+        }
+        if (retval != m_numLinks) {
+            throw in.error("found " + retval + " links; expected "
+                    + m_numLinks);
+        }
+
+        int numLinks = 0;
+        for (LinkChunkTask task : tasks) {
+            System.arraycopy(task.sources, 0, m_linkSources, numLinks,
+                    task.numLinks);
+            System.arraycopy(task.destinations, 0, m_linkDestinations,
+                    numLinks, task.numLinks);
+            numLinks += task.numLinks;
+        }
+
+        in.seek(chunks[chunks.length - 1]);
+        continueList(in);
+        return retval;
+    }
+
+    private void parseValuesParallel(H3GraphFileTokenizer in, int[] chunks,
+                                     BitSet values, int numObjects,
+                                     String objectType)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        ValueChunkTask[] tasks = new ValueChunkTask[chunks.length - 1];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new ValueChunkTask(chunks[i], chunks[i + 1],
+                    i == tasks.length - 1, numObjects, objectType);
+        }
+        runChunkTasks(tasks);
+
+        for (ValueChunkTask task : tasks) {
+            values.or(task.values);
+        }
+
+        in.seek(chunks[chunks.length - 1]);
+        continueList(in);
+    }
+
+    private void runChunkTasks(final ChunkTask[] tasks)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        m_pool.invoke(new RecursiveAction() {
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        // Report the first error in the file.
+        for (ChunkTask task : tasks) {
+            if (task.ioException != null) {
+                throw task.ioException;
+            }
+            if (task.dataException != null) {
+                throw task.dataException;
+            }
+        }
+    }
+
+    // When reading in parallel, splits a list whose first element is the
+    // current token into chunks for ChunkTasks.  The elements must not
+    // contain strings or brackets (as in a link list or a list of boolean
+    // values), so the list simply ends at the first `]' outside a comment.
+    // Returns the offsets of the first element of each chunk followed by
+    // the offset of the closing `]', or null if the list should be parsed
+    // sequentially: when not reading in parallel, when the list is too
+    // short to split, or when it has no end (an error the sequential
+    // parse will report properly).
+    private int[] splitSimpleList(H3GraphFileTokenizer in) {
+        if (m_source == null) {
+            return null;
+        }
+
+        int begin = in.getOffset();
+        int[] retval = new int[16];
+        int numOffsets = 0;
+        retval[numOffsets++] = begin;
+
+        int nextChunk = begin + m_chunkSize;
+        int limit = m_source.limit();
+        for (int i = begin; i < limit; i++) {
+            byte c = m_source.get(i);
+            if (c == '#') {
+                while (i < limit && m_source.get(i) != '\n') {
+                    ++i;
+                }
+            } else if (c == '{' && i >= nextChunk) {
+                if (numOffsets == retval.length) {
+                    retval = Arrays.copyOf(retval, 2 * numOffsets);
+                }
+                retval[numOffsets++] = i;
+                nextChunk = i + m_chunkSize;
+            } else if (c == ']') {
+                if (numOffsets == 1) {
+                    return null;
+                }
+                retval = Arrays.copyOf(retval, numOffsets + 1);
+                retval[numOffsets] = i;
+                return retval;
+            }
+        }
+        return null;
+    }
+
+    // When reading in parallel, skips the rest of a list, whose first
+    // element is the current token, by scanning the bytes of the file
+    // rather than tokenizing them.  Returns false, having done nothing,
+    // when not reading in parallel or when the list has no end.
+    private boolean skipListParallel(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        if (m_source == null) {
+            return false;
+        }
+
+        int depth = 0;
+        int limit = m_source.limit();
+        for (int i = in.getOffset(); i < limit; i++) {
+            byte c = m_source.get(i);
+            if (c == '"') {
+                for (++i; i < limit && m_source.get(i) != '"'; i++) {
+                    if (m_source.get(i) == '\\') {
+                        ++i;
+                    }
+                }
+            } else if (c == '|' && i + 1 < limit
+                    && m_source.get(i + 1) == '|') {
+                for (i += 2; i + 1 < limit; i++) {
+                    if (m_source.get(i) == '|'
+                            && m_source.get(i + 1) == '|') {
+                        break;
+                    }
+                }
+                ++i;
+            } else if (c == '#') {
+                while (i < limit && m_source.get(i) != '\n') {
+                    ++i;
+                }
+            } else if (c == '{' || c == '[') {
+                ++depth;
+            } else if (c == '}') {
+                --depth;
+            } else if (c == ']') {
+                if (depth == 0) {
+                    m_parsePhase.advance(i - in.getOffset());
+                    in.seek(i);
+                    continueList(in);
+                    return true;
+                }
+                --depth;
+            }
+        }
+        return false;
+    }
+
+
+    private ValueType parseType(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        boolean isList = in.isKeyword("list");
+        if (isList) {
+            in.advance();
+        }
+
+        int baseType = -1;
+        for (int i = 0; i < BASE_TYPE_NAMES.length; i++) {
+            if (in.isKeyword(BASE_TYPE_NAMES[i])) {
+                baseType = i;
+            }
+        }
+        if (baseType < 0) {
+            throw in.error("expected attribute type");
+        }
+        in.advance();
+
+        if (BASE_TYPES[baseType] == ValueType.ENUMERATION) {
+            match(in, H3GraphFileTokenizer.INT); // Enumeration ID.
+        }
+
+        return (isList ? LIST_TYPES[baseType] : BASE_TYPES[baseType]);
+    }
+
+    private void parseQualifiers(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        if (startList(in)) {
+            do {
+                match(in, H3GraphFileTokenizer.LCURLY);
+                Qualifier qualifier = new Qualifier();
+                qualifier.type = parseIdentifier(in);
+                match(in, H3GraphFileTokenizer.SEMI);
+                qualifier.name = parseIdentifier(in);
+                match(in, H3GraphFileTokenizer.SEMI);
+                skipField(in); // description
+
+                if (startList(in)) {
+                    do {
+                        match(in, H3GraphFileTokenizer.LCURLY);
+                        qualifier.attributeIDs.add(parseID
+                                (in, m_attributes.size(), "attribute"));
+                        match(in, H3GraphFileTokenizer.SEMI);
+                        qualifier.attributeNames.add(parseIdentifier(in));
+                        match(in, H3GraphFileTokenizer.SEMI);
+                        match(in, H3GraphFileTokenizer.RCURLY);
+                    } while (continueList(in));
+                }
+                match(in, H3GraphFileTokenizer.RCURLY);
+
+                m_qualifiers.add(qualifier);
+            } while (continueList(in));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
+    // Every list is a field, so it's either empty (nothing before the
+    // terminating semicolon) or bracketed.  Returns true and consumes the
+    // `[' if the list has elements; otherwise consumes the empty field.
+    private boolean startList(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        if (in.getType() == H3GraphFileTokenizer.SEMI) {
+            in.advance();
+            return false;
+        }
+
+        match(in, H3GraphFileTokenizer.LBRACKET);
+        if (in.getType() == H3GraphFileTokenizer.RBRACKET) {
+            in.advance();
+            match(in, H3GraphFileTokenizer.SEMI);
+            return false;
+        }
+        return true;
+    }
+
+    // Returns whether another element follows; otherwise consumes the end
+    // of the list field.
+    private boolean continueList(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        if (in.getType() == H3GraphFileTokenizer.COMMA) {
+            in.advance();
+            return true;
+        }
+
+        match(in, H3GraphFileTokenizer.RBRACKET);
+        match(in, H3GraphFileTokenizer.SEMI);
+        return false;
+    }
+
+    private void skipField(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        skipValue(in);
+        match(in, H3GraphFileTokenizer.SEMI);
+    }
+
+    // Skips tokens up to the next semicolon not nested in braces or
+    // brackets.
+    private void skipValue(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        int depth = 0;
+        while (depth > 0 || in.getType() != H3GraphFileTokenizer.SEMI) {
+            switch (in.getType()) {
+                case H3GraphFileTokenizer.LCURLY:
+                case H3GraphFileTokenizer.LBRACKET:
+                    ++depth;
+                    break;
+                case H3GraphFileTokenizer.RCURLY:
+                case H3GraphFileTokenizer.RBRACKET:
+                    if (--depth < 0) {
+                        throw in.error("unbalanced `}' or `]'");
+                    }
+                    break;
+                case H3GraphFileTokenizer.EOF:
+                    throw in.error("unexpected end of file");
+                default:
+                    break;
+            }
+            in.advance();
+        }
+    }
+
+    private int parseCount(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        int retval = in.getIntValue();
+        match(in, H3GraphFileTokenizer.INT);
+        if (retval < 0) {
+            throw in.error("count must be nonnegative; found " + retval);
+        }
+        match(in, H3GraphFileTokenizer.SEMI);
+        return retval;
+    }
+
+    private int parseID(H3GraphFileTokenizer in, int numObjects,
+                        String objectType)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        int retval = in.getIntValue();
+        match(in, H3GraphFileTokenizer.INT);
+        if (retval < 0 || retval >= numObjects) {
+            throw in.error("invalid " + objectType + " ID " + retval);
+        }
+        return retval;
+    }
+
+    private String parseIdentifier(H3GraphFileTokenizer in)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        String retval = in.getText();
+        match(in, H3GraphFileTokenizer.IDENT);
+        return retval;
+    }
+
+    private void match(H3GraphFileTokenizer in, int type)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        if (in.getType() != type) {
+            throw in.error("expected " + TOKEN_NAMES[type] + ", found "
+                    + TOKEN_NAMES[in.getType()]);
+        }
+        in.advance();
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final String SPANNING_TREE_QUALIFIER = "spanning_tree";
+    private static final String ROOT_ATTRIBUTE = "root";
+    private static final String TREE_LINK_ATTRIBUTE = "tree_link";
+
+    private static final int NUM_TRAILING_FIELDS = 9;
+
+    // When reading in parallel, lists are split into chunks of about
+    // 1/CHUNKS_PER_THREAD of the share of the file of each thread (so the
+    // long sections get several chunks per thread), but no smaller than
+    // MIN_CHUNK_SIZE bytes.
+    private static final int CHUNKS_PER_THREAD = 16;
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+    // Progress in populating links is reported after every so many nodes.
+    private static final int PROGRESS_NODES = 4096;
+
+    private static final String[] BASE_TYPE_NAMES = {
+            "bool", "int", "float", "double", "string", "float3", "double3",
+            "enum"
+    };
+
+    private static final ValueType[] BASE_TYPES = {
+            ValueType.BOOLEAN, ValueType.INTEGER, ValueType.FLOAT,
+            ValueType.DOUBLE, ValueType.STRING, ValueType.FLOAT3,
+            ValueType.DOUBLE3, ValueType.ENUMERATION
+    };
+
+    private static final ValueType[] LIST_TYPES = {
+            ValueType.BOOLEAN_LIST, ValueType.INTEGER_LIST,
+            ValueType.FLOAT_LIST, ValueType.DOUBLE_LIST,
+            ValueType.STRING_LIST, ValueType.FLOAT3_LIST,
+            ValueType.DOUBLE3_LIST, ValueType.ENUMERATION_LIST
+    };
+
+    // Indexed by the token types of H3GraphFileTokenizer.
+    private static final String[] TOKEN_NAMES = {
+            "end of file", "`{'", "`}'", "`['", "`]'", "`;'", "`,'",
+            "integer", "number", "string", "code string", "identifier",
+            "keyword"
+    };
+
+    private final File m_file;
+    private final int m_parallelism;
+
+    private int m_numNodes;
+    private int m_numLinks;
+    private int m_numPaths;
+
+    private int[] m_linkSources;
+    private int[] m_linkDestinations;
+
+    private final List<AttributeDefinition> m_attributes =
+            new ArrayList<AttributeDefinition>();
+    private final List<Qualifier> m_qualifiers = new ArrayList<Qualifier>();
+
+    private Graph m_backingGraph; // Parsed on demand.
+
+    // Set only while reading in parallel.
+    private ByteBuffer m_source;
+    private ForkJoinPool m_pool;
+    private H3LoadMonitor.Phase m_parsePhase;
+    private int m_chunkSize;
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // Parses the elements of a list in the range [begin, end) of the file.
+    // Each chunk but the last ends with the comma before the first element
+    // of the next chunk, and the last ends just before the closing `]'.
+    private abstract class ChunkTask extends RecursiveAction {
+        public ChunkTask(int begin, int end, boolean isLast) {
+            m_begin = begin;
+            m_end = end;
+            m_isLast = isLast;
+        }
+
+        protected void compute() {
+            try {
+                H3GraphFileTokenizer in =
+                        new H3GraphFileTokenizer(m_source, m_begin, m_end,
+                                m_parsePhase);
+                while (true) {
+                    parseElement(in);
+                    if (m_isLast
+                            && in.getType() == H3GraphFileTokenizer.EOF) {
+                        break;
+                    }
+
+                    match(in, H3GraphFileTokenizer.COMMA);
+                    if (!m_isLast
+                            && in.getType() == H3GraphFileTokenizer.EOF) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                ioException = e;
+            } catch (H3GraphLoader.InvalidGraphDataException e) {
+                dataException = e;
+            }
+        }
+
+        protected abstract void parseElement(H3GraphFileTokenizer in)
+                throws IOException, H3GraphLoader.InvalidGraphDataException;
+
+        public IOException ioException;
+        public H3GraphLoader.InvalidGraphDataException dataException;
+
+        private final int m_begin;
+        private final int m_end;
+        private final boolean m_isLast;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private class LinkChunkTask extends ChunkTask {
+        public LinkChunkTask(int begin, int end, boolean isLast) {
+            super(begin, end, isLast);
+
+            // Links take at least 10 bytes, like `{ 1; 2; },'.
+            int capacity = (end - begin) / 10 + 1;
+            sources = new int[capacity];
+            destinations = new int[capacity];
+        }
+
+        protected void parseElement(H3GraphFileTokenizer in)
+                throws IOException, H3GraphLoader.InvalidGraphDataException {
+            if (numLinks == sources.length) {
+                sources = Arrays.copyOf(sources, 2 * numLinks);
+                destinations = Arrays.copyOf(destinations, 2 * numLinks);
+            }
+            parseLink(in, sources, destinations, numLinks);
+            ++numLinks;
+        }
+
+        public int[] sources;
+        public int[] destinations;
+        public int numLinks;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private class ValueChunkTask extends ChunkTask {
+        public ValueChunkTask(int begin, int end, boolean isLast,
+                              int numObjects, String objectType) {
+            super(begin, end, isLast);
+            m_numObjects = numObjects;
+            m_objectType = objectType;
+        }
+
+        protected void parseElement(H3GraphFileTokenizer in)
+                throws IOException, H3GraphLoader.InvalidGraphDataException {
+            parseValue(in, values, m_numObjects, m_objectType);
+        }
+
+        public final BitSet values = new BitSet();
+
+        private final int m_numObjects;
+        private final String m_objectType;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class AttributeDefinition {
+        public String name;
+        public ValueType type;
+
+        // The objects with the value true, for boolean attributes only.
+        public BitSet nodeValues;
+        public BitSet linkValues;
+    }
+
+    private static class Qualifier {
+        public String type;
+        public String name;
+        public final List<Integer> attributeIDs = new ArrayList<Integer>();
+        public final List<String> attributeNames = new ArrayList<String>();
+    }
+}
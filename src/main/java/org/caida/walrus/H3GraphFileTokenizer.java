@@ -0,0 +1,485 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+// A hand-written tokenizer for LibSea graph files, used by H3GraphFile in
+// place of the ANTLR generated GraphFileLexer.  It works directly on the
+// bytes of the file (LibSea files are ASCII) and doesn't create a token
+// object or, except on request, a String per token, so that the
+// millions of integers making up the links and attribute values of a
+// large graph can be read without generating garbage.
+//
+// The current token is given by getType(), and advance() moves to the
+// next token.  As in GraphFileLexer, comments (from `#' to the end of the
+// line) and field labels such as `@numNodes=' are skipped.
+//
+// A tokenizer reads either a stream or a range of a buffer (normally a
+// mapping of the whole file).  Several tokenizers can read different
+// ranges of the same buffer concurrently, and a buffer tokenizer can be
+// repositioned with seek(), which is how H3GraphFile parses large
+// sections of a file in parallel.
+//
+// If given a PARSE phase of an H3LoadMonitor, a tokenizer records each
+// block of bytes it takes in, which also checks whether the load has
+// been cancelled.
+final class H3GraphFileTokenizer {
+    ////////////////////////////////////////////////////////////////////////
+    // TOKEN TYPES
+    ////////////////////////////////////////////////////////////////////////
+
+    static final int EOF = 0;
+    static final int LCURLY = 1;
+    static final int RCURLY = 2;
+    static final int LBRACKET = 3;
+    static final int RBRACKET = 4;
+    static final int SEMI = 5;
+    static final int COMMA = 6;
+    static final int INT = 7;     // Value given by getIntValue().
+    static final int REAL = 8;    // Float or double; only the text is kept.
+    static final int STRING = 9;  // Text is the unescaped contents.
+    static final int CODE = 10;   // Text is the contents between `||'s.
+    static final int IDENT = 11;  // Text excludes the leading `$'.
+    static final int KEYWORD = 12;
+
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    // {phase} may be null.
+    H3GraphFileTokenizer(InputStream in, H3LoadMonitor.Phase phase)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        m_in = in;
+        m_source = null;
+        m_phase = phase;
+        advance();
+    }
+
+    // Reads the bytes [begin, end) of {source}, which isn't modified.
+    H3GraphFileTokenizer(ByteBuffer source, int begin, int end,
+                         H3LoadMonitor.Phase phase)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        m_in = null;
+        m_phase = phase;
+        m_source = source.duplicate();
+        m_source.limit(end).position(begin);
+        m_bufferOffset = begin;
+        advance();
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PACKAGE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    int getType() {
+        return m_type;
+    }
+
+    int getIntValue() {
+        return m_intValue;
+    }
+
+    String getText() {
+        return m_text.toString();
+    }
+
+    boolean textEquals(String text) {
+        int length = m_text.length();
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (m_text.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isKeyword(String keyword) {
+        return m_type == KEYWORD && textEquals(keyword);
+    }
+
+    // Returns the offset of the current token in the buffer.
+    int getOffset() {
+        return m_tokenOffset;
+    }
+
+    // Moves to the token at {offset} in the buffer.
+    void seek(int offset)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        m_source.position(offset);
+        m_bufferOffset = offset;
+        m_position = 0;
+        m_limit = 0;
+        advance();
+    }
+
+    void advance()
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        int c = skipWhitespaceAndComments();
+        m_tokenLine = m_line;
+        m_tokenOffset = m_bufferOffset + m_position - (c == -1 ? 0 : 1);
+        m_text.setLength(0);
+
+        switch (c) {
+            case -1:
+                m_type = EOF;
+                break;
+            case '{':
+                m_type = LCURLY;
+                break;
+            case '}':
+                m_type = RCURLY;
+                break;
+            case '[':
+                m_type = LBRACKET;
+                break;
+            case ']':
+                m_type = RBRACKET;
+                break;
+            case ';':
+                m_type = SEMI;
+                break;
+            case ',':
+                m_type = COMMA;
+                break;
+            case '"':
+                readString();
+                break;
+            case '|':
+                readCode();
+                break;
+            case '$':
+                readIdentifier();
+                break;
+            default:
+                if (c == '-' || isDigit(c)) {
+                    readNumber(c);
+                } else if (isLetter(c)) {
+                    m_text.append((char) c);
+                    readWord();
+                    m_type = KEYWORD;
+                } else {
+                    throw error("unexpected character `" + (char) c + "'");
+                }
+                break;
+        }
+    }
+
+    // Returns an exception describing a syntax error at the current token.
+    H3GraphLoader.InvalidGraphDataException error(String message) {
+        int line = m_tokenLine;
+        if (m_source != null) {
+            // Lines aren't tracked across seeks or from the start of
+            // a range, so count them now.
+            line = 1;
+            for (int i = 0; i < m_tokenOffset; i++) {
+                if (m_source.get(i) == '\n') {
+                    ++line;
+                }
+            }
+        }
+
+        return new H3GraphLoader.InvalidGraphDataException
+                ("line " + line + ": " + message);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private int skipWhitespaceAndComments()
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        while (true) {
+            int c = read();
+            if (c == '\n') {
+                ++m_line;
+            } else if (c == '#') {
+                do {
+                    c = read();
+                } while (c != '\n' && c != -1);
+                if (c == '\n') {
+                    ++m_line;
+                }
+            } else if (c == '@') {
+                skipLabel();
+            } else if (c != ' ' && c != '\t' && c != '\r' && c != '\f') {
+                return c;
+            }
+        }
+    }
+
+    // Skips the rest of a field label, such as `@numNodes='.
+    private void skipLabel()
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        int c = skipSpaces(read());
+        if (!isLetter(c)) {
+            throw error("malformed field label");
+        }
+        do {
+            c = read();
+        } while (isLetter(c) || isDigit(c));
+
+        if (skipSpaces(c) != '=') {
+            throw error("malformed field label; missing `='");
+        }
+    }
+
+    private int skipSpaces(int c) throws IOException {
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f') {
+            if (c == '\n') {
+                ++m_line;
+            }
+            c = read();
+        }
+        return c;
+    }
+
+    private void readString()
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        m_type = STRING;
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return;
+            } else if (c == -1) {
+                throw error("unterminated string");
+            } else if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case '"':
+                    case '\\':
+                        break;
+                    default:
+                        throw error("malformed escape sequence in string");
+                }
+            } else if (c == '\n') {
+                ++m_line;
+            }
+            m_text.append((char) c);
+        }
+    }
+
+    private void readCode()
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        m_type = CODE;
+        if (read() != '|') {
+            throw error("malformed code string; expected `||'");
+        }
+
+        while (true) {
+            int c = read();
+            if (c == '|') {
+                c = read();
+                if (c == '|') {
+                    return;
+                }
+                m_text.append('|');
+            }
+
+            if (c == -1) {
+                throw error("unterminated code string");
+            } else if (c == '\n') {
+                ++m_line;
+            }
+            m_text.append((char) c);
+        }
+    }
+
+    private void readIdentifier()
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        m_type = IDENT;
+        int c = peek();
+        if (!isLetter(c)) {
+            throw error("malformed identifier: need letter or underscore"
+                    + " after $");
+        }
+        readWord();
+    }
+
+    // Appends letters, digits, and underscores to m_text.
+    private void readWord() throws IOException {
+        int c = peek();
+        while (isLetter(c) || isDigit(c)) {
+            m_text.append((char) c);
+            ++m_position;
+            c = peek();
+        }
+    }
+
+    // Numbers have the form -?D+(.D+([eE][-+]?D+)?f?)?.  Integers are
+    // converted as they are read; other numbers are only collected as text.
+    private void readNumber(int c)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        m_text.append((char) c);
+        boolean negative = (c == '-');
+        long value = (negative ? 0 : c - '0');
+        if (negative && !isDigit(peek())) {
+            throw error("malformed number");
+        }
+
+        c = peek();
+        while (isDigit(c)) {
+            m_text.append((char) c);
+            ++m_position;
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw error("integer too large: " + getText());
+            }
+            c = peek();
+        }
+
+        if (c != '.') {
+            if (!negative && value > Integer.MAX_VALUE) {
+                throw error("integer too large: " + getText());
+            }
+            m_type = INT;
+            m_intValue = (int) (negative ? -value : value);
+            return;
+        }
+
+        m_type = REAL;
+        m_text.append('.');
+        ++m_position;
+        if (!appendDigits()) {
+            throw error("malformed number");
+        }
+
+        c = peek();
+        if (c == 'e' || c == 'E') {
+            m_text.append((char) c);
+            ++m_position;
+            c = peek();
+            if (c == '-' || c == '+') {
+                m_text.append((char) c);
+                ++m_position;
+            }
+            if (!appendDigits()) {
+                throw error("malformed number");
+            }
+            c = peek();
+        }
+
+        if (c == 'f' || c == 'F') {
+            m_text.append((char) c);
+            ++m_position;
+        }
+    }
+
+    private boolean appendDigits() throws IOException {
+        boolean retval = false;
+        int c = peek();
+        while (isDigit(c)) {
+            m_text.append((char) c);
+            ++m_position;
+            retval = true;
+            c = peek();
+        }
+        return retval;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private int read() throws IOException {
+        int retval = peek();
+        if (retval != -1) {
+            ++m_position;
+        }
+        return retval;
+    }
+
+    private int peek() throws IOException {
+        if (m_position == m_limit) {
+            m_bufferOffset += m_limit;
+            m_position = 0;
+            m_limit = fill();
+            if (m_limit <= 0) {
+                m_limit = 0;
+                return -1;
+            }
+        }
+        return m_buffer[m_position] & 0xFF;
+    }
+
+    private int fill() throws IOException {
+        int retval;
+        if (m_in != null) {
+            retval = m_in.read(m_buffer);
+        } else {
+            retval = Math.min(m_source.remaining(), BUFFER_SIZE);
+            m_source.get(m_buffer, 0, retval);
+        }
+
+        if (m_phase != null && retval > 0) {
+            m_phase.advance(retval);
+        }
+        return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream m_in;     // Exactly one of these is non-null.
+    private final ByteBuffer m_source;
+    private final H3LoadMonitor.Phase m_phase;
+
+    private final byte[] m_buffer = new byte[BUFFER_SIZE];
+    private int m_bufferOffset = 0; // Offset of m_buffer[0] in the input.
+    private int m_position = 0;
+    private int m_limit = 0;
+    private int m_line = 1;
+
+    private int m_type;
+    private int m_intValue;
+    private int m_tokenLine;
+    private int m_tokenOffset;
+    private final StringBuilder m_text = new StringBuilder();
+}
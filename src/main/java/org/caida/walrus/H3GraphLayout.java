@@ -26,8 +26,12 @@ import org.jogamp.vecmath.Matrix4d;
 import org.jogamp.vecmath.Point3d;
 import org.jogamp.vecmath.Point4d;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class H3GraphLayout {
     ////////////////////////////////////////////////////////////////////////
@@ -42,7 +46,28 @@ public class H3GraphLayout {
     ////////////////////////////////////////////////////////////////////////
 
     public H3GraphLayout(boolean attemptExtended) {
+        this(attemptExtended, 1);
+    }
+
+    // If {parallel} is true, the hyperbolic layout is computed with as many
+    // threads as there are available processors.
+    public H3GraphLayout(boolean attemptExtended, boolean parallel) {
+        this(attemptExtended,
+                parallel ? Runtime.getRuntime().availableProcessors() : 1);
+    }
+
+    // A {parallelism} of 1 selects the plain sequential layout.  Any larger
+    // value lays out sibling subtrees concurrently on a fork/join pool with
+    // that many threads.  Both modes produce identical coordinates.
+    public H3GraphLayout(boolean attemptExtended, int parallelism) {
+        if (parallelism < 1) {
+            String msg = "parallelism must be at least 1; found "
+                    + parallelism;
+            throw new IllegalArgumentException(msg);
+        }
+
         ATTEMPT_EXTENDED = attemptExtended;
+        m_parallelism = parallelism;
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -51,24 +76,292 @@ public class H3GraphLayout {
 
     public LayoutState layoutHyperbolic
             (H3Graph graph, boolean useExtendedPrecision) {
+        return layoutHyperbolic(graph, useExtendedPrecision,
+                new H3LoadMonitor());
+    }
+
+    // Reports the layout as a LAYOUT or LAYOUT_EXTENDED phase to {monitor},
+    // and stops with a CancellationException if the load is cancelled.
+    // Cancellation is checked between the steps of the layout and, since
+    // it can take hours, while computing extended-precision coordinates.
+    public LayoutState layoutHyperbolic
+            (H3Graph graph, boolean useExtendedPrecision,
+             H3LoadMonitor monitor) {
+        m_phase = monitor.startPhase(useExtendedPrecision
+                        ? H3LoadMonitor.LAYOUT_EXTENDED : H3LoadMonitor.LAYOUT,
+                H3LoadMonitor.NODES, graph.getNumNodes());
+        try {
+            LayoutState retval =
+                    layoutHyperbolicPhase(graph, useExtendedPrecision);
+            m_phase.finish();
+            return retval;
+        } finally {
+            m_phase = null;
+        }
+    }
+
+    public LayoutState layoutHyperbolicRelative(H3Graph graph) {
+        return layoutHyperbolicRelative(graph, new H3LoadMonitor());
+    }
+
+    // Lays out the graph like layoutHyperbolic(), but records the placement
+    // of each node relative to the coordinate system of its parent (see
+    // H3Graph.setNodeRelativePlacement()).  H3Transformer composes these
+    // placements outward from the node nearest the viewer, so deep trees
+    // display correctly in double precision, and extended precision is
+    // never needed.
+    //
+    // The layout coordinates are still computed, by composing the relative
+    // placements from the root, for everything that works with absolute
+    // coordinates.  In deep trees, some of them may come out imprecise or
+    // not finite, just as with layoutHyperbolic(); callers that need them
+    // can check them with H3Graph.checkLayoutCoordinates().
+    //
+    // Reports the layout as a LAYOUT phase to {monitor}.
+    public LayoutState layoutHyperbolicRelative(H3Graph graph,
+                                                H3LoadMonitor monitor) {
+        m_phase = monitor.startPhase(H3LoadMonitor.LAYOUT,
+                H3LoadMonitor.NODES, graph.getNumNodes());
+        try {
+            LayoutState retval = layoutHyperbolicRelativePhase(graph);
+            m_phase.finish();
+            return retval;
+        } finally {
+            m_phase = null;
+        }
+    }
+
+    // Try to calculate the coordinates of the nodes using extended precision.
+    // Assumes the radii and angles have been computed already.
+    public void retryHyperbolicLayout(H3Graph graph, LayoutState state) {
+        retryHyperbolicLayout(graph, state, new H3LoadMonitor());
+    }
+
+    // Reports the retry as a LAYOUT_EXTENDED phase to {monitor}; see
+    // layoutHyperbolic().
+    public void retryHyperbolicLayout(H3Graph graph, LayoutState state,
+                                      H3LoadMonitor monitor) {
+        m_phase = monitor.startPhase(H3LoadMonitor.LAYOUT_EXTENDED,
+                H3LoadMonitor.NODES, graph.getNumNodes());
+        try {
+            retryHyperbolicLayoutPhase(graph, state);
+            m_phase.finish();
+        } finally {
+            m_phase = null;
+        }
+    }
+
+    public LayoutState updateHyperbolicLayout(H3Graph graph,
+                                              LayoutState state,
+                                              int[] nodes, int[] parents) {
+        return updateHyperbolicLayout(graph, state, nodes, parents,
+                new H3LoadMonitor());
+    }
+
+    // Moves each node nodes[i], with its subtree, to parents[i] in the
+    // spanning tree of {graph}, in turn, with H3Graph.reparentNode(), and
+    // updates {state}, the hyperbolic layout of {graph} before the moves,
+    // in place to a layout of the edited graph, and returns it.  The result
+    // is exactly what layoutHyperbolic(graph, false) would produce, or
+    // layoutHyperbolicRelative(graph) if {graph} has a relative layout.  An
+    // invalid move throws IllegalArgumentException, after the moves before
+    // it have been made, which leaves {state} out of date.
+    //
+    // Only the radii of the old and new parents and their ancestors are
+    // recomputed, and only the angles of the children of these nodes (and
+    // of the nodes whose depth changed parity, which twists their
+    // children).  The depths are renumbered in the subtrees that moved to
+    // a different depth.  The nodes whose placement relative to their
+    // parent came out different are the moved nodes.
+    //
+    // In a relative layout, only the relative placements of the moved
+    // nodes are rewritten, so the update takes time proportional to the
+    // changed region.  The layout coordinates are left as they were, which
+    // is out of date below the moved nodes, until composeLayoutCoordinates()
+    // is called.  H3Transformer displays a relative layout from the
+    // placements alone; only nonadaptive rendering and saving the layout
+    // (see H3LayoutFile and H3LayoutCache) use the coordinates.
+    //
+    // In an absolute layout, the coordinates of every node below a moved
+    // node depend on its placement, so the subtrees of the moved nodes are
+    // laid out again.  This takes time proportional to the size of those
+    // subtrees, and since the radius of the root changes with almost any
+    // edit, which moves every child of the root, it's usually the whole
+    // tree.
+    //
+    // The update always runs sequentially, in double precision, switching
+    // to extended precision for deep subtrees as layoutHyperbolic() does.
+    // Reports the update as a LAYOUT phase to {monitor}.
+    public LayoutState updateHyperbolicLayout(H3Graph graph,
+                                              LayoutState state,
+                                              int[] nodes, int[] parents,
+                                              H3LoadMonitor monitor) {
+        if (nodes.length != parents.length) {
+            String msg = nodes.length + " nodes to move but "
+                    + parents.length + " parents";
+            throw new IllegalArgumentException(msg);
+        }
+
+        int numNodes = graph.getNumNodes();
+        HyperbolicLayout layout = (HyperbolicLayout) state;
+        if (layout.radius.length != numNodes) {
+            String msg = "layout state has " + layout.radius.length
+                    + " nodes; graph has " + numNodes;
+            throw new IllegalArgumentException(msg);
+        }
+
+        m_phase = monitor.startPhase(H3LoadMonitor.LAYOUT,
+                H3LoadMonitor.NODES, numNodes);
+        try {
+            if (nodes.length > 0) {
+                updateHyperbolicLayoutPhase(graph, layout, nodes, parents);
+            }
+            m_phase.finish();
+            return state;
+        } finally {
+            m_phase = null;
+        }
+    }
+
+    // Sets the layout coordinates of {graph}, which must have a relative
+    // layout with state {state}, by composing the relative placements down
+    // the tree exactly as layoutHyperbolicRelative() does.  This brings the
+    // coordinates up to date after updateHyperbolicLayout().
+    public void composeLayoutCoordinates(H3Graph graph, LayoutState state) {
+        if (graph.getNumNodes() == 0) {
+            return;
+        }
+
+        HyperbolicLayout layout = (HyperbolicLayout) state;
+        int rootNode = graph.getRootNode();
+        graph.setNodeLayoutCoordinates(rootNode, H3Transform.ORIGIN4);
+
+        CoordinatesStack stack = new CoordinatesStack();
+        Matrix4d frame = new Matrix4d();
+        Matrix4d relativeFrame = new Matrix4d();
+        stack.pushCopyIfParent(graph, layout, rootNode, H3Transform.I4);
+        while (!stack.isEmpty()) {
+            Matrix4d transform = (Matrix4d) stack.getTransform();
+            int child = stack.nextChild(graph, layout);
+            stack.popIfDone(graph);
+
+            graph.getNodeRelativeFrame(child, relativeFrame);
+            frame.mul(transform, relativeFrame);
+            graph.setNodeLayoutCoordinates(child, frame.m03, frame.m13,
+                    frame.m23, frame.m33);
+
+            stack.pushCopyIfParent(graph, layout, child, frame);
+        }
+    }
+
+    public LayoutState rerootHyperbolicLayout(H3Graph graph, int node,
+                                              boolean useExtendedPrecision) {
+        return rerootHyperbolicLayout(graph, node, useExtendedPrecision,
+                new H3LoadMonitor());
+    }
+
+    // Re-roots the spanning tree of {graph} at {node} in place (see
+    // H3Graph.rerootSpanningTree()) and lays the graph out again around
+    // it: with layoutHyperbolicRelative() if {graph} has a relative layout,
+    // and with layoutHyperbolic() otherwise.  {node} ends up at the origin,
+    // so a renderer can switch to the new layout by centering the display
+    // on it.  Note that the indices of links change.
+    public LayoutState rerootHyperbolicLayout(H3Graph graph, int node,
+                                              boolean useExtendedPrecision,
+                                              H3LoadMonitor monitor) {
+        boolean relative = graph.hasRelativeLayout();
+        graph.rerootSpanningTree(node);
+        return (relative
+                ? layoutHyperbolicRelative(graph, monitor)
+                : layoutHyperbolic(graph, useExtendedPrecision, monitor));
+    }
+
+    public void layoutRandom(H3Graph graph) {
+        graph.clearRelativeLayout();
+
+        Random random = new Random();
+        Point3d p = new Point3d();
+        for (int i = graph.getNumNodes() - 1; i >= 0; i--) {
+            computeRandomPoint(random, p);
+            graph.setNodeLayoutCoordinates(i, p.x, p.y, p.z, 1.0);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PACKAGE METHODS (layout cache)
+    ////////////////////////////////////////////////////////////////////////
+
+    // These write and read a hyperbolic LayoutState for H3LayoutCache: the
+    // radii, angles, and depths of the nodes, which take
+    // getLayoutStateSize() bytes.
+
+    static long getLayoutStateSize(int numNodes) {
+        return 28L * numNodes;
+    }
+
+    void writeLayoutState(LayoutState state, H3GraphSnapshot.Output out)
+            throws IOException {
+        HyperbolicLayout layout = (HyperbolicLayout) state;
+        out.writeDoubles(layout.radius);
+        out.writeDoubles(layout.theta);
+        out.writeDoubles(layout.phi);
+        out.writeInts(layout.depth);
+    }
+
+    LayoutState readLayoutState(int numNodes, H3GraphSnapshot.Input in)
+            throws IOException {
+        HyperbolicLayout retval = new HyperbolicLayout(numNodes);
+        retval.depth = new int[numNodes];
+        in.readDoubles(retval.radius);
+        in.readDoubles(retval.theta);
+        in.readDoubles(retval.phi);
+        in.readInts(retval.depth);
+        return retval;
+    }
+
+    // Gives {graph} the relative placements of the relative layout whose
+    // state is {state}, for a relative layout loaded from the cache.
+    void restoreRelativeLayout(H3Graph graph, LayoutState state) {
+        HyperbolicLayout layout = (HyperbolicLayout) state;
+        for (int node = graph.getNumNodes() - 1; node >= 0; node--) {
+            setRelativePlacement(graph, layout, node);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS (hyperbolic layout)
+    ////////////////////////////////////////////////////////////////////////
+
+    private LayoutState layoutHyperbolicPhase
+            (H3Graph graph, boolean useExtendedPrecision) {
         long startTime = 0;
         if (DEBUG_PRINT) {
             startTime = System.currentTimeMillis();
             System.out.println("layoutHyperbolic.begin[" + startTime + "]");
         }
 
+        graph.clearRelativeLayout();
+
         HyperbolicLayout retval = null;
 
         int numNodes = graph.getNumNodes();
         if (numNodes > 0) {
             retval = new HyperbolicLayout(numNodes);
-            computeRadii(graph, retval);
-            computeAngles(graph, retval);
-
-            if (useExtendedPrecision) {
-                computeCoordinatesMP(graph, retval);
+            if (m_parallelism > 1) {
+                layoutHyperbolicParallel(graph, retval, useExtendedPrecision);
             } else {
-                computeCoordinates(graph, retval);
+                SpanningTreeOrder order = new SpanningTreeOrder(graph);
+                retval.depth = order.depth;
+                computeRadii(graph, retval, order);
+                m_phase.checkCancelled();
+                computeAngles(graph, retval, order);
+                m_phase.checkCancelled();
+
+                if (useExtendedPrecision) {
+                    computeCoordinatesMP(graph, retval);
+                } else {
+                    computeCoordinates(graph, retval);
+                }
             }
         }
 
@@ -82,9 +375,8 @@ public class H3GraphLayout {
         return retval;
     }
 
-    // Try to calculate the coordinates of the nodes using extended precision.
-    // Assumes the radii and angles have been computed already.
-    public void retryHyperbolicLayout(H3Graph graph, LayoutState state) {
+    private void retryHyperbolicLayoutPhase(H3Graph graph,
+                                            LayoutState state) {
         long startTime = 0;
         if (DEBUG_PRINT) {
             startTime = System.currentTimeMillis();
@@ -93,6 +385,7 @@ public class H3GraphLayout {
 
         if (graph.getNumNodes() > 0) {
             HyperbolicLayout layout = (HyperbolicLayout) state;
+            graph.clearRelativeLayout();
             computeCoordinatesMP(graph, layout);
         }
 
@@ -104,26 +397,80 @@ public class H3GraphLayout {
         }
     }
 
-    public void layoutRandom(H3Graph graph) {
-        Random random = new Random();
-        Point3d p = new Point3d();
-        for (int i = graph.getNumNodes() - 1; i >= 0; i--) {
-            computeRandomPoint(random, p);
-            graph.setNodeLayoutCoordinates(i, p.x, p.y, p.z, 1.0);
+    private LayoutState layoutHyperbolicRelativePhase(H3Graph graph) {
+        long startTime = 0;
+        if (DEBUG_PRINT) {
+            startTime = System.currentTimeMillis();
+            System.out.println("layoutHyperbolicRelative.begin["
+                    + startTime + "]");
         }
+
+        HyperbolicLayout retval = null;
+
+        int numNodes = graph.getNumNodes();
+        if (numNodes > 0) {
+            retval = new HyperbolicLayout(numNodes);
+            SpanningTreeOrder order = new SpanningTreeOrder(graph);
+            retval.depth = order.depth;
+            if (m_parallelism > 1) {
+                ForkJoinPool pool = new ForkJoinPool(m_parallelism);
+                try {
+                    computeRadiiParallel(pool, graph, retval, order);
+                    m_phase.checkCancelled();
+                    pool.invoke(new AnglesTask(graph, retval, order,
+                            0, order.numNodes));
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                computeRadii(graph, retval, order);
+                m_phase.checkCancelled();
+                computeAngles(graph, retval, order);
+            }
+            m_phase.checkCancelled();
+
+            computeRelativePlacements(graph, retval, order);
+        }
+
+        if (DEBUG_PRINT) {
+            long stopTime = System.currentTimeMillis();
+            long duration = stopTime - startTime;
+            System.out.println("layoutHyperbolicRelative.end["
+                    + stopTime + "]");
+            System.out.println("layoutHyperbolicRelative.time["
+                    + duration + "]");
+        }
+
+        return retval;
     }
 
-    ////////////////////////////////////////////////////////////////////////
-    // PRIVATE METHODS (hyperbolic layout)
-    ////////////////////////////////////////////////////////////////////////
+    // None of the passes of the hyperbolic layout recurse on the tree.
+    // The radius and angle passes sweep the preorder of the spanning tree
+    // (see SpanningTreeOrder), and the coordinate passes walk the tree with
+    // an explicit stack, so the depth of the tree is limited only by memory.
 
-    private void computeRadii(H3Graph graph, HyperbolicLayout layout) {
-        computeRadiiSubtree(graph, layout, graph.getRootNode());
+    private void computeRadii(H3Graph graph, HyperbolicLayout layout,
+                              SpanningTreeOrder order) {
+        computeRadiiSubtree(graph, layout, order, graph.getRootNode());
     }
 
+    // Sweeps the preorder of the subtree rooted at {node} backwards, so that
+    // the radii of the children of a node are known by the time the node
+    // itself is reached.
     private void computeRadiiSubtree(H3Graph graph,
                                      HyperbolicLayout layout,
+                                     SpanningTreeOrder order,
                                      int node) {
+        int start = order.position[node];
+        for (int i = start + order.subtreeSize[node] - 1; i >= start; i--) {
+            computeRadiusNode(graph, layout, order.preorder[i]);
+        }
+    }
+
+    // Assumes the radii of the children of {node} have been computed.
+    private void computeRadiusNode(H3Graph graph,
+                                   HyperbolicLayout layout,
+                                   int node) {
         int childIndex = graph.getNodeChildIndex(node);
         int nontreeIndex = graph.getNodeNontreeIndex(node);
 
@@ -132,7 +479,6 @@ public class H3GraphLayout {
 
             while (childIndex < nontreeIndex) {
                 int child = graph.getLinkDestination(childIndex);
-                computeRadiiSubtree(graph, layout, child);
                 HA_p += computeCircleArea(layout.radius[child]);
 
                 ++childIndex;
@@ -155,41 +501,53 @@ public class H3GraphLayout {
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
-    private void computeAngles(H3Graph graph, HyperbolicLayout layout) {
-        Children children = new Children();
-        computeAnglesSubtree(graph, layout, children, graph.getRootNode(), 0);
+    private void computeAngles(H3Graph graph, HyperbolicLayout layout,
+                               SpanningTreeOrder order) {
+        computeAnglesRange(graph, layout, order, new Children(),
+                m_ternaryLayout, 0, order.numNodes);
     }
 
-    private void computeAnglesSubtree(H3Graph graph,
-                                      HyperbolicLayout layout,
-                                      Children children,
-                                      int node, int level) {
+    // Computes the angles of the children of the nodes in the preorder range
+    // [first, last).  The angles of the children of a node depend only on
+    // radii, so the nodes can be handled in any order.
+    private void computeAnglesRange(H3Graph graph,
+                                    HyperbolicLayout layout,
+                                    SpanningTreeOrder order,
+                                    Children children,
+                                    TernaryTreeLayout ternaryLayout,
+                                    int first, int last) {
+        for (int i = first; i < last; i++) {
+            int node = order.preorder[i];
+            if (graph.getNodeChildIndex(node)
+                    < graph.getNodeNontreeIndex(node)) {
+                computeAnglesChildren(graph, layout, children, ternaryLayout,
+                        node, order.depth[node]);
+            }
+        }
+    }
+
+    // Computes the angles of the children of {node}, which must have at
+    // least one child.  The radii of all the children must be known.
+    private void computeAnglesChildren(H3Graph graph,
+                                       HyperbolicLayout layout,
+                                       Children children,
+                                       TernaryTreeLayout ternaryLayout,
+                                       int node, int level) {
         int childIndex = graph.getNodeChildIndex(node);
         int nontreeIndex = graph.getNodeNontreeIndex(node);
 
-        if (childIndex < nontreeIndex) {
-            // We must handle all the children first (or last), so that
-            // there won't be any contention over the use of {children}.
-            {
-                for (int i = childIndex; i < nontreeIndex; i++) {
-                    int child = graph.getLinkDestination(i);
-                    computeAnglesSubtree
-                            (graph, layout, children, child, level + 1);
-                }
-            }
-
-            children.clear();
-            {
-                for (int i = childIndex; i < nontreeIndex; i++) {
-                    int child = graph.getLinkDestination(i);
-                    children.add(child, layout.radius[child]);
-                }
+        children.clear();
+        {
+            for (int i = childIndex; i < nontreeIndex; i++) {
+                int child = graph.getLinkDestination(i);
+                children.add(child, layout.radius[child]);
             }
-            children.sort();
-
-            //computeAnglesNode(graph, layout, children, node);
-            computeAnglesNode2(graph, layout, children, node, level);
         }
+        children.sort();
+
+        //computeAnglesNode(graph, layout, children, node);
+        computeAnglesNode2(graph, layout, children, ternaryLayout,
+                node, level);
     }
 
     private void computeAnglesNode(H3Graph graph,
@@ -200,45 +558,48 @@ public class H3GraphLayout {
 
         // Position the first child at the pole.
 
-        Children.Child first = children.getChild(0);
-        layout.theta[first.node] = 0.0;
-        layout.phi[first.node] = 0.0;
+        int first = children.getNode(0);
+        double firstRadius = children.getRadius(0);
+        layout.theta[first] = 0.0;
+        layout.phi[first] = 0.0;
 
         // Position the remaining children.
 
         int numChildren = children.getNumChildren();
         if (numChildren > 1) {
-            Children.Child second = children.getChild(1);
+            int second = children.getNode(1);
+            double secondRadius = children.getRadius(1);
 
             // deltaPhi: half the phi angle subtended by the current band
             // phi: the phi of the center of the current band
             // theta: the theta of the beginning of the current child
 
-            double deltaPhi = computeDeltaPhi(second.radius, rp);
-            double phi = computeDeltaPhi(first.radius, rp) + deltaPhi;
-            double theta = computeDeltaTheta(second.radius, rp, phi);
+            double deltaPhi = computeDeltaPhi(secondRadius, rp);
+            double phi = computeDeltaPhi(firstRadius, rp) + deltaPhi;
+            double theta = computeDeltaTheta(secondRadius, rp, phi);
 
-            layout.theta[second.node] = theta;
-            layout.phi[second.node] = phi;
+            layout.theta[second] = theta;
+            layout.phi[second] = phi;
 
             theta += theta;  // advance just past 2nd child
 
             for (int i = 2; i < numChildren; i++) {
-                Children.Child child = children.getChild(i);
-                double deltaTheta = computeDeltaTheta(child.radius, rp, phi);
+                int child = children.getNode(i);
+                double childRadius = children.getRadius(i);
+                double deltaTheta = computeDeltaTheta(childRadius, rp, phi);
                 double centerTheta = theta + deltaTheta;
 
                 if (centerTheta + deltaTheta > H3Math.TWO_PI) {
                     phi += deltaPhi;  // + half the angle of the current band
-                    deltaPhi = computeDeltaPhi(child.radius, rp);
+                    deltaPhi = computeDeltaPhi(childRadius, rp);
                     phi += deltaPhi;  // + half the angle of the next band
 
-                    deltaTheta = computeDeltaTheta(child.radius, rp, phi);
+                    deltaTheta = computeDeltaTheta(childRadius, rp, phi);
                     centerTheta = deltaTheta;
                 }
 
-                layout.theta[child.node] = centerTheta;
-                layout.phi[child.node] = phi;
+                layout.theta[child] = centerTheta;
+                layout.phi[child] = phi;
 
                 theta = centerTheta + deltaTheta;
             }
@@ -248,6 +609,7 @@ public class H3GraphLayout {
     private void computeAnglesNode2(H3Graph graph,
                                     HyperbolicLayout layout,
                                     Children children,
+                                    TernaryTreeLayout ternaryLayout,
                                     int node, int level) {
         final boolean SUBTREE_3_AVG = false;
         final boolean SUBTREE_3_CENTROID = true;
@@ -260,33 +622,37 @@ public class H3GraphLayout {
 
         // Position the first child at the pole.
 
-        Children.Child first = children.getChild(0);
-        layout.theta[first.node] = 0.0;
-        layout.phi[first.node] = 0.0;
+        int first = children.getNode(0);
+        double firstRadius = children.getRadius(0);
+        layout.theta[first] = 0.0;
+        layout.phi[first] = 0.0;
 
         // Position the remaining children.
 
         int numChildren = children.getNumChildren();
         if (numChildren == 2) {
-            Children.Child second = children.getChild(1);
+            int second = children.getNode(1);
+            double secondRadius = children.getRadius(1);
 
-            double firstPhi = computeDeltaPhi(first.radius, rp);
-            double secondPhi = computeDeltaPhi(second.radius, rp);
+            double firstPhi = computeDeltaPhi(firstRadius, rp);
+            double secondPhi = computeDeltaPhi(secondRadius, rp);
 
             double totalPhi = firstPhi + secondPhi;
-            layout.phi[first.node] = totalPhi - firstPhi;
-            layout.phi[second.node] = totalPhi - secondPhi;
+            layout.phi[first] = totalPhi - firstPhi;
+            layout.phi[second] = totalPhi - secondPhi;
 
             double twist = ((level % 2) == 0 ? 0.0 : Math.PI / 2.0);
-            layout.theta[first.node] = twist;
-            layout.theta[second.node] = Math.PI + twist;
+            layout.theta[first] = twist;
+            layout.theta[second] = Math.PI + twist;
         } else if (SUBTREE_3_AVG && numChildren == 3) {
-            Children.Child second = children.getChild(1);
-            Children.Child third = children.getChild(2);
+            int second = children.getNode(1);
+            double secondRadius = children.getRadius(1);
+            int third = children.getNode(2);
+            double thirdRadius = children.getRadius(2);
 
-            double dp1 = computeDeltaPhi(first.radius, rp);
-            double dp2 = computeDeltaPhi(second.radius, rp);
-            double dp3 = computeDeltaPhi(third.radius, rp);
+            double dp1 = computeDeltaPhi(firstRadius, rp);
+            double dp2 = computeDeltaPhi(secondRadius, rp);
+            double dp3 = computeDeltaPhi(thirdRadius, rp);
 
             // FUDGE * ((dp1 + dp2) / 2 + (dp1 + dp3) / 2) / 2; etc. for rest
             final double FUDGE = 1.0;
@@ -294,9 +660,9 @@ public class H3GraphLayout {
             double secondPhi = FUDGE * 0.25 * (2.0 * dp2 + dp3 + dp1);
             double thirdPhi = FUDGE * 0.25 * (2.0 * dp3 + dp1 + dp2);
 
-            double dt1 = computeDeltaTheta(first.radius, rp, dp1);
-            double dt2 = computeDeltaTheta(second.radius, rp, dp2);
-            double dt3 = computeDeltaTheta(third.radius, rp, dp3);
+            double dt1 = computeDeltaTheta(firstRadius, rp, dp1);
+            double dt2 = computeDeltaTheta(secondRadius, rp, dp2);
+            double dt3 = computeDeltaTheta(thirdRadius, rp, dp3);
 
             double excessTheta = 2.0 * (Math.PI - dt1 - dt2 - dt3) / 3.0;
 
@@ -304,38 +670,43 @@ public class H3GraphLayout {
             double secondTheta = firstTheta + dt1 + excessTheta + dt2;
             double thirdTheta = secondTheta + dt2 + excessTheta + dt3;
 
-            layout.phi[first.node] = firstPhi;
-            layout.theta[first.node] = firstTheta;
+            layout.phi[first] = firstPhi;
+            layout.theta[first] = firstTheta;
 
-            layout.phi[second.node] = secondPhi;
-            layout.theta[second.node] = secondTheta;
+            layout.phi[second] = secondPhi;
+            layout.theta[second] = secondTheta;
 
-            layout.phi[third.node] = thirdPhi;
-            layout.theta[third.node] = thirdTheta;
+            layout.phi[third] = thirdPhi;
+            layout.theta[third] = thirdTheta;
         } else if (SUBTREE_3_CENTROID && numChildren == 3) {
-            Children.Child second = children.getChild(1);
-            Children.Child third = children.getChild(2);
+            int second = children.getNode(1);
+            double secondRadius = children.getRadius(1);
+            int third = children.getNode(2);
+            double thirdRadius = children.getRadius(2);
 
-            m_ternaryLayout.computeLayout(rp, first.radius, second.radius,
-                    third.radius);
+            ternaryLayout.computeLayout(rp, firstRadius, secondRadius,
+                    thirdRadius);
 
-            layout.theta[first.node] = m_ternaryLayout.getThetaA();
-            layout.phi[first.node] = m_ternaryLayout.getPhiA();
+            layout.theta[first] = ternaryLayout.getThetaA();
+            layout.phi[first] = ternaryLayout.getPhiA();
 
-            layout.theta[second.node] = m_ternaryLayout.getThetaB();
-            layout.phi[second.node] = m_ternaryLayout.getPhiB();
+            layout.theta[second] = ternaryLayout.getThetaB();
+            layout.phi[second] = ternaryLayout.getPhiB();
 
-            layout.theta[third.node] = m_ternaryLayout.getThetaC();
-            layout.phi[third.node] = m_ternaryLayout.getPhiC();
+            layout.theta[third] = ternaryLayout.getThetaC();
+            layout.phi[third] = ternaryLayout.getPhiC();
         } else if (numChildren == 4) {
-            Children.Child second = children.getChild(1);
-            Children.Child third = children.getChild(2);
-            Children.Child fourth = children.getChild(3);
-
-            double dp1 = computeDeltaPhi(first.radius, rp);
-            double dp2 = computeDeltaPhi(second.radius, rp);
-            double dp3 = computeDeltaPhi(third.radius, rp);
-            double dp4 = computeDeltaPhi(fourth.radius, rp);
+            int second = children.getNode(1);
+            double secondRadius = children.getRadius(1);
+            int third = children.getNode(2);
+            double thirdRadius = children.getRadius(2);
+            int fourth = children.getNode(3);
+            double fourthRadius = children.getRadius(3);
+
+            double dp1 = computeDeltaPhi(firstRadius, rp);
+            double dp2 = computeDeltaPhi(secondRadius, rp);
+            double dp3 = computeDeltaPhi(thirdRadius, rp);
+            double dp4 = computeDeltaPhi(fourthRadius, rp);
 
             // FUDGE * ((dp1 + dp2)/2 + (dp1 + dp3)/2 + (dp1 + dp4)/2) / 3; etc
             final double FUDGE = 1.0;
@@ -344,10 +715,10 @@ public class H3GraphLayout {
             double thirdPhi = FUDGE * 0.1667 * (3.0 * dp3 + dp4 + dp1 + dp2);
             double fourthPhi = FUDGE * 0.1667 * (3.0 * dp4 + dp1 + dp2 + dp3);
 
-            double dt1 = computeDeltaTheta(first.radius, rp, dp1);
-            double dt2 = computeDeltaTheta(second.radius, rp, dp2);
-            double dt3 = computeDeltaTheta(third.radius, rp, dp3);
-            double dt4 = computeDeltaTheta(fourth.radius, rp, dp4);
+            double dt1 = computeDeltaTheta(firstRadius, rp, dp1);
+            double dt2 = computeDeltaTheta(secondRadius, rp, dp2);
+            double dt3 = computeDeltaTheta(thirdRadius, rp, dp3);
+            double dt4 = computeDeltaTheta(fourthRadius, rp, dp4);
 
             double excessTheta = 2.0 * (Math.PI - dt1 - dt2 - dt3 - dt4) / 4.0;
 
@@ -356,27 +727,29 @@ public class H3GraphLayout {
             double thirdTheta = secondTheta + dt2 + excessTheta + dt3;
             double fourthTheta = thirdTheta + dt3 + excessTheta + dt4;
 
-            layout.phi[first.node] = firstPhi;
-            layout.theta[first.node] = firstTheta;
+            layout.phi[first] = firstPhi;
+            layout.theta[first] = firstTheta;
 
-            layout.phi[second.node] = secondPhi;
-            layout.theta[second.node] = secondTheta;
+            layout.phi[second] = secondPhi;
+            layout.theta[second] = secondTheta;
 
-            layout.phi[third.node] = thirdPhi;
-            layout.theta[third.node] = thirdTheta;
+            layout.phi[third] = thirdPhi;
+            layout.theta[third] = thirdTheta;
 
-            layout.phi[fourth.node] = fourthPhi;
-            layout.theta[fourth.node] = fourthTheta;
+            layout.phi[fourth] = fourthPhi;
+            layout.theta[fourth] = fourthTheta;
         } else if (SUBTREE_MORE_4 && numChildren > 4) {
             double capBottomPhi = 0.0;
 
             if (SUBTREE_MORE_4_AVG) {
-                Children.Child second = children.getChild(1);
-                Children.Child third = children.getChild(2);
+                int second = children.getNode(1);
+                double secondRadius = children.getRadius(1);
+                int third = children.getNode(2);
+                double thirdRadius = children.getRadius(2);
 
-                double dp1 = computeDeltaPhi(first.radius, rp);
-                double dp2 = computeDeltaPhi(second.radius, rp);
-                double dp3 = computeDeltaPhi(third.radius, rp);
+                double dp1 = computeDeltaPhi(firstRadius, rp);
+                double dp2 = computeDeltaPhi(secondRadius, rp);
+                double dp3 = computeDeltaPhi(thirdRadius, rp);
 
                 // FUDGE * ((dp1 + dp2) / 2 + (dp1 + dp3) / 2) / 2; etc.
                 final double FUDGE = 1.0;
@@ -384,9 +757,9 @@ public class H3GraphLayout {
                 double secondPhi = FUDGE * 0.25 * (2.0 * dp2 + dp3 + dp1);
                 double thirdPhi = FUDGE * 0.25 * (2.0 * dp3 + dp1 + dp2);
 
-                double dt1 = computeDeltaTheta(first.radius, rp, dp1);
-                double dt2 = computeDeltaTheta(second.radius, rp, dp2);
-                double dt3 = computeDeltaTheta(third.radius, rp, dp3);
+                double dt1 = computeDeltaTheta(firstRadius, rp, dp1);
+                double dt2 = computeDeltaTheta(secondRadius, rp, dp2);
+                double dt3 = computeDeltaTheta(thirdRadius, rp, dp3);
 
                 double excessTheta = 2.0 * (Math.PI - dt1 - dt2 - dt3) / 3.0;
 
@@ -394,55 +767,58 @@ public class H3GraphLayout {
                 double secondTheta = firstTheta + dt1 + excessTheta + dt2;
                 double thirdTheta = secondTheta + dt2 + excessTheta + dt3;
 
-                layout.phi[first.node] = firstPhi;
-                layout.theta[first.node] = firstTheta;
+                layout.phi[first] = firstPhi;
+                layout.theta[first] = firstTheta;
 
-                layout.phi[second.node] = secondPhi;
-                layout.theta[second.node] = secondTheta;
+                layout.phi[second] = secondPhi;
+                layout.theta[second] = secondTheta;
 
-                layout.phi[third.node] = thirdPhi;
-                layout.theta[third.node] = thirdTheta;
+                layout.phi[third] = thirdPhi;
+                layout.theta[third] = thirdTheta;
 
                 capBottomPhi = Math.max(firstPhi + dp1,
                         Math.max(secondPhi + dp2,
                                 thirdPhi + dp3));
             } else if (SUBTREE_MORE_4_CENTROID) {
-                Children.Child second = children.getChild(1);
-                Children.Child third = children.getChild(2);
+                int second = children.getNode(1);
+                double secondRadius = children.getRadius(1);
+                int third = children.getNode(2);
+                double thirdRadius = children.getRadius(2);
 
-                m_ternaryLayout.computeLayout(rp, first.radius, second.radius,
-                        third.radius);
+                ternaryLayout.computeLayout(rp, firstRadius, secondRadius,
+                        thirdRadius);
 
-                layout.theta[first.node] = m_ternaryLayout.getThetaA();
-                layout.phi[first.node] = m_ternaryLayout.getPhiA();
+                layout.theta[first] = ternaryLayout.getThetaA();
+                layout.phi[first] = ternaryLayout.getPhiA();
 
-                layout.theta[second.node] = m_ternaryLayout.getThetaB();
-                layout.phi[second.node] = m_ternaryLayout.getPhiB();
+                layout.theta[second] = ternaryLayout.getThetaB();
+                layout.phi[second] = ternaryLayout.getPhiB();
 
-                layout.theta[third.node] = m_ternaryLayout.getThetaC();
-                layout.phi[third.node] = m_ternaryLayout.getPhiC();
+                layout.theta[third] = ternaryLayout.getThetaC();
+                layout.phi[third] = ternaryLayout.getPhiC();
 
-                double dp1 = computeDeltaPhi(first.radius, rp);
-                double dp2 = computeDeltaPhi(second.radius, rp);
-                double dp3 = computeDeltaPhi(third.radius, rp);
+                double dp1 = computeDeltaPhi(firstRadius, rp);
+                double dp2 = computeDeltaPhi(secondRadius, rp);
+                double dp3 = computeDeltaPhi(thirdRadius, rp);
 
-                capBottomPhi = Math.max(layout.phi[first.node] + dp1,
-                        Math.max(layout.phi[second.node] + dp2,
-                                layout.phi[third.node] + dp3));
+                capBottomPhi = Math.max(layout.phi[first] + dp1,
+                        Math.max(layout.phi[second] + dp2,
+                                layout.phi[third] + dp3));
             }
 
-            Children.Child fourth = children.getChild(3);
+            int fourth = children.getNode(3);
+            double fourthRadius = children.getRadius(3);
 
             // deltaPhi: half the phi angle subtended by the current band
             // phi: the phi of the center of the current band
             // theta: the theta of the beginning of the current child
 
-            double deltaPhi = computeDeltaPhi(fourth.radius, rp);
+            double deltaPhi = computeDeltaPhi(fourthRadius, rp);
             double phi = capBottomPhi + deltaPhi;
-            double theta = computeDeltaTheta(fourth.radius, rp, phi);
+            double theta = computeDeltaTheta(fourthRadius, rp, phi);
 
-            layout.theta[fourth.node] = theta;
-            layout.phi[fourth.node] = phi;
+            layout.theta[fourth] = theta;
+            layout.phi[fourth] = phi;
 
             theta += theta;  // advance just past 4th child
 
@@ -450,8 +826,9 @@ public class H3GraphLayout {
 
             int firstChildInBand = 3;
             for (int i = 4; i < numChildren; i++) {
-                Children.Child child = children.getChild(i);
-                double deltaTheta = computeDeltaTheta(child.radius, rp, phi);
+                int child = children.getNode(i);
+                double childRadius = children.getRadius(i);
+                double deltaTheta = computeDeltaTheta(childRadius, rp, phi);
                 double centerTheta = theta + deltaTheta;
 
                 if (centerTheta + deltaTheta > H3Math.TWO_PI) {
@@ -465,18 +842,18 @@ public class H3GraphLayout {
                     // Move to the next band. - - - - - - - - - - - - - - - -
 
                     phi += deltaPhi;  // + half the angle of the current band
-                    deltaPhi = computeDeltaPhi(child.radius, rp);
+                    deltaPhi = computeDeltaPhi(childRadius, rp);
                     phi += deltaPhi;  // + half the angle of the next band
 
-                    deltaTheta = computeDeltaTheta(child.radius, rp, phi);
+                    deltaTheta = computeDeltaTheta(childRadius, rp, phi);
                     centerTheta = deltaTheta;
                     firstChildInBand = i;
 
                     positiveTheta = !positiveTheta;
                 }
 
-                layout.theta[child.node] = centerTheta;
-                layout.phi[child.node] = phi;
+                layout.theta[child] = centerTheta;
+                layout.phi[child] = phi;
 
                 theta = centerTheta + deltaTheta;
             }
@@ -488,25 +865,27 @@ public class H3GraphLayout {
                     firstChildInBand, numChildren - 1, excess,
                     positiveTheta);
         } else if (!SUBTREE_MORE_4 && numChildren > 4) {
-            Children.Child second = children.getChild(1);
+            int second = children.getNode(1);
+            double secondRadius = children.getRadius(1);
 
             // deltaPhi: half the phi angle subtended by the current band
             // phi: the phi of the center of the current band
             // theta: the theta of the beginning of the current child
 
-            double deltaPhi = computeDeltaPhi(second.radius, rp);
-            double phi = computeDeltaPhi(first.radius, rp) + deltaPhi;
-            double theta = computeDeltaTheta(second.radius, rp, phi);
+            double deltaPhi = computeDeltaPhi(secondRadius, rp);
+            double phi = computeDeltaPhi(firstRadius, rp) + deltaPhi;
+            double theta = computeDeltaTheta(secondRadius, rp, phi);
 
-            layout.theta[second.node] = theta;
-            layout.phi[second.node] = phi;
+            layout.theta[second] = theta;
+            layout.phi[second] = phi;
 
             theta += theta;  // advance just past 2nd child
 
             int firstChildInBand = 1;
             for (int i = 2; i < numChildren; i++) {
-                Children.Child child = children.getChild(i);
-                double deltaTheta = computeDeltaTheta(child.radius, rp, phi);
+                int child = children.getNode(i);
+                double childRadius = children.getRadius(i);
+                double deltaTheta = computeDeltaTheta(childRadius, rp, phi);
                 double centerTheta = theta + deltaTheta;
 
                 if (centerTheta + deltaTheta > H3Math.TWO_PI) {
@@ -519,16 +898,16 @@ public class H3GraphLayout {
                     // Move to the next band. - - - - - - - - - - - - - - - -
 
                     phi += deltaPhi;  // + half the angle of the current band
-                    deltaPhi = computeDeltaPhi(child.radius, rp);
+                    deltaPhi = computeDeltaPhi(childRadius, rp);
                     phi += deltaPhi;  // + half the angle of the next band
 
-                    deltaTheta = computeDeltaTheta(child.radius, rp, phi);
+                    deltaTheta = computeDeltaTheta(childRadius, rp, phi);
                     centerTheta = deltaTheta;
                     firstChildInBand = i;
                 }
 
-                layout.theta[child.node] = centerTheta;
-                layout.phi[child.node] = phi;
+                layout.theta[child] = centerTheta;
+                layout.phi[child] = phi;
 
                 theta = centerTheta + deltaTheta;
             }
@@ -550,12 +929,11 @@ public class H3GraphLayout {
         for (int i = 1; i < total; i++) {
             double delta = i * excess / total;
 
-            Children.Child child = children.getChild(first + i);
-            layout.theta[child.node] += delta;
+            int child = children.getNode(first + i);
+            layout.theta[child] += delta;
 
             if (false && !positiveTheta) {
-                layout.theta[child.node] =
-                        H3Math.TWO_PI - layout.theta[child.node];
+                layout.theta[child] = H3Math.TWO_PI - layout.theta[child];
             }
         }
     }
@@ -568,8 +946,8 @@ public class H3GraphLayout {
         for (int i = 1; i < total; i++) {
             double delta = i * excess / total;
 
-            Children.Child child = children.getChild(first + i);
-            layout.theta[child.node] += delta;
+            int child = children.getNode(first + i);
+            layout.theta[child] += delta;
         }
     }
 
@@ -592,81 +970,166 @@ public class H3GraphLayout {
         computeCoordinatesSubtree(graph, layout, H3Transform.I4, rootNode);
     }
 
+    // Computes the coordinates of the subtree below {parent}, whose own
+    // coordinate system is given by {parentTransform}.
     private void computeCoordinatesSubtree(H3Graph graph,
                                            HyperbolicLayout layout,
                                            Matrix4d parentTransform,
                                            int parent) {
-        int childIndex = graph.getNodeChildIndex(parent);
-        int nontreeIndex = graph.getNodeNontreeIndex(parent);
-
-        if (childIndex < nontreeIndex) {
-            double parentRadiusE =
-                    H3Math.euclideanDistance(layout.radius[parent]);
-
-            double lastPhi = 0.0;
-            Matrix4d rotPhi = H3Transform.I4;
-
-            Point4d childCenterAbsolute = new Point4d();
-            Point4d childPoleAbsolute = new Point4d();
-
-            for (int i = childIndex; i < nontreeIndex; i++) {
-                int child = graph.getLinkDestination(i);
-
-                double childRadiusE =
-                        H3Math.euclideanDistance(layout.radius[child]);
-
-                double childPhi = layout.phi[child];
-                if (childPhi != lastPhi) {
-                    lastPhi = childPhi;
-                    rotPhi = H3Transform.buildZRotation(childPhi);
-                }
-
-                Matrix4d rot = H3Transform.buildXRotation(layout.theta[child]);
-
-                rot.mul(rotPhi);
-
-                // compute child's center relative to parent's coord system
-                childCenterAbsolute.set(parentRadiusE, 0.0, 0.0, 1.0);
-                rot.transform(childCenterAbsolute);
+        computeCoordinatesSubtree(graph, layout, parentTransform, parent,
+                new CoordinatesStack(), new CoordinatesScratch());
+    }
 
-                // compute child's pole relative to parent's coordinate system
-                double childPoleE =
-                        H3Math.euclideanDistance(layout.radius[parent]
-                                + layout.radius[child]);
+    // Does the same, reusing the given (empty) stack and scratch objects,
+    // so that the walk itself allocates nothing once the stack has grown
+    // to the depth of the subtree.  {parentTransform} is copied, and so
+    // may be the childTransform of {scratch}.
+    private void computeCoordinatesSubtree(H3Graph graph,
+                                           HyperbolicLayout layout,
+                                           Matrix4d parentTransform,
+                                           int parent,
+                                           CoordinatesStack stack,
+                                           CoordinatesScratch scratch) {
+        stack.pushCopyIfParent(graph, layout, parent, parentTransform);
+
+        while (!stack.isEmpty()) {
+            int node = stack.getNode();
+            Matrix4d transform = (Matrix4d) stack.getTransform();
+            double parentRadiusE = stack.getRadiusE();
+            int child = stack.nextChild(graph, layout);
+            Matrix4d rotPhi = stack.getRotPhi();
+            stack.popIfDone(graph);
+
+            // The transform of a popped frame stays valid until the next
+            // push, which happens only after it has been used here.
+            computeChildCoordinates(graph, layout, transform, parentRadiusE,
+                    node, child, rotPhi, scratch);
+
+            Matrix4d childTransform = scratch.childTransform;
+            if (!ATTEMPT_EXTENDED || H3Math.isFinite(childTransform)) {
+                stack.pushCopyIfParent(graph, layout, child, childTransform);
+            } else {
+                computeCoordinatesSubtreeExtended
+                        (graph, layout, child,
+                                scratch.childCenterAbsolute,
+                                scratch.childPoleAbsolute);
+            }
+        }
+    }
 
-                childPoleAbsolute.set(childPoleE, 0.0, 0.0, 1.0);
-                rot.transform(childPoleAbsolute);
+    // Computes the layout coordinates of {child} from the coordinate system
+    // of its parent, and stores the transform of the child's own coordinate
+    // system in the childTransform of {scratch}.  {rotPhi} must be the Z
+    // rotation by the phi of the child.
+    //
+    // On return, the childCenterAbsolute and childPoleAbsolute of {scratch}
+    // hold the absolute center and pole of the child.
+    private void computeChildCoordinates(H3Graph graph,
+                                         HyperbolicLayout layout,
+                                         Matrix4d parentTransform,
+                                         double parentRadiusE,
+                                         int parent, int child,
+                                         Matrix4d rotPhi,
+                                         CoordinatesScratch scratch) {
+        Point4d childCenterAbsolute = scratch.childCenterAbsolute;
+        Point4d childPoleAbsolute = scratch.childPoleAbsolute;
+
+        Matrix4d rot = scratch.rot;
+        H3Transform.buildXRotation(layout.theta[child], rot);
+
+        rot.mul(rotPhi);
+
+        // compute child's center relative to parent's coord system
+        childCenterAbsolute.set(parentRadiusE, 0.0, 0.0, 1.0);
+        rot.transform(childCenterAbsolute);
+
+        // compute child's pole relative to parent's coordinate system
+        double childPoleE =
+                H3Math.euclideanDistance(layout.radius[parent]
+                        + layout.radius[child]);
+
+        childPoleAbsolute.set(childPoleE, 0.0, 0.0, 1.0);
+        rot.transform(childPoleAbsolute);
+
+        parentTransform.transform(childCenterAbsolute);
+        parentTransform.transform(childPoleAbsolute);
+
+        graph.setNodeLayoutCoordinates(child, childCenterAbsolute);
+
+        H3Transform.buildCanonicalOrientation(childCenterAbsolute,
+                childPoleAbsolute, scratch.childTransform, scratch.workspace);
+    }
 
-                parentTransform.transform(childCenterAbsolute);
-                parentTransform.transform(childPoleAbsolute);
+    // Records the placement of each node relative to its parent, and
+    // composes these placements down the preorder to get the layout
+    // coordinates.  A child lies at hyperbolic distance radius[parent] / 2
+    // from its parent, which puts it at the same spot in the parent's
+    // coordinate system as computeChildCoordinates() does.  The subtree of
+    // the child is rotated about the axis from the parent to the child,
+    // however, so only the children of the root keep their coordinates.
+    private void computeRelativePlacements(H3Graph graph,
+                                           HyperbolicLayout layout,
+                                           SpanningTreeOrder order) {
+        int rootNode = graph.getRootNode();
+        graph.setNodeRelativePlacement(rootNode, 0.0, 0.0, 0.0);
+        graph.setNodeLayoutCoordinates(rootNode, H3Transform.ORIGIN4);
 
-                graph.setNodeLayoutCoordinates(child, childCenterAbsolute);
+        // In preorder, the coordinate systems of the ancestors of a node
+        // are always at hand in {frames}, indexed by depth.
+        Matrix4d[] frames = new Matrix4d[64];
+        frames[0] = new Matrix4d(H3Transform.I4);
 
-                Matrix4d childTransform = H3Transform
-                        .buildCanonicalOrientation(childCenterAbsolute,
-                                childPoleAbsolute);
+        Matrix4d relativeFrame = new Matrix4d();
+        int numPlaced = 0;
+        for (int i = 1; i < order.numNodes; i++) {
+            int node = order.preorder[i];
+            int depth = order.depth[node];
 
-                if (!ATTEMPT_EXTENDED || H3Math.isFinite(childTransform)) {
-                    computeCoordinatesSubtree(graph, layout,
-                            childTransform, child);
-                } else {
-                    System.out.println("Switching to extended precision"
-                            + " for subtree at node " + child);
+            int parent = graph.getNodeParent(node);
+            graph.setNodeRelativePlacement(node, layout.radius[parent] / 2.0,
+                    layout.theta[node], layout.phi[node]);
+            graph.getNodeRelativeFrame(node, relativeFrame);
 
-                    H3Point4d childCenterAbsoluteMP =
-                            new H3Point4d(childCenterAbsolute);
-                    H3Point4d childPoleAbsoluteMP =
-                            new H3Point4d(childPoleAbsolute);
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, 2 * depth);
+            }
+            if (frames[depth] == null) {
+                frames[depth] = new Matrix4d();
+            }
+            Matrix4d frame = frames[depth];
+            frame.mul(frames[depth - 1], relativeFrame);
 
-                    H3Matrix4d childTransformMP = H3Transform
-                            .buildCanonicalOrientation(childCenterAbsoluteMP,
-                                    childPoleAbsoluteMP);
+            graph.setNodeLayoutCoordinates(node, frame.m03, frame.m13,
+                    frame.m23, frame.m33);
 
-                    computeCoordinatesSubtreeMP(graph, layout,
-                            childTransformMP, child);
-                }
+            if (++numPlaced == PROGRESS_NODES) {
+                m_phase.advance(numPlaced);
+                m_phase.checkCancelled();
+                numPlaced = 0;
             }
         }
+        m_phase.advance(numPlaced);
+    }
+
+    private void computeCoordinatesSubtreeExtended(H3Graph graph,
+                                                   HyperbolicLayout layout,
+                                                   int child,
+                                                   Point4d childCenterAbsolute,
+                                                   Point4d childPoleAbsolute) {
+        System.out.println("Switching to extended precision"
+                + " for subtree at node " + child);
+
+        H3Point4d childCenterAbsoluteMP =
+                new H3Point4d(childCenterAbsolute);
+        H3Point4d childPoleAbsoluteMP =
+                new H3Point4d(childPoleAbsolute);
+
+        H3Matrix4d childTransformMP = H3Transform
+                .buildCanonicalOrientation(childCenterAbsoluteMP,
+                        childPoleAbsoluteMP);
+
+        computeCoordinatesSubtreeMP(graph, layout,
+                childTransformMP, child);
     }
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
@@ -686,69 +1149,79 @@ public class H3GraphLayout {
                                              HyperbolicLayout layout,
                                              H3Matrix4d parentTransform,
                                              int parent) {
-        int childIndex = graph.getNodeChildIndex(parent);
-        int nontreeIndex = graph.getNodeNontreeIndex(parent);
+        CoordinatesStack stack = new CoordinatesStack();
+        stack.pushIfParent(graph, layout, parent, parentTransform);
 
-        if (childIndex < nontreeIndex) {
-            double parentRadiusE =
-                    H3Math.euclideanDistance(layout.radius[parent]);
+        Point4d p = new Point4d();
 
-            double lastPhi = 0.0;
-            Matrix4d rotPhi = H3Transform.I4;
+        H3Point4d childCenterAbsoluteMP = new H3Point4d();
+        H3Point4d childPoleAbsoluteMP = new H3Point4d();
 
-            Point4d childCenterAbsolute = new Point4d();
-            Point4d childPoleAbsolute = new Point4d();
-            Point4d p = new Point4d();
+        DoubleDouble cosTheta = new DoubleDouble();
+        DoubleDouble sinTheta = new DoubleDouble();
+        DoubleDouble cosPhi = new DoubleDouble();
+        DoubleDouble sinPhi = new DoubleDouble();
+        DoubleDouble distanceE = new DoubleDouble();
 
-            H3Point4d childCenterAbsoluteMP = new H3Point4d();
-            H3Point4d childPoleAbsoluteMP = new H3Point4d();
+        H3Matrix4d childTransform = new H3Matrix4d();
+        H3Transform.WorkspaceMP workspace = new H3Transform.WorkspaceMP();
 
-            for (int i = childIndex; i < nontreeIndex; i++) {
-                int child = graph.getLinkDestination(i);
-
-                double childRadiusE =
-                        H3Math.euclideanDistance(layout.radius[child]);
-
-                double childPhi = layout.phi[child];
-                if (childPhi != lastPhi) {
-                    lastPhi = childPhi;
-                    rotPhi = H3Transform.buildZRotation(childPhi);
-                }
+        int numChildren = 0;
+        while (!stack.isEmpty()) {
+            int node = stack.getNode();
+            H3Matrix4d transform = (H3Matrix4d) stack.getTransform();
+            int child = stack.nextChild(graph, layout);
+            stack.popIfDone(graph);
 
-                Matrix4d rot = H3Transform.buildXRotation(layout.theta[child]);
-                rot.mul(rotPhi);
-
-                // compute child's center relative to parent's coord system
-                childCenterAbsolute.set(parentRadiusE, 0.0, 0.0, 1.0);
-                rot.transform(childCenterAbsolute);
+            if (++numChildren == PROGRESS_NODES) {
+                m_phase.advance(numChildren);
+                numChildren = 0;
+            }
 
-                // compute child's pole relative to parent's coordinate system
-                double childPoleE =
-                        H3Math.euclideanDistance(layout.radius[parent]
-                                + layout.radius[child]);
+            // The positions relative to the parent are computed in
+            // extended precision as well, from the rotation
+            // Rx(theta) * Rz(phi) applied to points on the x-axis.
+            cosTheta.set(layout.theta[child]).cos();
+            sinTheta.set(layout.theta[child]).sin();
+            cosPhi.set(layout.phi[child]).cos();
+            sinPhi.set(layout.phi[child]).sin();
 
-                childPoleAbsolute.set(childPoleE, 0.0, 0.0, 1.0);
-                rot.transform(childPoleAbsolute);
+            // compute child's center relative to parent's coord system
+            H3Math.euclideanDistance(layout.radius[node], distanceE);
+            setRotatedPoint(childCenterAbsoluteMP, distanceE,
+                    cosTheta, sinTheta, cosPhi, sinPhi);
 
-                childCenterAbsoluteMP.set(childCenterAbsolute);
-                childPoleAbsoluteMP.set(childPoleAbsolute);
+            // compute child's pole relative to parent's coordinate system
+            H3Math.euclideanDistance(layout.radius[node]
+                    + layout.radius[child], distanceE);
+            setRotatedPoint(childPoleAbsoluteMP, distanceE,
+                    cosTheta, sinTheta, cosPhi, sinPhi);
 
-                parentTransform.transform(childCenterAbsoluteMP);
-                parentTransform.transform(childPoleAbsoluteMP);
+            transform.transform(childCenterAbsoluteMP);
+            transform.transform(childPoleAbsoluteMP);
 
-                convertToDoubleCoordinates(p, childCenterAbsoluteMP);
-                graph.setNodeLayoutCoordinates(child, p);
+            convertToDoubleCoordinates(p, childCenterAbsoluteMP);
+            graph.setNodeLayoutCoordinates(child, p);
 
-                H3Matrix4d childTransform = H3Transform
-                        .buildCanonicalOrientation(childCenterAbsoluteMP,
-                                childPoleAbsoluteMP);
+            H3Transform.buildCanonicalOrientation(childCenterAbsoluteMP,
+                    childPoleAbsoluteMP, childTransform, workspace);
 
-                computeCoordinatesSubtreeMP(graph, layout,
-                        childTransform, child);
-            }
+            stack.pushCopyIfParent(graph, layout, child, childTransform);
         }
     }
 
+    // Sets {p} to Rx(theta) * Rz(phi) * (distance, 0, 0, 1).
+    private static void setRotatedPoint(H3Point4d p, DoubleDouble distance,
+                                        DoubleDouble cosTheta,
+                                        DoubleDouble sinTheta,
+                                        DoubleDouble cosPhi,
+                                        DoubleDouble sinPhi) {
+        p.x.set(distance).multiply(cosPhi);
+        p.y.set(distance).multiply(sinPhi).multiply(cosTheta);
+        p.z.set(distance).multiply(sinPhi).multiply(sinTheta);
+        p.w.set(1.0);
+    }
+
     private void convertToDoubleCoordinates(Point4d lhs, H3Point4d rhs) {
         lhs.x = rhs.x.doubleValue();
         lhs.y = rhs.y.doubleValue();
@@ -756,6 +1229,434 @@ public class H3GraphLayout {
         lhs.w = rhs.w.doubleValue();
     }
 
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS (parallel hyperbolic layout)
+    ////////////////////////////////////////////////////////////////////////
+
+    // The parallel layout performs exactly the same floating-point
+    // operations as the sequential layout, just not in the same order across
+    // subtrees, so the resulting coordinates are identical.
+    //
+    // Only the double-precision coordinate pass is run in parallel.  The
+    // extended-precision pass (requested up front or through
+    // retryHyperbolicLayout()) is still run sequentially.
+    private void layoutHyperbolicParallel(H3Graph graph,
+                                          HyperbolicLayout layout,
+                                          boolean useExtendedPrecision) {
+        ForkJoinPool pool = new ForkJoinPool(m_parallelism);
+        try {
+            SpanningTreeOrder order = new SpanningTreeOrder(graph);
+            layout.depth = order.depth;
+
+            computeRadiiParallel(pool, graph, layout, order);
+            m_phase.checkCancelled();
+            pool.invoke(new AnglesTask(graph, layout, order,
+                    0, order.numNodes));
+            m_phase.checkCancelled();
+
+            if (useExtendedPrecision) {
+                computeCoordinatesMP(graph, layout);
+            } else {
+                computeCoordinatesParallel(pool, graph, layout, order);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Nodes with subtrees of at least PARALLEL_THRESHOLD nodes are "large".
+    // The small subtrees hanging off large nodes are independent of each
+    // other, so their radii are computed concurrently first.  Then the
+    // large nodes, which are comparatively few in any reasonably bushy
+    // tree, are finished off sequentially in reverse preorder.
+    private void computeRadiiParallel(ForkJoinPool pool, H3Graph graph,
+                                      HyperbolicLayout layout,
+                                      SpanningTreeOrder order) {
+        int rootNode = graph.getRootNode();
+        if (!checkLargeSubtree(order, rootNode)) {
+            computeRadiiSubtree(graph, layout, order, rootNode);
+            return;
+        }
+
+        int[] largeNodes = new int[16];
+        int numLargeNodes = 0;
+
+        int[] runs = new int[16];
+        int numRuns = 0;
+
+        for (int i = 0; i < order.numNodes; i++) {
+            int node = order.preorder[i];
+            if (checkLargeSubtree(order, node)) {
+                if (numLargeNodes == largeNodes.length) {
+                    largeNodes = Arrays.copyOf(largeNodes, 2 * numLargeNodes);
+                }
+                largeNodes[numLargeNodes++] = node;
+
+                int[] nodeRuns = partitionChildLinks(graph, order,
+                        graph.getNodeChildIndex(node),
+                        graph.getNodeNontreeIndex(node));
+                for (int j = 0; j < nodeRuns.length - 1; j++) {
+                    int child = graph.getLinkDestination(nodeRuns[j]);
+                    if (!checkLargeSubtree(order, child)) {
+                        if (numRuns + 2 > runs.length) {
+                            runs = Arrays.copyOf(runs, 2 * runs.length);
+                        }
+                        runs[numRuns++] = nodeRuns[j];
+                        runs[numRuns++] = nodeRuns[j + 1];
+                    }
+                }
+            }
+        }
+
+        pool.invoke(new RadiiTask(graph, layout, order, runs,
+                0, numRuns / 2));
+
+        for (int i = numLargeNodes - 1; i >= 0; i--) {
+            computeRadiusNode(graph, layout, largeNodes[i]);
+        }
+    }
+
+    private void computeCoordinatesParallel(ForkJoinPool pool, H3Graph graph,
+                                            HyperbolicLayout layout,
+                                            SpanningTreeOrder order) {
+        // The root node is always positioned at the origin.
+        int rootNode = graph.getRootNode();
+        graph.setNodeLayoutCoordinates(rootNode, H3Transform.ORIGIN4);
+
+        if (checkLargeSubtree(order, rootNode)) {
+            pool.invoke(new CoordinatesTask(null, graph, layout, order,
+                    H3Transform.I4, rootNode, -1, -1));
+        } else {
+            computeCoordinatesSubtree(graph, layout, H3Transform.I4,
+                    rootNode);
+        }
+    }
+
+    // Partitions the child links [start, end) of a node into runs to be
+    // handed to separate tasks.  A child with a large subtree gets a run of
+    // its own; consecutive smaller subtrees are batched until together they
+    // reach PARALLEL_THRESHOLD nodes.
+    //
+    // Returns the boundaries of the runs: run k is [retval[k], retval[k+1]).
+    private static int[] partitionChildLinks(H3Graph graph,
+                                             SpanningTreeOrder order,
+                                             int start, int end) {
+        int[] retval = new int[end - start + 1];
+        int numBoundaries = 0;
+
+        retval[numBoundaries++] = start;
+
+        int batchSize = 0;
+        for (int i = start; i < end; i++) {
+            int size = order.subtreeSize[graph.getLinkDestination(i)];
+            if (size >= PARALLEL_THRESHOLD) {
+                if (batchSize > 0) {
+                    retval[numBoundaries++] = i;
+                    batchSize = 0;
+                }
+                retval[numBoundaries++] = i + 1;
+            } else {
+                batchSize += size;
+                if (batchSize >= PARALLEL_THRESHOLD) {
+                    retval[numBoundaries++] = i + 1;
+                    batchSize = 0;
+                }
+            }
+        }
+
+        if (batchSize > 0) {
+            retval[numBoundaries++] = end;
+        }
+
+        return Arrays.copyOf(retval, numBoundaries);
+    }
+
+    private static boolean checkLargeSubtree(SpanningTreeOrder order,
+                                             int node) {
+        return order.subtreeSize[node] >= PARALLEL_THRESHOLD;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS (incremental hyperbolic layout)
+    ////////////////////////////////////////////////////////////////////////
+
+    // Each step of the update marks the nodes it finds affected (see
+    // NodeMarks), so that the next step only visits those.
+    private void updateHyperbolicLayoutPhase(H3Graph graph,
+                                             HyperbolicLayout layout,
+                                             int[] nodes, int[] parents) {
+        long startTime = 0;
+        if (DEBUG_PRINT) {
+            startTime = System.currentTimeMillis();
+            System.out.println("updateHyperbolicLayout.begin["
+                    + startTime + "]");
+        }
+
+        int numNodes = graph.getNumNodes();
+        if (layout.marks == null) {
+            layout.marks = new NodeMarks(numNodes);
+        }
+        NodeMarks marks = layout.marks;
+        marks.clear();
+
+        // The children of the old and new parents are the ones that change.
+        int[] changedNodes = new int[2 * nodes.length];
+        int numChanged = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            int oldParent = graph.reparentNode(nodes[i], parents[i]);
+            if (marks.setFlags(oldParent, NodeMarks.CHANGED)) {
+                changedNodes[numChanged++] = oldParent;
+            }
+            if (marks.setFlags(parents[i], NodeMarks.CHANGED)) {
+                changedNodes[numChanged++] = parents[i];
+            }
+        }
+        changedNodes = Arrays.copyOf(changedNodes, numChanged);
+
+        NodeList angleNodes = new NodeList();
+        updateDepths(graph, layout, changedNodes, marks, angleNodes);
+        m_phase.checkCancelled();
+
+        updateRadii(graph, layout, changedNodes, marks, angleNodes);
+        m_phase.checkCancelled();
+
+        NodeList moved = new NodeList();
+        updateAngles(graph, layout, angleNodes, marks, moved);
+        m_phase.checkCancelled();
+
+        if (graph.hasRelativeLayout()) {
+            for (int i = 0; i < moved.size(); i++) {
+                setRelativePlacement(graph, layout, moved.get(i));
+            }
+        } else {
+            updateCoordinates(graph, layout, marks, moved);
+        }
+
+        if (DEBUG_PRINT) {
+            long stopTime = System.currentTimeMillis();
+            long duration = stopTime - startTime;
+            System.out.println("updateHyperbolicLayout.end[" + stopTime + "]");
+            System.out.println("updateHyperbolicLayout.time["
+                    + duration + "]");
+        }
+    }
+
+    // Brings the depths up to date.  A node can only change depth along
+    // with an ancestor (or itself) that has moved to a changed node, so only
+    // the subtrees of such moved children are visited.  The nodes whose
+    // depth changes parity, and that have children, are marked ANGLES and
+    // added to {angleNodes}, since the ternary layout of the children of a
+    // node twists with the parity of its depth.
+    private void updateDepths(H3Graph graph, HyperbolicLayout layout,
+                              int[] changedNodes, NodeMarks marks,
+                              NodeList angleNodes) {
+        int[] stack = new int[64];
+        for (int i = 0; i < changedNodes.length; i++) {
+            int node = changedNodes[i];
+
+            // The stored depth of {node} may itself be out of date.
+            int depth = 0;
+            for (int x = graph.getNodeParent(node); x != -1;
+                 x = graph.getNodeParent(x)) {
+                ++depth;
+            }
+
+            int childIndex = graph.getNodeChildIndex(node);
+            int nontreeIndex = graph.getNodeNontreeIndex(node);
+            for (int j = childIndex; j < nontreeIndex; j++) {
+                int child = graph.getLinkDestination(j);
+                if (layout.depth[child] == depth + 1) {
+                    continue;
+                }
+
+                // Each node is updated after its parent, so it can take
+                // its new depth from the parent.
+                int top = 0;
+                stack[top++] = child;
+                while (top > 0) {
+                    int x = stack[--top];
+                    int xDepth = (x == child ? depth + 1
+                            : layout.depth[graph.getNodeParent(x)] + 1);
+
+                    int xChildIndex = graph.getNodeChildIndex(x);
+                    int xNontreeIndex = graph.getNodeNontreeIndex(x);
+                    if (xChildIndex < xNontreeIndex
+                            && (layout.depth[x] - xDepth) % 2 != 0
+                            && marks.setFlags(x, NodeMarks.ANGLES)) {
+                        angleNodes.add(x);
+                    }
+                    layout.depth[x] = xDepth;
+
+                    int numChildren = xNontreeIndex - xChildIndex;
+                    if (top + numChildren > stack.length) {
+                        stack = Arrays.copyOf(stack,
+                                Math.max(2 * stack.length,
+                                        top + numChildren));
+                    }
+                    for (int k = xChildIndex; k < xNontreeIndex; k++) {
+                        stack[top++] = graph.getLinkDestination(k);
+                    }
+                }
+            }
+        }
+    }
+
+    // Recomputes the radii of the changed nodes and all their ancestors,
+    // deepest first, marking them DIRTY, and RADIUS_CHANGED where the
+    // radius came out different.  The dirty nodes with children are
+    // marked ANGLES and added to {angleNodes}, since the radii of their
+    // children, or the children themselves, may have changed.
+    private void updateRadii(H3Graph graph, HyperbolicLayout layout,
+                             int[] changedNodes, NodeMarks marks,
+                             NodeList angleNodes) {
+        NodeList dirty = new NodeList();
+        for (int i = 0; i < changedNodes.length; i++) {
+            for (int x = changedNodes[i];
+                 x != -1 && marks.setFlags(x, NodeMarks.DIRTY);
+                 x = graph.getNodeParent(x)) {
+                dirty.add(x);
+            }
+        }
+        dirty.sortByDecreasingDepth(layout.depth);
+
+        for (int i = 0; i < dirty.size(); i++) {
+            int node = dirty.get(i);
+            double oldRadius = layout.radius[node];
+            computeRadiusNode(graph, layout, node);
+            if (layout.radius[node] != oldRadius) {
+                marks.setFlags(node, NodeMarks.RADIUS_CHANGED);
+            }
+
+            if (graph.getNodeChildIndex(node)
+                    < graph.getNodeNontreeIndex(node)
+                    && marks.setFlags(node, NodeMarks.ANGLES)) {
+                angleNodes.add(node);
+            }
+        }
+    }
+
+    // Recomputes the angles of the children of {angleNodes}, and marks
+    // MOVED, and adds to {moved}, the children whose placement relative to
+    // their parent changed: those of changed nodes or of nodes whose radius
+    // changed, and those whose own angles or radius changed.
+    private void updateAngles(H3Graph graph, HyperbolicLayout layout,
+                              NodeList angleNodes, NodeMarks marks,
+                              NodeList moved) {
+        Children children = new Children();
+        double[] oldTheta = new double[16];
+        double[] oldPhi = new double[16];
+
+        for (int i = 0; i < angleNodes.size(); i++) {
+            int node = angleNodes.get(i);
+            int childIndex = graph.getNodeChildIndex(node);
+            int nontreeIndex = graph.getNodeNontreeIndex(node);
+
+            int numChildren = nontreeIndex - childIndex;
+            if (numChildren > oldTheta.length) {
+                oldTheta = new double[Math.max(2 * oldTheta.length,
+                        numChildren)];
+                oldPhi = new double[oldTheta.length];
+            }
+            for (int j = 0; j < numChildren; j++) {
+                int child = graph.getLinkDestination(childIndex + j);
+                oldTheta[j] = layout.theta[child];
+                oldPhi[j] = layout.phi[child];
+            }
+
+            computeAnglesChildren(graph, layout, children, m_ternaryLayout,
+                    node, layout.depth[node]);
+
+            boolean allMoved = (marks.getFlags(node)
+                    & (NodeMarks.CHANGED | NodeMarks.RADIUS_CHANGED)) != 0;
+
+            for (int j = 0; j < numChildren; j++) {
+                int child = graph.getLinkDestination(childIndex + j);
+                if ((allMoved
+                        || layout.theta[child] != oldTheta[j]
+                        || layout.phi[child] != oldPhi[j]
+                        || (marks.getFlags(child)
+                            & NodeMarks.RADIUS_CHANGED) != 0)
+                        && marks.setFlags(child, NodeMarks.MOVED)) {
+                    moved.add(child);
+                }
+            }
+        }
+    }
+
+    // Sets the relative placement of {node} from the radii and angles, as
+    // computeRelativePlacements() does.
+    private static void setRelativePlacement(H3Graph graph,
+                                             HyperbolicLayout layout,
+                                             int node) {
+        int parent = graph.getNodeParent(node);
+        if (parent == -1) {
+            graph.setNodeRelativePlacement(node, 0.0, 0.0, 0.0);
+        } else {
+            graph.setNodeRelativePlacement(node,
+                    layout.radius[parent] / 2.0,
+                    layout.theta[node], layout.phi[node]);
+        }
+    }
+
+    // Regenerates the layout coordinates of the subtrees of the {moved}
+    // nodes, in one walk down from the root that follows only the paths to
+    // them, whose nodes it marks ABOVE_MOVED.  The coordinate systems of
+    // the nodes on the paths are rebuilt along the way, exactly as
+    // computeCoordinatesSubtree() builds them, which leaves their own
+    // coordinates as they were.  If one of them isn't finite, the whole
+    // subtree below it is redone in extended precision, as it was in the
+    // full layout.
+    private void updateCoordinates(H3Graph graph, HyperbolicLayout layout,
+                                   NodeMarks marks, NodeList moved) {
+        if (moved.size() == 0) {
+            return;
+        }
+
+        for (int i = 0; i < moved.size(); i++) {
+            int x = graph.getNodeParent(moved.get(i));
+            while (x != -1 && marks.setFlags(x, NodeMarks.ABOVE_MOVED)) {
+                x = graph.getNodeParent(x);
+            }
+        }
+
+        CoordinatesStack stack = new CoordinatesStack();
+        CoordinatesStack subtreeStack = new CoordinatesStack();
+        CoordinatesScratch scratch = new CoordinatesScratch();
+        stack.pushCopyIfParent(graph, layout, graph.getRootNode(),
+                H3Transform.I4);
+
+        while (!stack.isEmpty()) {
+            int node = stack.getNode();
+            Matrix4d transform = (Matrix4d) stack.getTransform();
+            double parentRadiusE = stack.getRadiusE();
+            int child = stack.nextChild(graph, layout);
+            Matrix4d rotPhi = stack.getRotPhi();
+            stack.popIfDone(graph);
+
+            int flags = marks.getFlags(child);
+            if ((flags & (NodeMarks.MOVED | NodeMarks.ABOVE_MOVED)) == 0) {
+                continue;
+            }
+
+            computeChildCoordinates(graph, layout, transform, parentRadiusE,
+                    node, child, rotPhi, scratch);
+
+            Matrix4d childTransform = scratch.childTransform;
+            if (ATTEMPT_EXTENDED && !H3Math.isFinite(childTransform)) {
+                computeCoordinatesSubtreeExtended
+                        (graph, layout, child,
+                                scratch.childCenterAbsolute,
+                                scratch.childPoleAbsolute);
+            } else if ((flags & NodeMarks.MOVED) != 0) {
+                computeCoordinatesSubtree(graph, layout, childTransform,
+                        child, subtreeStack, scratch);
+                m_phase.checkCancelled();
+            } else {
+                stack.pushCopyIfParent(graph, layout, child, childTransform);
+            }
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE METHODS (random layout)
     ////////////////////////////////////////////////////////////////////////
@@ -787,6 +1688,13 @@ public class H3GraphLayout {
     // when needed.  This value is set in the constructor.
     private final boolean ATTEMPT_EXTENDED;
 
+    // Extended-precision progress is reported after every so many nodes.
+    private static final int PROGRESS_NODES = 1024;
+
+    // The phase of the layout in progress, for progress reports and
+    // cancellation checks.
+    private H3LoadMonitor.Phase m_phase;
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE FIELDS (hyperbolic layout)
     ////////////////////////////////////////////////////////////////////////
@@ -805,6 +1713,18 @@ public class H3GraphLayout {
 
     private final TernaryTreeLayout m_ternaryLayout = new TernaryTreeLayout();
 
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS (parallel hyperbolic layout)
+    ////////////////////////////////////////////////////////////////////////
+
+    // Subtrees smaller than this many nodes are laid out sequentially
+    // within a single task.
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    // The number of threads to use for the hyperbolic layout; 1 means
+    // sequential.  This value is set in the constructor.
+    private final int m_parallelism;
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE CLASSES (hyperbolic layout)
     ////////////////////////////////////////////////////////////////////////
@@ -958,6 +1878,467 @@ public class H3GraphLayout {
 
     //======================================================================
 
+    // The nodes reachable through the spanning tree in preorder, with the
+    // size and depth of the subtree rooted at each node.  The subtree rooted
+    // at a node occupies the range [position, position + subtreeSize) of
+    // the preorder.  All of this is computed without recursion.
+    private static class SpanningTreeOrder {
+        public SpanningTreeOrder(H3Graph graph) {
+            int totalNumNodes = graph.getNumNodes();
+            int rootNode = graph.getRootNode();
+
+            preorder = new int[totalNumNodes];
+            position = new int[totalNumNodes];
+            subtreeSize = new int[totalNumNodes];
+            depth = new int[totalNumNodes];
+
+            // Each node is pushed at most once, so the stack never holds
+            // more than totalNumNodes entries.
+            int[] stack = new int[totalNumNodes];
+            int top = 0;
+            int n = 0;
+
+            stack[top++] = rootNode;
+            while (top > 0) {
+                int node = stack[--top];
+                position[node] = n;
+                preorder[n++] = node;
+
+                int childIndex = graph.getNodeChildIndex(node);
+                int nontreeIndex = graph.getNodeNontreeIndex(node);
+
+                // Push in reverse so that children are visited in link order.
+                for (int i = nontreeIndex - 1; i >= childIndex; i--) {
+                    int child = graph.getLinkDestination(i);
+                    depth[child] = depth[node] + 1;
+                    stack[top++] = child;
+                }
+            }
+
+            numNodes = n;
+
+            for (int i = numNodes - 1; i >= 0; i--) {
+                int node = preorder[i];
+                ++subtreeSize[node];
+                if (node != rootNode) {
+                    subtreeSize[graph.getNodeParent(node)] +=
+                            subtreeSize[node];
+                }
+            }
+        }
+
+        // The number of nodes reachable from the root, and thus the number
+        // of valid entries in {preorder}.
+        public final int numNodes;
+
+        public final int[] preorder;
+        public final int[] position;
+        public final int[] subtreeSize;
+        public final int[] depth;
+    }
+
+    //======================================================================
+
+    // Computes the radii of the small subtrees in the runs of child links
+    // [runs[2k], runs[2k+1]) for first <= k < last.
+    private class RadiiTask extends RecursiveAction {
+        public RadiiTask(H3Graph graph, HyperbolicLayout layout,
+                         SpanningTreeOrder order, int[] runs,
+                         int first, int last) {
+            m_graph = graph;
+            m_layout = layout;
+            m_order = order;
+            m_runs = runs;
+            m_first = first;
+            m_last = last;
+        }
+
+        protected void compute() {
+            if (m_last - m_first > 1) {
+                int middle = (m_first + m_last) >>> 1;
+                invokeAll(new RadiiTask(m_graph, m_layout, m_order, m_runs,
+                                m_first, middle),
+                        new RadiiTask(m_graph, m_layout, m_order, m_runs,
+                                middle, m_last));
+            } else if (m_last - m_first == 1) {
+                int start = m_runs[2 * m_first];
+                int end = m_runs[2 * m_first + 1];
+                for (int i = start; i < end; i++) {
+                    computeRadiiSubtree(m_graph, m_layout, m_order,
+                            m_graph.getLinkDestination(i));
+                }
+            }
+        }
+
+        private final H3Graph m_graph;
+        private final HyperbolicLayout m_layout;
+        private final SpanningTreeOrder m_order;
+        private final int[] m_runs;
+        private final int m_first;
+        private final int m_last;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    //======================================================================
+
+    // Computes the angles of the children of the nodes in the preorder
+    // range [first, last).
+    private class AnglesTask extends RecursiveAction {
+        public AnglesTask(H3Graph graph, HyperbolicLayout layout,
+                          SpanningTreeOrder order, int first, int last) {
+            m_graph = graph;
+            m_layout = layout;
+            m_order = order;
+            m_first = first;
+            m_last = last;
+        }
+
+        protected void compute() {
+            if (m_last - m_first > PARALLEL_THRESHOLD) {
+                int middle = (m_first + m_last) >>> 1;
+                invokeAll(new AnglesTask(m_graph, m_layout, m_order,
+                                m_first, middle),
+                        new AnglesTask(m_graph, m_layout, m_order,
+                                middle, m_last));
+            } else {
+                computeAnglesRange(m_graph, m_layout, m_order,
+                        new Children(), new TernaryTreeLayout(),
+                        m_first, m_last);
+            }
+        }
+
+        private final H3Graph m_graph;
+        private final HyperbolicLayout m_layout;
+        private final SpanningTreeOrder m_order;
+        private final int m_first;
+        private final int m_last;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    //======================================================================
+
+    // Computes the coordinates of the subtrees hanging off the child links
+    // [firstLink, lastLink) of {parent}.  If firstLink is -1, then the task
+    // instead covers all the children of {parent}.
+    //
+    // Each large child found along the way has the runs of its own children
+    // forked as new tasks, except that the last run is carried on within
+    // this task.  So a long chain of large nodes is walked in a loop rather
+    // than through a chain of tasks, and since tasks never wait on each
+    // other (completion is tracked by CountedCompleter), no thread stack
+    // grows with the depth of the tree.
+    private class CoordinatesTask extends CountedCompleter<Void> {
+        public CoordinatesTask(CountedCompleter<?> completer,
+                               H3Graph graph, HyperbolicLayout layout,
+                               SpanningTreeOrder order,
+                               Matrix4d parentTransform,
+                               int parent, int firstLink, int lastLink) {
+            super(completer);
+            m_graph = graph;
+            m_layout = layout;
+            m_order = order;
+            m_parentTransform = parentTransform;
+            m_parent = parent;
+            m_firstLink = firstLink;
+            m_lastLink = lastLink;
+        }
+
+        public void compute() {
+            Matrix4d parentTransform = m_parentTransform;
+            int parent = m_parent;
+            int firstLink = m_firstLink;
+            int lastLink = m_lastLink;
+
+            // Don't hold on to the transform until the whole tree is done.
+            m_parentTransform = null;
+
+            if (firstLink == -1) {
+                int[] runs = partitionChildLinks(m_graph, m_order,
+                        m_graph.getNodeChildIndex(parent),
+                        m_graph.getNodeNontreeIndex(parent));
+                forkRuns(parentTransform, parent, runs);
+                firstLink = runs[runs.length - 2];
+                lastLink = runs[runs.length - 1];
+            }
+
+            CoordinatesStack stack = new CoordinatesStack();
+            CoordinatesScratch scratch = new CoordinatesScratch();
+            Matrix4d rotPhiZ = new Matrix4d();
+
+            while (parent != -1) {
+                double parentRadiusE =
+                        H3Math.euclideanDistance(m_layout.radius[parent]);
+
+                // The cached phi rotation starts afresh in each run.  This
+                // cannot change the result, since phi == 0.0 always gets
+                // I4, as in CoordinatesStack.nextChild().
+                double lastPhi = 0.0;
+                Matrix4d rotPhi = H3Transform.I4;
+
+                Matrix4d nextTransform = null;
+                int nextParent = -1;
+                int[] nextRuns = null;
+
+                for (int i = firstLink; i < lastLink; i++) {
+                    int child = m_graph.getLinkDestination(i);
+
+                    double childPhi = m_layout.phi[child];
+                    if (childPhi != lastPhi) {
+                        lastPhi = childPhi;
+                        if (childPhi == 0.0) {
+                            rotPhi = H3Transform.I4;
+                        } else {
+                            H3Transform.buildZRotation(childPhi, rotPhiZ);
+                            rotPhi = rotPhiZ;
+                        }
+                    }
+
+                    computeChildCoordinates(m_graph, m_layout,
+                            parentTransform, parentRadiusE, parent, child,
+                            rotPhi, scratch);
+
+                    Matrix4d childTransform = scratch.childTransform;
+                    if (ATTEMPT_EXTENDED
+                            && !H3Math.isFinite(childTransform)) {
+                        computeCoordinatesSubtreeExtended
+                                (m_graph, m_layout, child,
+                                        scratch.childCenterAbsolute,
+                                        scratch.childPoleAbsolute);
+                    } else if (!checkLargeSubtree(m_order, child)) {
+                        computeCoordinatesSubtree(m_graph, m_layout,
+                                childTransform, child, stack, scratch);
+                    } else {
+                        if (nextParent != -1) {
+                            forkRuns(nextTransform, nextParent, nextRuns);
+                        }
+                        // The scratch transform is overwritten by the next
+                        // child, and this one is shared with forked tasks.
+                        nextTransform = new Matrix4d(childTransform);
+                        nextParent = child;
+                        nextRuns = partitionChildLinks(m_graph, m_order,
+                                m_graph.getNodeChildIndex(child),
+                                m_graph.getNodeNontreeIndex(child));
+                    }
+                }
+
+                parentTransform = nextTransform;
+                parent = nextParent;
+                if (parent != -1) {
+                    forkRuns(parentTransform, parent, nextRuns);
+                    firstLink = nextRuns[nextRuns.length - 2];
+                    lastLink = nextRuns[nextRuns.length - 1];
+                }
+            }
+
+            tryComplete();
+        }
+
+        // Forks all but the last of the given runs of child links of {node}.
+        private void forkRuns(Matrix4d transform, int node, int[] runs) {
+            for (int i = 0; i < runs.length - 2; i++) {
+                addToPendingCount(1);
+                new CoordinatesTask(this, m_graph, m_layout, m_order,
+                        transform, node, runs[i], runs[i + 1]).fork();
+            }
+        }
+
+        private final H3Graph m_graph;
+        private final HyperbolicLayout m_layout;
+        private final SpanningTreeOrder m_order;
+        private Matrix4d m_parentTransform;
+        private final int m_parent;
+        private final int m_firstLink;
+        private final int m_lastLink;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    //======================================================================
+
+    // The explicit stack for the depth-first walks of the sequential
+    // coordinate passes.  Each frame holds a node whose children are still
+    // being placed, along with the node's transform (a Matrix4d or an
+    // H3Matrix4d), its Euclidean radius, and the cached phi rotation of
+    // its children.
+    //
+    // A frame is popped as soon as the last child of its node has been
+    // taken, before the child's own frame is pushed, so the stack only grows
+    // at nodes that still have children to place.  Along a simple path it
+    // never holds more than one frame.
+    //
+    // The double-precision walk pushes copies of its transforms into
+    // matrices owned by the frames, which are kept, along with the phi
+    // rotations, when a frame is popped and reused by the next push.
+    private static class CoordinatesStack {
+        public boolean isEmpty() {
+            return m_size == 0;
+        }
+
+        // Pushes {node} with a copy of {transform} if it has any children.
+        public void pushCopyIfParent(H3Graph graph, HyperbolicLayout layout,
+                                     int node, Matrix4d transform) {
+            if (graph.getNodeChildIndex(node)
+                    < graph.getNodeNontreeIndex(node)) {
+                if (m_size == m_node.length) {
+                    expandArrays();
+                }
+
+                Matrix4d copy = m_transformPool[m_size];
+                if (copy == null) {
+                    copy = new Matrix4d();
+                    m_transformPool[m_size] = copy;
+                }
+                copy.set(transform);
+                pushIfParent(graph, layout, node, copy);
+            }
+        }
+
+        // The extended-precision variant of pushCopyIfParent().
+        public void pushCopyIfParent(H3Graph graph, HyperbolicLayout layout,
+                                     int node, H3Matrix4d transform) {
+            if (graph.getNodeChildIndex(node)
+                    < graph.getNodeNontreeIndex(node)) {
+                if (m_size == m_node.length) {
+                    expandArrays();
+                }
+
+                H3Matrix4d copy = m_transformPoolMP[m_size];
+                if (copy == null) {
+                    copy = new H3Matrix4d();
+                    m_transformPoolMP[m_size] = copy;
+                }
+                copy.set(transform);
+                pushIfParent(graph, layout, node, copy);
+            }
+        }
+
+        // Pushes {node} if it has any children.
+        public void pushIfParent(H3Graph graph, HyperbolicLayout layout,
+                                 int node, Object transform) {
+            int childIndex = graph.getNodeChildIndex(node);
+            if (childIndex < graph.getNodeNontreeIndex(node)) {
+                if (m_size == m_node.length) {
+                    expandArrays();
+                }
+
+                m_node[m_size] = node;
+                m_nextLink[m_size] = childIndex;
+                m_transform[m_size] = transform;
+                m_radiusE[m_size] =
+                        H3Math.euclideanDistance(layout.radius[node]);
+                m_lastPhi[m_size] = 0.0;
+                m_rotPhi[m_size] = H3Transform.I4;
+                ++m_size;
+            }
+        }
+
+        public int getNode() {
+            return m_node[m_size - 1];
+        }
+
+        public Object getTransform() {
+            return m_transform[m_size - 1];
+        }
+
+        public double getRadiusE() {
+            return m_radiusE[m_size - 1];
+        }
+
+        public Matrix4d getRotPhi() {
+            return m_rotPhi[m_size - 1];
+        }
+
+        // Takes the next child of the top node, updating the cached phi
+        // rotation for the child.
+        //
+        // A Z rotation by phi == 0.0 differs from the identity I4 in the
+        // signs of zeros, which can carry through to the coordinates.  So
+        // every walk places the children with phi == 0.0 with I4 itself,
+        // and the rotation depends only on the phi of the child, not on
+        // where the walk started caching it.
+        public int nextChild(H3Graph graph, HyperbolicLayout layout) {
+            int top = m_size - 1;
+            int child = graph.getLinkDestination(m_nextLink[top]++);
+
+            double childPhi = layout.phi[child];
+            if (childPhi != m_lastPhi[top]) {
+                m_lastPhi[top] = childPhi;
+
+                if (childPhi == 0.0) {
+                    m_rotPhi[top] = H3Transform.I4;
+                } else {
+                    Matrix4d rotPhi = m_rotPhiPool[top];
+                    if (rotPhi == null) {
+                        rotPhi = new Matrix4d();
+                        m_rotPhiPool[top] = rotPhi;
+                    }
+                    H3Transform.buildZRotation(childPhi, rotPhi);
+                    m_rotPhi[top] = rotPhi;
+                }
+            }
+
+            return child;
+        }
+
+        // Pops the top node if all its children have been taken.
+        public void popIfDone(H3Graph graph) {
+            int top = m_size - 1;
+            if (m_nextLink[top] == graph.getNodeNontreeIndex(m_node[top])) {
+                m_transform[top] = null;
+                m_rotPhi[top] = null;
+                --m_size;
+            }
+        }
+
+        // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+        private void expandArrays() {
+            int newSize = 2 * m_node.length;
+            m_node = Arrays.copyOf(m_node, newSize);
+            m_nextLink = Arrays.copyOf(m_nextLink, newSize);
+            m_transform = Arrays.copyOf(m_transform, newSize);
+            m_radiusE = Arrays.copyOf(m_radiusE, newSize);
+            m_lastPhi = Arrays.copyOf(m_lastPhi, newSize);
+            m_rotPhi = Arrays.copyOf(m_rotPhi, newSize);
+            m_transformPool = Arrays.copyOf(m_transformPool, newSize);
+            m_rotPhiPool = Arrays.copyOf(m_rotPhiPool, newSize);
+            m_transformPoolMP = Arrays.copyOf(m_transformPoolMP, newSize);
+        }
+
+        //------------------------------------------------------------------
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private int m_size = 0;
+        private int[] m_node = new int[INITIAL_CAPACITY];
+        private int[] m_nextLink = new int[INITIAL_CAPACITY];
+        private Object[] m_transform = new Object[INITIAL_CAPACITY];
+        private double[] m_radiusE = new double[INITIAL_CAPACITY];
+        private double[] m_lastPhi = new double[INITIAL_CAPACITY];
+        private Matrix4d[] m_rotPhi = new Matrix4d[INITIAL_CAPACITY];
+        private Matrix4d[] m_transformPool = new Matrix4d[INITIAL_CAPACITY];
+        private Matrix4d[] m_rotPhiPool = new Matrix4d[INITIAL_CAPACITY];
+        private H3Matrix4d[] m_transformPoolMP =
+                new H3Matrix4d[INITIAL_CAPACITY];
+    }
+
+    //======================================================================
+
+    // The scratch objects of computeChildCoordinates(), owned by a single
+    // walk (or task) so that placing a child allocates nothing.
+    private static class CoordinatesScratch {
+        public final Point4d childCenterAbsolute = new Point4d();
+        public final Point4d childPoleAbsolute = new Point4d();
+        public final Matrix4d childTransform = new Matrix4d();
+        public final Matrix4d rot = new Matrix4d();
+        public final H3Transform.Workspace workspace =
+                new H3Transform.Workspace();
+    }
+
+    //======================================================================
+
     private class HyperbolicLayout
             implements LayoutState {
         public HyperbolicLayout(int numNodes) {
@@ -969,94 +2350,216 @@ public class H3GraphLayout {
         public double[] radius;
         public double[] theta;
         public double[] phi;
+
+        // The depth of each node in the spanning tree, and the scratch
+        // marks of updateHyperbolicLayout(), allocated by the first update.
+        public int[] depth;
+        public NodeMarks marks;
     }
 
     //======================================================================
 
-    private class Children {
-        public void add(int node, double radius) {
-            if (m_numChildren == m_children.length) {
-                expandArray();
-            }
+    // Sets of flags on nodes, cleared all at once by moving on to a new
+    // stamp, so that clearing costs nothing however many nodes were marked.
+    private static class NodeMarks {
+        // The node is among the changed nodes of the update.
+        public static final int CHANGED = 1;
 
-            if (m_children[m_numChildren] == null) {
-                m_children[m_numChildren] = new Child(node, radius);
-            } else {
-                // Reuse existing Child.
-                m_children[m_numChildren].set(node, radius);
-            }
+        // The radius of the node has been recomputed.
+        public static final int DIRTY = 2;
 
-            ++m_numChildren;
+        // The recomputed radius differs from the old one.
+        public static final int RADIUS_CHANGED = 4;
+
+        // The angles of the children of the node are to be recomputed.
+        public static final int ANGLES = 8;
+
+        // The placement of the node relative to its parent has changed.
+        public static final int MOVED = 16;
+
+        // A descendant of the node has MOVED.
+        public static final int ABOVE_MOVED = 32;
+
+        public NodeMarks(int numNodes) {
+            m_stamp = new int[numNodes];
+            m_flags = new byte[numNodes];
         }
 
         public void clear() {
-            m_numChildren = 0;
+            if (++m_currentStamp == Integer.MAX_VALUE) {
+                Arrays.fill(m_stamp, 0);
+                m_currentStamp = 1;
+            }
         }
 
-        public void sort() {
-            if (m_numChildren > 0) {
-                Arrays.sort(m_children, 0, m_numChildren);
+        public int getFlags(int node) {
+            return (m_stamp[node] == m_currentStamp ? m_flags[node] : 0);
+        }
+
+        // Sets {flags} on {node}, and returns whether any of them weren't
+        // set already.
+        public boolean setFlags(int node, int flags) {
+            int oldFlags = getFlags(node);
+            m_stamp[node] = m_currentStamp;
+            m_flags[node] = (byte) (oldFlags | flags);
+            return (oldFlags & flags) != flags;
+        }
+
+        private final int[] m_stamp;
+        private final byte[] m_flags;
+        private int m_currentStamp = 0;
+    }
+
+    //======================================================================
+
+    private static class NodeList {
+        public void add(int node) {
+            if (m_size == m_node.length) {
+                m_node = Arrays.copyOf(m_node, 2 * m_node.length);
             }
+            m_node[m_size++] = node;
         }
 
-        public Child getChild(int index) {
-            return m_children[index];
+        public void clear() {
+            m_size = 0;
         }
 
-        public int getNumChildren() {
-            return m_numChildren;
+        public int get(int index) {
+            return m_node[index];
         }
 
-        // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+        public int size() {
+            return m_size;
+        }
 
-        private void expandArray() {
-            int newSize = 2 * m_children.length;
-            Child[] newArray = new Child[newSize];
-            System.arraycopy(m_children, 0, newArray, 0, m_children.length);
-            m_children = newArray;
+        // Sorts the nodes by decreasing {depth}.
+        public void sortByDecreasingDepth(int[] depth) {
+            long[] keys = new long[m_size];
+            for (int i = 0; i < m_size; i++) {
+                int node = m_node[i];
+                keys[i] = ((long) -depth[node] << 32) | node;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < m_size; i++) {
+                m_node[i] = (int) keys[i];
+            }
         }
 
-        //------------------------------------------------------------------
+        private int[] m_node = new int[16];
+        private int m_size = 0;
+    }
 
-        private static final int INITIAL_CAPACITY = 50;
+    //======================================================================
 
-        private int m_numChildren = 0;
-        private Child[] m_children = new Child[INITIAL_CAPACITY];
+    // The children of a node, sorted by decreasing radius.  The nodes and
+    // radii are kept in primitive arrays, and sort() orders an index array
+    // with a stable merge sort, so no objects are created once the arrays
+    // have grown to the largest number of children.  Being stable, the sort
+    // orders children of equal radius exactly as Arrays.sort() would.
+    private static class Children {
+        public void add(int node, double radius) {
+            if (m_numChildren == m_node.length) {
+                expandArrays();
+            }
 
-        ////////////////////////////////////////////////////////////////////
-        // NESTED CLASSES
-        ////////////////////////////////////////////////////////////////////
+            m_node[m_numChildren] = node;
+            m_radius[m_numChildren] = radius;
+            m_order[m_numChildren] = m_numChildren;
+            ++m_numChildren;
+        }
 
-        public class Child implements Comparable {
-            public Child(int node, double radius) {
-                set(node, radius);
+        public void clear() {
+            m_numChildren = 0;
+        }
+
+        public void sort() {
+            int n = m_numChildren;
+            for (int i = 0; i < n; i += INSERTION_SORT_RUN) {
+                insertionSort(i, Math.min(i + INSERTION_SORT_RUN, n));
+            }
+
+            int[] from = m_order;
+            int[] to = m_scratch;
+            for (int width = INSERTION_SORT_RUN; width < n; width *= 2) {
+                for (int i = 0; i < n; i += 2 * width) {
+                    merge(from, to, i, Math.min(i + width, n),
+                            Math.min(i + 2 * width, n));
+                }
+                int[] swap = from;
+                from = to;
+                to = swap;
             }
 
-            public void set(int node, double radius) {
-                this.node = node;
-                this.radius = radius;
-                this.deltaTheta = 0.0;
-                this.deltaPhi = 0.0;
+            if (from != m_order) {
+                System.arraycopy(from, 0, m_order, 0, n);
             }
+        }
 
-            // descending order
-            public int compareTo(Object o) {
-                Child e = (Child) o;
-                if (radius < e.radius) {
-                    return 1;
-                } else if (radius > e.radius) {
-                    return -1;
-                } else {
-                    return 0;
+        public int getNode(int index) {
+            return m_node[m_order[index]];
+        }
+
+        public double getRadius(int index) {
+            return m_radius[m_order[index]];
+        }
+
+        public int getNumChildren() {
+            return m_numChildren;
+        }
+
+        // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+        // Sorts m_order[start, end).  A child moves ahead only of children
+        // with strictly smaller radii.
+        private void insertionSort(int start, int end) {
+            for (int i = start + 1; i < end; i++) {
+                int index = m_order[i];
+                double radius = m_radius[index];
+
+                int j = i - 1;
+                while (j >= start && m_radius[m_order[j]] < radius) {
+                    m_order[j + 1] = m_order[j];
+                    --j;
                 }
+                m_order[j + 1] = index;
             }
+        }
 
-            //--------------------------------------------------------------
+        // Merges the sorted runs from[start, middle) and from[middle, end)
+        // into to[start, end), taking from the left run on ties.
+        private void merge(int[] from, int[] to, int start, int middle,
+                           int end) {
+            int i = start;
+            int j = middle;
+            for (int k = start; k < end; k++) {
+                if (j < end && (i == middle
+                        || m_radius[from[j]] > m_radius[from[i]])) {
+                    to[k] = from[j++];
+                } else {
+                    to[k] = from[i++];
+                }
+            }
+        }
 
-            public int node;
-            public double radius;
-            public double deltaTheta;
-            public double deltaPhi;
+        private void expandArrays() {
+            int newSize = 2 * m_node.length;
+            m_node = Arrays.copyOf(m_node, newSize);
+            m_radius = Arrays.copyOf(m_radius, newSize);
+            m_order = Arrays.copyOf(m_order, newSize);
+            m_scratch = new int[newSize];
         }
+
+        //------------------------------------------------------------------
+
+        private static final int INITIAL_CAPACITY = 50;
+
+        // Runs of this many children are insertion sorted before merging.
+        private static final int INSERTION_SORT_RUN = 32;
+
+        private int m_numChildren = 0;
+        private int[] m_node = new int[INITIAL_CAPACITY];
+        private double[] m_radius = new double[INITIAL_CAPACITY];
+        private int[] m_order = new int[INITIAL_CAPACITY];
+        private int[] m_scratch = new int[INITIAL_CAPACITY];
     }
 }
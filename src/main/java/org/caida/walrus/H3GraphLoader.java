@@ -24,6 +24,8 @@ package org.caida.walrus;//
 import org.caida.libsea.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class H3GraphLoader {
     ///////////////////////////////////////////////////////////////////////
@@ -39,24 +41,112 @@ public class H3GraphLoader {
     ////////////////////////////////////////////////////////////////////////
 
     public H3GraphLoader() {
+        this(1);
+    }
+
+    // With a {parallelism} greater than 1, the links of the graph are
+    // populated by that many threads (see populateLinksParallel()).
+    public H3GraphLoader(int parallelism) {
+        if (parallelism < 1) {
+            String msg = "parallelism must be at least 1; found "
+                    + parallelism;
+            throw new IllegalArgumentException(msg);
+        }
+
+        m_parallelism = parallelism;
     }
 
     ////////////////////////////////////////////////////////////////////////
     // PUBLIC METHODS
     ////////////////////////////////////////////////////////////////////////
 
+    // A {spanningTree} of H3SpanningTreeBuilder.BREADTH_FIRST_TREE gives
+    // loadBreadthFirst(graph, -1).
     public H3Graph load(Graph graph, String spanningTree)
             throws InvalidGraphDataException {
+        if (spanningTree.equals(H3SpanningTreeBuilder.BREADTH_FIRST_TREE)) {
+            return loadBreadthFirst(graph, -1);
+        }
+
         int numNodes = graph.getNumNodes();
         int numLinks = graph.getNumLinks();
 
         H3Graph retval = new H3Graph(numNodes, numLinks);
 
-        IDMap map = populateNodeIDs(retval, graph);
+        H3IDIndex map = populateNodeIDs(retval, graph);
         findSpanningTreeQualifierAttributes(graph, spanningTree);
         int rootID = findSpanningTreeRootNodeID(graph, m_rootAttribute);
-        retval.setRootNode(map.map(rootID));
-        populateLinks(retval, graph, map, m_treeLinkAttribute);
+        retval.setRootNode(mapNodeID(map, rootID));
+        if (m_parallelism > 1) {
+            populateLinksParallel(retval, graph, map, m_treeLinkAttribute);
+        } else {
+            populateLinks(retval, graph, map, m_treeLinkAttribute);
+        }
+
+        return retval;
+    }
+
+    // Builds the H3Graph with a breadth-first spanning tree rooted at the
+    // node with ID {rootID}, or at the node with the most outgoing links if
+    // {rootID} is -1, with H3SpanningTreeBuilder.  The graph is the same as
+    // H3GraphFile.loadBreadthFirst() builds from the same file.
+    public H3Graph loadBreadthFirst(Graph graph, int rootID)
+            throws InvalidGraphDataException {
+        int numNodes = graph.getNumNodes();
+        int numLinks = graph.getNumLinks();
+        if (numNodes == 0) {
+            String msg = "no root node found for spanning tree";
+            throw new InvalidGraphDataException(msg);
+        }
+
+        int[] nodeIDs = extractSortedNodeIDs(graph);
+        H3IDIndex map = new H3IDIndex(nodeIDs);
+
+        // The builder takes the links of each node in the reverse of their
+        // order here, so they're listed backwards to keep libsea's order.
+        int[] sources = new int[numLinks];
+        int[] destinations = new int[numLinks];
+        int[] linkIDs = new int[numLinks];
+        int n = numLinks;
+        NodeIterator nodeIterator = graph.getNodes();
+        while (!nodeIterator.atEnd()) {
+            int node = mapNodeID(map, nodeIterator.getObjectID());
+            LinkIterator linkIterator = nodeIterator.getOutgoingLinks();
+            while (!linkIterator.atEnd()) {
+                --n;
+                sources[n] = node;
+                destinations[n] =
+                        mapNodeID(map, linkIterator.getDestination());
+                linkIDs[n] = linkIterator.getObjectID();
+                linkIterator.advance();
+            }
+            nodeIterator.advance();
+        }
+
+        int rootNode = (rootID == -1
+                        ? H3SpanningTreeBuilder.findHighestDegreeNode
+                                (numNodes, sources)
+                        : map.getIndex(rootID));
+        if (rootNode < 0) {
+            String msg = "root node id[" + rootID + "] not found";
+            throw new IllegalArgumentException(msg);
+        }
+
+        H3SpanningTreeBuilder builder =
+                new H3SpanningTreeBuilder(m_parallelism);
+        H3Graph retval = builder.build(numNodes, sources, destinations,
+                rootNode);
+
+        // Only the virtual root and links, if any, keep their IDs.
+        for (int i = 0; i < numNodes; i++) {
+            retval.setNodeID(i, nodeIDs[i]);
+        }
+        for (int i = 0; i < retval.getTotalNumLinks(); i++) {
+            int link = retval.getLinkID(i);
+            if (link >= 0) {
+                retval.setLinkID(i, linkIDs[link]);
+            }
+        }
 
         return retval;
     }
@@ -183,40 +273,48 @@ public class H3GraphLoader {
 
     ///////////////////////////////////////////////////////////////////////
 
-    private void populateLinks(H3Graph retval, Graph graph, IDMap map,
+    // Walks the outgoing links of each node once, adding the tree links to
+    // the graph as they're found and holding the nontree links, which must
+    // come after all the tree links of the node, in scratch buffers that
+    // are reused from node to node.
+    private void populateLinks(H3Graph retval, Graph graph, H3IDIndex map,
                                int treeLinkAttribute) {
         BitSet treeLinksMap = createTreeLinksMap(graph, treeLinkAttribute);
 
+        int[] nontreeDestinations = new int[INITIAL_SCRATCH_SIZE];
+        int[] nontreeLinks = new int[INITIAL_SCRATCH_SIZE];
+
         NodeIterator nodeIterator = graph.getNodes();
         while (!nodeIterator.atEnd()) {
-            int node = map.map(nodeIterator.getObjectID());
+            int node = mapNodeID(map, nodeIterator.getObjectID());
+            int numNontreeLinks = 0;
+
             retval.startChildLinks(node);
-            {
-                LinkIterator linkIterator =
-                        nodeIterator.getOutgoingLinks();
-                while (!linkIterator.atEnd()) {
-                    int link = linkIterator.getObjectID();
-                    if (treeLinksMap.get(link)) {
-                        int destination =
-                                map.map(linkIterator.getDestination());
-                        retval.addChildLink(node, destination, link);
+            LinkIterator linkIterator = nodeIterator.getOutgoingLinks();
+            while (!linkIterator.atEnd()) {
+                int link = linkIterator.getObjectID();
+                int destination =
+                        mapNodeID(map, linkIterator.getDestination());
+                if (treeLinksMap.get(link)) {
+                    retval.addChildLink(node, destination, link);
+                } else {
+                    if (numNontreeLinks == nontreeLinks.length) {
+                        int length = 2 * numNontreeLinks;
+                        nontreeDestinations =
+                                Arrays.copyOf(nontreeDestinations, length);
+                        nontreeLinks = Arrays.copyOf(nontreeLinks, length);
                     }
-                    linkIterator.advance();
+                    nontreeDestinations[numNontreeLinks] = destination;
+                    nontreeLinks[numNontreeLinks] = link;
+                    ++numNontreeLinks;
                 }
+                linkIterator.advance();
             }
+
             retval.startNontreeLinks(node);
-            {
-                LinkIterator linkIterator =
-                        nodeIterator.getOutgoingLinks();
-                while (!linkIterator.atEnd()) {
-                    int link = linkIterator.getObjectID();
-                    if (!treeLinksMap.get(link)) {
-                        int destination =
-                                map.map(linkIterator.getDestination());
-                        retval.addNontreeLink(node, destination, link);
-                    }
-                    linkIterator.advance();
-                }
+            for (int i = 0; i < numNontreeLinks; i++) {
+                retval.addNontreeLink(node, nontreeDestinations[i],
+                        nontreeLinks[i]);
             }
             retval.endNodeLinks(node);
 
@@ -224,6 +322,61 @@ public class H3GraphLoader {
         }
     }
 
+    // Produces the same graph as populateLinks(), in three steps:
+    //
+    //    1. the tree and nontree links of each node are counted, in
+    //       parallel over ranges of nodes;
+    //    2. a prefix sum of the counts, in the order populateLinks() visits
+    //       the nodes, gives the segment of the link arrays of each node;
+    //    3. each node writes its links into its own segment, in parallel
+    //       over ranges of nodes, with H3Graph.setChildLink() and
+    //       setNontreeLink().
+    //
+    // The libsea graph is only read, through iterators private to each
+    // task, which an immutable graph allows.
+    private void populateLinksParallel(H3Graph retval, Graph graph,
+                                       H3IDIndex map, int treeLinkAttribute) {
+        BitSet treeLinksMap = createTreeLinksMap(graph, treeLinkAttribute);
+
+        int numNodes = graph.getNumNodes();
+        int[] nodeIDs = new int[numNodes]; // In iteration order.
+        int n = 0;
+        NodeIterator nodeIterator = graph.getNodes();
+        while (!nodeIterator.atEnd()) {
+            nodeIDs[n++] = nodeIterator.getObjectID();
+            nodeIterator.advance();
+        }
+
+        // Counts for the node at position i are stored at i + 1, so that
+        // the prefix sum leaves the start of each segment at i.
+        int[] treeLinksStart = new int[numNodes + 1];
+        int[] nontreeLinksStart = new int[numNodes + 1];
+
+        ForkJoinPool pool = new ForkJoinPool(m_parallelism);
+        try {
+            pool.invoke(new LinksTask(null, graph, map, treeLinksMap,
+                    nodeIDs, treeLinksStart, nontreeLinksStart,
+                    0, numNodes));
+
+            int start = 0;
+            for (int i = 0; i < numNodes; i++) {
+                int numTreeLinks = treeLinksStart[i + 1];
+                int numNontreeLinks = nontreeLinksStart[i + 1];
+                treeLinksStart[i] = start;
+                nontreeLinksStart[i] = start + numTreeLinks;
+                start += numTreeLinks + numNontreeLinks;
+            }
+
+            pool.invoke(new LinksTask(retval, graph, map, treeLinksMap,
+                    nodeIDs, treeLinksStart, nontreeLinksStart,
+                    0, numNodes));
+        } finally {
+            pool.shutdown();
+        }
+
+        retval.endLinks();
+    }
+
     ///////////////////////////////////////////////////////////////////////
 
     private BitSet createTreeLinksMap(Graph graph, int treeLinkAttribute) {
@@ -244,12 +397,21 @@ public class H3GraphLoader {
 
     ///////////////////////////////////////////////////////////////////////
 
-    private IDMap populateNodeIDs(H3Graph retval, Graph graph) {
+    private H3IDIndex populateNodeIDs(H3Graph retval, Graph graph) {
         int[] mapping = extractSortedNodeIDs(graph);
         for (int i = 0; i < mapping.length; i++) {
             retval.setNodeID(i, mapping[i]);
         }
-        return new IDMap(mapping);
+        return new H3IDIndex(mapping);
+    }
+
+    private int mapNodeID(H3IDIndex map, int id) {
+        int retval = map.getIndex(id);
+        if (retval < 0) {
+            String msg = "id[" + id + "] not found";
+            throw new RuntimeException(msg);
+        }
+        return retval;
     }
 
     private int[] extractSortedNodeIDs(Graph graph) {
@@ -287,6 +449,14 @@ public class H3GraphLoader {
     private static final String ROOT_ATTRIBUTE = "root";
     private static final String TREE_LINK_ATTRIBUTE = "tree_link";
 
+    // The nontree links of a node are buffered while populating links;
+    // the buffers grow as needed.
+    private static final int INITIAL_SCRATCH_SIZE = 64;
+
+    // Nodes ranges of at least this many nodes are split among threads.
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private final int m_parallelism;
     private int m_rootAttribute;
     private int m_treeLinkAttribute;
 
@@ -308,20 +478,105 @@ public class H3GraphLoader {
     // PRIVATE CLASSES
     ////////////////////////////////////////////////////////////////////////
 
-    private static class IDMap {
-        public IDMap(int[] mapping) {
-            m_mapping = mapping;
+    // Handles the nodes at positions [first, last) of {nodeIDs} for
+    // populateLinksParallel().  With a null {graph}, it counts the tree and
+    // nontree links of the node at position i into treeLinksStart[i + 1]
+    // and nontreeLinksStart[i + 1]; otherwise, it stores the links of that
+    // node in {graph} starting at treeLinksStart[i] and
+    // nontreeLinksStart[i].
+    private class LinksTask extends RecursiveAction {
+        public LinksTask(H3Graph graph, Graph backingGraph, H3IDIndex map,
+                         BitSet treeLinksMap, int[] nodeIDs,
+                         int[] treeLinksStart, int[] nontreeLinksStart,
+                         int first, int last) {
+            m_graph = graph;
+            m_backingGraph = backingGraph;
+            m_map = map;
+            m_treeLinksMap = treeLinksMap;
+            m_nodeIDs = nodeIDs;
+            m_treeLinksStart = treeLinksStart;
+            m_nontreeLinksStart = nontreeLinksStart;
+            m_first = first;
+            m_last = last;
         }
 
-        public int map(int id) {
-            int retval = Arrays.binarySearch(m_mapping, id);
-            if (retval < 0) {
-                String msg = "id[" + id + "] not found";
-                throw new RuntimeException(msg);
+        protected void compute() {
+            if (m_last - m_first > PARALLEL_THRESHOLD) {
+                int middle = (m_first + m_last) >>> 1;
+                invokeAll(new LinksTask(m_graph, m_backingGraph, m_map,
+                                m_treeLinksMap, m_nodeIDs, m_treeLinksStart,
+                                m_nontreeLinksStart, m_first, middle),
+                        new LinksTask(m_graph, m_backingGraph, m_map,
+                                m_treeLinksMap, m_nodeIDs, m_treeLinksStart,
+                                m_nontreeLinksStart, middle, m_last));
+            } else if (m_graph == null) {
+                countLinks();
+            } else {
+                storeLinks();
+            }
+        }
+
+        private void countLinks() {
+            for (int i = m_first; i < m_last; i++) {
+                int numTreeLinks = 0;
+                int numNontreeLinks = 0;
+
+                LinkIterator iterator = m_backingGraph.getNode(m_nodeIDs[i])
+                        .getOutgoingLinks();
+                while (!iterator.atEnd()) {
+                    if (m_treeLinksMap.get(iterator.getObjectID())) {
+                        ++numTreeLinks;
+                    } else {
+                        ++numNontreeLinks;
+                    }
+                    iterator.advance();
+                }
+
+                m_treeLinksStart[i + 1] = numTreeLinks;
+                m_nontreeLinksStart[i + 1] = numNontreeLinks;
+            }
+        }
+
+        private void storeLinks() {
+            for (int i = m_first; i < m_last; i++) {
+                int node = mapNodeID(m_map, m_nodeIDs[i]);
+                int treeLink = m_treeLinksStart[i];
+                int nontreeLink = m_nontreeLinksStart[i];
+                int linksEnd = (i + 1 < m_nodeIDs.length
+                        ? m_treeLinksStart[i + 1]
+                        : m_graph.getTotalNumLinks());
+
+                LinkIterator iterator = m_backingGraph.getNode(m_nodeIDs[i])
+                        .getOutgoingLinks();
+                while (!iterator.atEnd()) {
+                    int link = iterator.getObjectID();
+                    int destination =
+                            mapNodeID(m_map, iterator.getDestination());
+                    if (m_treeLinksMap.get(link)) {
+                        m_graph.setChildLink(treeLink++, node, destination,
+                                link);
+                    } else {
+                        m_graph.setNontreeLink(nontreeLink++, node,
+                                destination, link);
+                    }
+                    iterator.advance();
+                }
+
+                m_graph.setNodeLinks(node, m_treeLinksStart[i],
+                        m_nontreeLinksStart[i], linksEnd);
             }
-            return retval;
         }
 
-        private final int[] m_mapping;
+        private final H3Graph m_graph;
+        private final Graph m_backingGraph;
+        private final H3IDIndex m_map;
+        private final BitSet m_treeLinksMap;
+        private final int[] m_nodeIDs;
+        private final int[] m_treeLinksStart;
+        private final int[] m_nontreeLinksStart;
+        private final int m_first;
+        private final int m_last;
+
+        private static final long serialVersionUID = 1L;
     }
 }
@@ -0,0 +1,325 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// A binary snapshot of an H3Graph together with its layout, written by
+// File->Save With Layout.  Opening a snapshot skips both parsing the
+// LibSea file and laying out the graph, so a large graph can be viewed
+// again in seconds.  The backing libsea Graph isn't saved, so attribute
+// based coloring, selection, and node labels aren't available for a graph
+// opened from a snapshot, and the spanning tree is the one it was saved
+// with.
+//
+// The file is little-endian and consists of a header,
+//
+//    int     MAGIC
+//    int     VERSION
+//    int     numNodes
+//    int     numLinks
+//    int     root node
+//    int     length of spanning tree name, in bytes
+//    byte[]  spanning tree name, in UTF-8
+//
+// followed by the primitive arrays of H3Graph, in the order given by
+// H3Graph.writeSnapshotArrays().  The arrays are written in one pass
+// through a direct buffer and read back through memory-mapped views of
+// the file, so both are little more than bulk copies.
+public class H3GraphSnapshot {
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    private H3GraphSnapshot(H3Graph graph, String spanningTree) {
+        m_graph = graph;
+        m_spanningTree = spanningTree;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3Graph getGraph() {
+        return m_graph;
+    }
+
+    public String getSpanningTree() {
+        return m_spanningTree;
+    }
+
+    // Returns whether {file} starts like a snapshot, as opposed to, say,
+    // a LibSea graph file.
+    public static boolean isSnapshot(File file) {
+        try {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                byte[] magic = new byte[4];
+                int n = in.read(magic);
+                return n == 4 && ByteBuffer.wrap(magic)
+                        .order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static void write(H3Graph graph, String spanningTree, File file)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+
+            Output out = new Output(raf.getChannel());
+            byte[] name = spanningTree.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(graph.getNumNodes());
+            out.writeInt(graph.getTotalNumLinks());
+            out.writeInt(graph.getRootNode());
+            out.writeInt(name.length);
+            out.writeBytes(name);
+
+            graph.writeSnapshotArrays(out);
+            out.flush();
+        } finally {
+            raf.close();
+        }
+    }
+
+    public static H3GraphSnapshot read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            Input in = new Input(raf.getChannel());
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a Walrus snapshot: "
+                        + file.getPath());
+            }
+
+            int version = in.readInt();
+            if (version != VERSION) {
+                String msg = "unsupported snapshot version " + version
+                        + " in " + file.getPath();
+                throw new IOException(msg);
+            }
+
+            int numNodes = in.readInt();
+            int numLinks = in.readInt();
+            int rootNode = in.readInt();
+            if (numNodes < 0 || numLinks < 0
+                    || rootNode < 0 || rootNode >= Math.max(numNodes, 1)) {
+                throw new IOException("corrupt snapshot header in "
+                        + file.getPath());
+            }
+
+            byte[] name = in.readBytes();
+
+            H3Graph graph = new H3Graph(numNodes, numLinks);
+            graph.readSnapshotArrays(in, rootNode);
+
+            return new H3GraphSnapshot(graph,
+                    new String(name, StandardCharsets.UTF_8));
+        } finally {
+            raf.close();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final int MAGIC = 0x53473348; // "H3GS"
+    private static final int VERSION = 1;
+
+    private final H3Graph m_graph;
+    private final String m_spanningTree;
+
+    ////////////////////////////////////////////////////////////////////////
+    // PACKAGE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // Sequential writer of primitive arrays, used by H3Graph.
+    static final class Output {
+        Output(FileChannel channel) {
+            m_channel = channel;
+        }
+
+        void writeInt(int value) throws IOException {
+            ensureRemaining(4);
+            m_buffer.putInt(value);
+        }
+
+        void writeBytes(byte[] data) throws IOException {
+            for (int i = 0; i < data.length; ) {
+                ensureRemaining(1);
+                int n = Math.min(m_buffer.remaining(), data.length - i);
+                m_buffer.put(data, i, n);
+                i += n;
+            }
+        }
+
+        void writeInts(int[] data) throws IOException {
+            for (int i = 0; i < data.length; ) {
+                ensureRemaining(4);
+                int n = Math.min(m_buffer.remaining() / 4, data.length - i);
+                m_buffer.asIntBuffer().put(data, i, n);
+                m_buffer.position(m_buffer.position() + 4 * n);
+                i += n;
+            }
+        }
+
+        void writeLongs(long[] data) throws IOException {
+            writeInt(data.length);
+            for (int i = 0; i < data.length; ) {
+                ensureRemaining(8);
+                int n = Math.min(m_buffer.remaining() / 8, data.length - i);
+                m_buffer.asLongBuffer().put(data, i, n);
+                m_buffer.position(m_buffer.position() + 8 * n);
+                i += n;
+            }
+        }
+
+        void writeDoubles(double[] data) throws IOException {
+            for (int i = 0; i < data.length; ) {
+                ensureRemaining(8);
+                int n = Math.min(m_buffer.remaining() / 8, data.length - i);
+                m_buffer.asDoubleBuffer().put(data, i, n);
+                m_buffer.position(m_buffer.position() + 8 * n);
+                i += n;
+            }
+        }
+
+        void flush() throws IOException {
+            m_buffer.flip();
+            while (m_buffer.hasRemaining()) {
+                m_channel.write(m_buffer);
+            }
+            m_buffer.clear();
+        }
+
+        private void ensureRemaining(int n) throws IOException {
+            if (m_buffer.remaining() < n) {
+                flush();
+            }
+        }
+
+        private final FileChannel m_channel;
+        private final ByteBuffer m_buffer = ByteBuffer
+                .allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        private static final int BUFFER_SIZE = 1 << 20;
+    }
+
+    // Sequential reader of primitive arrays, used by H3Graph.  Each array
+    // is copied out of a read-only mapping of its region of the file; no
+    // region is mapped more than MAX_MAPPING bytes at a time.
+    static final class Input {
+        Input(FileChannel channel) throws IOException {
+            m_channel = channel;
+            m_size = channel.size();
+        }
+
+        int readInt() throws IOException {
+            return map(4).getInt();
+        }
+
+        void readBytes(byte[] data) throws IOException {
+            for (int i = 0; i < data.length; ) {
+                int n = Math.min(MAX_MAPPING, data.length - i);
+                map(n).get(data, i, n);
+                i += n;
+            }
+        }
+
+        // Reads an array written as its length followed by its elements.
+        byte[] readBytes() throws IOException {
+            int length = readInt();
+            if (length < 0 || length > m_size - m_position) {
+                throw new IOException("corrupt snapshot");
+            }
+
+            byte[] retval = new byte[length];
+            readBytes(retval);
+            return retval;
+        }
+
+        void readInts(int[] data) throws IOException {
+            for (int i = 0; i < data.length; ) {
+                int n = Math.min(MAX_MAPPING / 4, data.length - i);
+                map(4L * n).asIntBuffer().get(data, i, n);
+                i += n;
+            }
+        }
+
+        long[] readLongs() throws IOException {
+            int length = readInt();
+            if (length < 0 || 8L * length > m_size - m_position) {
+                throw new IOException("corrupt snapshot");
+            }
+
+            long[] retval = new long[length];
+            for (int i = 0; i < length; ) {
+                int n = Math.min(MAX_MAPPING / 8, length - i);
+                map(8L * n).asLongBuffer().get(retval, i, n);
+                i += n;
+            }
+            return retval;
+        }
+
+        void readDoubles(double[] data) throws IOException {
+            for (int i = 0; i < data.length; ) {
+                int n = Math.min(MAX_MAPPING / 8, data.length - i);
+                map(8L * n).asDoubleBuffer().get(data, i, n);
+                i += n;
+            }
+        }
+
+        private MappedByteBuffer map(long n) throws IOException {
+            if (n > m_size - m_position) {
+                throw new IOException("snapshot is truncated");
+            }
+
+            MappedByteBuffer retval = m_channel.map
+                    (FileChannel.MapMode.READ_ONLY, m_position, n);
+            retval.order(ByteOrder.LITTLE_ENDIAN);
+            m_position += n;
+            return retval;
+        }
+
+        private final FileChannel m_channel;
+        private final long m_size;
+        private long m_position = 0;
+
+        private static final int MAX_MAPPING = 1 << 30;
+    }
+}
@@ -0,0 +1,169 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+import java.util.Arrays;
+
+// Maps the IDs of the nodes or links in a libsea Graph to the indices of
+// the same objects in an H3Graph, the inverse of H3Graph.getNodeID() and
+// getLinkID().
+//
+// If the IDs cover a range not much larger than their number, as they do
+// in any graph read from a file, the index is simply a table over that
+// range.  Otherwise, it's an open-addressing hash table with linear
+// probing, held in a pair of int arrays.  Either way, a lookup touches
+// one or two cache lines and creates no objects.
+public class H3IDIndex {
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The object at index i has the ID {ids[i]}.  The IDs must be distinct
+    // but needn't be sorted.
+    public H3IDIndex(int[] ids) {
+        m_size = ids.length;
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < ids.length; i++) {
+            min = Math.min(min, ids[i]);
+            max = Math.max(max, ids[i]);
+        }
+
+        long range = (ids.length == 0 ? 0 : (long) max - min + 1);
+        if (range <= (long) MAX_DENSE_RANGE_FACTOR * ids.length) {
+            m_base = min;
+            m_table = new int[(int) range];
+            m_keys = null;
+            m_mask = 0;
+            Arrays.fill(m_table, -1);
+
+            for (int i = 0; i < ids.length; i++) {
+                int slot = ids[i] - min;
+                if (m_table[slot] >= 0) {
+                    throw duplicateID(ids[i]);
+                }
+                m_table[slot] = i;
+            }
+        } else {
+            int capacity = Integer.highestOneBit(ids.length) * 4;
+            m_base = 0;
+            m_table = new int[capacity];
+            m_keys = new int[capacity];
+            m_mask = capacity - 1;
+            Arrays.fill(m_table, -1);
+
+            for (int i = 0; i < ids.length; i++) {
+                int slot = hash(ids[i]) & m_mask;
+                while (m_table[slot] >= 0) {
+                    if (m_keys[slot] == ids[i]) {
+                        throw duplicateID(ids[i]);
+                    }
+                    slot = (slot + 1) & m_mask;
+                }
+                m_keys[slot] = ids[i];
+                m_table[slot] = i;
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public static H3IDIndex createNodeIndex(H3Graph graph) {
+        int[] ids = new int[graph.getNumNodes()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.getNodeID(i);
+        }
+        return new H3IDIndex(ids);
+    }
+
+    public static H3IDIndex createLinkIndex(H3Graph graph) {
+        int[] ids = new int[graph.getTotalNumLinks()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.getLinkID(i);
+        }
+        return new H3IDIndex(ids);
+    }
+
+    public int getSize() {
+        return m_size;
+    }
+
+    public boolean isDense() {
+        return m_keys == null;
+    }
+
+    // Returns the index of the object with the given ID, or -1 if there's
+    // no such object.
+    public int getIndex(int id) {
+        if (m_keys == null) {
+            long slot = (long) id - m_base;
+            return (slot >= 0 && slot < m_table.length
+                    ? m_table[(int) slot] : -1);
+        }
+
+        int slot = hash(id) & m_mask;
+        while (m_table[slot] >= 0) {
+            if (m_keys[slot] == id) {
+                return m_table[slot];
+            }
+            slot = (slot + 1) & m_mask;
+        }
+        return -1;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Fibonacci hashing; the high bits of the product are the well mixed
+    // ones, so they're folded down into the bits used by the mask.
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static IllegalArgumentException duplicateID(int id) {
+        return new IllegalArgumentException("duplicate id[" + id + "]");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    // A table is used whenever it would have at most this many slots per
+    // ID; four is about the break-even point in memory with the hash
+    // table, which has two arrays of two to four slots per ID.
+    private static final int MAX_DENSE_RANGE_FACTOR = 4;
+
+    private final int m_size;
+
+    // For a table, m_table[id - m_base] is the index of the object with
+    // the given ID, or -1.  For a hash table, m_table holds the indices
+    // and m_keys the IDs, with -1 in m_table marking an empty slot.
+    private final int m_base;
+    private final int[] m_table;
+    private final int[] m_keys;
+    private final int m_mask;
+}
@@ -0,0 +1,354 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// A directory of hyperbolic layouts, so that a graph that is opened again
+// needn't be laid out again.  Each entry is keyed by a fingerprint of the
+// spanning tree of the graph and of the layout parameters (see
+// computeKey()), and holds the layout coordinates of the nodes and the
+// radii, angles, and depths of the LayoutState, so a cached layout can
+// also be updated with H3GraphLayout.updateHyperbolicLayout().
+//
+// An entry is little-endian and consists of a header,
+//
+//    int     MAGIC
+//    int     VERSION
+//    int     numNodes
+//    int     root node
+//    int     1 if the layout is relative, 0 otherwise
+//    byte[]  the key, KEY_LENGTH bytes
+//
+// followed by the layout coordinates, in the order given by
+// H3Graph.writeLayoutArrays(), and the LayoutState, in the order given by
+// H3GraphLayout.writeLayoutState().  Like snapshots, entries are read back
+// through memory-mapped views of the file (see H3GraphSnapshot).
+//
+// Entries are written to a temporary file and renamed into place, so
+// several processes can share a cache directory.  The cache is kept under
+// a maximum size by deleting the least recently used entries whenever an
+// entry is stored.  The modification time of an entry serves as the time
+// it was last used, since access times are often not kept.
+public class H3LayoutCache {
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The directory is created if need be when the first entry is stored.
+    public H3LayoutCache(File directory, long maxSize) {
+        if (maxSize < 0) {
+            String msg = "maxSize must not be negative; found " + maxSize;
+            throw new IllegalArgumentException(msg);
+        }
+
+        m_directory = directory;
+        m_maxSize = maxSize;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Returns the cache named by the system property walrus.layoutCache,
+    // holding at most walrus.layoutCacheMegabytes (default
+    // DEFAULT_MAX_MEGABYTES) of entries, or null if the property isn't set.
+    public static H3LayoutCache fromSystemProperties() {
+        String directory = System.getProperty("walrus.layoutCache");
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+
+        long maxMegabytes = Long.getLong("walrus.layoutCacheMegabytes",
+                DEFAULT_MAX_MEGABYTES);
+        return new H3LayoutCache(new File(directory),
+                Math.max(maxMegabytes, 0L) << 20);
+    }
+
+    public File getDirectory() {
+        return m_directory;
+    }
+
+    public long getMaxSize() {
+        return m_maxSize;
+    }
+
+    // Returns the parameters of a hyperbolic layout, in the form used by
+    // H3Main and H3LayoutMain, so that they share cache entries.
+    public static String formatParameters(boolean relative,
+                                          boolean useExtendedPrecision,
+                                          boolean attemptExtended) {
+        return "hyperbolic relative=" + relative
+                + " extended=" + useExtendedPrecision
+                + " attemptExtended=" + attemptExtended;
+    }
+
+    // Returns the key of the layout of {graph} with {parameters}: a SHA-256
+    // digest, in hex, of the parameters, the root, and the tree links of
+    // each node in order.  Nothing else about the graph affects its layout.
+    // {parameters} should name everything that selects or affects the
+    // layout, such as whether it's relative or in extended precision.
+    public static String computeKey(H3Graph graph, String parameters) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new RuntimeException(e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(DIGEST_BUFFER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        byte[] bytes = parameters.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(VERSION);
+        buffer.putInt(bytes.length);
+        digest.update(buffer.flip());
+        digest.update(bytes);
+        buffer.clear();
+
+        int numNodes = graph.getNumNodes();
+        buffer.putInt(numNodes);
+        buffer.putInt(numNodes > 0 ? graph.getRootNode() : -1);
+        for (int node = 0; node < numNodes; node++) {
+            int childIndex = graph.getNodeChildIndex(node);
+            int nontreeIndex = graph.getNodeNontreeIndex(node);
+
+            addInt(digest, buffer, nontreeIndex - childIndex);
+            for (int i = childIndex; i < nontreeIndex; i++) {
+                addInt(digest, buffer, graph.getLinkDestination(i));
+            }
+        }
+        digest.update(buffer.flip());
+
+        StringBuilder retval = new StringBuilder(2 * KEY_LENGTH);
+        for (byte b : digest.digest()) {
+            retval.append(Character.forDigit((b >> 4) & 0xF, 16));
+            retval.append(Character.forDigit(b & 0xF, 16));
+        }
+        return retval.toString();
+    }
+
+    // Loads the cached layout of {graph} with {parameters} into {graph},
+    // including its relative placements if it's a relative layout, and
+    // returns its LayoutState for use with {layout}.  Returns null if the
+    // layout isn't cached; an entry that can't be read is deleted and
+    // likewise treated as missing.
+    public H3GraphLayout.LayoutState load(H3Graph graph, H3GraphLayout layout,
+                                          String parameters) {
+        int numNodes = graph.getNumNodes();
+        if (numNodes == 0) {
+            return null;
+        }
+
+        String key = computeKey(graph, parameters);
+        File file = getEntryFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            H3GraphLayout.LayoutState retval;
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                H3GraphSnapshot.Input in =
+                        new H3GraphSnapshot.Input(raf.getChannel());
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("not a layout cache entry");
+                }
+
+                int entryNumNodes = in.readInt();
+                int entryRootNode = in.readInt();
+                boolean relative = (in.readInt() != 0);
+                byte[] entryKey = new byte[KEY_LENGTH];
+                in.readBytes(entryKey);
+                if (entryNumNodes != numNodes
+                        || entryRootNode != graph.getRootNode()
+                        || !Arrays.equals(entryKey, parseKey(key))) {
+                    throw new IOException("entry is for another graph");
+                }
+
+                // Checking the length up front keeps a truncated entry from
+                // leaving the graph half loaded.
+                long length = HEADER_SIZE + 32L * numNodes
+                        + H3GraphLayout.getLayoutStateSize(numNodes);
+                if (raf.length() != length) {
+                    throw new IOException("entry is truncated");
+                }
+
+                graph.readLayoutArrays(in);
+                retval = layout.readLayoutState(numNodes, in);
+                if (relative) {
+                    layout.restoreRelativeLayout(graph, retval);
+                } else {
+                    graph.clearRelativeLayout();
+                }
+            } finally {
+                raf.close();
+            }
+
+            // Record the use for the eviction of the least recently used.
+            file.setLastModified(System.currentTimeMillis());
+            return retval;
+        } catch (IOException e) {
+            if (DEBUG_PRINT) {
+                System.out.println("Discarding layout cache entry "
+                        + file.getPath() + ": " + e.getMessage());
+            }
+            file.delete();
+            return null;
+        }
+    }
+
+    // Stores the layout of {graph}, whose LayoutState is {state}, under
+    // {parameters}, replacing any existing entry, and then evicts the least
+    // recently used entries, other than this one, while the cache is over
+    // its maximum size.
+    public void store(H3Graph graph, H3GraphLayout layout,
+                      H3GraphLayout.LayoutState state, String parameters)
+            throws IOException {
+        int numNodes = graph.getNumNodes();
+        if (numNodes == 0) {
+            return;
+        }
+
+        if (!m_directory.isDirectory() && !m_directory.mkdirs()) {
+            throw new IOException("couldn't create layout cache directory "
+                    + m_directory.getPath());
+        }
+
+        String key = computeKey(graph, parameters);
+        File file = getEntryFile(key);
+        File tmpFile = File.createTempFile(key, TMP_SUFFIX, m_directory);
+        try {
+            RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+            try {
+                H3GraphSnapshot.Output out =
+                        new H3GraphSnapshot.Output(raf.getChannel());
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(numNodes);
+                out.writeInt(graph.getRootNode());
+                out.writeInt(graph.hasRelativeLayout() ? 1 : 0);
+                out.writeBytes(parseKey(key));
+
+                graph.writeLayoutArrays(out);
+                layout.writeLayoutState(state, out);
+                out.flush();
+            } finally {
+                raf.close();
+            }
+
+            Files.move(tmpFile.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmpFile.delete();
+        }
+
+        evict(file);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private File getEntryFile(String key) {
+        return new File(m_directory, key + SUFFIX);
+    }
+
+    // Deletes the least recently used entries, other than {keep}, until
+    // the entries fit in the maximum size.
+    private void evict(File keep) {
+        File[] entries = m_directory.listFiles
+                ((dir, name) -> name.endsWith(SUFFIX));
+        if (entries == null) {
+            return;
+        }
+
+        long[] lastUsed = new long[entries.length];
+        long totalSize = 0;
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            lastUsed[i] = entries[i].lastModified();
+            totalSize += entries[i].length();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lastUsed[i]));
+
+        for (int i = 0; i < order.length && totalSize > m_maxSize; i++) {
+            File entry = entries[order[i]];
+            if (!entry.equals(keep)) {
+                long size = entry.length();
+                if (entry.delete()) {
+                    totalSize -= size;
+                }
+            }
+        }
+    }
+
+    private static void addInt(MessageDigest digest, ByteBuffer buffer,
+                               int value) {
+        if (buffer.remaining() < 4) {
+            digest.update(buffer.flip());
+            buffer.clear();
+        }
+        buffer.putInt(value);
+    }
+
+    private static byte[] parseKey(String key) {
+        byte[] retval = new byte[KEY_LENGTH];
+        for (int i = 0; i < KEY_LENGTH; i++) {
+            retval[i] = (byte) Integer.parseInt
+                    (key.substring(2 * i, 2 * i + 2), 16);
+        }
+        return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final boolean DEBUG_PRINT = false;
+
+    private static final int MAGIC = 0x434c3348; // "H3LC"
+    private static final int VERSION = 1;
+
+    private static final int KEY_LENGTH = 32; // SHA-256
+    private static final int HEADER_SIZE = 20 + KEY_LENGTH;
+    private static final String SUFFIX = ".h3lc";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final long DEFAULT_MAX_MEGABYTES = 4096;
+    private static final int DIGEST_BUFFER_SIZE = 1 << 16;
+
+    private final File m_directory;
+    private final long m_maxSize;
+}
@@ -0,0 +1,175 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.jogamp.vecmath.Point4d;
+
+// Reads and writes the layout coordinates of an H3Graph in a compact
+// binary form, so that a layout computed by H3LayoutMain can be reused
+// without laying out the graph again.
+//
+// The file is big-endian and columnar:
+//
+//    int     MAGIC
+//    int     VERSION
+//    int     numNodes
+//    int     root node ID
+//    int     id[numNodes]        IDs of the nodes in the backing graph
+//    double  layoutX[numNodes]
+//    double  layoutY[numNodes]
+//    double  layoutZ[numNodes]
+//    double  layoutW[numNodes]
+//
+// Nodes are listed in H3Graph order, which is the order of increasing
+// node ID, so a layout can be matched up with a freshly loaded graph
+// without any search.
+public class H3LayoutFile {
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public static void write(H3Graph graph, File file) throws IOException {
+        DataOutputStream out = new DataOutputStream
+                (new BufferedOutputStream(new FileOutputStream(file),
+                        BUFFER_SIZE));
+        try {
+            int numNodes = graph.getNumNodes();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(numNodes);
+            out.writeInt(graph.getNodeID(graph.getRootNode()));
+
+            for (int i = 0; i < numNodes; i++) {
+                out.writeInt(graph.getNodeID(i));
+            }
+
+            Point4d p = new Point4d();
+            for (int c = 0; c < 4; c++) {
+                for (int i = 0; i < numNodes; i++) {
+                    graph.getNodeLayoutCoordinates(i, p);
+                    out.writeDouble(getComponent(p, c));
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    // Sets the layout coordinates of {graph} from {file}.  The file must
+    // have been written for a graph with the same nodes and root.
+    public static void read(H3Graph graph, File file) throws IOException {
+        DataInputStream in = new DataInputStream
+                (new BufferedInputStream(new FileInputStream(file),
+                        BUFFER_SIZE));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a layout file: " + file.getPath());
+            }
+
+            int version = in.readInt();
+            if (version != VERSION) {
+                String msg = "unsupported layout file version " + version
+                        + " in " + file.getPath();
+                throw new IOException(msg);
+            }
+
+            int numNodes = graph.getNumNodes();
+            int fileNumNodes = in.readInt();
+            if (fileNumNodes != numNodes) {
+                String msg = "layout is for " + fileNumNodes
+                        + " nodes but graph has " + numNodes;
+                throw new IOException(msg);
+            }
+
+            int rootID = in.readInt();
+            if (rootID != graph.getNodeID(graph.getRootNode())) {
+                String msg = "layout is for a spanning tree rooted at node "
+                        + rootID + " but graph is rooted at node "
+                        + graph.getNodeID(graph.getRootNode());
+                throw new IOException(msg);
+            }
+
+            for (int i = 0; i < numNodes; i++) {
+                int id = in.readInt();
+                if (id != graph.getNodeID(i)) {
+                    String msg = "layout has node ID " + id
+                            + " where graph has node ID " + graph.getNodeID(i);
+                    throw new IOException(msg);
+                }
+            }
+
+            double[] x = readDoubles(in, numNodes);
+            double[] y = readDoubles(in, numNodes);
+            double[] z = readDoubles(in, numNodes);
+            for (int i = 0; i < numNodes; i++) {
+                graph.setNodeLayoutCoordinates(i, x[i], y[i], z[i],
+                        in.readDouble());
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static double getComponent(Point4d p, int c) {
+        switch (c) {
+            case 0:
+                return p.x;
+            case 1:
+                return p.y;
+            case 2:
+                return p.z;
+            default:
+                return p.w;
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream in, int n)
+            throws IOException {
+        double[] retval = new double[n];
+        for (int i = 0; i < n; i++) {
+            retval[i] = in.readDouble();
+        }
+        return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final int MAGIC = 0x48334c59; // "H3LY"
+    private static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+}
@@ -0,0 +1,376 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+// A headless alternative to H3Main that only lays out a graph.  It loads a
+// LibSea graph file with H3GraphFile, lays out the chosen spanning tree
+// (retrying with extended precision if necessary, as H3Main offers to),
+// and writes the layout coordinates with H3LayoutFile.  The time taken and the heap in
+// use after each phase are printed, so layouts of large graphs can be run
+// and tracked as batch jobs on machines without a display.  The time and
+// throughput of each finer-grained load phase reported by H3LoadMonitor
+// are printed as well.
+//
+// Usage: H3LayoutMain [options] <graph-file> <layout-file>
+//
+// The graph file may be compressed; see H3CompressedInput.  It may also be
+// an edge list, recognized by its suffix; see H3EdgeListFile.
+//
+//    -t <name>   spanning tree qualifier to use (default: the first one,
+//                or a breadth-first tree if the graph has none, as edge
+//                lists never do)
+//    -r <id>     build a breadth-first spanning tree rooted at the node
+//                with this ID, instead of using a qualifier
+//    -j <n>      number of layout threads (default: available processors)
+//    -x          lay out with extended precision from the start
+//    -n          don't retry with extended precision; place nodes that
+//                couldn't be laid out at the origin instead
+//
+// Layouts are taken from and stored in the layout cache named by the
+// system property walrus.layoutCache, if it's set; see H3LayoutCache.
+public class H3LayoutMain {
+    public static void main(String[] args) {
+        String spanningTree = null;
+        int rootID = -1;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        boolean useExtendedPrecision = false;
+        boolean retryExtendedPrecision = true;
+
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i++) {
+                if (args[i].equals("-t")) {
+                    spanningTree = args[++i];
+                } else if (args[i].equals("-r")) {
+                    rootID = Integer.parseInt(args[++i]);
+                    spanningTree = H3SpanningTreeBuilder.BREADTH_FIRST_TREE;
+                } else if (args[i].equals("-j")) {
+                    parallelism = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-x")) {
+                    useExtendedPrecision = true;
+                } else if (args[i].equals("-n")) {
+                    retryExtendedPrecision = false;
+                } else {
+                    usage("unknown option " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            usage("missing value for option " + args[args.length - 1]);
+        } catch (NumberFormatException e) {
+            usage("invalid number: " + e.getMessage());
+        }
+
+        if (args.length - i != 2 || parallelism < 1 || rootID < -1) {
+            usage(null);
+        }
+
+        H3LayoutMain main = new H3LayoutMain(parallelism);
+        main.setBreadthFirstRoot(rootID);
+        try {
+            main.run(new File(args[i]), new File(args[i + 1]), spanningTree,
+                    useExtendedPrecision, retryExtendedPrecision);
+        } catch (LayoutFailedException e) {
+            System.err.println("H3LayoutMain: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3LayoutMain(int parallelism) {
+        if (parallelism < 1) {
+            String msg = "parallelism must be at least 1; found "
+                    + parallelism;
+            throw new IllegalArgumentException(msg);
+        }
+
+        m_parallelism = parallelism;
+        m_monitor.addListener(new RateListener());
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The ID of the root node of breadth-first spanning trees, or -1 (the
+    // default) for the node with the most outgoing links.
+    public void setBreadthFirstRoot(int rootID) {
+        m_breadthFirstRootID = rootID;
+    }
+
+    // If {spanningTree} is null, the first spanning tree qualifier in the
+    // graph (in alphabetical order) is used, or a breadth-first spanning
+    // tree if the graph has none (see H3SpanningTreeBuilder).
+    public void run(File graphFile, File layoutFile, String spanningTree,
+                    boolean useExtendedPrecision,
+                    boolean retryExtendedPrecision)
+            throws LayoutFailedException {
+        long totalStartTime = System.currentTimeMillis();
+
+        long startTime = System.currentTimeMillis();
+        H3Graph graph;
+        if (H3EdgeListFile.isEdgeList(graphFile)) {
+            H3EdgeListFile edgeListFile = parseEdgeList(graphFile);
+            printPhase("parse", startTime);
+
+            startTime = System.currentTimeMillis();
+            graph = loadEdgeList(edgeListFile, spanningTree);
+            edgeListFile = null; // Let it be garbage collected.
+        } else {
+            H3GraphFile libSeaFile = parseGraph(graphFile);
+            printPhase("parse", startTime);
+
+            startTime = System.currentTimeMillis();
+            graph = loadGraph(libSeaFile, spanningTree);
+            libSeaFile = null; // Let it be garbage collected.
+        }
+        printPhase("load", startTime);
+
+        System.out.println("graph: " + graph.getNumNodes() + " nodes, "
+                + graph.getNumTreeLinks() + " tree links, "
+                + graph.getNumNontreeLinks() + " nontree links");
+
+        startTime = System.currentTimeMillis();
+        int numNodes = graph.getNumNodes();
+        int numReachable = graph.checkSpanningTree();
+        if (numReachable != numNodes) {
+            String msg = (numReachable < 0
+                    ? "spanning tree has a cycle or a node with two parents"
+                    : "only " + numReachable + " of " + numNodes
+                    + " nodes are reachable through the spanning tree");
+            throw new LayoutFailedException(msg);
+        }
+        printPhase("check", startTime);
+
+        startTime = System.currentTimeMillis();
+        int numBadNodes = layoutGraph(graph, useExtendedPrecision);
+        printPhase(useExtendedPrecision ? "layoutExtended" : "layout",
+                startTime);
+
+        if (numBadNodes > 0 && !useExtendedPrecision
+                && retryExtendedPrecision) {
+            System.out.println("Layout failed for " + numBadNodes + " of "
+                    + numNodes + " nodes; retrying with extended precision.");
+
+            startTime = System.currentTimeMillis();
+            numBadNodes = layoutGraph(graph, true);
+            printPhase("layoutExtended", startTime);
+        }
+
+        if (numBadNodes > 0) {
+            System.out.println("Layout failed for " + numBadNodes + " of "
+                    + numNodes + " nodes; placing them at the origin.");
+            graph.sanitizeLayoutCoordinates();
+        }
+
+        startTime = System.currentTimeMillis();
+        try {
+            H3LayoutFile.write(graph, layoutFile);
+        } catch (IOException e) {
+            String msg = "couldn't write `" + layoutFile.getPath()
+                    + "': " + e.getMessage();
+            throw new LayoutFailedException(msg);
+        }
+        printPhase("write", startTime);
+
+        long totalTime = System.currentTimeMillis() - totalStartTime;
+        System.out.println("total.time[" + totalTime + "]");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private H3GraphFile parseGraph(File file) throws LayoutFailedException {
+        try {
+            return H3GraphFile.read(file, m_parallelism, m_monitor);
+        } catch (IOException e) {
+            String msg = "couldn't read `" + file.getPath() + "': "
+                    + e.getMessage();
+            throw new LayoutFailedException(msg);
+        } catch (H3GraphLoader.InvalidGraphDataException e) {
+            String msg = "error parsing file `" + file.getPath() + "': "
+                    + e.getMessage();
+            throw new LayoutFailedException(msg);
+        }
+    }
+
+    private H3EdgeListFile parseEdgeList(File file)
+            throws LayoutFailedException {
+        try {
+            return H3EdgeListFile.read(file, m_parallelism, m_monitor);
+        } catch (IOException e) {
+            String msg = "couldn't read `" + file.getPath() + "': "
+                    + e.getMessage();
+            throw new LayoutFailedException(msg);
+        } catch (H3GraphLoader.InvalidGraphDataException e) {
+            String msg = "error parsing file `" + file.getPath() + "': "
+                    + e.getMessage();
+            throw new LayoutFailedException(msg);
+        }
+    }
+
+    private H3Graph loadEdgeList(H3EdgeListFile edgeListFile,
+                                 String spanningTree)
+            throws LayoutFailedException {
+        if (spanningTree == null) {
+            spanningTree = H3SpanningTreeBuilder.BREADTH_FIRST_TREE;
+        }
+        System.out.println("Using spanning tree `" + spanningTree + "'.");
+
+        try {
+            if (spanningTree.equals(H3SpanningTreeBuilder.BREADTH_FIRST_TREE)) {
+                return edgeListFile.loadBreadthFirst
+                        (m_breadthFirstRootID, m_monitor);
+            }
+            return edgeListFile.load(spanningTree, m_monitor);
+        } catch (H3GraphLoader.InvalidGraphDataException e) {
+            String msg = "graph file lacks needed data: " + e.getMessage();
+            throw new LayoutFailedException(msg);
+        } catch (IllegalArgumentException e) {
+            throw new LayoutFailedException(e.getMessage());
+        }
+    }
+
+    private H3Graph loadGraph(H3GraphFile libSeaFile, String spanningTree)
+            throws LayoutFailedException {
+        if (spanningTree == null) {
+            List<String> qualifiers = libSeaFile.loadSpanningTreeQualifiers();
+            spanningTree = (qualifiers.isEmpty()
+                            ? H3SpanningTreeBuilder.BREADTH_FIRST_TREE
+                            : qualifiers.get(0));
+        }
+        System.out.println("Using spanning tree `" + spanningTree + "'.");
+
+        try {
+            if (spanningTree.equals(H3SpanningTreeBuilder.BREADTH_FIRST_TREE)) {
+                return libSeaFile.loadBreadthFirst
+                        (m_breadthFirstRootID, m_monitor);
+            }
+            return libSeaFile.load(spanningTree, m_monitor);
+        } catch (H3GraphLoader.InvalidGraphDataException e) {
+            String msg = "graph file lacks needed data: " + e.getMessage();
+            throw new LayoutFailedException(msg);
+        } catch (IllegalArgumentException e) {
+            // H3GraphFile.load() throws this for an unknown qualifier, and
+            // loadBreadthFirst() for an unknown root.
+            throw new LayoutFailedException(e.getMessage());
+        }
+    }
+
+    // Returns the number of nodes that couldn't be laid out.
+    private int layoutGraph(H3Graph graph, boolean useExtendedPrecision) {
+        H3GraphLayout layout = new H3GraphLayout(false, m_parallelism);
+        String parameters = H3LayoutCache.formatParameters
+                (false, useExtendedPrecision, false);
+        if (m_layoutCache != null
+                && m_layoutCache.load(graph, layout, parameters) != null) {
+            System.out.println("Loaded layout from cache "
+                    + m_layoutCache.getDirectory().getPath());
+        } else {
+            H3GraphLayout.LayoutState state = layout.layoutHyperbolic
+                    (graph, useExtendedPrecision, m_monitor);
+            if (m_layoutCache != null && state != null) {
+                try {
+                    m_layoutCache.store(graph, layout, state, parameters);
+                } catch (IOException e) {
+                    System.out.println("Couldn't store layout in cache: "
+                            + e.getMessage());
+                }
+            }
+        }
+        return graph.getNumNodes() - graph.checkLayoutCoordinates();
+    }
+
+    // Prints the time taken by a phase that began at {startTime}, and the
+    // heap in use (after a garbage collection) at its end.
+    private void printPhase(String phase, long startTime) {
+        long duration = System.currentTimeMillis() - startTime;
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+
+        System.out.println(phase + ".time[" + duration + "] "
+                + phase + ".memory[" + (used / (1024 * 1024)) + "M]");
+    }
+
+    private static void usage(String error) {
+        if (error != null) {
+            System.err.println("H3LayoutMain: " + error);
+        }
+        System.err.println("Usage: H3LayoutMain [-t spanning-tree]"
+                + " [-r root-id] [-j threads] [-x] [-n]"
+                + " <graph-file> <layout-file>");
+        System.exit(2);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private final int m_parallelism;
+    private int m_breadthFirstRootID = -1;
+    private final H3LoadMonitor m_monitor = new H3LoadMonitor();
+    private final H3LayoutCache m_layoutCache =
+            H3LayoutCache.fromSystemProperties();
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // Prints the time and rate of each load phase as it finishes, in the
+    // same form as printPhase().
+    private static class RateListener implements H3LoadListener {
+        public void phaseStarted(H3LoadMonitor.Phase phase) {
+        }
+
+        public void phaseProgress(H3LoadMonitor.Phase phase) {
+        }
+
+        public void phaseFinished(H3LoadMonitor.Phase phase) {
+            String name = phase.getName();
+            System.out.println("  " + name + ".time[" + phase.getElapsedTime()
+                    + "] " + name + ".rate[" + Math.round(phase.getRate())
+                    + " " + phase.getUnits() + "/s]");
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    public static class LayoutFailedException extends Exception {
+        public LayoutFailedException(String s) {
+            super(s);
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -127,24 +127,17 @@ public class H3LineRenderer
 
         m_numDisplayedElements = index;
 
-        H3RenderQueue.Element element = new H3RenderQueue.Element();
-
-        boolean more = true;
-        while (more && count-- > 0) {
-            if (m_renderQueue.get(m_numDisplayedElements, element)) {
-                ++m_numDisplayedElements;
-
-                if (element.type == H3RenderQueue.Element.TYPE_NODE) {
-                    m_renderList.addNode(element.data);
-                } else if (element.type == H3RenderQueue.Element.TYPE_TREE_LINK) {
-                    m_renderList.addTreeLink(element.data);
-                } else //(type == H3RenderQueue.Element.TYPE_NONTREE_LINK)
-                {
-                    m_renderList.addNontreeLink(element.data);
-                }
+        while (count > 0) {
+            if (m_renderQueue.getBatch(m_numDisplayedElements, count,
+                    m_batch)) {
+                int numElements = m_batch.getNumElements();
+                m_numDisplayedElements += numElements;
+                count -= numElements;
+
+                m_renderList.addBatch(m_batch);
             } else {
                 retval = false;
-                more = false;
+                break;
             }
         }
 
@@ -158,6 +151,10 @@ public class H3LineRenderer
     private static final boolean DEBUG_PRINT = false;
     private static final int NUM_PER_ITERATION = 25;
 
+    // The maximum number of queue entries decoded at a time when
+    // redisplaying the elements of earlier frames.
+    private static final int BATCH_SIZE = 1024;
+
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
     private long m_maxDuration = Long.MAX_VALUE;
@@ -167,4 +164,7 @@ public class H3LineRenderer
     private final H3RenderList m_renderList;
 
     private int m_numDisplayedElements = 0;
+
+    private final H3RenderQueue.Batch m_batch =
+            new H3RenderQueue.Batch(BATCH_SIZE);
 }
@@ -0,0 +1,40 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+// Receives the progress of a graph load from an H3LoadMonitor.  Each phase
+// of the load (see H3LoadMonitor) is started, makes progress, and
+// finishes, and phases may overlap, so the calls for different phases
+// can interleave.  The calls are made on whichever thread is doing the
+// work, so a Swing listener should pass them on to the event dispatching
+// thread.
+public interface H3LoadListener {
+    void phaseStarted(H3LoadMonitor.Phase phase);
+
+    // Called at most every H3LoadMonitor.PROGRESS_INTERVAL milliseconds
+    // per phase.
+    void phaseProgress(H3LoadMonitor.Phase phase);
+
+    // Not called for a phase that was interrupted by cancellation or by
+    // an error.
+    void phaseFinished(H3LoadMonitor.Phase phase);
+}
@@ -0,0 +1,210 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Tracks the phases of loading a graph, reports their progress and timing
+// to H3LoadListeners, and lets the load be cancelled from any thread.
+//
+// A load runs through the phases
+//
+//    READ             reading the file, on a thread of its own;
+//    PARSE            tokenizing it, overlapping READ;
+//    MAP_IDS          assigning H3Graph indices to the nodes;
+//    SPANNING_TREE    searching for a spanning tree, if the graph doesn't
+//                     come with one (see H3SpanningTreeBuilder);
+//    LINKS            populating the links of the H3Graph;
+//    LAYOUT           computing the hyperbolic layout; and
+//    LAYOUT_EXTENDED  laying out in extended precision, if needed;
+//
+// although not every load goes through all of them (opening a file only
+// reads and parses it, for example).  Each phase counts its progress in
+// units (bytes, nodes, or links), so listeners can show rates as well as
+// fractions done.
+//
+// The code doing the work calls checkCancelled() at convenient points,
+// which throws java.util.concurrent.CancellationException once cancel()
+// has been called.  The exception propagates out of the load.
+public class H3LoadMonitor {
+    ////////////////////////////////////////////////////////////////////////
+    // PHASES
+    ////////////////////////////////////////////////////////////////////////
+
+    public static final String READ = "read";
+    public static final String PARSE = "parse";
+    public static final String MAP_IDS = "mapIDs";
+    public static final String SPANNING_TREE = "spanningTree";
+    public static final String LINKS = "links";
+    public static final String LAYOUT = "layout";
+    public static final String LAYOUT_EXTENDED = "layoutExtended";
+
+    public static final String BYTES = "bytes";
+    public static final String NODES = "nodes";
+    public static final String LINK_UNITS = "links";
+
+    // The minimum time between progress reports for a phase.
+    public static final long PROGRESS_INTERVAL = 100;
+
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3LoadMonitor() {
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public void addListener(H3LoadListener listener) {
+        m_listeners.add(listener);
+    }
+
+    public void removeListener(H3LoadListener listener) {
+        m_listeners.remove(listener);
+    }
+
+    public void cancel() {
+        m_isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return m_isCancelled;
+    }
+
+    public void checkCancelled() {
+        if (m_isCancelled) {
+            throw new CancellationException("graph load cancelled");
+        }
+    }
+
+    // {total} is the amount of work in the phase, or -1 if it isn't known.
+    public Phase startPhase(String name, String units, long total) {
+        checkCancelled();
+        Phase retval = new Phase(name, units, total);
+        for (H3LoadListener listener : m_listeners) {
+            listener.phaseStarted(retval);
+        }
+        return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private final List<H3LoadListener> m_listeners =
+            new CopyOnWriteArrayList<H3LoadListener>();
+    private volatile boolean m_isCancelled = false;
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // A phase in progress.  Its work may be shared among several threads,
+    // all of which may call advance().
+    public class Phase {
+        private Phase(String name, String units, long total) {
+            m_name = name;
+            m_units = units;
+            m_total = total;
+            m_startTime = System.currentTimeMillis();
+            m_lastReport.set(m_startTime);
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        public String getUnits() {
+            return m_units;
+        }
+
+        public long getTotal() {
+            return m_total;
+        }
+
+        // The work done so far; never more than the total, if it's known.
+        public long getDone() {
+            long retval = m_done.get();
+            return (m_total >= 0 ? Math.min(retval, m_total) : retval);
+        }
+
+        public long getElapsedTime() {
+            return (m_isFinished ? m_endTime : System.currentTimeMillis())
+                    - m_startTime;
+        }
+
+        // Units per second so far.
+        public double getRate() {
+            return 1000.0 * getDone() / Math.max(getElapsedTime(), 1);
+        }
+
+        public boolean isFinished() {
+            return m_isFinished;
+        }
+
+        // Records {amount} more units of work, reports progress if it's
+        // been long enough since the last report, and checks for
+        // cancellation.
+        public void advance(long amount) {
+            m_done.addAndGet(amount);
+            checkCancelled();
+
+            long now = System.currentTimeMillis();
+            long lastReport = m_lastReport.get();
+            if (now - lastReport >= PROGRESS_INTERVAL
+                    && m_lastReport.compareAndSet(lastReport, now)) {
+                for (H3LoadListener listener : m_listeners) {
+                    listener.phaseProgress(this);
+                }
+            }
+        }
+
+        public void checkCancelled() {
+            H3LoadMonitor.this.checkCancelled();
+        }
+
+        public void finish() {
+            if (m_total >= 0) {
+                m_done.set(m_total);
+            }
+            m_endTime = System.currentTimeMillis();
+            m_isFinished = true;
+            for (H3LoadListener listener : m_listeners) {
+                listener.phaseFinished(this);
+            }
+        }
+
+        private final String m_name;
+        private final String m_units;
+        private final long m_total;
+        private final long m_startTime;
+        private long m_endTime;
+        private volatile boolean m_isFinished = false;
+        private final AtomicLong m_done = new AtomicLong();
+        private final AtomicLong m_lastReport = new AtomicLong();
+    }
+}
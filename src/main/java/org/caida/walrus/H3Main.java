@@ -31,11 +31,11 @@ import org.jogamp.vecmath.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.Reader;
+import java.io.IOException;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 public class H3Main {
     ///////////////////////////////////////////////////////////////////////
@@ -113,11 +113,12 @@ public class H3Main {
             handleCloseFileRequest();
             m_statusBar.setText(MSG_LOADING_GRAPH);
 
-            try {
-                ASCIIInputStreamReader reader =
-                        new ASCIIInputStreamReader(new FileInputStream(file));
-
-                Graph backingGraph = loadGraph(file, reader);
+            if (H3GraphSnapshot.isSnapshot(file)) {
+                openSnapshot(file);
+            } else if (H3EdgeListFile.isEdgeList(file)) {
+                openEdgeList(file);
+            } else {
+                H3GraphFile libSeaFile = loadGraph(file);
 
                 if (DEBUG_PRINT_LOAD_MEMORY) {
                     m_memoryUsage.gatherAtPeak();
@@ -127,10 +128,11 @@ public class H3Main {
                     m_memoryUsage.printUsage();
                 }
 
-                if (backingGraph != null) {
-                    populateMenus(backingGraph);
+                if (libSeaFile != null) {
+                    populateMenus(libSeaFile);
 
-                    m_backingGraph = backingGraph;
+                    m_libSeaFile = libSeaFile;
+                    m_graphFile = file;
                     m_viewParameters.resetObjectTransform();
 
                     m_frame.setTitle(WALRUS_TITLE + " -- " + file.getPath());
@@ -139,14 +141,10 @@ public class H3Main {
                     m_closeMenuItem.setEnabled(true);
                     m_startMenuItem.setEnabled(true);
                 }
-            } catch (FileNotFoundException e) {
-                String msg = "File not found: " + file.getPath();
-                JOptionPane dialog = new JOptionPane();
-                JOptionPane.showMessageDialog(null, msg, "File Not Found",
-                        JOptionPane.ERROR_MESSAGE);
             }
 
-            if (m_backingGraph == null) {
+            if (m_libSeaFile == null && m_edgeListFile == null
+                    && m_snapshotGraph == null) {
                 m_statusBar.setText(MSG_NO_GRAPH_LOADED);
             }
         }
@@ -154,6 +152,120 @@ public class H3Main {
         System.out.println("Finished handleOpenFileRequest()");
     }
 
+    // A snapshot holds an already laid-out H3Graph for a single spanning
+    // tree, but not the backing libsea Graph, so only that spanning tree
+    // and the color schemes not based on attributes are offered.
+    private void openSnapshot(File file) {
+        long startTime = System.currentTimeMillis();
+
+        H3GraphSnapshot snapshot = null;
+        try {
+            snapshot = H3GraphSnapshot.read(file);
+        } catch (IOException e) {
+            String msg = "Error reading snapshot `" + file.getPath() + "': "
+                    + e.getMessage();
+            JOptionPane dialog = new JOptionPane();
+            JOptionPane.showMessageDialog(null, msg, "Open Failed",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+
+        if (DEBUG_PRINT_LOAD_TIME) {
+            long duration = System.currentTimeMillis() - startTime;
+            System.out.println("loadSnapshot.time[" + duration + "]");
+        }
+
+        if (snapshot != null) {
+            m_spanningTreeButtonGroup = new ButtonGroup();
+            JRadioButtonMenuItem menuItem =
+                    new JRadioButtonMenuItem(snapshot.getSpanningTree());
+            m_spanningTreeMenu.add(menuItem);
+            m_spanningTreeButtonGroup.add(menuItem);
+            menuItem.setSelected(true);
+
+            m_snapshotGraph = snapshot.getGraph();
+            m_graphFile = file;
+            m_viewParameters.resetObjectTransform();
+
+            m_frame.setTitle(WALRUS_TITLE + " -- " + file.getPath());
+            m_statusBar.setText(MSG_GRAPH_LOADED);
+
+            m_closeMenuItem.setEnabled(true);
+            m_startMenuItem.setEnabled(true);
+        }
+    }
+
+    // An edge list has only numeric attributes, which aren't offered for
+    // coloring or labels, so like a snapshot it gets only the color schemes
+    // not based on attributes, and its only spanning tree is the
+    // breadth-first one.
+    private void openEdgeList(File file) {
+        H3EdgeListFile edgeListFile = null;
+        try {
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            edgeListFile = (H3EdgeListFile) runWithProgress
+                    ("Opening " + file.getName(),
+                     monitor -> H3EdgeListFile.read
+                             (file, parallelism, monitor));
+        } catch (IOException e) {
+            String msg = "Error reading file `" + file.getPath() + "': "
+                    + e.getMessage();
+            JOptionPane.showMessageDialog(null, msg, "Open Failed",
+                    JOptionPane.ERROR_MESSAGE);
+        } catch (H3GraphLoader.InvalidGraphDataException e) {
+            String msg = "Error parsing file `" + file.getPath() + "': "
+                    + e.getMessage();
+            JOptionPane.showMessageDialog(null, msg, "Open Failed",
+                    JOptionPane.ERROR_MESSAGE);
+        } catch (CancellationException e) {
+            System.out.println("Cancelled loading " + file.getPath());
+        }
+
+        if (edgeListFile != null) {
+            m_spanningTreeButtonGroup = new ButtonGroup();
+            JRadioButtonMenuItem menuItem = new JRadioButtonMenuItem
+                    (H3SpanningTreeBuilder.BREADTH_FIRST_TREE);
+            m_spanningTreeMenu.add(menuItem);
+            m_spanningTreeButtonGroup.add(menuItem);
+            menuItem.setSelected(true);
+
+            m_edgeListFile = edgeListFile;
+            m_graphFile = file;
+            m_viewParameters.resetObjectTransform();
+
+            m_frame.setTitle(WALRUS_TITLE + " -- " + file.getPath());
+            m_statusBar.setText(MSG_GRAPH_LOADED);
+
+            m_closeMenuItem.setEnabled(true);
+            m_startMenuItem.setEnabled(true);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
+    private void handleSaveWithLayoutRequest(boolean askForFile) {
+        File file = null;
+        if (!askForFile && m_snapshotGraph != null) {
+            file = m_graphFile;
+        } else {
+            file = askUserForSaveFile();
+        }
+
+        if (file != null) {
+            try {
+                H3GraphSnapshot.write(m_graph,
+                        m_renderingConfiguration.spanningTree, file);
+                m_statusBar.setText("Saved graph with layout to "
+                        + file.getPath() + ".");
+            } catch (IOException e) {
+                String msg = "Error writing `" + file.getPath() + "': "
+                        + e.getMessage();
+                JOptionPane dialog = new JOptionPane();
+                JOptionPane.showMessageDialog(null, msg, "Save Failed",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////////
 
     private RenderingConfiguration createRenderingConfigurationSnapshot() {
@@ -176,6 +288,7 @@ public class H3Main {
         retval.automaticRefresh = m_automaticRefreshMenuItem.isSelected();
         retval.automaticExtendedPrecision =
                 m_automaticExtendedPrecisionMenuItem.isSelected();
+        retval.relativeLayout = m_relativeLayoutMenuItem.isSelected();
         retval.nodeColor =
                 m_colorSchemeMenu.createNodeColorConfigurationSnapshot();
         retval.treeLinkColor =
@@ -194,7 +307,7 @@ public class H3Main {
             if (menuItem != null && menuItem.isSelected()) {
                 String name = menuItem.getText();
                 AttributeDefinitionIterator iterator =
-                        m_backingGraph.getAttributeDefinition(name);
+                        getBackingGraph().getAttributeDefinition(name);
                 if (iterator.atEnd()) {
                     String msg = "no attribute named `" + name + "' found";
                     throw new RuntimeException(msg);
@@ -210,9 +323,14 @@ public class H3Main {
 
     ///////////////////////////////////////////////////////////////////////
 
-    private void populateMenus(Graph graph) {
-        m_spanningTreeQualifiers =
-                m_graphLoader.loadSpanningTreeQualifiers(graph);
+    private void populateMenus(H3GraphFile graph) {
+        m_spanningTreeQualifiers = graph.loadSpanningTreeQualifiers();
+        if (m_spanningTreeQualifiers.isEmpty()) {
+            // H3GraphFile builds a breadth-first tree for this name.
+            m_spanningTreeQualifiers = new ArrayList<String>();
+            m_spanningTreeQualifiers.add
+                    (H3SpanningTreeBuilder.BREADTH_FIRST_TREE);
+        }
         {
             m_spanningTreeButtonGroup = new ButtonGroup();
             ListIterator iterator = m_spanningTreeQualifiers.listIterator();
@@ -229,8 +347,8 @@ public class H3Main {
             }
         }
 
-        m_nodeLabelAttributes = m_graphLoader.loadAttributes
-                (graph, m_allAttributeTypeMatcher);
+        m_nodeLabelAttributes =
+                graph.loadAttributes(m_allAttributeTypeMatcher);
         {
             ListIterator iterator = m_nodeLabelAttributes.listIterator();
             while (iterator.hasNext()) {
@@ -240,7 +358,7 @@ public class H3Main {
             }
         }
 
-        m_colorSchemeMenu.populateAttributeMenus(m_graphLoader, graph);
+        m_colorSchemeMenu.populateAttributeMenus(graph);
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -254,8 +372,12 @@ public class H3Main {
         m_rootNode = -1;
         m_currentNode = -1;
         m_previousNode = -1;
-        m_backingGraph = null;
+        m_libSeaFile = null;
+        m_edgeListFile = null;
+        m_snapshotGraph = null;
+        m_graphFile = null;
         m_graph = null;
+        m_attributeStore = null;
         m_displayPosition = null;
         m_savedDisplayPosition = null;
         m_isDisplayNarrowed = false;
@@ -276,6 +398,7 @@ public class H3Main {
         m_updateMenuItem.setEnabled(false);
         m_resetRenderingMenuItem.setEnabled(false);
         m_recomputeLayoutExtendedMenuItem.setEnabled(false);
+        m_rerootMenuItem.setEnabled(false);
 
         // Display menu.
         m_narrowToSubtreeMenuItem.setEnabled(false);
@@ -323,6 +446,9 @@ public class H3Main {
             reinstateCanvasContentPane();
             setupActiveRenderingMenu();
             startRendering(renderingConfiguration);
+
+            m_saveWithLayoutMenuItem.setEnabled(true);
+            m_saveWithLayoutAsMenuItem.setEnabled(true);
         }
     }
 
@@ -522,67 +648,74 @@ public class H3Main {
     //   and used instead an approach which will work well in typical cases.
     //   If the graph creator is careful, this approach will in fact work
     //   well in all cases.
+    //
+    //   H3IDIndex now provides such a mapping cheaply (a table, or a
+    //   primitive hash table for sparse IDs), and H3AttributeStore uses it
+    //   to load each attribute, on first use, into a primitive column
+    //   indexed by H3Graph node or link index.  The methods below read
+    //   the columns, so no exceptions are thrown, and coloring or
+    //   selecting by an attribute a second time doesn't touch libsea.
 
     // NOTE: Attribute must be of type int, float3, or double3.
     private void colorNodesRGB(String colorAttribute) {
-        int attribute =
-                m_backingGraph.getAttributeDefinition(colorAttribute).getID();
+        H3AttributeStore store = getAttributeStore();
+        int attribute = store.getBackingGraph()
+                .getAttributeDefinition(colorAttribute).getID();
+        H3AttributeStore.Column column = store.getNodeColumn(attribute);
 
         int defaultColor = Color.white.getRGB();
         int numNodes = m_graph.getNumNodes();
         for (int i = 0; i < numNodes; i++) {
-            int color = defaultColor;
-            try {
-                int nodeID = m_graph.getNodeID(i);
-                ValueIterator iterator =
-                        m_backingGraph.getNodeAttribute(nodeID, attribute);
-                color = extractRGBColor(iterator);
-            } catch (AttributeUnavailableException e) {
-                // Nothing to do--simply use the default color.
-            }
-            m_graph.setNodeColor(i, color);
+            m_graph.setNodeColor(i, (column.hasValue(i)
+                                     ? extractRGBColor(column, i)
+                                     : defaultColor));
         }
     }
 
     // NOTE: Attribute must be of type int, float3, or double3.
     private void colorLinksRGB(String colorAttribute, boolean treeLink) {
-        int attribute =
-                m_backingGraph.getAttributeDefinition(colorAttribute).getID();
+        H3AttributeStore store = getAttributeStore();
+        int attribute = store.getBackingGraph()
+                .getAttributeDefinition(colorAttribute).getID();
+        H3AttributeStore.Column column = store.getLinkColumn(attribute);
 
         int defaultColor = Color.white.getRGB();
         int numLinks = m_graph.getTotalNumLinks();
         for (int i = 0; i < numLinks; i++) {
             if (m_graph.checkTreeLink(i) == treeLink) {
-                int color = defaultColor;
-                try {
-                    int linkID = m_graph.getLinkID(i);
-                    ValueIterator iterator =
-                            m_backingGraph.getLinkAttribute(linkID, attribute);
-                    color = extractRGBColor(iterator);
-                } catch (AttributeUnavailableException e) {
-                    // Nothing to do--simply use the default color.
-                }
-                m_graph.setLinkColor(i, color);
+                m_graph.setLinkColor(i, (column.hasValue(i)
+                                         ? extractRGBColor(column, i)
+                                         : defaultColor));
             }
         }
     }
 
-    private int extractRGBColor(ValueIterator iterator) {
+    // The attribute store is built on demand for m_graph, whose indices
+    // its columns follow.
+    private H3AttributeStore getAttributeStore() {
+        if (m_attributeStore == null) {
+            m_attributeStore =
+                    new H3AttributeStore(getBackingGraph(), m_graph);
+        }
+        return m_attributeStore;
+    }
+
+    private int extractRGBColor(H3AttributeStore.Column column, int index) {
         int retval = 0;
-        switch (iterator.getType().getType()) {
+        switch (column.getType()) {
             case ValueType._INTEGER:
-                retval = iterator.getIntegerValue();
+                retval = column.getInteger(index);
                 break;
 
             case ValueType._FLOAT3: {
-                iterator.getFloat3Value(m_float3Temporary);
+                column.getFloat3(index, m_float3Temporary);
                 normalizeColorComponents(m_float3Temporary);
                 retval = makeColor(m_float3Temporary);
             }
             break;
 
             case ValueType._DOUBLE3: {
-                iterator.getDouble3Value(m_double3Temporary);
+                column.getDouble3(index, m_double3Temporary);
                 normalizeColorComponents(m_double3Temporary);
                 retval = makeColor(m_double3Temporary);
             }
@@ -656,20 +789,16 @@ public class H3Main {
         if (configuration.selectionAttribute == null) {
             m_graph.setNodeSelectivity(true);
         } else {
-            int attribute = m_backingGraph.getAttributeDefinition
+            H3AttributeStore store = getAttributeStore();
+            int attribute = store.getBackingGraph().getAttributeDefinition
                     (configuration.selectionAttribute).getID();
+            H3AttributeStore.Column column = store.getNodeColumn(attribute);
 
+            // Nodes without a value are assumed selected.
             int numNodes = m_graph.getNumNodes();
             for (int i = 0; i < numNodes; i++) {
-                boolean isSelected = true;
-                try {
-                    int nodeID = m_graph.getNodeID(i);
-                    isSelected = m_backingGraph.getBooleanAttribute
-                            (ObjectType.NODE, nodeID, attribute);
-                } catch (AttributeUnavailableException e) {
-                    // Assume selected.
-                }
-                m_graph.setNodeSelectivity(i, isSelected);
+                m_graph.setNodeSelectivity
+                        (i, !column.hasValue(i) || column.getBoolean(i));
             }
         }
     }
@@ -681,21 +810,17 @@ public class H3Main {
         if (configuration.selectionAttribute == null) {
             m_graph.setLinkSelectivity(treeLink, true);
         } else {
-            int attribute = m_backingGraph.getAttributeDefinition
+            H3AttributeStore store = getAttributeStore();
+            int attribute = store.getBackingGraph().getAttributeDefinition
                     (configuration.selectionAttribute).getID();
+            H3AttributeStore.Column column = store.getLinkColumn(attribute);
 
+            // Links without a value are assumed selected.
             int numLinks = m_graph.getTotalNumLinks();
             for (int i = 0; i < numLinks; i++) {
                 if (m_graph.checkTreeLink(i) == treeLink) {
-                    boolean isSelected = true;
-                    try {
-                        int linkID = m_graph.getLinkID(i);
-                        isSelected = m_backingGraph.getBooleanAttribute
-                                (ObjectType.LINK, linkID, attribute);
-                    } catch (AttributeUnavailableException e) {
-                        // Assume selected.
-                    }
-                    m_graph.setLinkSelectivity(i, isSelected);
+                    m_graph.setLinkSelectivity
+                            (i, !column.hasValue(i) || column.getBoolean(i));
                 }
             }
         }
@@ -783,6 +908,58 @@ public class H3Main {
 
     ///////////////////////////////////////////////////////////////////////
 
+    // Re-roots the spanning tree at the node at the center of the display
+    // and lays out the graph again around it.  The graph is re-rooted in
+    // place (see H3Graph.rerootSpanningTree()), so nothing is reloaded.
+    // The display starts out centered on the new root, which is at the
+    // origin, with the rotation it had before.
+    //
+    // NOTE: Assumes that a graph is being rendered.
+    private void handleRerootRequest() {
+        stopRendering();
+
+        int node = m_currentNode;
+        if (node == m_graph.getRootNode()) {
+            startRendering(m_renderingConfiguration);
+            return;
+        }
+
+        reinstateSplashScreenContentPane();
+        setupIdleRenderingMenu();
+
+        H3DisplayPosition position = m_displayPosition;
+        m_graph.rerootSpanningTree(node);
+
+        // The indices of links have changed, and narrowing the display
+        // depends on the spanning tree.
+        m_attributeStore = null;
+        m_rootNode = m_currentNode = m_previousNode = node;
+        m_displayPosition = null;
+        m_savedDisplayPosition = null;
+        m_isDisplayNarrowed = false;
+        m_restorePositionMenuItem.setEnabled(false);
+
+        m_graph.setNodeDisplayability(true);
+        m_graph.setLinkDisplayability(true);
+        m_graph.computeVisibility();
+
+        if (layoutGraph(m_renderingConfiguration, false)) {
+            m_graph.transformNodes(H3Transform.I4);
+            if (position != null) {
+                m_displayPosition = new H3DisplayPosition
+                        (node, position.getRotation(), H3Transform.I4);
+            }
+
+            reinstateCanvasContentPane();
+            setupActiveRenderingMenu();
+            startRendering(m_renderingConfiguration);
+        } else {
+            m_renderingConfiguration = null;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
     private void handleNarrowToSubtreeRequest(int node) {
         m_graph.narrowVisibility(node);
         updateDisplayNarrowingMenusAndRefresh();
@@ -853,14 +1030,28 @@ public class H3Main {
                 m_savedDisplayPosition = null;
                 m_isDisplayNarrowed = false;
 
-                m_graph = m_graphLoader.load
-                        (m_backingGraph, renderingConfiguration.spanningTree);
+                if (m_snapshotGraph != null) {
+                    m_graph = m_snapshotGraph;
+                } else if (m_edgeListFile != null) {
+                    String spanningTree = renderingConfiguration.spanningTree;
+                    m_graph = (H3Graph) runWithProgress
+                            ("Loading spanning tree " + spanningTree,
+                             monitor -> m_edgeListFile.load
+                                     (spanningTree, monitor));
+                } else {
+                    String spanningTree = renderingConfiguration.spanningTree;
+                    m_graph = (H3Graph) runWithProgress
+                            ("Loading spanning tree " + spanningTree,
+                             monitor -> m_libSeaFile.load
+                                     (spanningTree, monitor));
+                }
+                m_attributeStore = null;
 
                 m_rootNode = m_graph.getRootNode();
                 m_currentNode = m_previousNode = m_rootNode;
 
-                if (DEBUG_CHECK_ID_MAPPINGS) {
-                    checkGraphIDMappings(m_graph, m_backingGraph);
+                if (DEBUG_CHECK_ID_MAPPINGS && m_libSeaFile != null) {
+                    checkGraphIDMappings(m_graph, getBackingGraph());
                 }
 
                 retval = false;
@@ -868,7 +1059,9 @@ public class H3Main {
                 int numNodes = m_graph.getNumNodes();
                 int numReachable = m_graph.checkSpanningTree();
                 if (numReachable == numNodes) {
-                    if (layoutGraph(renderingConfiguration, false)) {
+                    // A snapshot is already laid out.
+                    if (m_snapshotGraph != null
+                            || layoutGraph(renderingConfiguration, false)) {
                         retval = true;
 
                         colorNodes(renderingConfiguration.nodeColor);
@@ -906,6 +1099,20 @@ public class H3Main {
                                     JOptionPane.ERROR_MESSAGE);
                 }
             } else {
+                if (renderingConfiguration.relativeLayout
+                        != m_renderingConfiguration.relativeLayout) {
+                    // Display positions are given in the coordinate system
+                    // of the center node only in a relative layout.
+                    m_displayPosition = null;
+                    m_savedDisplayPosition = null;
+                    m_restorePositionMenuItem.setEnabled(false);
+
+                    if (!layoutGraph(renderingConfiguration, false)) {
+                        m_renderingConfiguration = null;
+                        return false;
+                    }
+                }
+
                 boolean visibilityChanged = false;
 
                 if (!renderingConfiguration.nodeColor
@@ -948,6 +1155,15 @@ public class H3Main {
             JOptionPane dialog = new JOptionPane();
             JOptionPane.showMessageDialog(null, msg, "Rendering Setup Failed",
                     JOptionPane.ERROR_MESSAGE);
+        } catch (IOException e) {
+            retval = false;
+            String msg = "Error loading graph: " + e.getMessage();
+            JOptionPane dialog = new JOptionPane();
+            JOptionPane.showMessageDialog(null, msg, "Rendering Setup Failed",
+                    JOptionPane.ERROR_MESSAGE);
+        } catch (CancellationException e) {
+            retval = false;
+            System.out.println("Cancelled loading the spanning tree.");
         }
         return retval;
     }
@@ -956,10 +1172,73 @@ public class H3Main {
             (RenderingConfiguration renderingConfiguration,
              boolean useExtendedPrecision) {
         H3GraphLayout layout = new H3GraphLayout
-                (renderingConfiguration.automaticExtendedPrecision);
+                (renderingConfiguration.automaticExtendedPrecision, true);
+
+        boolean relative =
+                renderingConfiguration.relativeLayout && !useExtendedPrecision;
+        String cacheParameters = H3LayoutCache.formatParameters
+                (relative, useExtendedPrecision,
+                 renderingConfiguration.automaticExtendedPrecision);
+        boolean isCached = (m_layoutCache != null && m_layoutCache.load
+                (m_graph, layout, cacheParameters) != null);
+        if (isCached) {
+            System.out.println("Loaded layout from cache "
+                    + m_layoutCache.getDirectory().getPath());
+        }
+
+        // A relative layout never needs extended precision for adaptive
+        // rendering, since H3Transformer composes the placements of nodes
+        // outward from the viewer.  The layout coordinates are only used by
+        // nonadaptive rendering, so any that don't fit in double precision
+        // are simply placed at the origin.
+        if (relative) {
+            try {
+                if (!isCached) {
+                    H3GraphLayout.LayoutState state =
+                            (H3GraphLayout.LayoutState) runWithProgress
+                                    ("Laying out graph",
+                                     monitor -> layout.layoutHyperbolicRelative
+                                             (m_graph, monitor));
+                    storeCachedLayout(layout, state, cacheParameters);
+                }
+            } catch (IOException
+                     | H3GraphLoader.InvalidGraphDataException e) {
+                // Laying out neither reads files nor checks graph data.
+                throw new RuntimeException(e);
+            } catch (CancellationException e) {
+                System.out.println("Cancelled the layout.");
+                return false;
+            }
 
-        H3GraphLayout.LayoutState layoutState =
-                layout.layoutHyperbolic(m_graph, useExtendedPrecision);
+            int numBadNodes =
+                    m_graph.getNumNodes() - m_graph.checkLayoutCoordinates();
+            if (numBadNodes > 0) {
+                System.out.println("Placing " + numBadNodes
+                        + " nodes at the origin for nonadaptive rendering.");
+                m_graph.sanitizeLayoutCoordinates();
+            }
+            return true;
+        }
+
+        try {
+            if (!isCached) {
+                H3GraphLayout.LayoutState state =
+                        (H3GraphLayout.LayoutState) runWithProgress
+                                (useExtendedPrecision
+                                 ? "Laying out graph (extended precision)"
+                                 : "Laying out graph",
+                                 monitor -> layout.layoutHyperbolic
+                                         (m_graph, useExtendedPrecision,
+                                          monitor));
+                storeCachedLayout(layout, state, cacheParameters);
+            }
+        } catch (IOException | H3GraphLoader.InvalidGraphDataException e) {
+            // Laying out neither reads files nor checks graph data.
+            throw new RuntimeException(e);
+        } catch (CancellationException e) {
+            System.out.println("Cancelled the layout.");
+            return false;
+        }
 
         int numNodes = m_graph.getNumNodes();
         int numGoodNodes = m_graph.checkLayoutCoordinates();
@@ -1016,6 +1295,22 @@ public class H3Main {
         return retval;
     }
 
+    // Stores the layout of m_graph in the layout cache, if there is one.
+    // The layout is stored before any nodes are placed at the origin, so
+    // that reopening the graph asks about them again.
+    private void storeCachedLayout(H3GraphLayout layout,
+                                   H3GraphLayout.LayoutState state,
+                                   String parameters) {
+        if (m_layoutCache != null && state != null) {
+            try {
+                m_layoutCache.store(m_graph, layout, state, parameters);
+            } catch (IOException e) {
+                System.out.println("Couldn't store layout in cache: "
+                        + e.getMessage());
+            }
+        }
+    }
+
     // Debugging routine.
     // XXX: Only works for ImmutableGraph at the moment.
     private void checkGraphIDMappings(H3Graph graph, Graph backingGraph) {
@@ -1112,7 +1407,7 @@ public class H3Main {
                             != ColorConfiguration.INVISIBLE);
 
             H3Transformer transformer =
-                    new H3Transformer(m_graph, queue, processNontreeLinks);
+                    new H3Transformer(m_graph, queue, processNontreeLinks, true);
 
             new Thread(transformer).start();
 
@@ -1208,7 +1503,9 @@ public class H3Main {
                 (m_viewParameters, m_canvas, m_renderLoop,
                         narrowingHandler,
                         m_rootNode, m_currentNode, m_previousNode,
-                        m_graph, m_backingGraph,
+                        m_graph,
+                        (renderingConfiguration.nodeLabelAttributes.length > 0
+                                ? getAttributeStore() : null),
                         renderingConfiguration.nodeLabelAttributes,
                         renderingConfiguration.nodeLabelAttributeNames,
                         m_statusBar,
@@ -1275,8 +1572,8 @@ public class H3Main {
 
     ///////////////////////////////////////////////////////////////////////
 
-    private Graph loadGraph(File file, Reader reader) {
-        Graph retval = null;
+    private H3GraphFile loadGraph(File file) {
+        H3GraphFile retval = null;
 
         if (DEBUG_PRINT_LOAD_MEMORY) {
             m_memoryUsage.startGathering();
@@ -1289,24 +1586,33 @@ public class H3Main {
         }
 
         try {
-            GraphBuilder builder = GraphFactory.makeImmutableGraph();
-
-            GraphFileLexer lexer = new GraphFileLexer(reader);
-            GraphFileParser parser = new GraphFileParser(lexer);
-            parser.file(builder);
-
-            retval = builder.endConstruction();
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            retval = (H3GraphFile) runWithProgress
+                    ("Opening " + file.getName(),
+                     monitor -> H3GraphFile.read(file, parallelism, monitor));
 
             if (DEBUG_PRINT_LOAD_MEMORY) {
                 m_memoryUsage.gatherAfterBufferLoaded();
             }
-        } catch (antlr.ANTLRException e) {
-            // NOTE: ANTLRException.toMessage() doesn't include position.
+        } catch (FileNotFoundException e) {
+            String msg = "File not found: " + file.getPath();
+            JOptionPane dialog = new JOptionPane();
+            JOptionPane.showMessageDialog(null, msg, "File Not Found",
+                    JOptionPane.ERROR_MESSAGE);
+        } catch (IOException e) {
+            String msg = "Error reading file `" + file.getPath() + "': "
+                    + e.getMessage();
+            JOptionPane dialog = new JOptionPane();
+            JOptionPane.showMessageDialog(null, msg, "Open Failed",
+                    JOptionPane.ERROR_MESSAGE);
+        } catch (H3GraphLoader.InvalidGraphDataException e) {
             String msg = "Error parsing file `" + file.getPath() + "': "
-                    + e;
+                    + e.getMessage();
             JOptionPane dialog = new JOptionPane();
             JOptionPane.showMessageDialog(null, msg, "Open Failed",
                     JOptionPane.ERROR_MESSAGE);
+        } catch (CancellationException e) {
+            System.out.println("Cancelled loading " + file.getPath());
         }
 
         if (DEBUG_PRINT_LOAD_TIME) {
@@ -1319,8 +1625,116 @@ public class H3Main {
         return retval;
     }
 
+    // Runs {task} on a worker thread while a modal dialog shows the
+    // progress of each load phase and lets the user cancel the load.  The
+    // dialog keeps the event dispatching thread painting the frame, yet
+    // this method returns only once the task has finished, so callers can
+    // treat it as an ordinary blocking call.  Exceptions thrown by the
+    // task, including CancellationException, are rethrown here.
+    private Object runWithProgress(String title, LoadTask task)
+            throws IOException, H3GraphLoader.InvalidGraphDataException {
+        H3LoadMonitor monitor = new H3LoadMonitor();
+        if (!SwingUtilities.isEventDispatchThread()) {
+            return task.run(monitor);
+        }
+
+        LoadProgressDialog dialog =
+                new LoadProgressDialog(m_frame, title, monitor);
+        monitor.addListener(dialog);
+
+        Object[] result = new Object[1];
+        Throwable[] error = new Throwable[1];
+        Thread worker = new Thread(() -> {
+            try {
+                result[0] = task.run(monitor);
+            } catch (Throwable e) {
+                error[0] = e;
+            } finally {
+                SwingUtilities.invokeLater(dialog::dispose);
+            }
+        }, "walrus-load");
+        worker.start();
+
+        // Because this is the event dispatching thread, the dispose()
+        // queued by the worker can only run inside the modal event loop
+        // started here, so the dialog can't be disposed of before it's
+        // shown.
+        dialog.setVisible(true);
+
+        boolean interrupted = false;
+        while (worker.isAlive()) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        Throwable e = error[0];
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof H3GraphLoader.InvalidGraphDataException) {
+            throw (H3GraphLoader.InvalidGraphDataException) e;
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return result[0];
+    }
+
+    // Returns the libsea Graph holding the attribute values of the open
+    // LibSea file, parsing it the first time it's needed, or null if the
+    // open graph is a snapshot.
+    private Graph getBackingGraph() {
+        Graph retval = null;
+        if (m_libSeaFile != null) {
+            // The file was already read once by H3GraphFile, so failures
+            // are unlikely, and there's no graceful way to back out of
+            // setting up the rendering at this point.
+            try {
+                retval = m_libSeaFile.getBackingGraph();
+            } catch (IOException e) {
+                String msg = "error rereading `"
+                        + m_libSeaFile.getFile().getPath() + "': " + e;
+                throw new RuntimeException(msg);
+            } catch (H3GraphLoader.InvalidGraphDataException e) {
+                String msg = "error parsing `"
+                        + m_libSeaFile.getFile().getPath() + "': "
+                        + e.getMessage();
+                throw new RuntimeException(msg);
+            }
+        }
+        return retval;
+    }
+
     ///////////////////////////////////////////////////////////////////////
 
+    private File askUserForSaveFile() {
+        File retval = null;
+        if (m_graphFile != null && m_snapshotGraph == null) {
+            m_fileChooser.setSelectedFile
+                    (new File(m_graphFile.getPath() + SNAPSHOT_SUFFIX));
+        }
+
+        int result = m_fileChooser.showSaveDialog(m_frame);
+        if (result == JFileChooser.APPROVE_OPTION) {
+            retval = m_fileChooser.getSelectedFile();
+            if (retval.exists()) {
+                String msg = "Overwrite " + retval.getPath() + "?";
+                int response = JOptionPane.showConfirmDialog
+                        (null, msg, "File Exists", JOptionPane.YES_NO_OPTION);
+                if (response != JOptionPane.YES_OPTION) {
+                    retval = null;
+                }
+            }
+        }
+        return retval;
+    }
+
     private File askUserForFile() {
         File retval = null;
         int result = m_fileChooser.showOpenDialog(m_frame);
@@ -1372,6 +1786,7 @@ public class H3Main {
         m_resetRenderingMenuItem.setEnabled(m_renderingConfiguration != null);
         m_recomputeLayoutExtendedMenuItem.setEnabled
                 (m_renderingConfiguration != null);
+        m_rerootMenuItem.setEnabled(false);
 
         // Display menu.
         m_narrowToSubtreeMenuItem.setEnabled(false);
@@ -1404,6 +1819,7 @@ public class H3Main {
         m_updateMenuItem.setEnabled(true);
         m_resetRenderingMenuItem.setEnabled(true);
         m_recomputeLayoutExtendedMenuItem.setEnabled(true);
+        m_rerootMenuItem.setEnabled(true);
 
         // Display menu.
         m_narrowToSubtreeMenuItem.setEnabled(true);
@@ -1461,10 +1877,14 @@ public class H3Main {
         m_saveWithLayoutMenuItem.setAccelerator
                 (KeyStroke.getKeyStroke(KeyEvent.VK_S, ActionEvent.CTRL_MASK));
         m_saveWithLayoutMenuItem.setEnabled(false);
+        m_saveWithLayoutMenuItem.addActionListener
+                (e -> handleSaveWithLayoutRequest(false));
 
         m_saveWithLayoutAsMenuItem = new JMenuItem("Save With Layout As");
         m_saveWithLayoutAsMenuItem.setMnemonic(KeyEvent.VK_A);
         m_saveWithLayoutAsMenuItem.setEnabled(false);
+        m_saveWithLayoutAsMenuItem.addActionListener
+                (e -> handleSaveWithLayoutRequest(true));
 
         m_closeMenuItem = new JMenuItem("Close");
         m_closeMenuItem.setEnabled(false);
@@ -1526,6 +1946,11 @@ public class H3Main {
         m_recomputeLayoutExtendedMenuItem.addActionListener
                 (e -> handleRecomputeLayoutExtendedRequest());
 
+        m_rerootMenuItem = new JMenuItem("Re-root At Current Node");
+        m_rerootMenuItem.setMnemonic(KeyEvent.VK_O);
+        m_rerootMenuItem.setEnabled(false);
+        m_rerootMenuItem.addActionListener(e -> handleRerootRequest());
+
         m_adaptiveMenuItem = new JCheckBoxMenuItem("Adaptive Rendering");
         m_adaptiveMenuItem.setMnemonic(KeyEvent.VK_A);
         m_adaptiveMenuItem.setSelected(true);
@@ -1560,6 +1985,11 @@ public class H3Main {
         m_automaticExtendedPrecisionMenuItem.setMnemonic(KeyEvent.VK_E);
         m_automaticExtendedPrecisionMenuItem.setSelected(true);
 
+        m_relativeLayoutMenuItem
+                = new JCheckBoxMenuItem("Relative Coordinates Layout");
+        m_relativeLayoutMenuItem.setMnemonic(KeyEvent.VK_V);
+        m_relativeLayoutMenuItem.setSelected(false);
+
         m_renderingMenu = new JMenu("Rendering");
         m_renderingMenu.setMnemonic(KeyEvent.VK_R);
         m_renderingMenu.add(m_startMenuItem);
@@ -1568,6 +1998,7 @@ public class H3Main {
         m_renderingMenu.addSeparator();
         m_renderingMenu.add(m_resetRenderingMenuItem);
         m_renderingMenu.add(m_recomputeLayoutExtendedMenuItem);
+        m_renderingMenu.add(m_rerootMenuItem);
         m_renderingMenu.addSeparator();
         m_renderingMenu.add(m_adaptiveMenuItem);
         m_renderingMenu.add(m_multipleNodeSizesMenuItem);
@@ -1576,6 +2007,7 @@ public class H3Main {
         m_renderingMenu.add(m_onScreenLabelsMenuItem);
         m_renderingMenu.add(m_automaticRefreshMenuItem);
         m_renderingMenu.add(m_automaticExtendedPrecisionMenuItem);
+        m_renderingMenu.add(m_relativeLayoutMenuItem);
 
         // Create "Display" menu. ------------------------------------------
 
@@ -1796,6 +2228,8 @@ public class H3Main {
     // PRIVATE FIELDS
     ///////////////////////////////////////////////////////////////////////
 
+    private static final String SNAPSHOT_SUFFIX = ".h3snap";
+
     private static final boolean DEBUG_PRINT_LOAD_TIME = true;
     private static final boolean DEBUG_PRINT_LOAD_MEMORY = true;
     private static final boolean DEBUG_CHECK_ID_MAPPINGS = false;
@@ -1819,8 +2253,21 @@ public class H3Main {
     private int m_rootNode;
     private int m_currentNode;
     private int m_previousNode;
-    private Graph m_backingGraph;  // Will be non-null if a graph is open.
+    // Will be non-null if a LibSea graph file is open.  The attribute
+    // values (in the backing libsea Graph) are only parsed on demand; see
+    // getBackingGraph().
+    private H3GraphFile m_libSeaFile;
+
+    // Non-null if the open graph was read from an edge list rather than
+    // a LibSea file, in which case m_libSeaFile is null.
+    private H3EdgeListFile m_edgeListFile;
+
+    // Non-null if the open graph was read from a snapshot rather than
+    // a LibSea file, in which case m_libSeaFile is null.
+    private H3Graph m_snapshotGraph;
+    private File m_graphFile; // The file that the open graph was read from.
     private H3Graph m_graph;  // ...non-null when a graph is being rendered.
+    private H3AttributeStore m_attributeStore; // See getAttributeStore().
     private H3DisplayPosition m_displayPosition; // Saved while updating disp..
     private H3DisplayPosition m_savedDisplayPosition; // Saved by user...
     private boolean m_isDisplayNarrowed;
@@ -1829,7 +2276,11 @@ public class H3Main {
     private H3RenderLoop m_renderLoop; // ...non-null when ... being rendered.
     private EventHandler m_eventHandler; // ...non-null when ...being rendered.
     private final MemoryUsage m_memoryUsage = new MemoryUsage();
-    private final H3GraphLoader m_graphLoader = new H3GraphLoader();
+
+    // The cache of layouts named by the system property walrus.layoutCache,
+    // or null; see H3LayoutCache.fromSystemProperties().
+    private final H3LayoutCache m_layoutCache =
+            H3LayoutCache.fromSystemProperties();
 
     private final JFrame m_frame;
     private final JTextField m_statusBar;
@@ -1847,6 +2298,7 @@ public class H3Main {
     private JMenuItem m_updateMenuItem;
     private JMenuItem m_resetRenderingMenuItem;
     private JMenuItem m_recomputeLayoutExtendedMenuItem;
+    private JMenuItem m_rerootMenuItem;
     private JCheckBoxMenuItem m_adaptiveMenuItem;
     private JCheckBoxMenuItem m_multipleNodeSizesMenuItem;
     private JCheckBoxMenuItem m_depthCueingMenuItem;
@@ -1854,6 +2306,7 @@ public class H3Main {
     private JCheckBoxMenuItem m_onScreenLabelsMenuItem;
     private JCheckBoxMenuItem m_automaticRefreshMenuItem;
     private JCheckBoxMenuItem m_automaticExtendedPrecisionMenuItem;
+    private JCheckBoxMenuItem m_relativeLayoutMenuItem;
 
     private JMenu m_displayMenu;
     private JMenuItem m_narrowToSubtreeMenuItem;
@@ -1876,7 +2329,7 @@ public class H3Main {
 
     private JMenu m_spanningTreeMenu;
     private ButtonGroup m_spanningTreeButtonGroup;
-    private List m_spanningTreeQualifiers;
+    private List<String> m_spanningTreeQualifiers;
 
     private ColorSchemeMenu m_colorSchemeMenu;
 
@@ -1893,6 +2346,115 @@ public class H3Main {
     // PRIVATE CLASSES
     ///////////////////////////////////////////////////////////////////////
 
+    // Work run by runWithProgress().
+    private interface LoadTask {
+        Object run(H3LoadMonitor monitor)
+                throws IOException, H3GraphLoader.InvalidGraphDataException;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
+    // A modal dialog showing the phase, fraction done, and rate of a load,
+    // with a button (and the window's close box) for cancelling it.  The
+    // H3LoadListener calls come from the loading threads, so they're
+    // passed on to the event dispatching thread.
+    private static class LoadProgressDialog extends JDialog
+            implements H3LoadListener {
+        public LoadProgressDialog(Frame owner, String title,
+                                  H3LoadMonitor monitor) {
+            super(owner, title, true);
+            m_monitor = monitor;
+
+            m_phaseLabel = new JLabel("Starting...");
+            m_progressBar = new JProgressBar(0, PROGRESS_MAXIMUM);
+            m_progressBar.setStringPainted(true);
+            m_progressBar.setIndeterminate(true);
+            m_cancelButton = new JButton("Cancel");
+            m_cancelButton.addActionListener(e -> cancel());
+
+            JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            buttonPanel.add(m_cancelButton);
+
+            JPanel panel = new JPanel(new BorderLayout(0, 8));
+            panel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+            panel.add(m_phaseLabel, BorderLayout.NORTH);
+            panel.add(m_progressBar, BorderLayout.CENTER);
+            panel.add(buttonPanel, BorderLayout.SOUTH);
+            setContentPane(panel);
+
+            setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+            addWindowListener(new WindowAdapter() {
+                public void windowClosing(WindowEvent e) {
+                    cancel();
+                }
+            });
+
+            setResizable(false);
+            pack();
+            setSize(Math.max(getWidth(), 400), getHeight());
+            setLocationRelativeTo(owner);
+        }
+
+        public void phaseStarted(H3LoadMonitor.Phase phase) {
+            showPhase(phase);
+        }
+
+        public void phaseProgress(H3LoadMonitor.Phase phase) {
+            showPhase(phase);
+        }
+
+        public void phaseFinished(H3LoadMonitor.Phase phase) {
+            showPhase(phase);
+        }
+
+        // Takes a snapshot of {phase} on the calling thread.
+        private void showPhase(H3LoadMonitor.Phase phase) {
+            String name = phase.getName();
+            String units = phase.getUnits();
+            long done = phase.getDone();
+            long total = phase.getTotal();
+            long rate = Math.round(phase.getRate());
+            SwingUtilities.invokeLater
+                    (() -> showPhase(name, units, done, total, rate));
+        }
+
+        private void showPhase(String name, String units, long done,
+                               long total, long rate) {
+            if (m_monitor.isCancelled()) {
+                return;
+            }
+
+            m_phaseLabel.setText("Phase: " + name + " (" + rate + " "
+                                 + units + "/s)");
+            if (total > 0) {
+                int value = (int) (PROGRESS_MAXIMUM * done / total);
+                m_progressBar.setIndeterminate(false);
+                m_progressBar.setValue(value);
+                m_progressBar.setString(done + " of " + total + " " + units);
+            } else {
+                m_progressBar.setIndeterminate(true);
+                m_progressBar.setString(done + " " + units);
+            }
+        }
+
+        private void cancel() {
+            m_monitor.cancel();
+            m_cancelButton.setEnabled(false);
+            m_phaseLabel.setText("Cancelling...");
+        }
+
+        private static final int PROGRESS_MAXIMUM = 1000;
+
+        private final H3LoadMonitor m_monitor;
+        private final JLabel m_phaseLabel;
+        private final JProgressBar m_progressBar;
+        private final JButton m_cancelButton;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
     private interface CancellationListener {
         void cancelled();
     }
@@ -1926,7 +2488,7 @@ public class H3Main {
                  H3Canvas3D canvas, H3RenderLoop renderLoop,
                  NarrowingEventHandler narrowingHandler,
                  int rootNode, int currentNode, int previousNode,
-                 H3Graph graph, Graph backingGraph,
+                 H3Graph graph, H3AttributeStore attributeStore,
                  int[] nodeLabelAttributes, String[] nodeLabelAttributeNames,
                  JTextField statusBar,
                  boolean onScreenLabels, boolean automaticRefresh) {
@@ -1943,13 +2505,13 @@ public class H3Main {
             m_previousNode = previousNode;
 
             m_graph = graph;
-            m_backingGraph = backingGraph;
+            m_attributeStore = attributeStore;
             m_nodeLabelAttributes = nodeLabelAttributes;
             m_nodeLabelAttributeNames = nodeLabelAttributeNames;
             m_statusBar = statusBar;
             m_onScreenLabels = onScreenLabels;
-            m_labelConstructor =
-                    new NodeLabelConstructor(backingGraph, nodeLabelAttributes);
+            m_labelConstructor = new NodeLabelConstructor
+                    (attributeStore, nodeLabelAttributes);
 
             // This is a tradeoff between seeing flicker and having to
             // manually refresh the display in some cases.  There's some
@@ -2695,7 +3257,7 @@ public class H3Main {
         private int m_previousNode;
 
         private final H3Graph m_graph;
-        private final Graph m_backingGraph;
+        private final H3AttributeStore m_attributeStore;
         private final int[] m_nodeLabelAttributes;
         private final String[] m_nodeLabelAttributeNames;
         private final JTextField m_statusBar;
@@ -2765,50 +3327,135 @@ public class H3Main {
 
     private static class NodeLabelConstructor {
         public NodeLabelConstructor
-                (Graph backingGraph, int[] nodeLabelAttributes) {
-            m_backingGraph = backingGraph;
+                (H3AttributeStore attributeStore, int[] nodeLabelAttributes) {
+            m_attributeStore = attributeStore;
+            m_backingGraph = (attributeStore == null
+                              ? null : attributeStore.getBackingGraph());
             m_nodeLabelAttributes = nodeLabelAttributes;
         }
 
-        // The parameter {node} should be the ID of a node in the
-        // backing libsea Graph.  It should not be the ID (index) of a node
-        // in H3Graph.
+        // The parameter {node} should be the index of a node in H3Graph,
+        // not its ID in the backing libsea Graph.
         public String[] extractValues(int node, boolean quoteStrings) {
             String[] retval = new String[m_nodeLabelAttributes.length];
 
             for (int i = 0; i < m_nodeLabelAttributes.length; i++) {
                 StringBuffer buffer = new StringBuffer();
 
-                try {
-                    int attribute = m_nodeLabelAttributes[i];
-                    ValueIterator iterator =
-                            m_backingGraph.getNodeAttribute(node, attribute);
+                int attribute = m_nodeLabelAttributes[i];
+                H3AttributeStore.Column column =
+                        m_attributeStore.getNodeColumn(attribute);
+                if (column == null) {
+                    addListAttributeValues(buffer, node, attribute,
+                                           quoteStrings);
+                } else if (column.hasValue(node)) {
+                    addAttributeValue(buffer, column, node, quoteStrings);
+                } else {
+                    buffer.append("<<unavailable>>");
+                }
 
-                    boolean isListType = iterator.getType().isListType();
-                    if (isListType) {
-                        buffer.append('[');
-                    }
+                retval[i] = buffer.toString();
+            }
 
-                    int k = 0;
-                    while (!iterator.atEnd()) {
-                        if (k++ > 0) {
-                            buffer.append(", ");
-                        }
-                        addAttributeValue(buffer, iterator, quoteStrings);
-                        iterator.advance();
-                    }
+            return retval;
+        }
 
-                    if (isListType) {
-                        buffer.append(']');
-                    }
-                } catch (AttributeUnavailableException e) {
+        // List attributes have no columns, so their values are read from
+        // the backing libsea Graph.
+        private void addListAttributeValues
+                (StringBuffer buffer, int node, int attribute,
+                 boolean quoteStrings) {
+            try {
+                int nodeID = m_attributeStore.getGraph().getNodeID(node);
+                if (nodeID < 0) {
+                    // The virtual root of a breadth-first tree isn't in
+                    // the backing graph.
                     buffer.append("<<unavailable>>");
+                    return;
                 }
+                ValueIterator iterator =
+                        m_backingGraph.getNodeAttribute(nodeID, attribute);
 
-                retval[i] = buffer.toString();
+                buffer.append('[');
+                int k = 0;
+                while (!iterator.atEnd()) {
+                    if (k++ > 0) {
+                        buffer.append(", ");
+                    }
+                    addAttributeValue(buffer, iterator, quoteStrings);
+                    iterator.advance();
+                }
+                buffer.append(']');
+            } catch (AttributeUnavailableException e) {
+                buffer.append("<<unavailable>>");
             }
+        }
 
-            return retval;
+        private void addAttributeValue
+                (StringBuffer buffer, H3AttributeStore.Column column,
+                 int node, boolean quoteStrings) {
+            switch (column.getType()) {
+                case ValueType._BOOLEAN:
+                    buffer.append(column.getBoolean(node) ? 'T' : 'F');
+                    break;
+
+                case ValueType._INTEGER:
+                    buffer.append(column.getInteger(node));
+                    break;
+
+                case ValueType._FLOAT:
+                    buffer.append(column.getFloat(node));
+                    break;
+
+                case ValueType._DOUBLE:
+                    buffer.append(column.getDouble(node));
+                    break;
+
+                case ValueType._STRING: {
+                    String value = column.getString(node);
+                    if (quoteStrings) {
+                        buffer.append('"');
+                        buffer.append(value);
+                        buffer.append('"');
+                    } else {
+                        buffer.append(value);
+                    }
+                }
+                break;
+
+                case ValueType._FLOAT3:
+                    column.getFloat3(node, m_float3LabelData);
+                    buffer.append('{');
+                    buffer.append(m_float3LabelData[0]);
+                    buffer.append(", ");
+                    buffer.append(m_float3LabelData[1]);
+                    buffer.append(", ");
+                    buffer.append(m_float3LabelData[2]);
+                    buffer.append('}');
+                    break;
+
+                case ValueType._DOUBLE3:
+                    column.getDouble3(node, m_double3LabelData);
+                    buffer.append('{');
+                    buffer.append(m_double3LabelData[0]);
+                    buffer.append(", ");
+                    buffer.append(m_double3LabelData[1]);
+                    buffer.append(", ");
+                    buffer.append(m_double3LabelData[2]);
+                    buffer.append('}');
+                    break;
+
+                case ValueType._ENUMERATION: {
+                    int value = column.getInteger(node);
+                    ReadOnlyEnumeratorIterator enumerator =
+                            m_backingGraph.getEnumerator(value);
+                    buffer.append(enumerator.getName());
+                }
+                break;
+
+                default:
+                    throw new RuntimeException();
+            }
         }
 
         private void addAttributeValue
@@ -2878,6 +3525,7 @@ public class H3Main {
             }
         }
 
+        private final H3AttributeStore m_attributeStore;
         private final Graph m_backingGraph;
         private final int[] m_nodeLabelAttributes;
         private final float[] m_float3LabelData = new float[3];
@@ -2948,9 +3596,8 @@ public class H3Main {
             return m_colorSchemeMenu;
         }
 
-        public void populateAttributeMenus(H3GraphLoader graphLoader,
-                                           Graph graph) {
-            m_attributeCache = new AttributeCache(graphLoader, graph);
+        public void populateAttributeMenus(H3GraphFile graph) {
+            m_attributeCache = new AttributeCache(graph);
             m_nodeColorSelection.populateAttributeMenus(m_attributeCache);
             m_treeLinkColorSelection.populateAttributeMenus(m_attributeCache);
             m_nontreeLinkColorSelection.populateAttributeMenus
@@ -3731,6 +4378,7 @@ public class H3Main {
         public boolean onScreenLabels;
         public boolean automaticRefresh;
         public boolean automaticExtendedPrecision;
+        public boolean relativeLayout;
 
         public ColorConfiguration nodeColor;
         public ColorConfiguration treeLinkColor;
@@ -3751,6 +4399,7 @@ public class H3Main {
             System.out.println("\tautomaticRefresh = " + automaticRefresh);
             System.out.println("\tautomaticExtendedPrecision = "
                     + automaticExtendedPrecision);
+            System.out.println("\trelativeLayout = " + relativeLayout);
 
             System.out.print("(Node) ");
             nodeColor.print();
@@ -3826,13 +4475,13 @@ public class H3Main {
     ///////////////////////////////////////////////////////////////////////
 
     private static class AttributeCache {
-        public AttributeCache(H3GraphLoader graphLoader, Graph graph) {
-            m_scalarColorAttributes = graphLoader.loadAttributes
-                    (graph, m_scalarColorAttributeTypeMatcher);
-            m_RGBColorAttributes = graphLoader.loadAttributes
-                    (graph, m_RGBColorAttributeTypeMatcher);
-            m_selectionAttributes = graphLoader.loadAttributes
-                    (graph, m_selectionAttributeTypeMatcher);
+        public AttributeCache(H3GraphFile graph) {
+            m_scalarColorAttributes =
+                    graph.loadAttributes(m_scalarColorAttributeTypeMatcher);
+            m_RGBColorAttributes =
+                    graph.loadAttributes(m_RGBColorAttributeTypeMatcher);
+            m_selectionAttributes =
+                    graph.loadAttributes(m_selectionAttributeTypeMatcher);
         }
 
         public List getScalarColorAttributes() {
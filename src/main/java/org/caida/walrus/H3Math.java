@@ -21,6 +21,7 @@ package org.caida.walrus;//
 
 
 
+import mpfun.DoubleDouble;
 import org.jogamp.vecmath.Matrix4d;
 import org.jogamp.vecmath.Point3d;
 import org.jogamp.vecmath.Point4d;
@@ -131,6 +132,14 @@ public class H3Math {
         return Math.sqrt(1.0 - 1.0 / (y * y));
     }
 
+    // The extended-precision version of the above, stored in {result}.
+    // Since sqrt(1 - 1/cosh^2(x/2)) = tanh(|x|/2), this keeps the distance
+    // of points near the boundary distinct from 1, where the double
+    // precision version rounds to 1 already for x of about 37.
+    public static void euclideanDistance(double x, DoubleDouble result) {
+        result.set(Math.abs(x) / 2.0).tanh();
+    }
+
     // This is the Klein metric given in "Visualizing Hyperbolic Space:
     // Unusual Uses of 4x4 Matrices" by Phillips and Gunn.
 
@@ -20,267 +20,287 @@ package org.caida.walrus;//
 // 
 
 
-// A limited substitute for org.jogamp.vecmath.Matrix4d that uses the MPJava
-// multi-precision floating-point classes.
+// A limited substitute for org.jogamp.vecmath.Matrix4d that uses
+// extended-precision (double-double) arithmetic.
 //
 // This was independently written without consulting Sun's source, though
 // the interface of this class mimics Sun's.
+//
+// As with H3Point4d, the elements are mutable DoubleDouble objects owned
+// by the matrix and updated in place, so no objects are allocated once
+// a matrix has been created.
 
 
 
 import mpfun.*;
 
 public final class H3Matrix4d {
-    public MPReal m00;
-    public MPReal m01;
-    public MPReal m02;
-    public MPReal m03;
-    public MPReal m10;
-    public MPReal m11;
-    public MPReal m12;
-    public MPReal m13;
-    public MPReal m20;
-    public MPReal m21;
-    public MPReal m22;
-    public MPReal m23;
-    public MPReal m30;
-    public MPReal m31;
-    public MPReal m32;
-    public MPReal m33;
+    public final DoubleDouble m00 = new DoubleDouble();
+    public final DoubleDouble m01 = new DoubleDouble();
+    public final DoubleDouble m02 = new DoubleDouble();
+    public final DoubleDouble m03 = new DoubleDouble();
+    public final DoubleDouble m10 = new DoubleDouble();
+    public final DoubleDouble m11 = new DoubleDouble();
+    public final DoubleDouble m12 = new DoubleDouble();
+    public final DoubleDouble m13 = new DoubleDouble();
+    public final DoubleDouble m20 = new DoubleDouble();
+    public final DoubleDouble m21 = new DoubleDouble();
+    public final DoubleDouble m22 = new DoubleDouble();
+    public final DoubleDouble m23 = new DoubleDouble();
+    public final DoubleDouble m30 = new DoubleDouble();
+    public final DoubleDouble m31 = new DoubleDouble();
+    public final DoubleDouble m32 = new DoubleDouble();
+    public final DoubleDouble m33 = new DoubleDouble();
 
     public H3Matrix4d() {
-        MPReal zero = new MPReal(0);
+    }
 
-        this.m00 = zero;
-        this.m01 = zero;
-        this.m02 = zero;
-        this.m03 = zero;
-        this.m10 = zero;
-        this.m11 = zero;
-        this.m12 = zero;
-        this.m13 = zero;
-        this.m20 = zero;
-        this.m21 = zero;
-        this.m22 = zero;
-        this.m23 = zero;
-        this.m30 = zero;
-        this.m31 = zero;
-        this.m32 = zero;
-        this.m33 = zero;
+    public H3Matrix4d(H3Matrix4d m1) {
+        set(m1);
     }
 
-    public H3Matrix4d(MPReal m00, MPReal m01, MPReal m02, MPReal m03,
-                      MPReal m10, MPReal m11, MPReal m12, MPReal m13,
-                      MPReal m20, MPReal m21, MPReal m22, MPReal m23,
-                      MPReal m30, MPReal m31, MPReal m32, MPReal m33) {
-        this.m00 = m00;
-        this.m01 = m01;
-        this.m02 = m02;
-        this.m03 = m03;
-        this.m10 = m10;
-        this.m11 = m11;
-        this.m12 = m12;
-        this.m13 = m13;
-        this.m20 = m20;
-        this.m21 = m21;
-        this.m22 = m22;
-        this.m23 = m23;
-        this.m30 = m30;
-        this.m31 = m31;
-        this.m32 = m32;
-        this.m33 = m33;
+    public H3Matrix4d(DoubleDouble m00, DoubleDouble m01, DoubleDouble m02, DoubleDouble m03,
+                      DoubleDouble m10, DoubleDouble m11, DoubleDouble m12, DoubleDouble m13,
+                      DoubleDouble m20, DoubleDouble m21, DoubleDouble m22, DoubleDouble m23,
+                      DoubleDouble m30, DoubleDouble m31, DoubleDouble m32, DoubleDouble m33) {
+        this.m00.set(m00);
+        this.m01.set(m01);
+        this.m02.set(m02);
+        this.m03.set(m03);
+        this.m10.set(m10);
+        this.m11.set(m11);
+        this.m12.set(m12);
+        this.m13.set(m13);
+        this.m20.set(m20);
+        this.m21.set(m21);
+        this.m22.set(m22);
+        this.m23.set(m23);
+        this.m30.set(m30);
+        this.m31.set(m31);
+        this.m32.set(m32);
+        this.m33.set(m33);
     }
 
     public H3Matrix4d(double m00, double m01, double m02, double m03,
                       double m10, double m11, double m12, double m13,
                       double m20, double m21, double m22, double m23,
                       double m30, double m31, double m32, double m33) {
-        this.m00 = new MPReal(m00);
-        this.m01 = new MPReal(m01);
-        this.m02 = new MPReal(m02);
-        this.m03 = new MPReal(m03);
-        this.m10 = new MPReal(m10);
-        this.m11 = new MPReal(m11);
-        this.m12 = new MPReal(m12);
-        this.m13 = new MPReal(m13);
-        this.m20 = new MPReal(m20);
-        this.m21 = new MPReal(m21);
-        this.m22 = new MPReal(m22);
-        this.m23 = new MPReal(m23);
-        this.m30 = new MPReal(m30);
-        this.m31 = new MPReal(m31);
-        this.m32 = new MPReal(m32);
-        this.m33 = new MPReal(m33);
+        this.m00.set(m00);
+        this.m01.set(m01);
+        this.m02.set(m02);
+        this.m03.set(m03);
+        this.m10.set(m10);
+        this.m11.set(m11);
+        this.m12.set(m12);
+        this.m13.set(m13);
+        this.m20.set(m20);
+        this.m21.set(m21);
+        this.m22.set(m22);
+        this.m23.set(m23);
+        this.m30.set(m30);
+        this.m31.set(m31);
+        this.m32.set(m32);
+        this.m33.set(m33);
     }
 
     public void transform(H3Point4d v) {
-        MPReal x = m00.multiply(v.x).add(m01.multiply(v.y)).add(m02.multiply(v.z)).add(m03.multiply(v.w));
-        MPReal y = m10.multiply(v.x).add(m11.multiply(v.y)).add(m12.multiply(v.z)).add(m13.multiply(v.w));
-        MPReal z = m20.multiply(v.x).add(m21.multiply(v.y)).add(m22.multiply(v.z)).add(m23.multiply(v.w));
-        MPReal w = m30.multiply(v.x).add(m31.multiply(v.y)).add(m32.multiply(v.z)).add(m33.multiply(v.w));
-
-        v.x = x;
-        v.y = y;
-        v.z = z;
-        v.w = w;
+        v.transform(this);
     }
 
+    // this = this * m1
     public void mul(H3Matrix4d m1) {
-        MPReal t00 = m00.multiply(m1.m00).add(m01.multiply(m1.m10)).add(m02.multiply(m1.m20)).add(m03.multiply(m1.m30));
-        MPReal t10 = m10.multiply(m1.m00).add(m11.multiply(m1.m10)).add(m12.multiply(m1.m20)).add(m13.multiply(m1.m30));
-        MPReal t20 = m20.multiply(m1.m00).add(m21.multiply(m1.m10)).add(m22.multiply(m1.m20)).add(m23.multiply(m1.m30));
-        MPReal t30 = m30.multiply(m1.m00).add(m31.multiply(m1.m10)).add(m32.multiply(m1.m20)).add(m33.multiply(m1.m30));
+        if (m1 == this) {
+            m1 = new H3Matrix4d(this);
+        }
 
-        MPReal t01 = m00.multiply(m1.m01).add(m01.multiply(m1.m11)).add(m02.multiply(m1.m21)).add(m03.multiply(m1.m31));
-        MPReal t11 = m10.multiply(m1.m01).add(m11.multiply(m1.m11)).add(m12.multiply(m1.m21)).add(m13.multiply(m1.m31));
-        MPReal t21 = m20.multiply(m1.m01).add(m21.multiply(m1.m11)).add(m22.multiply(m1.m21)).add(m23.multiply(m1.m31));
-        MPReal t31 = m30.multiply(m1.m01).add(m31.multiply(m1.m11)).add(m32.multiply(m1.m21)).add(m33.multiply(m1.m31));
+        // Each row of the product depends only on the same row of this,
+        // so the rows can be overwritten one at a time.
+        m_t0.set(m00).multiply(m1.m00).multiplyAdd(m01, m1.m10)
+                .multiplyAdd(m02, m1.m20).multiplyAdd(m03, m1.m30);
+        m_t1.set(m00).multiply(m1.m01).multiplyAdd(m01, m1.m11)
+                .multiplyAdd(m02, m1.m21).multiplyAdd(m03, m1.m31);
+        m_t2.set(m00).multiply(m1.m02).multiplyAdd(m01, m1.m12)
+                .multiplyAdd(m02, m1.m22).multiplyAdd(m03, m1.m32);
+        m_t3.set(m00).multiply(m1.m03).multiplyAdd(m01, m1.m13)
+                .multiplyAdd(m02, m1.m23).multiplyAdd(m03, m1.m33);
+        m00.set(m_t0);
+        m01.set(m_t1);
+        m02.set(m_t2);
+        m03.set(m_t3);
 
-        MPReal t02 = m00.multiply(m1.m02).add(m01.multiply(m1.m12)).add(m02.multiply(m1.m22)).add(m03.multiply(m1.m32));
-        MPReal t12 = m10.multiply(m1.m02).add(m11.multiply(m1.m12)).add(m12.multiply(m1.m22)).add(m13.multiply(m1.m32));
-        MPReal t22 = m20.multiply(m1.m02).add(m21.multiply(m1.m12)).add(m22.multiply(m1.m22)).add(m23.multiply(m1.m32));
-        MPReal t32 = m30.multiply(m1.m02).add(m31.multiply(m1.m12)).add(m32.multiply(m1.m22)).add(m33.multiply(m1.m32));
+        m_t0.set(m10).multiply(m1.m00).multiplyAdd(m11, m1.m10)
+                .multiplyAdd(m12, m1.m20).multiplyAdd(m13, m1.m30);
+        m_t1.set(m10).multiply(m1.m01).multiplyAdd(m11, m1.m11)
+                .multiplyAdd(m12, m1.m21).multiplyAdd(m13, m1.m31);
+        m_t2.set(m10).multiply(m1.m02).multiplyAdd(m11, m1.m12)
+                .multiplyAdd(m12, m1.m22).multiplyAdd(m13, m1.m32);
+        m_t3.set(m10).multiply(m1.m03).multiplyAdd(m11, m1.m13)
+                .multiplyAdd(m12, m1.m23).multiplyAdd(m13, m1.m33);
+        m10.set(m_t0);
+        m11.set(m_t1);
+        m12.set(m_t2);
+        m13.set(m_t3);
 
-        MPReal t03 = m00.multiply(m1.m03).add(m01.multiply(m1.m13)).add(m02.multiply(m1.m23)).add(m03.multiply(m1.m33));
-        MPReal t13 = m10.multiply(m1.m03).add(m11.multiply(m1.m13)).add(m12.multiply(m1.m23)).add(m13.multiply(m1.m33));
-        MPReal t23 = m20.multiply(m1.m03).add(m21.multiply(m1.m13)).add(m22.multiply(m1.m23)).add(m23.multiply(m1.m33));
-        MPReal t33 = m30.multiply(m1.m03).add(m31.multiply(m1.m13)).add(m32.multiply(m1.m23)).add(m33.multiply(m1.m33));
+        m_t0.set(m20).multiply(m1.m00).multiplyAdd(m21, m1.m10)
+                .multiplyAdd(m22, m1.m20).multiplyAdd(m23, m1.m30);
+        m_t1.set(m20).multiply(m1.m01).multiplyAdd(m21, m1.m11)
+                .multiplyAdd(m22, m1.m21).multiplyAdd(m23, m1.m31);
+        m_t2.set(m20).multiply(m1.m02).multiplyAdd(m21, m1.m12)
+                .multiplyAdd(m22, m1.m22).multiplyAdd(m23, m1.m32);
+        m_t3.set(m20).multiply(m1.m03).multiplyAdd(m21, m1.m13)
+                .multiplyAdd(m22, m1.m23).multiplyAdd(m23, m1.m33);
+        m20.set(m_t0);
+        m21.set(m_t1);
+        m22.set(m_t2);
+        m23.set(m_t3);
 
-        m00 = t00;
-        m01 = t01;
-        m02 = t02;
-        m03 = t03;
-        m10 = t10;
-        m11 = t11;
-        m12 = t12;
-        m13 = t13;
-        m20 = t20;
-        m21 = t21;
-        m22 = t22;
-        m23 = t23;
-        m30 = t30;
-        m31 = t31;
-        m32 = t32;
-        m33 = t33;
+        m_t0.set(m30).multiply(m1.m00).multiplyAdd(m31, m1.m10)
+                .multiplyAdd(m32, m1.m20).multiplyAdd(m33, m1.m30);
+        m_t1.set(m30).multiply(m1.m01).multiplyAdd(m31, m1.m11)
+                .multiplyAdd(m32, m1.m21).multiplyAdd(m33, m1.m31);
+        m_t2.set(m30).multiply(m1.m02).multiplyAdd(m31, m1.m12)
+                .multiplyAdd(m32, m1.m22).multiplyAdd(m33, m1.m32);
+        m_t3.set(m30).multiply(m1.m03).multiplyAdd(m31, m1.m13)
+                .multiplyAdd(m32, m1.m23).multiplyAdd(m33, m1.m33);
+        m30.set(m_t0);
+        m31.set(m_t1);
+        m32.set(m_t2);
+        m33.set(m_t3);
     }
 
-    public void mul(MPReal s) {
-        m00 = m00.multiply(s);
-        m01 = m01.multiply(s);
-        m02 = m02.multiply(s);
-        m03 = m03.multiply(s);
-        m10 = m10.multiply(s);
-        m11 = m11.multiply(s);
-        m12 = m12.multiply(s);
-        m13 = m13.multiply(s);
-        m20 = m20.multiply(s);
-        m21 = m21.multiply(s);
-        m22 = m22.multiply(s);
-        m23 = m23.multiply(s);
-        m30 = m30.multiply(s);
-        m31 = m31.multiply(s);
-        m32 = m32.multiply(s);
-        m33 = m33.multiply(s);
+    public void mul(DoubleDouble s) {
+        m00.multiply(s);
+        m01.multiply(s);
+        m02.multiply(s);
+        m03.multiply(s);
+        m10.multiply(s);
+        m11.multiply(s);
+        m12.multiply(s);
+        m13.multiply(s);
+        m20.multiply(s);
+        m21.multiply(s);
+        m22.multiply(s);
+        m23.multiply(s);
+        m30.multiply(s);
+        m31.multiply(s);
+        m32.multiply(s);
+        m33.multiply(s);
     }
 
     public void rotX(double angle) {
-        MPReal zero = new MPReal(0);
-        MPReal one = new MPReal(1);
-        MPReal theta = new MPReal(angle);
-        MPReal cos_theta = theta.cos();
-        MPReal sin_theta = theta.sin();
-        MPReal neg_sin_theta = sin_theta.negate();
+        m_t0.set(angle).cos();
+        m_t1.set(angle).sin();
+        rotX(m_t0, m_t1);
+    }
 
-        m00 = one;
-        m01 = zero;
-        m02 = zero;
-        m03 = zero;
-        m10 = zero;
-        m11 = cos_theta;
-        m12 = neg_sin_theta;
-        m13 = zero;
-        m20 = zero;
-        m21 = sin_theta;
-        m22 = cos_theta;
-        m23 = zero;
-        m30 = zero;
-        m31 = zero;
-        m32 = zero;
-        m33 = one;
+    // Sets this to the rotation whose angle has the given cosine and sine.
+    public void rotX(DoubleDouble cos, DoubleDouble sin) {
+        m00.set(1.0);
+        m01.set(0.0);
+        m02.set(0.0);
+        m03.set(0.0);
+        m10.set(0.0);
+        m11.set(cos);
+        m12.set(sin).negate();
+        m13.set(0.0);
+        m20.set(0.0);
+        m21.set(sin);
+        m22.set(cos);
+        m23.set(0.0);
+        m30.set(0.0);
+        m31.set(0.0);
+        m32.set(0.0);
+        m33.set(1.0);
     }
 
     public void rotY(double angle) {
-        MPReal zero = new MPReal(0);
-        MPReal one = new MPReal(1);
-        MPReal theta = new MPReal(angle);
-        MPReal cos_theta = theta.cos();
-        MPReal sin_theta = theta.sin();
-        MPReal neg_sin_theta = sin_theta.negate();
+        m_t0.set(angle).cos();
+        m_t1.set(angle).sin();
+        rotY(m_t0, m_t1);
+    }
 
-        m00 = cos_theta;
-        m01 = zero;
-        m02 = sin_theta;
-        m03 = zero;
-        m10 = zero;
-        m11 = one;
-        m12 = zero;
-        m13 = zero;
-        m20 = neg_sin_theta;
-        m21 = zero;
-        m22 = cos_theta;
-        m23 = zero;
-        m30 = zero;
-        m31 = zero;
-        m32 = zero;
-        m33 = one;
+    // Sets this to the rotation whose angle has the given cosine and sine.
+    public void rotY(DoubleDouble cos, DoubleDouble sin) {
+        m00.set(cos);
+        m01.set(0.0);
+        m02.set(sin);
+        m03.set(0.0);
+        m10.set(0.0);
+        m11.set(1.0);
+        m12.set(0.0);
+        m13.set(0.0);
+        m20.set(sin).negate();
+        m21.set(0.0);
+        m22.set(cos);
+        m23.set(0.0);
+        m30.set(0.0);
+        m31.set(0.0);
+        m32.set(0.0);
+        m33.set(1.0);
     }
 
     public void rotZ(double angle) {
-        MPReal zero = new MPReal(0);
-        MPReal one = new MPReal(1);
-        MPReal theta = new MPReal(angle);
-        MPReal cos_theta = theta.cos();
-        MPReal sin_theta = theta.sin();
-        MPReal neg_sin_theta = sin_theta.negate();
+        m_t0.set(angle).cos();
+        m_t1.set(angle).sin();
+        rotZ(m_t0, m_t1);
+    }
 
-        m00 = cos_theta;
-        m01 = neg_sin_theta;
-        m02 = zero;
-        m03 = zero;
-        m10 = sin_theta;
-        m11 = cos_theta;
-        m12 = zero;
-        m13 = zero;
-        m20 = zero;
-        m21 = zero;
-        m22 = one;
-        m23 = zero;
-        m30 = zero;
-        m31 = zero;
-        m32 = zero;
-        m33 = one;
+    // Sets this to the rotation whose angle has the given cosine and sine.
+    public void rotZ(DoubleDouble cos, DoubleDouble sin) {
+        m00.set(cos);
+        m01.set(sin).negate();
+        m02.set(0.0);
+        m03.set(0.0);
+        m10.set(sin);
+        m11.set(cos);
+        m12.set(0.0);
+        m13.set(0.0);
+        m20.set(0.0);
+        m21.set(0.0);
+        m22.set(1.0);
+        m23.set(0.0);
+        m30.set(0.0);
+        m31.set(0.0);
+        m32.set(0.0);
+        m33.set(1.0);
     }
 
-    public void setIdentity() {
-        MPReal zero = new MPReal(0);
-        MPReal one = new MPReal(1);
+    public void set(H3Matrix4d m1) {
+        m00.set(m1.m00);
+        m01.set(m1.m01);
+        m02.set(m1.m02);
+        m03.set(m1.m03);
+        m10.set(m1.m10);
+        m11.set(m1.m11);
+        m12.set(m1.m12);
+        m13.set(m1.m13);
+        m20.set(m1.m20);
+        m21.set(m1.m21);
+        m22.set(m1.m22);
+        m23.set(m1.m23);
+        m30.set(m1.m30);
+        m31.set(m1.m31);
+        m32.set(m1.m32);
+        m33.set(m1.m33);
+    }
 
-        this.m00 = one;
-        this.m01 = zero;
-        this.m02 = zero;
-        this.m03 = zero;
-        this.m10 = zero;
-        this.m11 = one;
-        this.m12 = zero;
-        this.m13 = zero;
-        this.m20 = zero;
-        this.m21 = zero;
-        this.m22 = one;
-        this.m23 = zero;
-        this.m30 = zero;
-        this.m31 = zero;
-        this.m32 = zero;
-        this.m33 = one;
+    public void setIdentity() {
+        m00.set(1.0);
+        m01.set(0.0);
+        m02.set(0.0);
+        m03.set(0.0);
+        m10.set(0.0);
+        m11.set(1.0);
+        m12.set(0.0);
+        m13.set(0.0);
+        m20.set(0.0);
+        m21.set(0.0);
+        m22.set(1.0);
+        m23.set(0.0);
+        m30.set(0.0);
+        m31.set(0.0);
+        m32.set(0.0);
+        m33.set(1.0);
     }
 
     public void print() {
@@ -291,4 +311,15 @@ public final class H3Matrix4d {
         System.out.println(m30 + "\t" + m31 + "\t" + m32 + "\t" + m33);
         System.out.println("--------------------------------------------");
     }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Scratch space for one row of a product, or for the cosine and sine
+    // of a rotation.
+    private final DoubleDouble m_t0 = new DoubleDouble();
+    private final DoubleDouble m_t1 = new DoubleDouble();
+    private final DoubleDouble m_t2 = new DoubleDouble();
+    private final DoubleDouble m_t3 = new DoubleDouble();
 }
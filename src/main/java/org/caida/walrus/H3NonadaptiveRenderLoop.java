@@ -45,6 +45,7 @@ public class H3NonadaptiveRenderLoop
         m_numNodes = graph.getNumNodes();
 
         m_picker = new H3NonadaptivePicker(graph, canvas, parameters);
+        m_translationNode = graph.getRootNode();
         m_translation.setIdentity();
     }
 
@@ -186,9 +187,9 @@ public class H3NonadaptiveRenderLoop
         H3DisplayPosition retval = null;
         startRequest();
         {
-            retval = new H3DisplayPosition(m_translationNode,
-                    m_parameters.getObjectTransform(),
-                    m_translation);
+            retval = H3DisplayPosition.createFromLayoutTranslation
+                    (m_graph, m_translationNode,
+                     m_parameters.getObjectTransform(), m_translation);
         }
         endRequest();
         return retval;
@@ -200,7 +201,8 @@ public class H3NonadaptiveRenderLoop
             m_picker.reset();
 
             m_parameters.setObjectTransform(position.getRotation());
-            m_translation.set(position.getTranslation());
+            m_translationNode = position.getCenterNode();
+            m_translation.set(position.getLayoutTranslation(m_graph));
             m_graph.transformNodes(m_translation);
 
             m_state = STATE_REFRESH;
@@ -482,10 +484,6 @@ public class H3NonadaptiveRenderLoop
         m_renderList.beginFrame();
         {
             for (int i = 0; i < m_numNodes; i++) {
-                if (USE_NODE_SIZES) {
-                    computeNodeRadius(i);
-                }
-
                 m_renderList.addNode(i);
 
                 int childIndex = m_graph.getNodeChildIndex(i);
@@ -505,17 +503,6 @@ public class H3NonadaptiveRenderLoop
         m_renderList.render(gc);
     }
 
-    // The same radius calculation is done in
-    // H3Transformer.transformNode(int node).
-    // The two methods should be kept in sync to ensure a consistent display
-    // when the user turns adaptive rendering on/off.
-    private void computeNodeRadius(int node) {
-        m_graph.getNodeCoordinates(node, m_nodeCoordinates);
-
-        double radius = H3Math.computeRadiusEuclidean(m_nodeCoordinates);
-        m_graph.setNodeRadius(node, radius);
-    }
-
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE METHODS (request synchronization)
     ////////////////////////////////////////////////////////////////////////
@@ -573,9 +560,9 @@ public class H3NonadaptiveRenderLoop
     // USE_NODE_SIZES is set in the constructor.
     //
     // Specifies whether we should render nodes at three sizes.
-    // For the nonadaptive render loop, this only determines whether we
-    // should calculate the radii of nodes before rendering the display,
-    // as H3PointRenderList expects the radii in H3Graph to be up-to-date.
+    // H3PointRenderList expects the radii in H3Graph to be up-to-date, but
+    // H3Graph.transformNodes() now always computes them along with the
+    // coordinates, so the nonadaptive render loop needn't do anything extra.
     private final boolean USE_NODE_SIZES;
 
     private int m_state = STATE_IDLE;
@@ -595,8 +582,6 @@ public class H3NonadaptiveRenderLoop
     private final int m_numNodes;
     private H3RotationRequest m_rotationRequest;
 
-    private final Point4d m_nodeCoordinates = new Point4d(); // scratch variable
-
     //- - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
     private static final double TRANSLATION_STEP_DISTANCE = 0.05;
@@ -166,11 +166,42 @@ public abstract class H3PickerCommon
         double pickX = x - eye.x;
         double pickY = y - eye.y;
 
+        computePointsInEye();
+        int closestIndex = findClosestPointInEye(pickX, pickY, eye.z,
+                pickRadius, pickEquivalenceRadius, nodeRadius);
+
+        if (closestIndex >= 0) {
+            Point3d p = new Point3d();
+            p.x = eye.x + m_pointsInEyeX[closestIndex];
+            p.y = eye.y + m_pointsInEyeY[closestIndex];
+            p.z = m_pointsInEyeZ[closestIndex];
+            m_canvas.getPixelLocationFromImagePlate(p, center);
+        }
+
+        if (DEBUG_PRINT) {
+            long stopTime = System.currentTimeMillis();
+            System.out.println("pick.end[" + stopTime + "]");
+            System.out.println("pick.time[" + (stopTime - startTime) + "]");
+        }
+
+        return (closestIndex >= 0 ? getNodeInEye(closestIndex) : -1);
+    }
+
+    // Returns the index (into m_pointsInEye*) of the visible point that
+    // best matches the pick point (pickX, pickY), or -1 if none is close
+    // enough.  All coordinates are in the coordinate system of the eye,
+    // and the eye is at (0, 0, eyeZ).
+    //
+    // This is separate from pick() so that it can be exercised without a
+    // canvas (see H3PickerBench).
+    int findClosestPointInEye(double pickX, double pickY, double eyeZ,
+                              double pickRadius,
+                              double pickEquivalenceRadius,
+                              double nodeRadius) {
         int closestIndex = -1;
         double closestPickDistanceSq = Double.MAX_VALUE;
         double closestEyeDistanceSq = Double.MAX_VALUE;
 
-        computePointsInEye();
         int numComputedPointsInEye = getNumComputedPointsInEye();
         for (int i = 0; i < numComputedPointsInEye; i++) {
             int node = getNodeInEye(i);
@@ -182,7 +213,7 @@ public abstract class H3PickerCommon
             double pY = m_pointsInEyeY[i];
             double pZ = m_pointsInEyeZ[i];
 
-            double perspectiveScale = 1.0 / (1.0 - pZ / eye.z);
+            double perspectiveScale = 1.0 / (1.0 - pZ / eyeZ);
             double ppX = pX * perspectiveScale;
             double ppY = pY * perspectiveScale;
 
@@ -218,7 +249,7 @@ public abstract class H3PickerCommon
                         pickEquivalenceDistance * pickEquivalenceDistance;
 
                 if (centerDistanceSq < pickEquivalenceDistanceSq) {
-                    double z0 = eye.z - pZ;
+                    double z0 = eyeZ - pZ;
                     double eyeDistanceSq = pX * pX + pY * pY + z0 * z0;
                     if (eyeDistanceSq < closestEyeDistanceSq) {
                         closestIndex = i;
@@ -242,21 +273,7 @@ public abstract class H3PickerCommon
             }
         }
 
-        if (closestIndex >= 0) {
-            Point3d p = new Point3d();
-            p.x = eye.x + m_pointsInEyeX[closestIndex];
-            p.y = eye.y + m_pointsInEyeY[closestIndex];
-            p.z = m_pointsInEyeZ[closestIndex];
-            m_canvas.getPixelLocationFromImagePlate(p, center);
-        }
-
-        if (DEBUG_PRINT) {
-            long stopTime = System.currentTimeMillis();
-            System.out.println("pick.end[" + stopTime + "]");
-            System.out.println("pick.time[" + (stopTime - startTime) + "]");
-        }
-
-        return (closestIndex >= 0 ? getNodeInEye(closestIndex) : -1);
+        return closestIndex;
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -20,153 +20,155 @@
 // 
 package org.caida.walrus;
 
-// A limited substitute for org.jogamp.vecmath.Point4d that uses the MPJava
-// multi-precision floating-point classes.
+// A limited substitute for org.jogamp.vecmath.Point4d that uses
+// extended-precision (double-double) arithmetic.
 //
 // This was independently written without consulting Sun's source, though
 // the interface of this class mimics Sun's.
+//
+// The coordinates are mutable DoubleDouble objects owned by the point, and
+// all operations update them in place, so no objects are allocated once
+// a point has been created.  Methods producing a scalar store it in a
+// caller-supplied DoubleDouble, which must not be one of the coordinates.
 
 import mpfun.*;
 import org.jogamp.vecmath.Point4d;
 
 public final class H3Point4d {
-    public MPReal x;
-    public MPReal y;
-    public MPReal z;
-    public MPReal w;
+    public final DoubleDouble x = new DoubleDouble();
+    public final DoubleDouble y = new DoubleDouble();
+    public final DoubleDouble z = new DoubleDouble();
+    public final DoubleDouble w = new DoubleDouble();
 
     public H3Point4d() {
-        MPReal zero = new MPReal(0);
-        x = zero;
-        y = zero;
-        z = zero;
-        w = zero;
     }
 
     public H3Point4d(H3Point4d rhs) {
-        x = rhs.x;
-        y = rhs.y;
-        z = rhs.z;
-        w = rhs.w;
+        set(rhs);
     }
 
     public H3Point4d(Point4d rhs) {
-        x = new MPReal(rhs.x);
-        y = new MPReal(rhs.y);
-        z = new MPReal(rhs.z);
-        w = new MPReal(rhs.w);
+        set(rhs);
     }
 
-    public H3Point4d(MPReal x, MPReal y, MPReal z, MPReal w) {
-        this.x = x;
-        this.y = y;
-        this.z = z;
-        this.w = w;
+    public H3Point4d(DoubleDouble x, DoubleDouble y, DoubleDouble z,
+                     DoubleDouble w) {
+        this.x.set(x);
+        this.y.set(y);
+        this.z.set(z);
+        this.w.set(w);
     }
 
     public H3Point4d(double x, double y, double z, double w) {
-        this.x = new MPReal(x);
-        this.y = new MPReal(y);
-        this.z = new MPReal(z);
-        this.w = new MPReal(w);
+        set(x, y, z, w);
     }
 
-    public void scale(MPReal s) {
-        x = x.multiply(s);
-        y = y.multiply(s);
-        z = z.multiply(s);
-        w = w.multiply(s);
+    public void scale(DoubleDouble s) {
+        x.multiply(s);
+        y.multiply(s);
+        z.multiply(s);
+        w.multiply(s);
     }
 
     // this = s*t1 + t2
-    public void scaleAdd(MPReal s, H3Point4d t1, H3Point4d t2) {
-        MPReal tx = t1.x.multiply(s).add(t2.x);
-        MPReal ty = t1.y.multiply(s).add(t2.y);
-        MPReal tz = t1.z.multiply(s).add(t2.z);
-        MPReal tw = t1.w.multiply(s).add(t2.w);
-
-        x = tx;
-        y = ty;
-        z = tz;
-        w = tw;
+    public void scaleAdd(DoubleDouble s, H3Point4d t1, H3Point4d t2) {
+        m_t0.set(t1.x).multiply(s).add(t2.x);
+        x.set(m_t0);
+        m_t0.set(t1.y).multiply(s).add(t2.y);
+        y.set(m_t0);
+        m_t0.set(t1.z).multiply(s).add(t2.z);
+        z.set(m_t0);
+        m_t0.set(t1.w).multiply(s).add(t2.w);
+        w.set(m_t0);
     }
 
     public void project(H3Point4d p1) {
-        MPReal tx = p1.x.divide(p1.w);
-        MPReal ty = p1.y.divide(p1.w);
-        MPReal tz = p1.z.divide(p1.w);
-
-        x = tx;
-        y = ty;
-        z = tz;
-        w = new MPReal(1);
+        // p1.w is left untouched until the end in case p1 == this.
+        x.set(p1.x).divide(p1.w);
+        y.set(p1.y).divide(p1.w);
+        z.set(p1.z).divide(p1.w);
+        w.set(1.0);
     }
 
     public void sub(H3Point4d t1) {
-        x = x.subtract(t1.x);
-        y = y.subtract(t1.y);
-        z = z.subtract(t1.z);
-        w = w.subtract(t1.w);
+        x.subtract(t1.x);
+        y.subtract(t1.y);
+        z.subtract(t1.z);
+        w.subtract(t1.w);
     }
 
     public void set(H3Point4d t1) {
-        x = t1.x;
-        y = t1.y;
-        z = t1.z;
-        w = t1.w;
+        x.set(t1.x);
+        y.set(t1.y);
+        z.set(t1.z);
+        w.set(t1.w);
     }
 
     public void set(Point4d t1) {
-        x = new MPReal(t1.x);
-        y = new MPReal(t1.y);
-        z = new MPReal(t1.z);
-        w = new MPReal(t1.w);
+        set(t1.x, t1.y, t1.z, t1.w);
     }
 
     public void set(double x, double y, double z, double w) {
-        this.x = new MPReal(x);
-        this.y = new MPReal(y);
-        this.z = new MPReal(z);
-        this.w = new MPReal(w);
+        this.x.set(x);
+        this.y.set(y);
+        this.z.set(z);
+        this.w.set(w);
+    }
+
+    // this = m * this
+    public void transform(H3Matrix4d m) {
+        m_t0.set(m.m00).multiply(x).multiplyAdd(m.m01, y)
+                .multiplyAdd(m.m02, z).multiplyAdd(m.m03, w);
+        m_t1.set(m.m10).multiply(x).multiplyAdd(m.m11, y)
+                .multiplyAdd(m.m12, z).multiplyAdd(m.m13, w);
+        m_t2.set(m.m20).multiply(x).multiplyAdd(m.m21, y)
+                .multiplyAdd(m.m22, z).multiplyAdd(m.m23, w);
+        m_t3.set(m.m30).multiply(x).multiplyAdd(m.m31, y)
+                .multiplyAdd(m.m32, z).multiplyAdd(m.m33, w);
+
+        x.set(m_t0);
+        y.set(m_t1);
+        z.set(m_t2);
+        w.set(m_t3);
     }
 
     // Euclidean norm of homogeneous coordinates [and equivalent to
     // Point4d.distance(new Point4d(0, 0, 0, 0))].
-    public MPReal vectorLength() {
-        MPReal x2 = x.multiply(x);
-        MPReal y2 = y.multiply(y);
-        MPReal z2 = z.multiply(z);
-        MPReal w2 = w.multiply(w);
-        return x2.add(y2).add(z2).divide(w2).sqrt();
+    public void vectorLength(DoubleDouble result) {
+        result.set(x).multiply(x).multiplyAdd(y, y).multiplyAdd(z, z)
+                .divide(m_t0.set(w).multiply(w)).sqrt();
     }
 
     // The usual vector dot product.
-    public MPReal vectorDot(H3Point4d v1) {
-        MPReal tx = x.multiply(v1.x);
-        MPReal ty = y.multiply(v1.y);
-        MPReal tz = z.multiply(v1.z);
-        MPReal tw = w.multiply(v1.w);
-        return tx.add(ty).add(tz).add(tw);
+    public void vectorDot(H3Point4d v1, DoubleDouble result) {
+        result.set(x).multiply(v1.x).multiplyAdd(y, v1.y)
+                .multiplyAdd(z, v1.z).multiplyAdd(w, v1.w);
     }
 
     // The usual vector dot product computed from x, y, and z only.
-    public MPReal vectorDot3(H3Point4d v1) {
-        MPReal tx = x.multiply(v1.x);
-        MPReal ty = y.multiply(v1.y);
-        MPReal tz = z.multiply(v1.z);
-        return tx.add(ty).add(tz);
+    public void vectorDot3(H3Point4d v1, DoubleDouble result) {
+        result.set(x).multiply(v1.x).multiplyAdd(y, v1.y)
+                .multiplyAdd(z, v1.z);
     }
 
-    // Returns the Minkowski inner product of this with y.
-    public MPReal minkowski(H3Point4d v) {
-        MPReal tx = x.multiply(v.x);
-        MPReal ty = y.multiply(v.y);
-        MPReal tz = z.multiply(v.z);
-        MPReal tw = w.multiply(v.w);
-        return tx.add(ty).add(tz).subtract(tw);
+    // Computes the Minkowski inner product of this with v.
+    public void minkowski(H3Point4d v, DoubleDouble result) {
+        result.set(x).multiply(v.x).multiplyAdd(y, v.y)
+                .multiplyAdd(z, v.z).multiplySubtract(w, v.w);
     }
 
     public void print() {
         System.out.println("[" + x + ", " + y + ", " + z + ", " + w + "]");
     }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Scratch space for operations that would otherwise overwrite a
+    // coordinate before they're done reading it.
+    private final DoubleDouble m_t0 = new DoubleDouble();
+    private final DoubleDouble m_t1 = new DoubleDouble();
+    private final DoubleDouble m_t2 = new DoubleDouble();
+    private final DoubleDouble m_t3 = new DoubleDouble();
 }
@@ -0,0 +1,258 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Reads a stream on a thread of its own, up to NUM_BLOCKS blocks ahead of
+// the consumer, so that reading the file overlaps with parsing it.  The
+// blocks are recycled, so no garbage is produced after the first few
+// blocks.
+//
+// If the stream is compressed (see H3CompressedInput), the reading thread
+// also decompresses it, so that inflating the file overlaps with parsing
+// it as well.
+//
+// The reading thread records its progress, in bytes of the underlying
+// (possibly compressed) stream, in a READ phase of an H3LoadMonitor,
+// which it finishes on reaching the end of the stream.
+// If the load is cancelled, the thread stops, and the consumer gets the
+// CancellationException on its next read.  Closing this stream stops the
+// thread and closes the underlying stream.
+final class H3ReadAheadInputStream extends InputStream {
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    H3ReadAheadInputStream(InputStream source, H3LoadMonitor.Phase phase) {
+        this(source, H3CompressedInput.NONE, phase);
+    }
+
+    // {format} is one of the formats of H3CompressedInput.
+    H3ReadAheadInputStream(InputStream source, String format,
+                           H3LoadMonitor.Phase phase) {
+        m_source = source;
+        m_format = format;
+        m_phase = phase;
+        for (int i = 0; i < NUM_BLOCKS; i++) {
+            m_free.add(new byte[BLOCK_SIZE]);
+        }
+
+        m_thread = new Thread(new Runnable() {
+            public void run() {
+                readAhead();
+            }
+        }, "walrus-read-ahead");
+        m_thread.setDaemon(true);
+        m_thread.start();
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public int read() throws IOException {
+        if (!nextBlock()) {
+            return -1;
+        }
+        return m_block.data[m_position++] & 0xFF;
+    }
+
+    public int read(byte[] buffer, int offset, int length)
+            throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+
+        int retval = Math.min(length, m_block.length - m_position);
+        System.arraycopy(m_block.data, m_position, buffer, offset, retval);
+        m_position += retval;
+        return retval;
+    }
+
+    public void close() throws IOException {
+        m_thread.interrupt();
+        try {
+            m_thread.join();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Makes sure m_block has bytes left to read, waiting for the reading
+    // thread if necessary.  Returns false at the end of the stream.
+    private boolean nextBlock() throws IOException {
+        if (m_block != null && m_position < m_block.length) {
+            return true;
+        }
+        if (m_block == END) {
+            return false;
+        }
+
+        if (m_block != null) {
+            m_free.add(m_block.data);
+        }
+
+        try {
+            m_block = m_full.take();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        m_position = 0;
+
+        if (m_block == END) {
+            Throwable error = m_error;
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error != null) {
+                throw (Error) error;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    // Runs on m_thread.
+    private void readAhead() {
+        InputStream in = m_source;
+        try {
+            in = H3CompressedInput.decompress
+                    (new CountingInputStream(m_source), m_format);
+            while (true) {
+                byte[] data = m_free.take();
+                int length = 0;
+                while (length < BLOCK_SIZE) {
+                    int n = in.read(data, length, BLOCK_SIZE - length);
+                    if (n < 0) {
+                        break;
+                    }
+                    length += n;
+                }
+
+                if (length > 0) {
+                    m_full.put(new Block(data, length));
+                }
+                if (length < BLOCK_SIZE) {
+                    m_phase.finish();
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed by the consumer.
+        } catch (Throwable e) {
+            m_error = e;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nothing more can go wrong for the consumer.
+            }
+
+            // There's always room, since only NUM_BLOCKS blocks exist.
+            m_full.add(END);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final int NUM_BLOCKS = 4;
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    private static final Block END = new Block(null, 0);
+
+    private final InputStream m_source;
+    private final String m_format;
+    private final H3LoadMonitor.Phase m_phase;
+    private final Thread m_thread;
+
+    private final BlockingQueue<byte[]> m_free =
+            new ArrayBlockingQueue<byte[]>(NUM_BLOCKS);
+    private final BlockingQueue<Block> m_full =
+            new ArrayBlockingQueue<Block>(NUM_BLOCKS + 1);
+    private volatile Throwable m_error;
+
+    private Block m_block;  // Being read by the consumer.
+    private int m_position; // ...within m_block.
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // Records the bytes read from the underlying stream in m_phase, which
+    // also stops the reading thread if the load is cancelled.
+    private class CountingInputStream extends FilterInputStream {
+        public CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        public int read() throws IOException {
+            int retval = in.read();
+            if (retval >= 0) {
+                m_phase.advance(1);
+            }
+            return retval;
+        }
+
+        public int read(byte[] buffer, int offset, int length)
+                throws IOException {
+            int retval = in.read(buffer, offset, length);
+            if (retval > 0) {
+                m_phase.advance(retval);
+            }
+            return retval;
+        }
+
+        public long skip(long n) throws IOException {
+            long retval = in.skip(n);
+            m_phase.advance(retval);
+            return retval;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class Block {
+        public Block(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        public final byte[] data;
+        public final int length;
+    }
+}
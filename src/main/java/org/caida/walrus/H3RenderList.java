@@ -33,5 +33,33 @@ public interface H3RenderList {
 
     void addNontreeLink(int link);
 
+    // Adds the first {count} elements of the given arrays.  Implementations
+    // can override these with tighter loops than the per-element methods.
+
+    default void addNodes(int[] nodes, int count) {
+        for (int i = 0; i < count; i++) {
+            addNode(nodes[i]);
+        }
+    }
+
+    default void addTreeLinks(int[] links, int count) {
+        for (int i = 0; i < count; i++) {
+            addTreeLink(links[i]);
+        }
+    }
+
+    default void addNontreeLinks(int[] links, int count) {
+        for (int i = 0; i < count; i++) {
+            addNontreeLink(links[i]);
+        }
+    }
+
+    // Adds all the elements of a batch taken from an H3RenderQueue.
+    default void addBatch(H3RenderQueue.Batch batch) {
+        addNodes(batch.nodes, batch.numNodes);
+        addTreeLinks(batch.treeLinks, batch.numTreeLinks);
+        addNontreeLinks(batch.nontreeLinks, batch.numNontreeLinks);
+    }
+
     void render(GraphicsContext3D gc);
 }
@@ -20,6 +20,20 @@ package org.caida.walrus;//
 // 
 
 
+// The queue of transformed elements passed from H3Transformer to the
+// renderers and pickers.
+//
+// There is a single producer (H3Transformer, whose add(), clear(), and end()
+// calls never overlap), but consumers don't take the lock in the common
+// case.  The producer copies new entries into the array and then publishes
+// them by writing the volatile element count; a consumer that reads the
+// count may then read any entry below it from the plain array.  Consumers
+// only block, on an internal monitor, when they have caught up with the
+// producer, and the producer only touches that monitor when some consumer
+// is actually waiting.
+//
+// Reading doesn't remove anything, so any number of threads may consume
+// the queue concurrently.
 public class H3RenderQueue {
     ////////////////////////////////////////////////////////////////////////
     // CONSTRUCTORS
@@ -33,55 +47,118 @@ public class H3RenderQueue {
     // PUBLIC METHODS
     ////////////////////////////////////////////////////////////////////////
 
-    public synchronized boolean get(int index, Element element) {
-        boolean retval = false;
+    // Waits until the element at {index} is available, and returns false
+    // if the queue is completed without it.
+    public boolean get(int index, Element element) {
+        if (index < m_numElements || waitForData(index)) {
+            decode(m_data[index], element);
+            return true;
+        }
+        return false;
+    }
 
-        boolean tryAgain;
-        do {
-            tryAgain = false;
-            if (index < m_numElements) {
-                decode(m_data[index], element);
-                retval = true;
-            } else {
-                if (!m_isComplete) {
-                    m_isWaitingForData = true;
-                    waitIgnore();
-                    tryAgain = true;
-                }
+    // Copies the entries starting at {from} into {dst}, waiting until at
+    // least one entry is available.  Returns the number of entries copied,
+    // which is zero only when the queue is complete and has no entries at
+    // or after {from}.
+    //
+    // See the comments for m_transformedData in H3Transformer.java for the
+    // encoding of the entries; decodeType() and decodeData() unpack them.
+    public int drainTo(int from, long[] dst) {
+        int numElements = m_numElements;
+        if (from >= numElements) {
+            if (!waitForData(from)) {
+                return 0;
             }
+            numElements = m_numElements;
         }
-        while (tryAgain);
 
-        return retval;
+        int n = Math.min(numElements - from, dst.length);
+        System.arraycopy(m_data, from, dst, 0, n);
+        return n;
     }
 
-    public synchronized int getMaxNumElements() {
+    // Waits until at least one entry starting at {from} is available, like
+    // get(), and then fills {batch} with up to {maxCount} of the available
+    // entries, split by type into runs of node, tree link, and nontree link
+    // indices.  The order of the entries of each type is preserved.
+    //
+    // Returns false if the queue is complete and has no entries at or
+    // after {from}; batch.getNumElements() gives the number consumed.
+    public boolean getBatch(int from, int maxCount, Batch batch) {
+        batch.clear();
+
+        int numElements = m_numElements;
+        if (from >= numElements) {
+            if (!waitForData(from)) {
+                return false;
+            }
+            numElements = m_numElements;
+        }
+
+        int end = from + Math.min(Math.min(maxCount, batch.getCapacity()),
+                numElements - from);
+        long[] data = m_data;
+        for (int i = from; i < end; i++) {
+            long entry = data[i];
+            int value = decodeData(entry);
+            switch (decodeType(entry)) {
+                case Element.TYPE_NODE:
+                    batch.nodes[batch.numNodes++] = value;
+                    break;
+
+                case Element.TYPE_TREE_LINK:
+                    batch.treeLinks[batch.numTreeLinks++] = value;
+                    break;
+
+                default:
+                    batch.nontreeLinks[batch.numNontreeLinks++] = value;
+                    break;
+            }
+        }
+
+        batch.numElements = end - from;
+        return true;
+    }
+
+    public int getMaxNumElements() {
         return m_data.length;
     }
 
-    public synchronized int getCurrentNumElements() {
+    public int getCurrentNumElements() {
         return m_numElements;
     }
 
-    public synchronized boolean isComplete() {
+    public boolean isComplete() {
         return m_isComplete;
     }
 
+    public static int decodeType(long data) {
+        return (int) (data >> 32);
+    }
+
+    public static int decodeData(long data) {
+        return (int) data;
+    }
+
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
-    public synchronized void add(int n, long[] data) {
-        System.arraycopy(data, 0, m_data, m_numElements, n);
-        m_numElements += n;
+    // The following are only called by the producer.
+
+    public void add(int n, long[] data) {
+        int numElements = m_numElements;
+        System.arraycopy(data, 0, m_data, numElements, n);
+        m_numElements = numElements + n;
         notifyIfWaiting();
     }
 
-    public synchronized void clear() {
-        m_numElements = 0;
+    public void clear() {
         m_isComplete = false;
+        m_numElements = 0;
         notifyIfWaiting();
     }
 
-    public synchronized void end() {
+    public void end() {
         m_isComplete = true;
         notifyIfWaiting();
     }
@@ -94,20 +171,51 @@ public class H3RenderQueue {
         // See comments for m_transformedData in H3Transformer.java
         // for details about the encoding of {data}.
 
-        element.type = (int) (data >> 32);
-        element.data = (int) (data & 0xFFFFFFFF);
+        element.type = decodeType(data);
+        element.data = decodeData(data);
+    }
+
+    // Waits until the element at {index} is available or the queue is
+    // complete, and returns whether the element is available.
+    //
+    // A waiting consumer first registers itself in m_numWaiting and only
+    // then rechecks the count, while the producer first publishes the count
+    // and only then checks m_numWaiting.  Since both are volatile, at least
+    // one side sees the other's write, so no wakeup is lost.
+    private boolean waitForData(int index) {
+        for (int i = 0; i < NUM_SPINS; i++) {
+            if (index < m_numElements) {
+                return true;
+            } else if (m_isComplete) {
+                return index < m_numElements;
+            }
+            Thread.onSpinWait();
+        }
+
+        synchronized (m_lock) {
+            ++m_numWaiting;
+            try {
+                while (index >= m_numElements && !m_isComplete) {
+                    waitIgnore();
+                }
+            } finally {
+                --m_numWaiting;
+            }
+        }
+        return index < m_numElements;
     }
 
-    private synchronized void notifyIfWaiting() {
-        if (m_isWaitingForData) {
-            m_isWaitingForData = false;
-            notifyAll();
+    private void notifyIfWaiting() {
+        if (m_numWaiting > 0) {
+            synchronized (m_lock) {
+                m_lock.notifyAll();
+            }
         }
     }
 
-    private synchronized void waitIgnore() {
+    private void waitIgnore() {
         try {
-            wait();
+            m_lock.wait();
         } catch (InterruptedException e) {
         }
     }
@@ -116,10 +224,20 @@ public class H3RenderQueue {
     // PRIVATE FIELDS
     ////////////////////////////////////////////////////////////////////////
 
+    // The number of times a consumer that has caught up with the producer
+    // polls before blocking.  The producer publishes a batch every
+    // H3Transformer.NUM_PER_ITERATION elements, so new data usually shows
+    // up quickly.
+    private static final int NUM_SPINS = 100;
+
     private final long[] m_data;
-    private int m_numElements = 0;
-    private boolean m_isComplete = false;
-    private boolean m_isWaitingForData = false;
+    private volatile int m_numElements = 0;
+    private volatile boolean m_isComplete = false;
+
+    private final Object m_lock = new Object();
+
+    // Only modified while holding m_lock.
+    private volatile int m_numWaiting = 0;
 
     ////////////////////////////////////////////////////////////////////////
     // PUBLIC CLASSES
@@ -133,4 +251,40 @@ public class H3RenderQueue {
         int type;
         int data;
     }
+
+    // A run of queue entries decoded by getBatch().  The arrays are only
+    // meaningful up to the corresponding counts.
+    public static class Batch {
+        public Batch(int capacity) {
+            nodes = new int[capacity];
+            treeLinks = new int[capacity];
+            nontreeLinks = new int[capacity];
+        }
+
+        public int getCapacity() {
+            return nodes.length;
+        }
+
+        public int getNumElements() {
+            return numElements;
+        }
+
+        void clear() {
+            numElements = 0;
+            numNodes = 0;
+            numTreeLinks = 0;
+            numNontreeLinks = 0;
+        }
+
+        int numElements;
+
+        final int[] nodes;
+        int numNodes;
+
+        final int[] treeLinks;
+        int numTreeLinks;
+
+        final int[] nontreeLinks;
+        int numNontreeLinks;
+    }
 }
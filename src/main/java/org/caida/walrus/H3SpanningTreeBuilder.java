@@ -0,0 +1,534 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Builds an H3Graph whose spanning tree is computed here, by a breadth-first
+// search, rather than read from a spanning_tree qualifier, for graphs that
+// come without one.
+//
+// The input is a plain list of links: link i goes from node sources[i] to
+// node destinations[i], and nodes are numbered from 0.  In the H3Graph,
+// node i has ID i and the link built from link i has ID i, just as
+// H3GraphFile assigns them, and the links of each node are in the reverse
+// of their order in the list, as H3GraphFile and H3GraphLoader add them.
+//
+// The search follows links from source to destination, since tree links in
+// an H3Graph go from parent to child.  It starts from a given root, or from
+// the node with the most outgoing links.  Nodes it doesn't reach are
+// searched from in turn (first those without incoming links, then any that
+// remain, in order of index), and if more than one search was needed, the
+// roots of all of them are made the children of a virtual root node, with
+// ID -1, through virtual links with IDs -1, -2, and so on.  The virtual
+// node and links come after all the others in the H3Graph.
+//
+// The search is direction-optimizing: each level is expanded either top
+// down, from the frontier along outgoing links, or bottom up, from the
+// unvisited nodes along incoming links, whichever should examine fewer
+// links, and both directions split their work among threads.  The tree
+// link to a node is always the first link, in the order of the H3Graph,
+// from a node of the previous level, so the tree doesn't depend on the
+// directions chosen or on the number of threads.
+//
+// Building takes time and space linear in the number of nodes and links.
+// The tree and nontree links of each node are written straight into their
+// places in the H3Graph (see H3Graph.setNodeLinks()).
+public class H3SpanningTreeBuilder {
+    // The name under which H3GraphFile and H3GraphLoader offer a
+    // breadth-first tree in place of a spanning tree qualifier.  LibSea
+    // identifiers can't contain parentheses, so no qualifier has it.
+    public static final String BREADTH_FIRST_TREE = "(breadth-first)";
+
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3SpanningTreeBuilder() {
+        this(1);
+    }
+
+    public H3SpanningTreeBuilder(int parallelism) {
+        if (parallelism < 1) {
+            String msg = "parallelism must be at least 1; found "
+                    + parallelism;
+            throw new IllegalArgumentException(msg);
+        }
+
+        m_parallelism = parallelism;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Returns the node with the most outgoing links (the first of them, if
+    // several have the most).
+    public static int findHighestDegreeNode(int numNodes, int[] sources) {
+        if (numNodes < 1) {
+            throw new IllegalArgumentException("graph has no nodes");
+        }
+
+        int[] degree = new int[numNodes];
+        for (int i = 0; i < sources.length; i++) {
+            ++degree[sources[i]];
+        }
+
+        int retval = 0;
+        for (int i = 1; i < numNodes; i++) {
+            if (degree[i] > degree[retval]) {
+                retval = i;
+            }
+        }
+        return retval;
+    }
+
+    public H3Graph build(int numNodes, int[] sources, int[] destinations,
+                         int rootNode) {
+        return build(numNodes, sources, destinations, rootNode,
+                new H3LoadMonitor());
+    }
+
+    // Reports the SPANNING_TREE and LINKS phases to {monitor}, and stops
+    // with a CancellationException if the load is cancelled.
+    public H3Graph build(int numNodes, int[] sources, int[] destinations,
+                         int rootNode, H3LoadMonitor monitor) {
+        if (rootNode < 0 || rootNode >= numNodes) {
+            String msg = "root node " + rootNode + " out of range [0, "
+                    + numNodes + ")";
+            throw new IllegalArgumentException(msg);
+        }
+
+        H3LoadMonitor.Phase phase = monitor.startPhase
+                (H3LoadMonitor.SPANNING_TREE, H3LoadMonitor.NODES, numNodes);
+        Search search = new Search(numNodes, sources, destinations, phase);
+        ForkJoinPool pool = new ForkJoinPool(m_parallelism);
+        try {
+            search.run(pool, rootNode);
+            phase.finish();
+
+            int numRoots = search.numRoots;
+            int numLinks = sources.length;
+            boolean isVirtual = (numRoots > 1);
+            int total = numLinks + (isVirtual ? numRoots : 0);
+            phase = monitor.startPhase
+                    (H3LoadMonitor.LINKS, H3LoadMonitor.LINK_UNITS, total);
+
+            H3Graph retval = new H3Graph(numNodes + (isVirtual ? 1 : 0),
+                    total);
+            pool.invoke(new FillTask(retval, search, phase, 0, numNodes));
+
+            if (isVirtual) {
+                retval.setNodeID(numNodes, -1);
+                retval.setNodeLinks(numNodes, numLinks, total, total);
+                for (int i = 0; i < numRoots; i++) {
+                    retval.setChildLink(numLinks + i, numNodes,
+                            search.roots[i], -1 - i);
+                }
+                retval.setRootNode(numNodes);
+            } else {
+                retval.setRootNode(rootNode);
+            }
+            retval.endLinks();
+            phase.finish();
+
+            return retval;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Node and frontier ranges of at least this many are split among
+    // threads; smaller frontiers are expanded on the calling thread.
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    // A level is expanded bottom up once the links out of the frontier
+    // number more than 1/ALPHA of the links into unvisited nodes, and top
+    // down again once the frontier holds less than 1/BETA of the nodes.
+    // These are the values suggested by Beamer, Asanovic, and Patterson,
+    // "Direction-Optimizing Breadth-First Search" (SC 2012).
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+
+    // The parent slot of a node not yet reached, and of a search root.
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final int ROOT = -1;
+
+    private final int m_parallelism;
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // The state of a search.  Links are referred to by slot, their position
+    // in the H3Graph: the outgoing links of node u occupy the slots
+    // [outStart[u], outStart[u + 1]), in the reverse of their order in the
+    // input, and outLinks[s] is the input index of the link in slot s.  The
+    // incoming links of node v are listed, in order of slot, at
+    // [inStart[v], inStart[v + 1]) of inSources and inSlots.
+    //
+    // parent[v] is the slot of the tree link to v, and level[v] the
+    // number of the level that v was reached at (numbered across all the
+    // searches, so that the levels of different searches never match), or
+    // -1 if it hasn't been reached.
+    private static class Search {
+        public Search(int numNodes, int[] sources, int[] destinations,
+                      H3LoadMonitor.Phase phase) {
+            this.numNodes = numNodes;
+            this.destinations = destinations;
+            this.phase = phase;
+
+            int numLinks = sources.length;
+            outStart = new int[numNodes + 1];
+            inStart = new int[numNodes + 1];
+            for (int i = 0; i < numLinks; i++) {
+                ++outStart[sources[i] + 1];
+                ++inStart[destinations[i] + 1];
+            }
+            for (int i = 0; i < numNodes; i++) {
+                outStart[i + 1] += outStart[i];
+                inStart[i + 1] += inStart[i];
+            }
+            phase.checkCancelled();
+
+            int[] next = new int[numNodes];
+            System.arraycopy(outStart, 0, next, 0, numNodes);
+            outLinks = new int[numLinks];
+            for (int i = numLinks - 1; i >= 0; i--) {
+                outLinks[next[sources[i]]++] = i;
+            }
+            phase.checkCancelled();
+
+            System.arraycopy(inStart, 0, next, 0, numNodes);
+            inSources = new int[numLinks];
+            inSlots = new int[numLinks];
+            for (int u = 0; u < numNodes; u++) {
+                for (int s = outStart[u]; s < outStart[u + 1]; s++) {
+                    int j = next[destinations[outLinks[s]]]++;
+                    inSources[j] = u;
+                    inSlots[j] = s;
+                }
+            }
+            phase.checkCancelled();
+
+            parent = new AtomicIntegerArray(numNodes);
+            level = new int[numNodes];
+            for (int i = 0; i < numNodes; i++) {
+                parent.set(i, UNREACHED);
+                level[i] = -1;
+            }
+            roots = new int[4];
+        }
+
+        // Searches from {rootNode} and then from the nodes it didn't reach.
+        public void run(ForkJoinPool pool, int rootNode) {
+            // Links into unvisited nodes, for choosing directions.
+            long unexploredLinks = inStart[numNodes];
+
+            unexploredLinks = search(pool, rootNode, unexploredLinks);
+            for (int i = 0; i < numNodes; i++) {
+                if (level[i] < 0 && inStart[i] == inStart[i + 1]) {
+                    unexploredLinks = search(pool, i, unexploredLinks);
+                }
+            }
+            for (int i = 0; i < numNodes; i++) {
+                if (level[i] < 0) {
+                    unexploredLinks = search(pool, i, unexploredLinks);
+                }
+            }
+        }
+
+        // Returns the number of links into unvisited nodes afterwards.
+        private long search(ForkJoinPool pool, int root,
+                            long unexploredLinks) {
+            if (numRoots == roots.length) {
+                int[] newRoots = new int[2 * numRoots];
+                System.arraycopy(roots, 0, newRoots, 0, numRoots);
+                roots = newRoots;
+            }
+            roots[numRoots++] = root;
+
+            parent.set(root, ROOT);
+            level[root] = ++depth;
+            unexploredLinks -= inStart[root + 1] - inStart[root];
+
+            int[] frontier = { root };
+            int frontierSize = 1;
+            long frontierLinks = outStart[root + 1] - outStart[root];
+            boolean isBottomUp = false;
+            while (frontierSize > 0) {
+                phase.advance(frontierSize);
+
+                if (isBottomUp) {
+                    isBottomUp = (frontierSize >= numNodes / BETA);
+                } else {
+                    isBottomUp = (frontierLinks > unexploredLinks / ALPHA
+                                  && frontierSize > PARALLEL_THRESHOLD);
+                }
+
+                ExpandTask task;
+                if (isBottomUp) {
+                    task = new BottomUpTask(this, 0, numNodes);
+                    pool.invoke(task);
+                } else {
+                    task = new TopDownTask(this, frontier, 0, frontierSize);
+                    if (frontierSize > PARALLEL_THRESHOLD) {
+                        pool.invoke(task);
+                    } else {
+                        task.expand();
+                    }
+                }
+
+                ++depth;
+                frontier = task.next;
+                frontierSize = task.numNext;
+                frontierLinks = 0;
+                for (int i = 0; i < frontierSize; i++) {
+                    int v = frontier[i];
+                    level[v] = depth;
+                    frontierLinks += outStart[v + 1] - outStart[v];
+                    unexploredLinks -= inStart[v + 1] - inStart[v];
+                }
+            }
+
+            return unexploredLinks;
+        }
+
+        public final int numNodes;
+        public final int[] destinations;
+        public final H3LoadMonitor.Phase phase;
+
+        public final int[] outStart;
+        public final int[] outLinks;
+        public final int[] inStart;
+        public final int[] inSources;
+        public final int[] inSlots;
+
+        public final AtomicIntegerArray parent;
+        public final int[] level;
+        public int depth = 0;
+
+        public int[] roots; // The roots of the searches, in order.
+        public int numRoots = 0;
+    }
+
+    // Expands one level of a search, over a range of nodes, and collects
+    // the nodes reached into {next}, of which the first {numNext} are used.
+    private static abstract class ExpandTask extends RecursiveAction {
+        public ExpandTask(Search search, int first, int last) {
+            m_search = search;
+            m_first = first;
+            m_last = last;
+        }
+
+        protected void compute() {
+            if (m_last - m_first > PARALLEL_THRESHOLD) {
+                int middle = (m_first + m_last) >>> 1;
+                ExpandTask left = createTask(m_first, middle);
+                ExpandTask right = createTask(middle, m_last);
+                invokeAll(left, right);
+
+                numNext = left.numNext + right.numNext;
+                next = new int[numNext];
+                System.arraycopy(left.next, 0, next, 0, left.numNext);
+                System.arraycopy(right.next, 0, next, left.numNext,
+                        right.numNext);
+            } else {
+                expand();
+            }
+        }
+
+        public abstract void expand();
+
+        protected abstract ExpandTask createTask(int first, int last);
+
+        protected void addNext(int node) {
+            if (numNext == next.length) {
+                int[] newNext = new int[Math.max(2 * numNext, 16)];
+                System.arraycopy(next, 0, newNext, 0, numNext);
+                next = newNext;
+            }
+            next[numNext++] = node;
+        }
+
+        public int[] next = new int[0];
+        public int numNext = 0;
+
+        protected final Search m_search;
+        protected final int m_first;
+        protected final int m_last;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Expands the frontier nodes at positions [first, last) of {frontier}
+    // along their outgoing links.  Each unvisited node takes the least slot
+    // among the links reaching it, whichever thread finds them.
+    private static class TopDownTask extends ExpandTask {
+        public TopDownTask(Search search, int[] frontier, int first,
+                           int last) {
+            super(search, first, last);
+            m_frontier = frontier;
+        }
+
+        public void expand() {
+            Search search = m_search;
+            AtomicIntegerArray parent = search.parent;
+            for (int i = m_first; i < m_last; i++) {
+                int u = m_frontier[i];
+                for (int s = search.outStart[u]; s < search.outStart[u + 1];
+                     s++) {
+                    int v = search.destinations[search.outLinks[s]];
+                    if (search.level[v] < 0) {
+                        int current = parent.get(v);
+                        while (s < current) {
+                            if (parent.compareAndSet(v, current, s)) {
+                                if (current == UNREACHED) {
+                                    addNext(v);
+                                }
+                                break;
+                            }
+                            current = parent.get(v);
+                        }
+                    }
+                }
+            }
+        }
+
+        protected ExpandTask createTask(int first, int last) {
+            return new TopDownTask(m_search, m_frontier, first, last);
+        }
+
+        private final int[] m_frontier;
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Expands the frontier into the unvisited nodes among [first, last)
+    // along their incoming links, taking the first link from a node of the
+    // current level.
+    private static class BottomUpTask extends ExpandTask {
+        public BottomUpTask(Search search, int first, int last) {
+            super(search, first, last);
+        }
+
+        public void expand() {
+            Search search = m_search;
+            int[] level = search.level;
+            int depth = search.depth;
+            for (int v = m_first; v < m_last; v++) {
+                if (level[v] < 0) {
+                    for (int j = search.inStart[v];
+                         j < search.inStart[v + 1]; j++) {
+                        if (level[search.inSources[j]] == depth) {
+                            search.parent.set(v, search.inSlots[j]);
+                            addNext(v);
+                            break;
+                        }
+                    }
+                }
+            }
+            search.phase.checkCancelled();
+        }
+
+        protected ExpandTask createTask(int first, int last) {
+            return new BottomUpTask(m_search, first, last);
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Writes the nodes [first, last) and their links into {graph}, the
+    // tree links of each node ahead of its nontree links, both in order
+    // of slot.
+    private static class FillTask extends RecursiveAction {
+        public FillTask(H3Graph graph, Search search,
+                        H3LoadMonitor.Phase phase, int first, int last) {
+            m_graph = graph;
+            m_search = search;
+            m_phase = phase;
+            m_first = first;
+            m_last = last;
+        }
+
+        protected void compute() {
+            if (m_last - m_first > PARALLEL_THRESHOLD) {
+                int middle = (m_first + m_last) >>> 1;
+                invokeAll(new FillTask(m_graph, m_search, m_phase,
+                                m_first, middle),
+                        new FillTask(m_graph, m_search, m_phase,
+                                middle, m_last));
+            } else {
+                fill();
+            }
+        }
+
+        private void fill() {
+            Search search = m_search;
+            int[] outStart = search.outStart;
+            for (int u = m_first; u < m_last; u++) {
+                m_graph.setNodeID(u, u);
+
+                int numChildren = 0;
+                for (int s = outStart[u]; s < outStart[u + 1]; s++) {
+                    if (isTreeLink(s)) {
+                        ++numChildren;
+                    }
+                }
+
+                int treeLink = outStart[u];
+                int nontreeLink = treeLink + numChildren;
+                m_graph.setNodeLinks(u, treeLink, nontreeLink,
+                        outStart[u + 1]);
+                for (int s = outStart[u]; s < outStart[u + 1]; s++) {
+                    int link = search.outLinks[s];
+                    int v = search.destinations[link];
+                    if (isTreeLink(s)) {
+                        m_graph.setChildLink(treeLink++, u, v, link);
+                    } else {
+                        m_graph.setNontreeLink(nontreeLink++, u, v, link);
+                    }
+                }
+            }
+            m_phase.advance(outStart[m_last] - outStart[m_first]);
+        }
+
+        private boolean isTreeLink(int slot) {
+            int v = m_search.destinations[m_search.outLinks[slot]];
+            return m_search.parent.get(v) == slot;
+        }
+
+        private final H3Graph m_graph;
+        private final Search m_search;
+        private final H3LoadMonitor.Phase m_phase;
+        private final int m_first;
+        private final int m_last;
+
+        private static final long serialVersionUID = 1L;
+    }
+}
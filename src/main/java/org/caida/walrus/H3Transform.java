@@ -69,23 +69,39 @@ public class H3Transform {
 
     /* NOTE: The points a and b must not both be the origin. */
     public static Matrix4d buildCanonicalOrientation(Point4d a, Point4d b) {
+        Matrix4d retval = new Matrix4d();
+        buildCanonicalOrientation(a, b, retval, new Workspace());
+        return retval;
+    }
+
+    // Does the same as buildCanonicalOrientation(Point4d, Point4d), with
+    // exactly the same arithmetic, but writes the result into {result} and
+    // takes all its temporaries from {workspace}, so it doesn't allocate.
+    public static void buildCanonicalOrientation(Point4d a, Point4d b,
+                                                 Matrix4d result,
+                                                 Workspace workspace) {
         /* local scratch variables; will be transformed */
-        Point4d pa = new Point4d(a);
-        Point4d pb = new Point4d(b);
+        Point4d pa = workspace.m_pa;
+        Point4d pb = workspace.m_pb;
+        pa.set(a);
+        pb.set(b);
 
-        Point4d pivot = findPivotPoint(pa, pb);
+        Point4d pivot = workspace.m_pivot;
+        findPivotPoint(pa, pb, pivot, workspace);
 
-        Matrix4d retval = buildTranslation(ORIGIN4, pivot);
+        buildTranslation(ORIGIN4, pivot, result, workspace);
 
-        Matrix4d t1 = buildTranslation(pivot, ORIGIN4);
-        t1.transform(pa);
-        t1.transform(pb);
+        Matrix4d t = workspace.m_step;
+        buildTranslation(pivot, ORIGIN4, t, workspace);
+        t.transform(pa);
+        t.transform(pb);
 
-        retval.mul(buildTranslation(ORIGIN4, pa));
+        buildTranslation(ORIGIN4, pa, t, workspace);
+        result.mul(t);
 
-        Matrix4d t2 = buildTranslation(pa, ORIGIN4);
-        t2.transform(pa);
-        t2.transform(pb);
+        buildTranslation(pa, ORIGIN4, t, workspace);
+        t.transform(pa);
+        t.transform(pb);
 
         /* calculate spherical coordinates (rho, phi, theta) of pb */
 
@@ -100,33 +116,49 @@ public class H3Transform {
 
         if (!H3Math.epsilonZero(phi)) {
             /* rotate line to achieve alignment on positive x-axis */
-            retval.mul(buildXRotation(theta));
-            retval.mul(buildZRotation(phi));
+            t.rotX(theta);
+            result.mul(t);
+            t.rotZ(phi);
+            result.mul(t);
         }
-
-        return retval;
     }
 
     /* NOTE: The points a and b must not both be the origin. */
     public static H3Matrix4d buildCanonicalOrientation
     (H3Point4d a, H3Point4d b) {
+        H3Matrix4d retval = new H3Matrix4d();
+        buildCanonicalOrientation(a, b, retval, new WorkspaceMP());
+        return retval;
+    }
+
+    // The in-place variant of buildCanonicalOrientation(H3Point4d,
+    // H3Point4d), with its temporaries taken from {workspace}; see
+    // buildCanonicalOrientation(Point4d, Point4d, Matrix4d, Workspace).
+    public static void buildCanonicalOrientation(H3Point4d a, H3Point4d b,
+                                                 H3Matrix4d result,
+                                                 WorkspaceMP workspace) {
         /* local scratch variables; will be transformed */
-        H3Point4d pa = new H3Point4d(a);
-        H3Point4d pb = new H3Point4d(b);
+        H3Point4d pa = workspace.m_pa;
+        H3Point4d pb = workspace.m_pb;
+        pa.set(a);
+        pb.set(b);
 
-        H3Point4d pivot = findPivotPoint(pa, pb);
+        H3Point4d pivot = workspace.m_pivot;
+        findPivotPoint(pa, pb, pivot, workspace);
 
-        H3Matrix4d retval = buildTranslation(ORIGIN4_MP, pivot);
+        buildTranslation(ORIGIN4_MP, pivot, result, workspace);
 
-        H3Matrix4d t1 = buildTranslation(pivot, ORIGIN4_MP);
-        t1.transform(pa);
-        t1.transform(pb);
+        H3Matrix4d t = workspace.m_step;
+        buildTranslation(pivot, ORIGIN4_MP, t, workspace);
+        t.transform(pa);
+        t.transform(pb);
 
-        retval.mul(buildTranslation(ORIGIN4_MP, pa));
+        buildTranslation(ORIGIN4_MP, pa, t, workspace);
+        result.mul(t);
 
-        H3Matrix4d t2 = buildTranslation(pa, ORIGIN4_MP);
-        t2.transform(pa);
-        t2.transform(pb);
+        buildTranslation(pa, ORIGIN4_MP, t, workspace);
+        t.transform(pa);
+        t.transform(pb);
 
         /* calculate spherical coordinates (rho, phi, theta) of pb */
 
@@ -135,17 +167,39 @@ public class H3Transform {
         // calculations.
         pb.project(pb);
 
-        double rho = pb.vectorLength().doubleValue();
-        double phi = Math.acos(pb.x.doubleValue() / rho);
-        double theta = Math.atan2(pb.z.doubleValue(), pb.y.doubleValue());
+        // The rotations are built from the cosines and sines of the
+        // spherical angles of pb, computed directly from its coordinates,
+        // rather than from the angles themselves rounded to double.
+        DoubleDouble rho = workspace.m_rho;
+        pb.vectorLength(rho);
+
+        DoubleDouble rhoYZ = workspace.m_rhoYZ.set(pb.y).multiply(pb.y)
+                .multiplyAdd(pb.z, pb.z).sqrt();
+
+        double phi = Math.acos(pb.x.doubleValue() / rho.doubleValue());
 
         if (!H3Math.epsilonZero(phi)) {
             /* rotate line to achieve alignment on positive x-axis */
-            retval.mul(buildXRotationMP(theta));
-            retval.mul(buildZRotationMP(phi));
+            DoubleDouble cos = workspace.m_cos;
+            DoubleDouble sin = workspace.m_sin;
+            H3Matrix4d rotation = t;
+
+            // theta = atan2(pb.z, pb.y), which is 0 when pb.y = pb.z = 0
+            if (rhoYZ.hi() == 0.0) {
+                cos.set(1.0);
+                sin.set(0.0);
+            } else {
+                cos.set(pb.y).divide(rhoYZ);
+                sin.set(pb.z).divide(rhoYZ);
+            }
+            rotation.rotX(cos, sin);
+            result.mul(rotation);
+
+            cos.set(pb.x).divide(rho);
+            sin.set(rhoYZ).divide(rho);
+            rotation.rotZ(cos, sin);
+            result.mul(rotation);
         }
-
-        return retval;
     }
 
     public static Matrix4d buildXRotation(double angle) {
@@ -166,6 +220,92 @@ public class H3Transform {
         return m;
     }
 
+    // The in-place variants of the rotation builders, which overwrite all
+    // the elements of {result}.
+    public static void buildXRotation(double angle, Matrix4d result) {
+        result.rotX(angle);
+    }
+
+    public static void buildYRotation(double angle, Matrix4d result) {
+        result.rotY(angle);
+    }
+
+    public static void buildZRotation(double angle, Matrix4d result) {
+        result.rotZ(angle);
+    }
+
+    // Builds the transform from the coordinate system of a parent node to
+    // that of a child in a relative layout (see H3Graph.
+    // setNodeRelativePlacement()): a translation by hyperbolic {distance}
+    // along the x-axis, followed by the rotation Rx(theta) . Rz(phi).  The
+    // child lies at the origin of its own system, with its x-axis pointing
+    // away from the parent.
+    //
+    // The matrix is written out element by element, so that composing
+    // frames during a traversal doesn't allocate.
+    public static void buildRelativeFrame(double distance, double theta,
+                                          double phi, Matrix4d result) {
+        double ch = Math.cosh(distance);
+        double sh = Math.sinh(distance);
+        double ct = Math.cos(theta);
+        double st = Math.sin(theta);
+        double cp = Math.cos(phi);
+        double sp = Math.sin(phi);
+
+        result.m00 = cp * ch;
+        result.m01 = -sp;
+        result.m02 = 0.0;
+        result.m03 = cp * sh;
+
+        result.m10 = ct * sp * ch;
+        result.m11 = ct * cp;
+        result.m12 = -st;
+        result.m13 = ct * sp * sh;
+
+        result.m20 = st * sp * ch;
+        result.m21 = st * cp;
+        result.m22 = ct;
+        result.m23 = st * sp * sh;
+
+        result.m30 = sh;
+        result.m31 = 0.0;
+        result.m32 = 0.0;
+        result.m33 = ch;
+    }
+
+    // Builds the inverse of buildRelativeFrame(), the transform from the
+    // coordinate system of a child back to that of its parent.
+    public static void buildRelativeFrameInverse(double distance,
+                                                 double theta, double phi,
+                                                 Matrix4d result) {
+        double ch = Math.cosh(distance);
+        double sh = Math.sinh(distance);
+        double ct = Math.cos(theta);
+        double st = Math.sin(theta);
+        double cp = Math.cos(phi);
+        double sp = Math.sin(phi);
+
+        result.m00 = ch * cp;
+        result.m01 = ch * ct * sp;
+        result.m02 = ch * st * sp;
+        result.m03 = -sh;
+
+        result.m10 = -sp;
+        result.m11 = ct * cp;
+        result.m12 = st * cp;
+        result.m13 = 0.0;
+
+        result.m20 = 0.0;
+        result.m21 = -st;
+        result.m22 = ct;
+        result.m23 = 0.0;
+
+        result.m30 = -sh * cp;
+        result.m31 = -sh * ct * sp;
+        result.m32 = -sh * st * sp;
+        result.m33 = ch;
+    }
+
     public static H3Matrix4d buildXRotationMP(double angle) {
         H3Matrix4d m = new H3Matrix4d();
         m.rotX(angle);
@@ -188,43 +328,66 @@ public class H3Transform {
     // dest point.  From p. 212 of Phillips and Gunn paper:
     //   translate(source,dest)  =  reflect(midpoint) . reflect(source)
     public static Matrix4d buildTranslation(Point4d source, Point4d dest) {
+        Matrix4d retval = new Matrix4d();
+        buildTranslation(source, dest, retval, new Workspace());
+        return retval;
+    }
+
+    // The in-place variant of buildTranslation(Point4d, Point4d); see
+    // buildCanonicalOrientation(Point4d, Point4d, Matrix4d, Workspace).
+    public static void buildTranslation(Point4d source, Point4d dest,
+                                        Matrix4d result,
+                                        Workspace workspace) {
         double aa_h = H3Math.minkowski(source, source);
         double bb_h = H3Math.minkowski(dest, dest);
         double ab_h = H3Math.minkowski(source, dest);
         double sourceScale = Math.sqrt(bb_h * ab_h);
         double destScale = Math.sqrt(aa_h * ab_h);
-        Point4d midpoint = new Point4d();
+        Point4d midpoint = workspace.m_midpoint;
         midpoint.x = sourceScale * source.x + destScale * dest.x;
         midpoint.y = sourceScale * source.y + destScale * dest.y;
         midpoint.z = sourceScale * source.z + destScale * dest.z;
         midpoint.w = sourceScale * source.w + destScale * dest.w;
 
-        Matrix4d r_a = buildReflection(source);
-        Matrix4d r_m = buildReflection(midpoint);
-        r_m.mul(r_a);
-        return r_m;
+        Matrix4d r_a = workspace.m_reflection;
+        buildReflection(source, r_a);
+        buildReflection(midpoint, result);
+        result.mul(r_a);
     }
 
     public static H3Matrix4d buildTranslation(H3Point4d source, H3Point4d dest) {
-        MPReal aa_h = source.minkowski(source);
-        MPReal bb_h = dest.minkowski(dest);
-        MPReal ab_h = source.minkowski(dest);
-        MPReal sourceScale = bb_h.multiply(ab_h).sqrt();
-        MPReal destScale = aa_h.multiply(ab_h).sqrt();
-        H3Point4d midpoint = new H3Point4d();
-        midpoint.x =
-                sourceScale.multiply(source.x).add(destScale.multiply(dest.x));
-        midpoint.y =
-                sourceScale.multiply(source.y).add(destScale.multiply(dest.y));
-        midpoint.z =
-                sourceScale.multiply(source.z).add(destScale.multiply(dest.z));
-        midpoint.w =
-                sourceScale.multiply(source.w).add(destScale.multiply(dest.w));
-
-        H3Matrix4d r_a = buildReflection(source);
-        H3Matrix4d r_m = buildReflection(midpoint);
-        r_m.mul(r_a);
-        return r_m;
+        H3Matrix4d retval = new H3Matrix4d();
+        buildTranslation(source, dest, retval, new WorkspaceMP());
+        return retval;
+    }
+
+    // The in-place variant of buildTranslation(H3Point4d, H3Point4d).
+    public static void buildTranslation(H3Point4d source, H3Point4d dest,
+                                        H3Matrix4d result,
+                                        WorkspaceMP workspace) {
+        DoubleDouble aa_h = workspace.m_aa;
+        DoubleDouble bb_h = workspace.m_bb;
+        DoubleDouble ab_h = workspace.m_ab;
+        source.minkowski(source, aa_h);
+        dest.minkowski(dest, bb_h);
+        source.minkowski(dest, ab_h);
+
+        DoubleDouble sourceScale = bb_h.multiply(ab_h).sqrt();
+        DoubleDouble destScale = aa_h.multiply(ab_h).sqrt();
+        H3Point4d midpoint = workspace.m_midpoint;
+        midpoint.x.set(sourceScale).multiply(source.x)
+                .multiplyAdd(destScale, dest.x);
+        midpoint.y.set(sourceScale).multiply(source.y)
+                .multiplyAdd(destScale, dest.y);
+        midpoint.z.set(sourceScale).multiply(source.z)
+                .multiplyAdd(destScale, dest.z);
+        midpoint.w.set(sourceScale).multiply(source.w)
+                .multiplyAdd(destScale, dest.w);
+
+        H3Matrix4d r_a = workspace.m_reflection;
+        buildReflection(source, r_a, workspace);
+        buildReflection(midpoint, result, workspace);
+        result.mul(r_a);
     }
 
     // Build a 4x4 matrix for hyperbolic reflection across point p.  From
@@ -233,6 +396,13 @@ public class H3Transform {
     // where p . pT is the outer product of p with itself, <p,p>_h is the
     // Minkowski inner product.
     public static Matrix4d buildReflection(Point4d p) {
+        Matrix4d retval = new Matrix4d();
+        buildReflection(p, retval);
+        return retval;
+    }
+
+    // The in-place variant of buildReflection(Point4d).
+    public static void buildReflection(Point4d p, Matrix4d result) {
         double xx = p.x * p.x;
         double xy = p.x * p.y;
         double xz = p.x * p.z;
@@ -247,10 +417,23 @@ public class H3Transform {
 
         double ww = p.w * p.w;
 
-        Matrix4d ppTI31 = new Matrix4d(xx, xy, xz, -xw,
-                xy, yy, yz, -yw,
-                xz, yz, zz, -zw,
-                xw, yw, zw, -ww);
+        Matrix4d ppTI31 = result;
+        ppTI31.m00 = xx;
+        ppTI31.m01 = xy;
+        ppTI31.m02 = xz;
+        ppTI31.m03 = -xw;
+        ppTI31.m10 = xy;
+        ppTI31.m11 = yy;
+        ppTI31.m12 = yz;
+        ppTI31.m13 = -yw;
+        ppTI31.m20 = xz;
+        ppTI31.m21 = yz;
+        ppTI31.m22 = zz;
+        ppTI31.m23 = -zw;
+        ppTI31.m30 = xw;
+        ppTI31.m31 = yw;
+        ppTI31.m32 = zw;
+        ppTI31.m33 = -ww;
 
         double pp_h = xx + yy + zz - ww;
         ppTI31.mul(-2.0 / pp_h);
@@ -259,40 +442,50 @@ public class H3Transform {
         ppTI31.m11 += 1.0;
         ppTI31.m22 += 1.0;
         ppTI31.m33 += 1.0;
-
-        return ppTI31;
     }
 
     public static H3Matrix4d buildReflection(H3Point4d p) {
-        MPReal xx = p.x.multiply(p.x);
-        MPReal xy = p.x.multiply(p.y);
-        MPReal xz = p.x.multiply(p.z);
-        MPReal xw = p.x.multiply(p.w);
-
-        MPReal yy = p.y.multiply(p.y);
-        MPReal yz = p.y.multiply(p.z);
-        MPReal yw = p.y.multiply(p.w);
-
-        MPReal zz = p.z.multiply(p.z);
-        MPReal zw = p.z.multiply(p.w);
-
-        MPReal ww = p.w.multiply(p.w);
-
-        H3Matrix4d ppTI31 = new H3Matrix4d(xx, xy, xz, xw.negate(),
-                xy, yy, yz, yw.negate(),
-                xz, yz, zz, zw.negate(),
-                xw, yw, zw, ww.negate());
-
-        MPReal pp_h = xx.add(yy).add(zz).subtract(ww);
-        ppTI31.mul(new MPReal(-2.0).divide(pp_h));
-
-        MPReal one = new MPReal(1.0);
-        ppTI31.m00 = ppTI31.m00.add(one);
-        ppTI31.m11 = ppTI31.m11.add(one);
-        ppTI31.m22 = ppTI31.m22.add(one);
-        ppTI31.m33 = ppTI31.m33.add(one);
+        H3Matrix4d retval = new H3Matrix4d();
+        buildReflection(p, retval, new WorkspaceMP());
+        return retval;
+    }
 
-        return ppTI31;
+    // The in-place variant of buildReflection(H3Point4d).
+    public static void buildReflection(H3Point4d p, H3Matrix4d result,
+                                       WorkspaceMP workspace) {
+        // The outer product is built directly in the matrix, with the
+        // symmetric elements copied rather than recomputed.
+        H3Matrix4d ppTI31 = result;
+
+        ppTI31.m00.set(p.x).multiply(p.x);
+        ppTI31.m01.set(p.x).multiply(p.y);
+        ppTI31.m02.set(p.x).multiply(p.z);
+        ppTI31.m30.set(p.x).multiply(p.w);
+
+        ppTI31.m11.set(p.y).multiply(p.y);
+        ppTI31.m12.set(p.y).multiply(p.z);
+        ppTI31.m31.set(p.y).multiply(p.w);
+
+        ppTI31.m22.set(p.z).multiply(p.z);
+        ppTI31.m32.set(p.z).multiply(p.w);
+
+        ppTI31.m33.set(p.w).multiply(p.w).negate();
+
+        ppTI31.m10.set(ppTI31.m01);
+        ppTI31.m20.set(ppTI31.m02);
+        ppTI31.m21.set(ppTI31.m12);
+        ppTI31.m03.set(ppTI31.m30).negate();
+        ppTI31.m13.set(ppTI31.m31).negate();
+        ppTI31.m23.set(ppTI31.m32).negate();
+
+        DoubleDouble pp_h = workspace.m_pp.set(ppTI31.m00)
+                .add(ppTI31.m11).add(ppTI31.m22).add(ppTI31.m33);
+        ppTI31.mul(workspace.m_scale.set(-2.0).divide(pp_h));
+
+        ppTI31.m00.add(1.0);
+        ppTI31.m11.add(1.0);
+        ppTI31.m22.add(1.0);
+        ppTI31.m33.add(1.0);
     }
 
     //-------------------------------------------------------------------------
@@ -326,50 +519,92 @@ public class H3Transform {
     //         p_z = (a . d)b_z - (b . d)a_z
     //         p_w = d . d
     //
-    private static Point4d findPivotPoint(Point4d a4, Point4d b4) {
-        Point3d a = new Point3d();
-        Point3d b = new Point3d();
+    private static void findPivotPoint(Point4d a4, Point4d b4,
+                                       Point4d result, Workspace workspace) {
+        Point3d a = workspace.m_a;
+        Point3d b = workspace.m_b;
 
         a.project(a4);
         b.project(b4);
 
-        Point3d a_minus_b = new Point3d();
+        Point3d a_minus_b = workspace.m_aMinusB;
         a_minus_b.sub(a, b);
 
         double p = H3Math.dotProduct(a, a_minus_b);
         double q = H3Math.dotProduct(b, a_minus_b);
         double r = H3Math.dotProduct(a_minus_b, a_minus_b);
 
-        return new Point4d(p * b.x - q * a.x,
+        result.set(p * b.x - q * a.x,
                 p * b.y - q * a.y,
                 p * b.z - q * a.z,
                 r);
     }
 
-    private static H3Point4d findPivotPoint(H3Point4d a4, H3Point4d b4) {
-        H3Point4d a = new H3Point4d();
-        H3Point4d b = new H3Point4d();
+    private static void findPivotPoint(H3Point4d a4, H3Point4d b4,
+                                       H3Point4d result,
+                                       WorkspaceMP workspace) {
+        H3Point4d a = workspace.m_a;
+        H3Point4d b = workspace.m_b;
 
         a.project(a4);
         b.project(b4);
 
-        H3Point4d a_minus_b = new H3Point4d(a);
+        H3Point4d a_minus_b = workspace.m_aMinusB;
+        a_minus_b.set(a);
         a_minus_b.sub(b);
 
-        MPReal p = a.vectorDot3(a_minus_b);
-        MPReal q = b.vectorDot3(a_minus_b);
-        MPReal r = a_minus_b.vectorDot3(a_minus_b);
+        DoubleDouble p = workspace.m_p;
+        DoubleDouble q = workspace.m_q;
+        a.vectorDot3(a_minus_b, p);
+        b.vectorDot3(a_minus_b, q);
+
+        result.x.set(p).multiply(b.x).multiplySubtract(q, a.x);
+        result.y.set(p).multiply(b.y).multiplySubtract(q, a.y);
+        result.z.set(p).multiply(b.z).multiplySubtract(q, a.z);
+        a_minus_b.vectorDot3(a_minus_b, result.w);
+    }
+
+    //-------------------------------------------------------------------------
+    // PUBLIC CLASSES
+    //-------------------------------------------------------------------------
 
-        MPReal pbx = p.multiply(b.x);
-        MPReal qax = q.multiply(a.x);
-        MPReal pby = p.multiply(b.y);
-        MPReal qay = q.multiply(a.y);
-        MPReal pbz = p.multiply(b.z);
-        MPReal qaz = q.multiply(a.z);
+    // The temporaries of the in-place builders.  A workspace may be reused
+    // across any number of calls, but not shared between threads.
+    public static final class Workspace {
+        private final Point4d m_pa = new Point4d();
+        private final Point4d m_pb = new Point4d();
+        private final Point4d m_pivot = new Point4d();
+        private final Point4d m_midpoint = new Point4d();
+        private final Point3d m_a = new Point3d();
+        private final Point3d m_b = new Point3d();
+        private final Point3d m_aMinusB = new Point3d();
+        private final Matrix4d m_step = new Matrix4d();
+        private final Matrix4d m_reflection = new Matrix4d();
+    }
 
-        return new H3Point4d(pbx.subtract(qax),
-                pby.subtract(qay),
-                pbz.subtract(qaz),
-                r);
+    // The temporaries of the in-place extended-precision builders, kept
+    // apart from Workspace so that the double precision builders don't pay
+    // for them.
+    public static final class WorkspaceMP {
+        private final H3Point4d m_pa = new H3Point4d();
+        private final H3Point4d m_pb = new H3Point4d();
+        private final H3Point4d m_pivot = new H3Point4d();
+        private final H3Point4d m_midpoint = new H3Point4d();
+        private final H3Point4d m_a = new H3Point4d();
+        private final H3Point4d m_b = new H3Point4d();
+        private final H3Point4d m_aMinusB = new H3Point4d();
+        private final H3Matrix4d m_step = new H3Matrix4d();
+        private final H3Matrix4d m_reflection = new H3Matrix4d();
+        private final DoubleDouble m_aa = new DoubleDouble();
+        private final DoubleDouble m_bb = new DoubleDouble();
+        private final DoubleDouble m_ab = new DoubleDouble();
+        private final DoubleDouble m_pp = new DoubleDouble();
+        private final DoubleDouble m_scale = new DoubleDouble();
+        private final DoubleDouble m_p = new DoubleDouble();
+        private final DoubleDouble m_q = new DoubleDouble();
+        private final DoubleDouble m_rho = new DoubleDouble();
+        private final DoubleDouble m_rhoYZ = new DoubleDouble();
+        private final DoubleDouble m_cos = new DoubleDouble();
+        private final DoubleDouble m_sin = new DoubleDouble();
     }
 }
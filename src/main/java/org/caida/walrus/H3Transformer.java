@@ -23,7 +23,12 @@ package org.caida.walrus;//
 
 import org.jogamp.vecmath.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class H3Transformer
         implements Runnable {
@@ -33,12 +38,66 @@ public class H3Transformer
 
     public H3Transformer(H3Graph graph, H3RenderQueue queue,
                          boolean transformNontreeLinks) {
+        this(graph, queue, transformNontreeLinks, 1);
+    }
+
+    // If {parallel} is true, nodes are transformed with as many threads as
+    // there are available processors.
+    public H3Transformer(H3Graph graph, H3RenderQueue queue,
+                         boolean transformNontreeLinks, boolean parallel) {
+        this(graph, queue, transformNontreeLinks,
+                parallel ? Runtime.getRuntime().availableProcessors() : 1);
+    }
+
+    // A {parallelism} of 1 selects the plain sequential transformer, which
+    // transforms each node as the traversal reaches it.  Any larger value
+    // starts {parallelism} - 1 helper threads that bulk-transform the whole
+    // graph, chunk by chunk, whenever the transform changes.  The traversal
+    // then only decides the order in which nodes are handed to the render
+    // queue, transforming a chunk itself only if the helpers haven't gotten
+    // to it yet.  Both modes produce the same render queue contents.
+    //
+    // A graph with a relative layout (see H3Graph.hasRelativeLayout()) is
+    // always transformed sequentially.  Its nodes have no absolute
+    // coordinates to transform in bulk; instead, the traversal composes the
+    // relative placements outward from the starting node, which stays near
+    // the viewer.  So only nodes near the viewer need well-conditioned
+    // coordinates, and deep trees display correctly in double precision.
+    public H3Transformer(H3Graph graph, H3RenderQueue queue,
+                         boolean transformNontreeLinks, int parallelism) {
+        if (parallelism < 1) {
+            String msg = "parallelism must be at least 1; found "
+                    + parallelism;
+            throw new IllegalArgumentException(msg);
+        }
+
         m_visited = new int[graph.getNumNodes()];
         m_startingNode = graph.getRootNode();
         m_graph = graph;
         m_renderQueue = queue;
         m_transformQueue = new H3TransformQueue(graph.getNumNodes());
         m_transformNontreeLinks = transformNontreeLinks;
+
+        m_relative = graph.hasRelativeLayout();
+        if (m_relative) {
+            m_depth = computeDepths(graph);
+            m_frameSlot = new int[graph.getNumNodes()];
+        } else {
+            m_depth = null;
+            m_frameSlot = null;
+        }
+
+        m_numHelpers = (m_relative ? 0 : parallelism - 1);
+        if (m_numHelpers > 0) {
+            int numChunks = (graph.getNumNodes() + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+            m_chunkState = new AtomicIntegerArray(numChunks);
+            m_helperPool = new ForkJoinPool(m_numHelpers);
+            m_helperTasks = new ForkJoinTask<?>[m_numHelpers];
+        } else {
+            m_chunkState = null;
+            m_helperPool = null;
+            m_helperTasks = null;
+        }
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -57,11 +116,13 @@ public class H3Transformer
                 m_renderQueue.clear();
                 m_transformQueue.clear();
 
+                stopHelpers();
                 m_transformTemporary.mul(transform, m_transform);
                 m_transform.set(m_transformTemporary);
+                startHelpers();
 
                 markNodeVisited(m_startingNode, m_iteration);
-                m_startingRadius = transformAndEnqueueNode(m_startingNode);
+                m_startingRadius = transformAndEnqueueStartingNode();
                 m_state = STATE_NODE;
             } else {
                 m_renderQueue.clear();
@@ -72,9 +133,21 @@ public class H3Transformer
         endRequest();
     }
 
+    // With a relative layout, this composes the placements along the tree
+    // path from the starting node, so it runs as a request, between
+    // batches of the traversal.
     public synchronized void transformNode(int node, Point4d p) {
-        m_graph.getNodeLayoutCoordinates(node, p);
-        m_transform.transform(p);
+        if (m_relative) {
+            startRequest();
+            {
+                composeFrame(m_startingNode, m_transform, node, m_frame);
+                p.set(m_frame.m03, m_frame.m13, m_frame.m23, m_frame.m33);
+            }
+            endRequest();
+        } else {
+            m_graph.getNodeLayoutCoordinates(node, p);
+            m_transform.transform(p);
+        }
     }
 
     // XXX: Why isn't this safeguarded with startRequest() .. endRequest()?
@@ -144,6 +217,10 @@ public class H3Transformer
         while (true) {
             rendezvousWithRequests();
             if (m_state == STATE_SHUTDOWN) {
+                if (m_helperPool != null) {
+                    stopHelpers();
+                    m_helperPool.shutdown();
+                }
                 System.out.println("H3Transformer exiting...");
                 return;
             }
@@ -203,10 +280,13 @@ public class H3Transformer
             ++m_iteration;
             m_renderQueue.clear();
             m_transformQueue.clear();
+
+            stopHelpers();
             m_transform.setIdentity();
+            startHelpers();
 
             markNodeVisited(m_startingNode, m_iteration);
-            m_startingRadius = transformAndEnqueueNode(m_startingNode);
+            m_startingRadius = transformAndEnqueueStartingNode();
             m_state = STATE_NODE;
         } else {
             m_renderQueue.clear();
@@ -222,10 +302,13 @@ public class H3Transformer
         m_transformQueue.clear();
 
         m_startingNode = position.startingNode;
+
+        stopHelpers();
         m_transform.set(position.transform);
+        startHelpers();
 
         markNodeVisited(m_startingNode, m_iteration);
-        m_startingRadius = transformAndEnqueueNode(m_startingNode);
+        m_startingRadius = transformAndEnqueueStartingNode();
         m_state = STATE_NODE;
     }
 
@@ -238,6 +321,9 @@ public class H3Transformer
             m_state = STATE_IDLE;
         } else {
             m_currentNode = m_transformQueue.dequeue();
+            if (m_relative) {
+                loadFrame(m_currentNode, m_currentFrame);
+            }
             m_transformedData[m_numTransformed++] =
                     ((long) H3RenderQueue.Element.TYPE_NODE << 32) | m_currentNode;
 
@@ -303,29 +389,53 @@ public class H3Transformer
 
     private void transformAndEnqueueNodeIfNotVisited(int node) {
         if (!markNodeVisited(node, m_iteration)) {
-            transformAndEnqueueNode(node);
+            if (m_relative) {
+                composeFrame(m_currentNode, m_currentFrame, node, m_frame);
+                transformAndEnqueueNode(node, m_frame);
+            } else {
+                transformAndEnqueueNode(node);
+            }
         }
     }
 
+    // With a relative layout, the coordinate system of the starting node
+    // is placed in the display by m_transform itself.
+    private double transformAndEnqueueStartingNode() {
+        if (m_relative) {
+            m_numFrames = 0;
+            m_numFreeFrames = 0;
+            return transformAndEnqueueNode(m_startingNode, m_transform);
+        }
+        return transformAndEnqueueNode(m_startingNode);
+    }
+
+    // Transforms and enqueues {node} given the transform of its own
+    // coordinate system, which is kept until the node is dequeued.
+    private double transformAndEnqueueNode(int node, Matrix4d frame) {
+        m_graph.transformNode(frame, node);
+        storeFrame(node, frame);
+
+        double radius = m_graph.getNodeRadius(node);
+        m_transformQueue.enqueue(node, radius);
+        return radius;
+    }
+
     private double transformAndEnqueueNode(int node) {
         double radius = transformNode(node);
         m_transformQueue.enqueue(node, radius);
         return radius;
     }
 
-    // The same radius calculation is done in
-    // H3NonadaptiveRenderLoop.computeNodeRadius().
-    // The two methods should be kept in sync to ensure a consistent display
-    // when the user turns adaptive rendering on/off.
+    // H3NonadaptiveRenderLoop transforms nodes with the same
+    // H3Graph.transformNodes(), so nodes have the same coordinates and
+    // radius whether adaptive rendering is on or off.
     private double transformNode(int node) {
-        m_graph.getNodeLayoutCoordinates(node, m_nodeCoordinates);
-        m_transform.transform(m_nodeCoordinates);
-
-        double radius = H3Math.computeRadiusEuclidean(m_nodeCoordinates);
-
-        m_graph.setNodeRadius(node, radius);
-        m_graph.setNodeCoordinates(node, m_nodeCoordinates);
-        return radius;
+        if (m_helperPool != null) {
+            ensureChunkTransformed(node >> CHUNK_SHIFT);
+        } else {
+            m_graph.transformNodes(m_transform, node, node + 1);
+        }
+        return m_graph.getNodeRadius(node);
     }
 
     private void checkCandidateForStarting(int node) {
@@ -333,6 +443,10 @@ public class H3Transformer
         if (radius > m_startingRadius) {
             m_startingNode = node;
             m_startingRadius = radius;
+            if (m_relative) {
+                // m_transform always places the starting node.
+                m_transform.set(m_currentFrame);
+            }
         }
     }
 
@@ -348,6 +462,213 @@ public class H3Transformer
         return retval;
     }
 
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS (relative layout)
+    ////////////////////////////////////////////////////////////////////////
+
+    // Computes the transform of the coordinate system of {to} into the
+    // display from that of {from}, {fromFrame}, by composing the relative
+    // placements along the tree path between them: up from {from} to their
+    // lowest common ancestor, and then down to {to}.  For the parent or a
+    // child of {from}, this is a single step.
+    private void composeFrame(int from, Matrix4d fromFrame, int to,
+                              Matrix4d result) {
+        result.set(fromFrame);
+
+        int numDown = 0;
+        while (m_depth[to] > m_depth[from]) {
+            numDown = pushPathNode(numDown, to);
+            to = m_graph.getNodeParent(to);
+        }
+        while (m_depth[from] > m_depth[to]) {
+            from = climbFrame(from, result);
+        }
+        while (from != to) {
+            from = climbFrame(from, result);
+            numDown = pushPathNode(numDown, to);
+            to = m_graph.getNodeParent(to);
+        }
+
+        while (numDown > 0) {
+            m_graph.getNodeRelativeFrame(m_path[--numDown], m_relativeFrame);
+            result.mul(m_relativeFrame);
+        }
+    }
+
+    // Moves {frame} from the coordinate system of {node} to that of its
+    // parent, and returns the parent.
+    private int climbFrame(int node, Matrix4d frame) {
+        m_graph.getNodeRelativeFrameInverse(node, m_relativeFrame);
+        frame.mul(m_relativeFrame);
+        return m_graph.getNodeParent(node);
+    }
+
+    private int pushPathNode(int numDown, int node) {
+        if (numDown == m_path.length) {
+            m_path = Arrays.copyOf(m_path, 2 * numDown);
+        }
+        m_path[numDown] = node;
+        return numDown + 1;
+    }
+
+    // The frames of enqueued nodes are kept in a pool of reusable
+    // matrices, so that memory is only needed for the nodes waiting in the
+    // queue rather than for the whole graph.
+    private void storeFrame(int node, Matrix4d frame) {
+        int slot;
+        if (m_numFreeFrames > 0) {
+            slot = m_freeFrames[--m_numFreeFrames];
+        } else {
+            if (m_numFrames == m_frames.length) {
+                m_frames = Arrays.copyOf(m_frames, 2 * m_numFrames);
+                m_freeFrames = Arrays.copyOf(m_freeFrames, 2 * m_numFrames);
+            }
+            slot = m_numFrames++;
+            if (m_frames[slot] == null) {
+                m_frames[slot] = new Matrix4d();
+            }
+        }
+
+        m_frames[slot].set(frame);
+        m_frameSlot[node] = slot;
+    }
+
+    // Retrieves the frame of a dequeued node and releases its slot.
+    private void loadFrame(int node, Matrix4d frame) {
+        int slot = m_frameSlot[node];
+        frame.set(m_frames[slot]);
+        m_freeFrames[m_numFreeFrames++] = slot;
+    }
+
+    private static int[] computeDepths(H3Graph graph) {
+        int numNodes = graph.getNumNodes();
+        int[] retval = new int[numNodes];
+        if (numNodes == 0) {
+            return retval;
+        }
+
+        // Breadth-first, so that the queue never holds more than numNodes
+        // entries.
+        int[] queue = new int[numNodes];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = graph.getRootNode();
+        while (head < tail) {
+            int node = queue[head++];
+            int childIndex = graph.getNodeChildIndex(node);
+            int nontreeIndex = graph.getNodeNontreeIndex(node);
+            for (int i = childIndex; i < nontreeIndex; i++) {
+                int child = graph.getLinkDestination(i);
+                retval[child] = retval[node] + 1;
+                queue[tail++] = child;
+            }
+        }
+        return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS (parallel transformation)
+    ////////////////////////////////////////////////////////////////////////
+
+    // Nodes are transformed in chunks of CHUNK_SIZE consecutive node
+    // indices.  The state of each chunk in the current generation is
+    // CLAIMED(generation) while some thread is transforming it and
+    // DONE(generation) after that; any other value means the chunk still
+    // holds coordinates from an earlier transform.  Claiming a chunk is a
+    // compare-and-set, so each chunk is transformed exactly once per
+    // generation, whether by a helper or by the traversal.
+    //
+    // The volatile write of DONE publishes the chunk's coordinates and
+    // radii to the traversal, and the traversal in turn only passes a node
+    // to the render queue after it has seen the node's chunk DONE.
+
+    private void startHelpers() {
+        if (m_helperPool != null) {
+            final int generation = ++m_generation;
+            m_activeGeneration = generation;
+            m_nextChunk.set(0);
+
+            for (int i = 0; i < m_numHelpers; i++) {
+                m_helperTasks[i] = m_helperPool.submit(new Runnable() {
+                    public void run() {
+                        runHelper(generation);
+                    }
+                });
+            }
+        }
+    }
+
+    // Waits for the helpers of the current generation to stop.  They check
+    // for cancellation before each chunk, so this takes at most about one
+    // chunk's worth of work.  Helpers must be stopped before m_transform is
+    // changed, or they could finish a chunk with a mix of old and new
+    // coordinates.
+    private void stopHelpers() {
+        if (m_helperPool != null) {
+            m_activeGeneration = 0;
+            for (int i = 0; i < m_numHelpers; i++) {
+                if (m_helperTasks[i] != null) {
+                    m_helperTasks[i].join();
+                    m_helperTasks[i] = null;
+                }
+            }
+        }
+    }
+
+    private void runHelper(int generation) {
+        int numChunks = m_chunkState.length();
+        while (m_activeGeneration == generation) {
+            int chunk = m_nextChunk.getAndIncrement();
+            if (chunk >= numChunks) {
+                break;
+            }
+
+            int state = m_chunkState.get(chunk);
+            if (state != claimed(generation) && state != done(generation)
+                    && m_chunkState.compareAndSet(chunk, state,
+                    claimed(generation))) {
+                transformChunk(chunk);
+                m_chunkState.set(chunk, done(generation));
+            }
+        }
+    }
+
+    // Called only by the traversal (or a request running in its place).
+    private void ensureChunkTransformed(int chunk) {
+        int generation = m_generation;
+        while (true) {
+            int state = m_chunkState.get(chunk);
+            if (state == done(generation)) {
+                return;
+            } else if (state == claimed(generation)) {
+                Thread.onSpinWait(); // A helper is about to finish it.
+            } else if (m_chunkState.compareAndSet(chunk, state,
+                    claimed(generation))) {
+                transformChunk(chunk);
+                m_chunkState.set(chunk, done(generation));
+                return;
+            }
+        }
+    }
+
+    // This is called concurrently by the helper threads and the traversal,
+    // always on distinct chunks.
+    private void transformChunk(int chunk) {
+        int begin = chunk << CHUNK_SHIFT;
+        int end = Math.min(begin + CHUNK_SIZE, m_graph.getNumNodes());
+        m_graph.transformNodes(m_transform, begin, end);
+    }
+
+    // Generations start at 1, so the initial chunk state of 0 matches
+    // neither of these.
+    private static int claimed(int generation) {
+        return generation << 1;
+    }
+
+    private static int done(int generation) {
+        return (generation << 1) | 1;
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE METHODS (request synchronization)
     ////////////////////////////////////////////////////////////////////////
@@ -423,7 +744,6 @@ public class H3Transformer
             new ArrayList<Position>(); // List<Position>
 
     private final Matrix4d m_transformTemporary = new Matrix4d(); // scratch
-    private final Point4d m_nodeCoordinates = new Point4d(); // scratch variable
 
     //- - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
@@ -452,6 +772,49 @@ public class H3Transformer
     private int m_currentNontreeIndex;
     private int m_currentLinksEndIndex;
 
+    //- - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    // Whether the graph has a relative layout.  In that case, m_transform
+    // places the coordinate system of m_startingNode rather than the
+    // layout coordinates, and the traversal keeps the frame of each
+    // enqueued node: its own coordinate system placed in the display.
+    private final boolean m_relative;
+
+    // These are null unless m_relative is true.
+    private final int[] m_depth;
+    private final int[] m_frameSlot;
+
+    private Matrix4d[] m_frames = new Matrix4d[INITIAL_FRAMES];
+    private int[] m_freeFrames = new int[INITIAL_FRAMES];
+    private int m_numFrames = 0;
+    private int m_numFreeFrames = 0;
+
+    private int[] m_path = new int[INITIAL_FRAMES]; // scratch
+
+    private final Matrix4d m_currentFrame = new Matrix4d();
+    private final Matrix4d m_frame = new Matrix4d(); // scratch
+    private final Matrix4d m_relativeFrame = new Matrix4d(); // scratch
+
+    private static final int INITIAL_FRAMES = 64;
+
+    //- - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    // These are all null, and m_numHelpers is 0, in sequential mode.
+    private final int m_numHelpers;
+    private final ForkJoinPool m_helperPool;
+    private final ForkJoinTask<?>[] m_helperTasks;
+    private final AtomicIntegerArray m_chunkState;
+
+    // m_generation is only changed while the helpers are stopped; helpers
+    // are handed their generation when they are started.  Helpers keep
+    // going while m_activeGeneration matches their generation.
+    private int m_generation = 0;
+    private volatile int m_activeGeneration = 0;
+    private final AtomicInteger m_nextChunk = new AtomicInteger();
+
     ////////////////////////////////////////////////////////////////////////
     // PUBLIC CLASSES
     ////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,110 @@
+package org.caida.walrus;//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+import org.jogamp.vecmath.Matrix4d;
+
+// The SIMD half of H3BulkTransform.  This class refers to the incubating
+// Vector API, so it must only be loaded after H3BulkTransform has checked
+// that the jdk.incubator.vector module is present.
+//
+// Only lanewise multiplications, additions, and divisions are used (in
+// particular, no fused multiply-adds), in the same order as the scalar
+// loop, so every lane gets exactly the result the scalar loop would.
+final class H3VectorBulkTransform {
+    private H3VectorBulkTransform() {
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public static int getNumLanes() {
+        return SPECIES.length();
+    }
+
+    // Transforms as many whole vectors of nodes from begin onwards as fit
+    // before end, and returns the index of the first node not transformed.
+    public static int transform(Matrix4d t, int begin, int end,
+                                double[] layoutX, double[] layoutY,
+                                double[] layoutZ, double[] layoutW,
+                                double[] x, double[] y, double[] z,
+                                double[] radius) {
+        int numLanes = SPECIES.length();
+        int i = begin;
+        if (end - begin < numLanes) {
+            return i;
+        }
+
+        DoubleVector m00 = DoubleVector.broadcast(SPECIES, t.m00);
+        DoubleVector m01 = DoubleVector.broadcast(SPECIES, t.m01);
+        DoubleVector m02 = DoubleVector.broadcast(SPECIES, t.m02);
+        DoubleVector m03 = DoubleVector.broadcast(SPECIES, t.m03);
+        DoubleVector m10 = DoubleVector.broadcast(SPECIES, t.m10);
+        DoubleVector m11 = DoubleVector.broadcast(SPECIES, t.m11);
+        DoubleVector m12 = DoubleVector.broadcast(SPECIES, t.m12);
+        DoubleVector m13 = DoubleVector.broadcast(SPECIES, t.m13);
+        DoubleVector m20 = DoubleVector.broadcast(SPECIES, t.m20);
+        DoubleVector m21 = DoubleVector.broadcast(SPECIES, t.m21);
+        DoubleVector m22 = DoubleVector.broadcast(SPECIES, t.m22);
+        DoubleVector m23 = DoubleVector.broadcast(SPECIES, t.m23);
+        DoubleVector m30 = DoubleVector.broadcast(SPECIES, t.m30);
+        DoubleVector m31 = DoubleVector.broadcast(SPECIES, t.m31);
+        DoubleVector m32 = DoubleVector.broadcast(SPECIES, t.m32);
+        DoubleVector m33 = DoubleVector.broadcast(SPECIES, t.m33);
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+
+        for (; i <= end - numLanes; i += numLanes) {
+            DoubleVector lx = DoubleVector.fromArray(SPECIES, layoutX, i);
+            DoubleVector ly = DoubleVector.fromArray(SPECIES, layoutY, i);
+            DoubleVector lz = DoubleVector.fromArray(SPECIES, layoutZ, i);
+            DoubleVector lw = DoubleVector.fromArray(SPECIES, layoutW, i);
+
+            DoubleVector px = m00.mul(lx).add(m01.mul(ly))
+                    .add(m02.mul(lz)).add(m03.mul(lw));
+            DoubleVector py = m10.mul(lx).add(m11.mul(ly))
+                    .add(m12.mul(lz)).add(m13.mul(lw));
+            DoubleVector pz = m20.mul(lx).add(m21.mul(ly))
+                    .add(m22.mul(lz)).add(m23.mul(lw));
+            DoubleVector pw = m30.mul(lx).add(m31.mul(ly))
+                    .add(m32.mul(lz)).add(m33.mul(lw));
+
+            px.div(pw).intoArray(x, i);
+            py.div(pw).intoArray(y, i);
+            pz.div(pw).intoArray(z, i);
+
+            DoubleVector d = px.mul(px).add(py.mul(py)).add(pz.mul(pz))
+                    .div(pw.mul(pw));
+            one.sub(d).intoArray(radius, i);
+        }
+        return i;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final VectorSpecies<Double> SPECIES =
+            DoubleVector.SPECIES_PREFERRED;
+}
@@ -0,0 +1,195 @@
+package mpfun;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+// Checks the arithmetic and elementary functions of DoubleDouble against
+// BigDecimal references computed with 50 digits.
+//
+// Usage: DoubleDoubleTester [numSamples]
+public class DoubleDoubleTester {
+    public static void main(String[] args) {
+        int numSamples = (args.length > 0 ? Integer.parseInt(args[0]) : 2000);
+        Random random = new Random(SEED);
+
+        double[] arguments = new double[numSamples];
+        for (int i = 0; i < numSamples; i++) {
+            // Angles and radii of the sizes found in layouts, plus a few
+            // tiny values to exercise the series near zero.
+            arguments[i] = (i % 10 == 0
+                    ? Math.scalb(random.nextDouble(), -random.nextInt(60))
+                    : 60.0 * random.nextDouble() - 30.0);
+        }
+
+        checkArithmetic(random, numSamples);
+
+        check("sin", arguments, new DoubleDouble(),
+                (x) -> x.sin(), (x) -> referenceSin(x));
+        check("cos", arguments, new DoubleDouble(),
+                (x) -> x.cos(), (x) -> referenceCos(x));
+        check("exp", arguments, new DoubleDouble(),
+                (x) -> x.exp(), (x) -> referenceExp(x));
+        check("expm1", arguments, new DoubleDouble(),
+                (x) -> x.expm1(), (x) -> referenceExp(x).subtract(BigDecimal.ONE));
+        check("sinh", arguments, new DoubleDouble(),
+                (x) -> x.sinh(), (x) -> referenceExp(x)
+                        .subtract(referenceExp(x.negate())).divide(TWO, MC));
+        check("cosh", arguments, new DoubleDouble(),
+                (x) -> x.cosh(), (x) -> referenceExp(x)
+                        .add(referenceExp(x.negate())).divide(TWO, MC));
+        check("tanh", arguments, new DoubleDouble(),
+                (x) -> x.tanh(), (x) -> {
+                    BigDecimal e = referenceExp(x.multiply(TWO));
+                    return e.subtract(BigDecimal.ONE)
+                            .divide(e.add(BigDecimal.ONE), MC);
+                });
+
+        checkSpecialValues();
+
+        if (s_numFailures > 0) {
+            System.out.println(s_numFailures + " check(s) FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks PASSED");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private interface Function {
+        DoubleDouble apply(DoubleDouble x);
+    }
+
+    private interface Reference {
+        BigDecimal apply(BigDecimal x);
+    }
+
+    private static void checkArithmetic(Random random, int numSamples) {
+        BigDecimal maxError = BigDecimal.ZERO;
+        for (int i = 0; i < numSamples; i++) {
+            DoubleDouble a = new DoubleDouble(random.nextDouble() - 0.5,
+                    1e-17 * random.nextDouble());
+            DoubleDouble b = new DoubleDouble(random.nextDouble() + 0.5,
+                    1e-17 * random.nextDouble());
+            BigDecimal ra = a.bigDecimalValue();
+            BigDecimal rb = b.bigDecimalValue();
+
+            maxError = maxError.max(error(new DoubleDouble(a).multiply(b),
+                    ra.multiply(rb)));
+            maxError = maxError.max(error(new DoubleDouble(a).divide(b),
+                    ra.divide(rb, MC)));
+            maxError = maxError.max(error(new DoubleDouble(b).sqrt(),
+                    rb.sqrt(MC)));
+            maxError = maxError.max(error(new DoubleDouble(a).add(b),
+                    ra.add(rb)));
+            maxError = maxError.max(error
+                    (new DoubleDouble(a).multiplyAdd(a, b),
+                            ra.add(ra.multiply(rb))));
+        }
+        report("arithmetic", maxError);
+    }
+
+    private static void check(String name, double[] arguments,
+                              DoubleDouble x, Function f, Reference g) {
+        BigDecimal maxError = BigDecimal.ZERO;
+        for (double argument : arguments) {
+            x.set(argument);
+            f.apply(x);
+            maxError = maxError.max(error(x, g.apply(new BigDecimal(argument))));
+        }
+        report(name, maxError);
+    }
+
+    private static void checkSpecialValues() {
+        boolean passed =
+                Double.isNaN(new DoubleDouble(Double.POSITIVE_INFINITY)
+                        .sin().hi())
+                && new DoubleDouble(1000.0).exp().hi()
+                        == Double.POSITIVE_INFINITY
+                && new DoubleDouble(-1000.0).exp().hi() == 0.0
+                && new DoubleDouble(1000.0).tanh().hi() == 1.0
+                && new DoubleDouble(-1000.0).tanh().hi() == -1.0
+                && new DoubleDouble(1000.0).cosh().hi()
+                        == Double.POSITIVE_INFINITY
+                && new DoubleDouble(0.0).sqrt().hi() == 0.0
+                && new DoubleDouble(1.0).divide(new DoubleDouble(0.0)).hi()
+                        == Double.POSITIVE_INFINITY;
+        System.out.println((passed ? "PASSED" : "FAILED") + ": special values");
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    // The error relative to max(|expected|, 1), which also covers results
+    // close to zero (e.g., sin near multiples of pi).
+    private static BigDecimal error(DoubleDouble x, BigDecimal expected) {
+        BigDecimal scale = expected.abs().max(BigDecimal.ONE);
+        return x.bigDecimalValue().subtract(expected).abs().divide(scale, MC);
+    }
+
+    private static void report(String name, BigDecimal maxError) {
+        boolean passed = maxError.compareTo(TOLERANCE) < 0;
+        System.out.println((passed ? "PASSED" : "FAILED") + ": " + name
+                + " (maximum relative error "
+                + maxError.round(new MathContext(3)) + ")");
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    private static BigDecimal referenceSin(BigDecimal x) {
+        // sin(x) = sum (-1)^k x^(2k+1) / (2k+1)!
+        BigDecimal x2 = x.multiply(x, MC);
+        BigDecimal term = x;
+        BigDecimal sum = x;
+        for (int n = 1; term.abs().compareTo(CUTOFF) > 0; n++) {
+            term = term.multiply(x2, MC).negate()
+                    .divide(BigDecimal.valueOf((2L * n) * (2L * n + 1)), MC);
+            sum = sum.add(term, MC);
+        }
+        return sum;
+    }
+
+    private static BigDecimal referenceCos(BigDecimal x) {
+        BigDecimal x2 = x.multiply(x, MC);
+        BigDecimal term = BigDecimal.ONE;
+        BigDecimal sum = BigDecimal.ONE;
+        for (int n = 1; term.abs().compareTo(CUTOFF) > 0; n++) {
+            term = term.multiply(x2, MC).negate()
+                    .divide(BigDecimal.valueOf((2L * n - 1) * (2L * n)), MC);
+            sum = sum.add(term, MC);
+        }
+        return sum;
+    }
+
+    private static BigDecimal referenceExp(BigDecimal x) {
+        if (x.signum() < 0) {
+            return BigDecimal.ONE.divide(referenceExp(x.negate()), MC);
+        }
+
+        BigDecimal term = BigDecimal.ONE;
+        BigDecimal sum = BigDecimal.ONE;
+        for (int n = 1; term.compareTo(CUTOFF.multiply(sum)) > 0; n++) {
+            term = term.multiply(x, MC).divide(BigDecimal.valueOf(n), MC);
+            sum = sum.add(term, MC);
+        }
+        return sum;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final long SEED = 20021104L;
+
+    private static final MathContext MC = new MathContext(50);
+    private static final BigDecimal CUTOFF = new BigDecimal("1e-50");
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    // About 2^-100; double-double gives roughly 2^-104 per operation.
+    private static final BigDecimal TOLERANCE = new BigDecimal("1e-30");
+
+    private static int s_numFailures = 0;
+}
@@ -0,0 +1,320 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import org.caida.libsea.*;
+
+// Checks that the columns of H3AttributeStore hold the same values as the
+// backing libsea Graph, for every node and link of a random graph, and
+// every base attribute type.  The attributes have values for only some
+// objects, and some have default values, which the objects without a
+// value of their own must have in the column.  List attributes have no
+// columns.
+//
+// The time taken to read an attribute for every node with per-object
+// libsea lookups (as H3Main used to when coloring) is printed alongside
+// the time to load its column and to read the loaded column.
+//
+// Usage: H3AttributeStoreTester [numNodes]
+public class H3AttributeStoreTester {
+    public static void main(String[] args) throws Exception {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 200000);
+
+        File file = File.createTempFile("walrus", ".graph");
+        file.deleteOnExit();
+        writeGraph(file, numNodes);
+
+        H3GraphFile graphFile = H3GraphFile.read(file);
+        H3Graph graph = graphFile.load("tree");
+        Graph backingGraph = graphFile.getBackingGraph();
+
+        boolean passed = true;
+        String[] names = { "color", "rgb", "rgb_d", "weight", "ratio",
+                           "visible", "name" };
+        for (String name : names) {
+            passed &= check(backingGraph, graph, name);
+        }
+        passed &= checkListAttribute(backingGraph, graph);
+        compareCosts(backingGraph, graph, "color");
+
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(Graph backingGraph, H3Graph graph,
+                                 String name) {
+        H3AttributeStore store = new H3AttributeStore(backingGraph, graph);
+        int attribute = backingGraph.getAttributeDefinition(name).getID();
+
+        H3AttributeStore.Column nodeColumn = store.getNodeColumn(attribute);
+        H3AttributeStore.Column linkColumn = store.getLinkColumn(attribute);
+        boolean passed = (store.getNodeColumn(attribute) == nodeColumn);
+
+        for (int i = 0; passed && i < graph.getNumNodes(); i++) {
+            ValueIterator expected = null;
+            try {
+                expected = backingGraph.getNodeAttribute
+                        (graph.getNodeID(i), attribute);
+            } catch (AttributeUnavailableException e) {
+                // No value.
+            }
+            passed &= sameValue(expected, nodeColumn, i);
+        }
+
+        for (int i = 0; passed && i < graph.getTotalNumLinks(); i++) {
+            ValueIterator expected = null;
+            try {
+                expected = backingGraph.getLinkAttribute
+                        (graph.getLinkID(i), attribute);
+            } catch (AttributeUnavailableException e) {
+                // No value.
+            }
+            passed &= sameValue(expected, linkColumn, i);
+        }
+
+        System.out.println((passed ? "PASSED" : "FAILED") + ": " + name
+                + " (" + nodeColumn.getNumValues() + " node values, "
+                + linkColumn.getNumValues() + " link values)");
+        return passed;
+    }
+
+    private static boolean sameValue(ValueIterator expected,
+                                     H3AttributeStore.Column column,
+                                     int index) {
+        if (expected == null) {
+            return !column.hasValue(index);
+        }
+        if (!column.hasValue(index)) {
+            return false;
+        }
+
+        switch (column.getType()) {
+            case ValueType._BOOLEAN:
+                return expected.getBooleanValue() == column.getBoolean(index);
+
+            case ValueType._INTEGER:
+                return expected.getIntegerValue() == column.getInteger(index);
+
+            case ValueType._FLOAT:
+                return expected.getFloatValue() == column.getFloat(index);
+
+            case ValueType._DOUBLE:
+                return expected.getDoubleValue() == column.getDouble(index);
+
+            case ValueType._STRING:
+                return expected.getStringValue().equals
+                        (column.getString(index));
+
+            case ValueType._FLOAT3: {
+                float[] value = new float[3];
+                column.getFloat3(index, value);
+                float[] expectedValue = expected.getFloat3Value();
+                return java.util.Arrays.equals(expectedValue, value);
+            }
+
+            case ValueType._DOUBLE3: {
+                double[] value = new double[3];
+                column.getDouble3(index, value);
+                double[] expectedValue = expected.getDouble3Value();
+                return java.util.Arrays.equals(expectedValue, value);
+            }
+
+            default:
+                return false;
+        }
+    }
+
+    private static boolean checkListAttribute(Graph backingGraph,
+                                              H3Graph graph) {
+        H3AttributeStore store = new H3AttributeStore(backingGraph, graph);
+        int attribute = backingGraph.getAttributeDefinition("tags").getID();
+        boolean passed = (store.getNodeColumn(attribute) == null
+                          && store.getLinkColumn(attribute) == null);
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": list attribute has no column");
+        return passed;
+    }
+
+    private static void compareCosts(Graph backingGraph, H3Graph graph,
+                                     String name) {
+        int attribute = backingGraph.getAttributeDefinition(name).getID();
+        int numNodes = graph.getNumNodes();
+
+        long startTime = System.currentTimeMillis();
+        long sum = 0;
+        for (int i = 0; i < numNodes; i++) {
+            try {
+                sum += backingGraph.getNodeAttribute
+                        (graph.getNodeID(i), attribute).getIntegerValue();
+            } catch (AttributeUnavailableException e) {
+                // No value.
+            }
+        }
+        long lookupTime = System.currentTimeMillis() - startTime;
+
+        H3AttributeStore store = new H3AttributeStore(backingGraph, graph);
+        startTime = System.currentTimeMillis();
+        H3AttributeStore.Column column = store.getNodeColumn(attribute);
+        long loadTime = System.currentTimeMillis() - startTime;
+
+        startTime = System.currentTimeMillis();
+        long columnSum = 0;
+        for (int i = 0; i < numNodes; i++) {
+            if (column.hasValue(i)) {
+                columnSum += column.getInteger(i);
+            }
+        }
+        long readTime = System.currentTimeMillis() - startTime;
+
+        System.out.println("lookup.time[" + lookupTime + "] column.load.time["
+                + loadTime + "] column.read.time[" + readTime + "] for "
+                + numNodes + " nodes" + (sum == columnSum ? "" : " (!)"));
+    }
+
+    // Writes a graph from H3TestGraphs.writeLibSeaGraph() with additional
+    // attributes, each with values for a random subset of the objects.
+    private static void writeGraph(File file, int numNodes)
+            throws Exception {
+        StringWriter base = new StringWriter();
+        int[] parent = H3TestGraphs.makeRandomTree(numNodes, 51L);
+        H3TestGraphs.writeLibSeaGraph(parent, numNodes / 5, 52L, base);
+        int numLinks = numNodes - 1 + numNodes / 5;
+
+        String text = base.toString();
+        String end = "    }\n  ];\n  @qualifiers";
+        int split = text.indexOf(end);
+
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            out.write(text, 0, split);
+            out.write("    },\n");
+
+            Random random = new Random(53L);
+            writeAttribute(out, "color", "int", null, numNodes, numLinks,
+                           random, 0.7, ValueWriter.INTEGER);
+            writeAttribute(out, "rgb", "float3",
+                           "{ 0.25f, 0.5f, 0.75f }", numNodes, numLinks,
+                           random, 0.5, ValueWriter.FLOAT3);
+            writeAttribute(out, "rgb_d", "double3", null, numNodes,
+                           numLinks, random, 0.5, ValueWriter.DOUBLE3);
+            writeAttribute(out, "weight", "double", null, numNodes,
+                           numLinks, random, 0.6, ValueWriter.DOUBLE);
+            writeAttribute(out, "ratio", "float", "0.5f", numNodes,
+                           numLinks, random, 0.4, ValueWriter.FLOAT);
+            writeAttribute(out, "visible", "bool", "true", numNodes,
+                           numLinks, random, 0.5, ValueWriter.BOOLEAN);
+            writeAttribute(out, "name", "string", null, numNodes, numLinks,
+                           random, 0.3, ValueWriter.STRING);
+
+            out.write("    { @name=$tags; @type=list int; @default=;\n");
+            out.write("      @nodeValues=[ { 0; [ 1, 2 ]; } ];"
+                      + " @linkValues=; @pathValues=; }\n");
+            out.write(text, split + "    }\n".length(),
+                      text.length() - split - "    }\n".length());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeAttribute(Writer out, String name, String type,
+                                       String defaultValue, int numNodes,
+                                       int numLinks, Random random,
+                                       double density, int valueType)
+            throws Exception {
+        out.write("    { @name=$" + name + "; @type=" + type + "; @default="
+                  + (defaultValue == null ? "" : "|| " + defaultValue + " ||")
+                  + ";\n");
+        out.write("      @nodeValues=");
+        writeValues(out, numNodes, random, density, valueType);
+        out.write("      @linkValues=");
+        writeValues(out, numLinks, random, density, valueType);
+        out.write("      @pathValues=; },\n");
+    }
+
+    private static void writeValues(Writer out, int numObjects,
+                                    Random random, double density,
+                                    int valueType) throws Exception {
+        boolean first = true;
+        for (int i = 0; i < numObjects; i++) {
+            if (random.nextDouble() < density) {
+                out.write(first ? "[\n        { " : ",\n        { ");
+                out.write(i + "; " + ValueWriter.format(valueType, random)
+                          + "; }");
+                first = false;
+            }
+        }
+        out.write(first ? ";\n" : " ];\n");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class ValueWriter {
+        public static final int INTEGER = 0;
+        public static final int FLOAT = 1;
+        public static final int DOUBLE = 2;
+        public static final int FLOAT3 = 3;
+        public static final int DOUBLE3 = 4;
+        public static final int BOOLEAN = 5;
+        public static final int STRING = 6;
+
+        public static String format(int valueType, Random random) {
+            switch (valueType) {
+                case INTEGER:
+                    return Integer.toString(random.nextInt(0x1000000));
+
+                case FLOAT:
+                    return random.nextFloat() + "f";
+
+                case DOUBLE:
+                    return Double.toString(random.nextDouble());
+
+                case FLOAT3:
+                    return "{ " + random.nextFloat() + "f; "
+                            + random.nextFloat() + "f; "
+                            + random.nextFloat() + "f; }";
+
+                case DOUBLE3:
+                    return "{ " + random.nextDouble() + "; "
+                            + random.nextDouble() + "; "
+                            + random.nextDouble() + "; }";
+
+                case BOOLEAN:
+                    return (random.nextBoolean() ? "T" : "F");
+
+                case STRING:
+                    return "\"n" + random.nextInt(1000000) + "\"";
+
+                default:
+                    throw new IllegalArgumentException();
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point4d;
+
+// Checks H3Graph.transformNodes().  The bulk transform must give exactly
+// the coordinates and radii of the per-node path through
+// Matrix4d.transform(Point4d) and H3Math.computeRadiusEuclidean().
+//
+// Run it once as is, for the scalar loop, and once with
+// --add-modules jdk.incubator.vector, for the SIMD loop.  H3TransformerBench
+// times the two paths.
+//
+// Usage: H3BulkTransformTester [numNodes]
+public class H3BulkTransformTester {
+    public static void main(String[] args) {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 100000);
+
+        System.out.println("Laying out random tree of " + numNodes
+                + " nodes ...");
+        H3Graph graph = H3TestGraphs.buildGraph
+                (H3TestGraphs.makeRandomTree(numNodes, 7L));
+        new H3GraphLayout(false, 1).layoutHyperbolic(graph, false);
+
+        Matrix4d t = H3Transform.buildTranslation
+                (new Point4d(0.0, 0.0, 0.0, 1.0),
+                        new Point4d(0.2, 0.4, -0.3, 1.0));
+        t.mul(H3Transform.buildYRotation(0.9));
+
+        System.out.println("Vectorized: " + H3BulkTransform.isVectorized());
+
+        graph.transformNodes(t);
+        boolean identical = true;
+        Point4d p = new Point4d();
+        Point4d q = new Point4d();
+        for (int i = 0; identical && i < numNodes; i++) {
+            graph.getNodeLayoutCoordinates(i, q);
+            t.transform(q);
+            graph.getNodeCoordinates(i, p);
+            identical = (same(p.x, q.x / q.w) && same(p.y, q.y / q.w)
+                    && same(p.z, q.z / q.w)
+                    && same(graph.getNodeRadius(i),
+                    H3Math.computeRadiusEuclidean(q)));
+        }
+        report("bulk transform matches Matrix4d.transform()", identical);
+
+        if (s_numFailures > 0) {
+            System.out.println(s_numFailures + " check(s) FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks PASSED");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Nodes deep in a large random tree may have non-finite coordinates, so
+    // compare bit patterns rather than values.
+    private static boolean same(double lhs, double rhs) {
+        return Double.doubleToLongBits(lhs) == Double.doubleToLongBits(rhs);
+    }
+
+    private static void report(String check, boolean passed) {
+        System.out.println((passed ? "PASSED: " : "FAILED: ") + check);
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static int s_numFailures = 0;
+}
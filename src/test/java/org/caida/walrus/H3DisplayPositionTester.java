@@ -0,0 +1,214 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import org.jogamp.java3d.Transform3D;
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point3d;
+import org.jogamp.vecmath.Point4d;
+
+// Checks that display positions carry over between the adaptive render
+// loop, whose H3Transformer places the coordinate system of the starting
+// node when the layout is relative, and the nonadaptive render loop, which
+// transforms the layout coordinates with H3Graph.transformNodes().  A
+// position taken from either side must draw the same picture on the other,
+// and converting back and forth must give back the original position.
+//
+// Usage: H3DisplayPositionTester [numNodes]
+public class H3DisplayPositionTester {
+    public static void main(String[] args) {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 5000);
+
+        System.out.println("Laying out random tree of " + numNodes
+                + " nodes ...");
+        int[] parent = H3TestGraphs.makeRandomTree(numNodes, 11L);
+        H3Graph relativeGraph = H3TestGraphs.buildGraph(parent);
+        H3Graph absoluteGraph = H3TestGraphs.buildGraph(parent);
+        new H3GraphLayout(false, 1).layoutHyperbolicRelative(relativeGraph);
+        new H3GraphLayout(false, 1).layoutHyperbolicRelative(absoluteGraph);
+        absoluteGraph.clearRelativeLayout();
+
+        H3RenderQueue queue =
+                new H3RenderQueue(numNodes + relativeGraph.getTotalNumLinks());
+        H3Transformer transformer =
+                new H3Transformer(relativeGraph, queue, true, 1);
+        new Thread(transformer).start();
+        drain(queue);
+
+        checkToLayout(relativeGraph, absoluteGraph, transformer, queue,
+                numNodes - 1);
+        checkFromLayout(relativeGraph, absoluteGraph, transformer, queue,
+                numNodes / 2);
+        checkPassThrough(absoluteGraph);
+
+        transformer.shutdown();
+
+        if (s_numFailures > 0) {
+            System.out.println(s_numFailures + " check(s) FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks PASSED");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Moves the adaptive view so that its starting node leaves the root,
+    // and applies the position to the layout coordinates as the
+    // nonadaptive render loop does.
+    private static void checkToLayout(H3Graph relativeGraph,
+                                      H3Graph absoluteGraph,
+                                      H3Transformer transformer,
+                                      H3RenderQueue queue, int farNode) {
+        Point4d source = new Point4d();
+        transformer.transformNode(farNode, source);
+        Point4d origin = new Point4d(0.0, 0.0, 0.0, 1.0);
+        Point4d dest = new Point4d(0.2, 0.1, -0.3, 1.0);
+        transformer.transform(H3Transform.buildTranslation(source, origin));
+        transformer.transform(H3Transform.buildYRotation(0.9));
+        transformer.transform(H3Transform.buildTranslation(origin, dest));
+
+        H3Transformer.Position adaptive = transformer.getPosition();
+        report("starting node moved away from the root",
+                adaptive.startingNode != relativeGraph.getRootNode());
+
+        H3DisplayPosition position = new H3DisplayPosition
+                (adaptive.startingNode, new Transform3D(),
+                 adaptive.transform);
+        absoluteGraph.transformNodes
+                (position.getLayoutTranslation(relativeGraph));
+        report("adaptive position drawn the same from layout coordinates",
+                sameNodes(relativeGraph, queue, absoluteGraph));
+
+        H3DisplayPosition roundTrip =
+                H3DisplayPosition.createFromLayoutTranslation
+                (relativeGraph, position.getCenterNode(),
+                 position.getRotation(),
+                 position.getLayoutTranslation(relativeGraph));
+        report("adaptive position survives the round trip",
+                roundTrip.getCenterNode() == position.getCenterNode()
+                && roundTrip.getTranslation().epsilonEquals
+                (position.getTranslation(), EPSILON));
+    }
+
+    // Transforms the layout coordinates as the nonadaptive render loop
+    // does, and hands the position to the adaptive view.
+    private static void checkFromLayout(H3Graph relativeGraph,
+                                        H3Graph absoluteGraph,
+                                        H3Transformer transformer,
+                                        H3RenderQueue queue,
+                                        int centerNode) {
+        Point4d source = new Point4d();
+        absoluteGraph.getNodeLayoutCoordinates(centerNode, source);
+        Point4d origin = new Point4d(0.0, 0.0, 0.0, 1.0);
+        Point4d dest = new Point4d(-0.1, 0.3, 0.2, 1.0);
+        Matrix4d layoutTranslation =
+                H3Transform.buildTranslation(source, origin);
+        layoutTranslation.mul(H3Transform.buildXRotation(-0.6),
+                layoutTranslation);
+        layoutTranslation.mul(H3Transform.buildTranslation(origin, dest),
+                layoutTranslation);
+        absoluteGraph.transformNodes(layoutTranslation);
+
+        H3DisplayPosition position =
+                H3DisplayPosition.createFromLayoutTranslation
+                (relativeGraph, centerNode, new Transform3D(),
+                 layoutTranslation);
+        H3Transformer.Position adaptive = new H3Transformer.Position();
+        adaptive.startingNode = position.getCenterNode();
+        adaptive.transform.set(position.getTranslation());
+        transformer.setPosition(adaptive);
+
+        report("layout position drawn the same by the adaptive view",
+                sameNodes(relativeGraph, queue, absoluteGraph));
+        report("layout position survives the round trip",
+                position.getLayoutTranslation(relativeGraph)
+                .epsilonEquals(layoutTranslation, EPSILON));
+    }
+
+    // Without a relative layout, both render loops transform the layout
+    // coordinates, and the translation is passed through unchanged.
+    private static void checkPassThrough(H3Graph absoluteGraph) {
+        Matrix4d translation = H3Transform.buildTranslation
+                (new Point4d(0.0, 0.0, 0.0, 1.0),
+                 new Point4d(0.4, -0.2, 0.1, 1.0));
+        H3DisplayPosition position =
+                H3DisplayPosition.createFromLayoutTranslation
+                (absoluteGraph, absoluteGraph.getRootNode(),
+                 new Transform3D(), translation);
+        report("absolute layout: translation passed through",
+                position.getTranslation().equals(translation)
+                && position.getLayoutTranslation(absoluteGraph)
+                .equals(translation));
+    }
+
+    // Whether the nodes the adaptive view has just put on the render
+    // queue of {lhs} are in the same places in both graphs.
+    private static boolean sameNodes(H3Graph lhs, H3RenderQueue queue,
+                                     H3Graph rhs) {
+        long[] elements = new long[drain(queue)];
+        queue.drainTo(0, elements);
+
+        Point3d p = new Point3d();
+        Point3d q = new Point3d();
+        int numCompared = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (H3RenderQueue.decodeType(elements[i])
+                    == H3RenderQueue.Element.TYPE_NODE) {
+                int node = H3RenderQueue.decodeData(elements[i]);
+                lhs.getNodeCoordinates(node, p);
+                rhs.getNodeCoordinates(node, q);
+                if (!p.epsilonEquals(q, EPSILON)) {
+                    return false;
+                }
+                ++numCompared;
+            }
+        }
+        return numCompared > 0;
+    }
+
+    // Waits until the transformer has finished filling the queue.
+    private static int drain(H3RenderQueue queue) {
+        long[] buffer = new long[4096];
+        int numElements = 0;
+        int count;
+        while ((count = queue.drainTo(numElements, buffer)) > 0) {
+            numElements += count;
+        }
+        return numElements;
+    }
+
+    private static void report(String check, boolean passed) {
+        System.out.println((passed ? "PASSED: " : "FAILED: ") + check);
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final double EPSILON = 1.0e-9;
+
+    private static int s_numFailures = 0;
+}
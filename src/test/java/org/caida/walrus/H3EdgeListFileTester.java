@@ -0,0 +1,351 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Checks H3EdgeListFile on random edge lists of each format, with dense
+// and with sparse (and negative) node IDs, comments, blank lines, CRLF
+// line ends, and empty or missing attribute values.  The links, node IDs,
+// and attribute columns must match what was written, the H3Graph must be
+// the one H3SpanningTreeBuilder builds from the same links, and the
+// results must be the same for any number of threads.  Node attributes,
+// and errors (with their line numbers), are checked as well, and the time
+// taken to read the largest file is printed.
+//
+// Usage: H3EdgeListFileTester [numLinks]
+public class H3EdgeListFileTester {
+    public static void main(String[] args) throws Exception {
+        int numLinks = (args.length > 0 ? Integer.parseInt(args[0]) : 2000000);
+
+        boolean passed = true;
+        passed &= check("whitespace, dense IDs", ".edges", 1000, 5000,
+                false, 31L);
+        passed &= check("whitespace, sparse IDs", ".txt", 1000, 5000,
+                true, 32L);
+        passed &= check("CSV, sparse IDs", ".csv", 20000, 100000, true, 33L);
+        passed &= check("TSV, dense IDs", ".tsv", 20000, 100000, false, 34L);
+        passed &= check("large whitespace", ".edges", numLinks / 4,
+                numLinks, false, 35L);
+        passed &= check("large CSV, sparse IDs", ".csv", numLinks / 4,
+                numLinks, true, 36L);
+        passed &= checkSmall();
+        passed &= checkNodeAttributes();
+        passed &= checkErrors();
+
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    // Writes {numLinks} random links between about {numNodes} nodes, with
+    // two attributes (an integer count and a decimal or arbitrary double),
+    // and reads them back.
+    private static boolean check(String description, String suffix,
+                                 int numNodes, int numLinks,
+                                 boolean isSparse, long seed)
+            throws Exception {
+        Random random = new Random(seed);
+        int[] ids = new int[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            ids[i] = (isSparse ? random.nextInt() : i);
+        }
+
+        int[] sources = new int[numLinks];
+        int[] destinations = new int[numLinks];
+        double[] counts = new double[numLinks];
+        double[] delays = new double[numLinks];
+        String[] delayText = new String[numLinks];
+        for (int i = 0; i < numLinks; i++) {
+            sources[i] = ids[(int) (numNodes
+                    * Math.pow(random.nextDouble(), 2))];
+            destinations[i] = ids[random.nextInt(numNodes)];
+            counts[i] = random.nextInt(1000000);
+            switch (i % 4) {
+                case 0:
+                    delayText[i] = (random.nextInt(100000) / 1000.0) + "";
+                    break;
+
+                case 1:
+                    delayText[i] = Double.toString(random.nextGaussian());
+                    break;
+
+                case 2:
+                    delayText[i] = "-" + random.nextInt(1000) + "."
+                            + random.nextInt(10) + "e-3";
+                    break;
+
+                default:
+                    delayText[i] = "";
+                    break;
+            }
+            delays[i] = (delayText[i].length() == 0 ? Double.NaN
+                         : Double.parseDouble(delayText[i]));
+        }
+
+        File file = File.createTempFile("walrus", suffix);
+        file.deleteOnExit();
+        char separator = (suffix.equals(".csv") ? ','
+                          : suffix.equals(".tsv") ? '\t' : ' ');
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            out.write("# generated by H3EdgeListFileTester\n\n");
+            if (separator != ' ') {
+                out.write("src" + separator + "dst" + separator
+                        + "\"count\"" + separator + "delay\n");
+            }
+            for (int i = 0; i < numLinks; i++) {
+                if (i % 1000 == 999) {
+                    out.write("% a comment\n\n");
+                }
+                out.write(sources[i] + (separator == ' ' ? "  " : ",")
+                        .replace(',', separator)
+                        + destinations[i] + separator + (long) counts[i]);
+                if (delayText[i].length() > 0 || separator != ' ') {
+                    out.write(separator + delayText[i]);
+                }
+                out.write(i % 7 == 0 ? "\r\n" : "\n");
+            }
+        } finally {
+            out.close();
+        }
+
+        long startTime = System.currentTimeMillis();
+        H3EdgeListFile expected = H3EdgeListFile.read(file);
+        long duration = System.currentTimeMillis() - startTime;
+        System.out.println(description + ": " + numLinks + " links, "
+                + (file.length() / 1024) + "K, read in " + duration + " ms");
+
+        String count = (separator == ' ' ? "column3" : "count");
+        String delay = (separator == ' ' ? "column4" : "delay");
+        boolean passed = (expected.getNumLinks() == numLinks
+                && expected.getLinkAttributes().equals
+                        (Arrays.asList(count, delay))
+                && Arrays.equals(expected.getLinkColumn(count), counts)
+                && Arrays.equals(expected.getLinkColumn(delay), delays));
+
+        int[] nodeIDs = new int[2 * numLinks];
+        System.arraycopy(sources, 0, nodeIDs, 0, numLinks);
+        System.arraycopy(destinations, 0, nodeIDs, numLinks, numLinks);
+        Arrays.sort(nodeIDs);
+        int n = 0;
+        for (int i = 0; i < nodeIDs.length; i++) {
+            if (n == 0 || nodeIDs[i] != nodeIDs[n - 1]) {
+                nodeIDs[n++] = nodeIDs[i];
+            }
+        }
+        passed &= (expected.getNumNodes() == n);
+        for (int i = 0; passed && i < n; i++) {
+            passed = (expected.getNodeID(i) == nodeIDs[i]
+                      && expected.getNodeIndex().getIndex(nodeIDs[i]) == i);
+        }
+
+        int[] sourceNodes = new int[numLinks];
+        int[] destinationNodes = new int[numLinks];
+        for (int i = 0; i < numLinks; i++) {
+            sourceNodes[i] = Arrays.binarySearch(nodeIDs, 0, n, sources[i]);
+            destinationNodes[i] =
+                    Arrays.binarySearch(nodeIDs, 0, n, destinations[i]);
+        }
+        int root = H3SpanningTreeBuilder.findHighestDegreeNode
+                (n, sourceNodes);
+        H3Graph graph = new H3SpanningTreeBuilder()
+                .build(n, sourceNodes, destinationNodes, root);
+        for (int i = 0; i < n; i++) {
+            graph.setNodeID(i, nodeIDs[i]);
+        }
+
+        H3Graph loaded =
+                expected.load(H3SpanningTreeBuilder.BREADTH_FIRST_TREE);
+        passed &= sameGraph(graph, loaded)
+                && loaded.checkSpanningTree() == loaded.getNumNodes();
+
+        for (int parallelism = 2; parallelism <= 8; parallelism *= 2) {
+            startTime = System.currentTimeMillis();
+            H3EdgeListFile actual = H3EdgeListFile.read(file, parallelism);
+            duration = System.currentTimeMillis() - startTime;
+            System.out.println("  parallelism " + parallelism + ": "
+                    + duration + " ms");
+
+            passed &= actual.getNumNodes() == expected.getNumNodes()
+                    && Arrays.equals(actual.getLinkColumn(count), counts)
+                    && Arrays.equals(actual.getLinkColumn(delay), delays)
+                    && sameGraph(loaded, actual.load
+                            (H3SpanningTreeBuilder.BREADTH_FIRST_TREE));
+        }
+
+        System.out.println((passed ? "PASSED" : "FAILED") + ": "
+                + description + " edge list reads correctly");
+        return passed;
+    }
+
+    // A disconnected graph in a few lines, without attributes, and an
+    // empty file.
+    private static boolean checkSmall() throws Exception {
+        File file = writeFile(".el", "7 8\n\t8 9   \n-5 3\n3 -5\n42 42\n");
+        H3EdgeListFile edgeListFile = H3EdgeListFile.read(file, 2);
+        H3Graph graph = edgeListFile.loadBreadthFirst(8, new H3LoadMonitor());
+
+        boolean passed = (edgeListFile.getNumNodes() == 6
+                && edgeListFile.getNumLinks() == 5
+                && edgeListFile.getLinkAttributes().isEmpty()
+                && graph.getNumNodes() == 7
+                && graph.getNodeID(graph.getRootNode()) == -1
+                && graph.checkSpanningTree() == 7
+                && graph.getNodeID(graph.getLinkDestination
+                        (graph.getNodeChildIndex(graph.getRootNode())))
+                   == 8);
+
+        File empty = writeFile(".edges", "# nothing here\n");
+        H3EdgeListFile emptyFile = H3EdgeListFile.read(empty, 2);
+        passed &= (emptyFile.getNumNodes() == 0
+                   && emptyFile.getNumLinks() == 0);
+        try {
+            emptyFile.load(H3SpanningTreeBuilder.BREADTH_FIRST_TREE);
+            passed = false;
+        } catch (H3GraphLoader.InvalidGraphDataException e) {
+            // Expected.
+        }
+
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": small and empty edge lists");
+        return passed;
+    }
+
+    private static boolean checkNodeAttributes() throws Exception {
+        File file = writeFile(".csv", "a,b,w\n10,20,1.5\n20,30,2\n");
+        File nodeFile = writeFile(".csv",
+                "node,size,\"rank\"\n30,3,\n10,1,7\n99,9,9\n");
+        H3EdgeListFile edgeListFile = H3EdgeListFile.read(file);
+        edgeListFile.readNodeAttributes(nodeFile, new H3LoadMonitor());
+
+        List names = edgeListFile.getNodeAttributes();
+        double[] size = edgeListFile.getNodeColumn("size");
+        double[] rank = edgeListFile.getNodeColumn("rank");
+        boolean passed = (names.equals(Arrays.asList("size", "rank"))
+                && Arrays.equals(size, new double[] { 1.0, Double.NaN, 3.0 })
+                && Arrays.equals(rank,
+                        new double[] { 7.0, Double.NaN, Double.NaN })
+                && Arrays.equals(edgeListFile.getLinkColumn("w"),
+                        new double[] { 1.5, 2.0 })
+                && edgeListFile.getLinkColumn("x") == null);
+
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": node attributes read from a separate file");
+        return passed;
+    }
+
+    // An error must be reported with the line number of the first bad line,
+    // even when it's deep in a file read in parallel chunks.
+    private static boolean checkErrors() throws Exception {
+        boolean passed = true;
+        passed &= checkError(".edges", "1 2\n3\n", "line 2: ");
+        passed &= checkError(".edges", "1 2\n3 x\n", "line 2: ");
+        passed &= checkError(".edges", "1 2 3\n3 4 5\n1 2 3 4\n", "line 3: ");
+        passed &= checkError(".csv", "a,b\n1,2\n1;2\n", "line 3: ");
+        passed &= checkError(".edges", "1 99999999999\n", "line 1: ");
+        passed &= checkError(".tsv", "1\t2\tz\n", "line 1: ");
+
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < 400000; i++) {
+            buffer.append(i).append(' ').append(i + 1).append(" 0.5\n");
+        }
+        buffer.append("7 8 0.5x\n");
+        buffer.append("7 8 x\n");
+        File file = writeFile(".edges", buffer.toString());
+        for (int parallelism = 1; parallelism <= 8; parallelism *= 2) {
+            String error = readError(file, parallelism);
+            System.out.println("Rejected bad file: " + error);
+            passed &= (error != null && error.startsWith("line 400001: "));
+        }
+
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": malformed lines rejected with their line numbers");
+        return passed;
+    }
+
+    private static boolean checkError(String suffix, String contents,
+                                      String prefix) throws Exception {
+        String error = readError(writeFile(suffix, contents), 1);
+        System.out.println("Rejected bad file: " + error);
+        return error != null && error.startsWith(prefix);
+    }
+
+    private static String readError(File file, int parallelism)
+            throws IOException {
+        try {
+            H3EdgeListFile.read(file, parallelism);
+            return null;
+        } catch (H3GraphLoader.InvalidGraphDataException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static File writeFile(String suffix, String contents)
+            throws IOException {
+        File retval = File.createTempFile("walrus", suffix);
+        retval.deleteOnExit();
+        Writer out = new FileWriter(retval);
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+        return retval;
+    }
+
+    private static boolean sameGraph(H3Graph a, H3Graph b) {
+        if (a.getNumNodes() != b.getNumNodes()
+                || a.getNumTreeLinks() != b.getNumTreeLinks()
+                || a.getNumNontreeLinks() != b.getNumNontreeLinks()
+                || a.getRootNode() != b.getRootNode()) {
+            return false;
+        }
+
+        for (int i = 0; i < a.getNumNodes(); i++) {
+            if (a.getNodeID(i) != b.getNodeID(i)
+                    || a.getNodeParentLink(i) != b.getNodeParentLink(i)
+                    || a.getNodeChildIndex(i) != b.getNodeChildIndex(i)
+                    || a.getNodeNontreeIndex(i) != b.getNodeNontreeIndex(i)
+                    || a.getNodeLinksEndIndex(i)
+                    != b.getNodeLinksEndIndex(i)) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < a.getTotalNumLinks(); i++) {
+            if (a.getLinkID(i) != b.getLinkID(i)
+                    || a.getLinkSource(i) != b.getLinkSource(i)
+                    || a.getLinkDestination(i) != b.getLinkDestination(i)
+                    || a.checkTreeLink(i) != b.checkTreeLink(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
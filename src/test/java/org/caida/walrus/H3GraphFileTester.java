@@ -0,0 +1,535 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.caida.libsea.*;
+
+// Compares H3GraphFile, the streaming loader, against parsing with libsea
+// and loading with H3GraphLoader.  A small hand-written file exercising
+// most of the LibSea syntax and a large random graph must both load into
+// identical H3Graphs, with the same spanning tree qualifiers and
+// attributes.  For the large graph, the time taken and the heap retained
+// by each loader (including the loaded H3Graph) are printed.
+//
+// Large files are also read in parallel, which must give the same results
+// as reading them sequentially.  One of them has comments full of brackets
+// scattered through its lists and attributes whose values contain
+// brackets, to check that the lists are split into chunks correctly, and
+// a corrupted copy of it must be rejected with the same message either
+// way.  The time taken to read the large graph at each parallelism is
+// printed.
+//
+// A gzip-compressed copy of the large graph must load identically, at
+// any parallelism, and the libsea graph parsed from a compressed copy of
+// the small graph must match that parsed from the original.  A file that
+// looks xz-compressed must be rejected, as XZ for Java isn't on the class
+// path here.
+//
+// Usage: H3GraphFileTester [numNodes]
+public class H3GraphFileTester {
+    public static void main(String[] args) throws Exception {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 300000);
+
+        boolean passed = true;
+
+        File smallFile = File.createTempFile("walrus", ".graph");
+        smallFile.deleteOnExit();
+        Writer out = new FileWriter(smallFile);
+        try {
+            out.write(SMALL_GRAPH);
+        } finally {
+            out.close();
+        }
+        passed &= check("small graph", smallFile, "tree1");
+        passed &= check("small graph, second spanning tree", smallFile,
+                "tree2");
+
+        File largeFile = File.createTempFile("walrus", ".graph");
+        largeFile.deleteOnExit();
+        out = new BufferedWriter(new FileWriter(largeFile));
+        try {
+            int[] parent = H3TestGraphs.makePowerLawTree(numNodes, 31L);
+            H3TestGraphs.writeLibSeaGraph(parent, numNodes / 5, 32L, out);
+        } finally {
+            out.close();
+        }
+        passed &= check("large graph", largeFile, "tree");
+        passed &= checkParallel("large graph", largeFile);
+        compareCosts(largeFile);
+
+        passed &= checkCompressed("large graph", largeFile);
+        passed &= checkCompressedBackingGraph(smallFile);
+        passed &= checkUnsupportedCompression();
+
+        File trickyFile = File.createTempFile("walrus", ".graph");
+        trickyFile.deleteOnExit();
+        writeTrickyGraph(largeFile, trickyFile, numNodes, -1);
+        passed &= check("large graph with comments", trickyFile, "tree");
+        passed &= checkParallel("large graph with comments", trickyFile);
+
+        File corruptFile = File.createTempFile("walrus", ".graph");
+        corruptFile.deleteOnExit();
+        writeTrickyGraph(largeFile, corruptFile, numNodes, numNodes / 2);
+        passed &= checkParallelRejected(corruptFile);
+
+        File badFile = File.createTempFile("walrus", ".graph");
+        badFile.deleteOnExit();
+        out = new FileWriter(badFile);
+        try {
+            out.write(SMALL_GRAPH.replace("{ 3; 4; }", "{ 3; 9; }"));
+        } finally {
+            out.close();
+        }
+
+        boolean rejected = false;
+        try {
+            H3GraphFile.read(badFile);
+        } catch (H3GraphLoader.InvalidGraphDataException e) {
+            System.out.println("Rejected bad file: " + e.getMessage());
+            rejected = true;
+        }
+        System.out.println((rejected ? "PASSED" : "FAILED")
+                + ": link to a nonexistent node rejected");
+
+        if (!passed || !rejected) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String description, File file,
+                                 String spanningTree) throws Exception {
+        Graph backingGraph = parseWithLibSea(file);
+        H3GraphLoader loader = new H3GraphLoader();
+        H3Graph expected = loader.load(backingGraph, spanningTree);
+
+        H3GraphFile graphFile = H3GraphFile.read(file);
+        H3Graph actual = graphFile.load(spanningTree);
+
+        H3GraphLoader.AttributeTypeMatcher allTypes =
+                new H3GraphLoader.AttributeTypeMatcher() {
+                    public boolean match(ValueType type) {
+                        return true;
+                    }
+                };
+        H3GraphLoader.AttributeTypeMatcher booleanType =
+                new H3GraphLoader.AttributeTypeMatcher() {
+                    public boolean match(ValueType type) {
+                        return type == ValueType.BOOLEAN;
+                    }
+                };
+
+        List expectedQualifiers = loader.loadSpanningTreeQualifiers
+                (backingGraph);
+        List expectedAttributes = loader.loadAttributes
+                (backingGraph, allTypes);
+        List expectedBooleans = loader.loadAttributes
+                (backingGraph, booleanType);
+
+        boolean passed = sameGraph(expected, actual)
+                && expectedQualifiers.equals
+                (graphFile.loadSpanningTreeQualifiers())
+                && expectedAttributes.equals
+                (graphFile.loadAttributes(allTypes))
+                && expectedBooleans.equals
+                (graphFile.loadAttributes(booleanType));
+
+        System.out.println((passed ? "PASSED" : "FAILED") + ": "
+                + description + " loads identically");
+        return passed;
+    }
+
+    private static boolean checkParallel(String description, File file)
+            throws Exception {
+        H3GraphFile expected = H3GraphFile.read(file);
+        H3GraphLoader.AttributeTypeMatcher allTypes =
+                new H3GraphLoader.AttributeTypeMatcher() {
+                    public boolean match(ValueType type) {
+                        return true;
+                    }
+                };
+
+        boolean passed = true;
+        for (int parallelism = 2; parallelism <= 8; parallelism *= 2) {
+            H3GraphFile actual = H3GraphFile.read(file, parallelism);
+            passed &= sameGraph(expected.load("tree"), actual.load("tree"))
+                    && expected.loadSpanningTreeQualifiers().equals
+                    (actual.loadSpanningTreeQualifiers())
+                    && expected.loadAttributes(allTypes).equals
+                    (actual.loadAttributes(allTypes));
+        }
+
+        System.out.println((passed ? "PASSED" : "FAILED") + ": "
+                + description + " loads identically in parallel");
+        return passed;
+    }
+
+    private static boolean checkParallelRejected(File file)
+            throws Exception {
+        String expected = readError(file, 1);
+        boolean passed = (expected != null);
+        for (int parallelism = 2; parallelism <= 8; parallelism *= 2) {
+            String actual = readError(file, parallelism);
+            passed &= (actual != null && actual.equals(expected));
+        }
+
+        System.out.println("Rejected bad file: " + expected);
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": bad link in large graph rejected alike in parallel");
+        return passed;
+    }
+
+    private static boolean checkCompressed(String description, File file)
+            throws Exception {
+        File compressedFile = File.createTempFile("walrus", ".graph.gz");
+        compressedFile.deleteOnExit();
+        gzip(file, compressedFile);
+
+        H3GraphFile expected = H3GraphFile.read(file);
+        H3GraphLoader.AttributeTypeMatcher allTypes =
+                new H3GraphLoader.AttributeTypeMatcher() {
+                    public boolean match(ValueType type) {
+                        return true;
+                    }
+                };
+
+        boolean passed = true;
+        for (int parallelism = 1; parallelism <= 4; parallelism *= 4) {
+            long startTime = System.currentTimeMillis();
+            H3GraphFile actual = H3GraphFile.read(compressedFile, parallelism);
+            long duration = System.currentTimeMillis() - startTime;
+            System.out.println("gzip.read.time[" + duration + "] ("
+                    + compressedFile.length() + " of " + file.length()
+                    + " bytes) at parallelism " + parallelism);
+
+            passed &= sameGraph(expected.load("tree"), actual.load("tree"))
+                    && expected.loadSpanningTreeQualifiers().equals
+                    (actual.loadSpanningTreeQualifiers())
+                    && expected.loadAttributes(allTypes).equals
+                    (actual.loadAttributes(allTypes));
+        }
+
+        System.out.println((passed ? "PASSED" : "FAILED") + ": "
+                + description + " loads identically when gzip-compressed");
+        return passed;
+    }
+
+    private static boolean checkCompressedBackingGraph(File file)
+            throws Exception {
+        File compressedFile = File.createTempFile("walrus", ".graph.gz");
+        compressedFile.deleteOnExit();
+        gzip(file, compressedFile);
+
+        Graph expected = parseWithLibSea(file);
+        Graph actual = H3GraphFile.read(compressedFile).getBackingGraph();
+        boolean passed = expected.getNumNodes() == actual.getNumNodes()
+                && expected.getNumLinks() == actual.getNumLinks();
+
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": backing graph parsed from gzip-compressed file");
+        return passed;
+    }
+
+    private static boolean checkUnsupportedCompression() throws Exception {
+        File xzFile = File.createTempFile("walrus", ".graph.xz");
+        xzFile.deleteOnExit();
+        OutputStream out = new FileOutputStream(xzFile);
+        try {
+            out.write(new byte[] { (byte) 0xFD, '7', 'z', 'X', 'Z', 0x00,
+                                   0x00, 0x04 });
+        } finally {
+            out.close();
+        }
+
+        String message = null;
+        try {
+            H3GraphFile.read(xzFile);
+        } catch (IOException e) {
+            message = e.getMessage();
+        }
+
+        boolean passed = (message != null && message.startsWith("xz"));
+        System.out.println("Rejected xz file: " + message);
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": xz-compressed file rejected without XZ for Java");
+        return passed;
+    }
+
+    private static void gzip(File in, File out) throws Exception {
+        InputStream input = new FileInputStream(in);
+        try {
+            OutputStream output = new GZIPOutputStream
+                    (new FileOutputStream(out), 64 * 1024);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = input.read(buffer)) > 0) {
+                    output.write(buffer, 0, n);
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private static String readError(File file, int parallelism)
+            throws Exception {
+        try {
+            H3GraphFile.read(file, parallelism);
+            return null;
+        } catch (H3GraphLoader.InvalidGraphDataException e) {
+            return e.getMessage();
+        }
+    }
+
+    // Copies {in}, written by H3TestGraphs.writeLibSeaGraph(), to {out},
+    // adding a comment full of brackets to every 997th line and three more
+    // attributes with a value for every node: a string containing brackets
+    // and escapes, a list of floats, and a boolean.  If {badLink} isn't
+    // negative, the destination of that link is made out of range.
+    private static void writeTrickyGraph(File in, File out, int numNodes,
+                                         int badLink) throws Exception {
+        BufferedReader reader = new BufferedReader(new FileReader(in));
+        Writer writer = new BufferedWriter(new FileWriter(out));
+        try {
+            boolean inAttributes = false;
+            int link = -1;
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ++lineNumber;
+                if (link >= 0 && link++ == badLink) {
+                    line = line.replaceFirst("; [0-9]+; }",
+                            "; " + numNodes + "; }");
+                }
+                if (line.equals("  @links=[")) {
+                    link = 0;
+                } else if (line.equals("  @attributeDefinitions=[")) {
+                    inAttributes = true;
+                } else if (inAttributes && line.equals("  ];")) {
+                    writeTrickyAttributes(writer, numNodes);
+                    inAttributes = false;
+                }
+
+                writer.write(line);
+                if (lineNumber % 997 == 0) {
+                    writer.write(" # ] } { 0; 1; }, [ \"|| ]");
+                }
+                writer.write("\n");
+            }
+        } finally {
+            reader.close();
+            writer.close();
+        }
+    }
+
+    private static void writeTrickyAttributes(Writer out, int numNodes)
+            throws Exception {
+        out.write("    , { @name=$label; @type=string; @default=;\n");
+        out.write("      @nodeValues=[\n");
+        for (int i = 0; i < numNodes; i++) {
+            out.write("        { " + i + "; \"]} \\\"#\\\\ || [" + i
+                    + "\"; }" + (i + 1 < numNodes ? ",\n" : "\n"));
+        }
+        out.write("      ]; @linkValues=; @pathValues=; }\n");
+
+        out.write("    , { @name=$weights; @type=list float; @default=;\n");
+        out.write("      @nodeValues=[\n");
+        for (int i = 0; i < numNodes; i++) {
+            out.write("        { " + i + "; [ 1.5f, -2.0e3f ]; }"
+                    + (i + 1 < numNodes ? ",\n" : "\n"));
+        }
+        out.write("      ]; @linkValues=; @pathValues=; }\n");
+
+        out.write("    , { @name=$even; @type=bool; @default=;\n");
+        out.write("      @nodeValues=[\n");
+        for (int i = 0; i < numNodes; i++) {
+            out.write("        { " + i + "; " + (i % 2 == 0 ? "T" : "F")
+                    + "; }" + (i + 1 < numNodes ? ",\n" : "\n"));
+        }
+        out.write("      ]; @linkValues=; @pathValues=; }\n");
+    }
+
+    private static void compareCosts(File file) throws Exception {
+        long baseMemory = usedMemory();
+
+        long startTime = System.currentTimeMillis();
+        Graph backingGraph = parseWithLibSea(file);
+        H3Graph graph = new H3GraphLoader().load(backingGraph, "tree");
+        long libseaTime = System.currentTimeMillis() - startTime;
+        long libseaMemory = usedMemory() - baseMemory;
+        backingGraph = null;
+        graph = null;
+        usedMemory();
+
+        startTime = System.currentTimeMillis();
+        H3GraphFile graphFile = H3GraphFile.read(file);
+        graph = graphFile.load("tree");
+        long streamTime = System.currentTimeMillis() - startTime;
+        long streamMemory = usedMemory() - baseMemory;
+
+        System.out.println("libsea.time[" + libseaTime + "] libsea.memory["
+                + (libseaMemory / (1024 * 1024)) + "M]");
+        System.out.println("stream.time[" + streamTime + "] stream.memory["
+                + (streamMemory / (1024 * 1024)) + "M] for "
+                + graph.getNumNodes() + " nodes and "
+                + graphFile.getNumLinks() + " links");
+
+        for (int parallelism = 1; parallelism <= 8; parallelism *= 2) {
+            startTime = System.currentTimeMillis();
+            H3GraphFile.read(file, parallelism);
+            System.out.println("read.time["
+                    + (System.currentTimeMillis() - startTime)
+                    + "] parallelism[" + parallelism + "]");
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static boolean sameGraph(H3Graph a, H3Graph b) {
+        if (a.getNumNodes() != b.getNumNodes()
+                || a.getNumTreeLinks() != b.getNumTreeLinks()
+                || a.getNumNontreeLinks() != b.getNumNontreeLinks()
+                || a.getRootNode() != b.getRootNode()) {
+            return false;
+        }
+
+        for (int i = 0; i < a.getNumNodes(); i++) {
+            if (a.getNodeID(i) != b.getNodeID(i)
+                    || a.getNodeParentLink(i) != b.getNodeParentLink(i)
+                    || a.getNodeChildIndex(i) != b.getNodeChildIndex(i)
+                    || a.getNodeNontreeIndex(i) != b.getNodeNontreeIndex(i)
+                    || a.getNodeLinksEndIndex(i)
+                    != b.getNodeLinksEndIndex(i)) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < a.getTotalNumLinks(); i++) {
+            if (a.getLinkID(i) != b.getLinkID(i)
+                    || a.getLinkSource(i) != b.getLinkSource(i)
+                    || a.getLinkDestination(i) != b.getLinkDestination(i)
+                    || a.checkTreeLink(i) != b.checkTreeLink(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Graph parseWithLibSea(File file) throws Exception {
+        Reader reader = new BufferedReader(new FileReader(file));
+        try {
+            GraphBuilder builder = GraphFactory.makeImmutableGraph();
+            new GraphFileParser(new GraphFileLexer(reader)).file(builder);
+            return builder.endConstruction();
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Two spanning trees over the same links, rooted at different nodes,
+    // plus attributes of most types.
+    private static final String SMALL_GRAPH =
+            "# A small graph.\n"
+            + "Graph\n"
+            + "{\n"
+            + "  @name=\"small {graph}\";\n"
+            + "  @description=;\n"
+            + "  @numNodes=5;\n"
+            + "  @numLinks=6;\n"
+            + "  @numPaths=1;\n"
+            + "  @numPathLinks=2;\n"
+            + "  @links=[ { 0; 1; }, { 0; 2; }, { 1; 3; },\n"
+            + "           { 3; 4; }, { 2; 4; }, { 4; 0; } ];\n"
+            + "  @paths=[ { [ 0, 2 ]; } ];\n"
+            + "  @enumerations=[ { $colors; [ { $red; 1; }, { $blue; 2; }"
+            + " ]; } ];\n"
+            + "  @attributeDefinitions=[\n"
+            + "    { @name=$root1; @type=bool; @default=|| false ||;\n"
+            + "      @nodeValues=[ { 0; T; } ]; @linkValues=;"
+            + " @pathValues=; },\n"
+            + "    { @name=$tree_link1; @type=bool; @default=|| false ||;\n"
+            + "      @nodeValues=;\n"
+            + "      @linkValues=[ { 0; T; }, { 1; T; }, { 2; T; }, { 3;"
+            + " T; },\n"
+            + "                    { 4; F; } ];\n"
+            + "      @pathValues=; },\n"
+            + "    { @name=$root2; @type=bool; @default=;\n"
+            + "      @nodeValues=[ { 1; F; }, { 4; T; } ]; @linkValues=;\n"
+            + "      @pathValues=; },\n"
+            + "    { @name=$tree_link2; @type=bool; @default=;\n"
+            + "      @nodeValues=;\n"
+            + "      @linkValues=[ { 5; T; }, { 0; T; }, { 1; T; }, { 2;"
+            + " T; } ];\n"
+            + "      @pathValues=; },\n"
+            + "    { @name=$weights; @type=list int; @default=;\n"
+            + "      @nodeValues=[ { 0; [ 1, -2 ]; } ]; @linkValues=;\n"
+            + "      @pathValues=[ { 0; [ 3 ]; } ]; },\n"
+            + "    { @name=$rgb; @type=float3; @default=;\n"
+            + "      @nodeValues=[ { 2; { 1.0f; 0.5e-1f; -3.25f; }; } ];\n"
+            + "      @linkValues=[ { 1; { 0.0f; 1.0f; 0.0f; }; } ];\n"
+            + "      @pathValues=; },\n"
+            + "    { @name=$kind; @type=enum 0; @default=;\n"
+            + "      @nodeValues=[ { 3; enum 1; } ]; @linkValues=;"
+            + " @pathValues=; },\n"
+            + "    { @name=$label; @type=string; @default=;\n"
+            + "      @nodeValues=[ { 0; \"a } \\\"b\\\" ; [\"; } ];"
+            + " @linkValues=;\n"
+            + "      @pathValues=; },\n"
+            + "    { @name=$size; @type=double; @default=;\n"
+            + "      @nodeValues=[ { 4; 1.5; } ]; @linkValues=;"
+            + " @pathValues=; }\n"
+            + "  ];\n"
+            + "  @qualifiers=[\n"
+            + "    { @type=$spanning_tree; @name=$tree2;"
+            + " @description=\"second\";\n"
+            + "      @attributes=[ { 2; $root; }, { 3; $tree_link; } ]; },\n"
+            + "    { @type=$spanning_tree; @name=$tree1; @description=;\n"
+            + "      @attributes=[ { 0; $root; }, { 1; $tree_link; } ]; },\n"
+            + "    { @type=$other; @name=$misc; @description=;\n"
+            + "      @attributes=; }\n"
+            + "  ];\n"
+            + "  @filters=; @selectors=; @displays=; @presentations=;\n"
+            + "  @presentationMenus=; @displayMenus=; @selectorMenus=;\n"
+            + "  @filterMenus=; @attributeMenus=;\n"
+            + "}\n";
+}
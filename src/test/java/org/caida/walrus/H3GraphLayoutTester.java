@@ -0,0 +1,155 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import org.jogamp.vecmath.Point4d;
+
+// Regression test for deep spanning trees.  Lays out a path of a million
+// nodes both sequentially and in parallel, and runs the spanning-tree
+// traversals of H3Graph over it.  With the old recursive implementations,
+// each of these overflowed the thread stack long before the end of the path.
+//
+// Since every node of a path has a single child, the parallel layout never
+// splits the work there, so it is also compared bit for bit with the
+// sequential layout on bushy trees, where it does.
+//
+// Usage: H3GraphLayoutTester [pathLength [treeSize]]
+public class H3GraphLayoutTester {
+    public static void main(String[] args) {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        int treeSize = (args.length > 1 ? Integer.parseInt(args[1]) : 300000);
+
+        System.out.println("Building path of " + numNodes + " nodes ...");
+        int[] parent = H3TestGraphs.makePath(numNodes);
+
+        H3Graph sequential = H3TestGraphs.buildGraph(parent);
+        H3Graph parallel = H3TestGraphs.buildGraph(parent);
+
+        checkSpanningTree(sequential, numNodes);
+
+        System.out.println("Sequential layout ...");
+        new H3GraphLayout(false, 1).layoutHyperbolic(sequential, false);
+        System.out.println("Parallel layout ...");
+        new H3GraphLayout(false, 2).layoutHyperbolic(parallel, false);
+
+        checkIdentical("path", sequential, parallel, numNodes);
+        checkVisibility(sequential, numNodes);
+
+        System.out.println(sequential.checkLayoutCoordinates()
+                + " of " + numNodes + " nodes have finite coordinates");
+
+        checkParallel("power-law tree",
+                H3TestGraphs.makePowerLawTree(treeSize, SEED));
+        checkParallel("balanced tree",
+                H3TestGraphs.makeBalancedTree(treeSize, 8));
+        checkParallel("random tree",
+                H3TestGraphs.makeRandomTree(treeSize, SEED));
+
+        if (s_numFailures > 0) {
+            System.out.println(s_numFailures + " check(s) FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks PASSED");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static void checkSpanningTree(H3Graph graph, int numNodes) {
+        report("checkSpanningTree", graph.checkSpanningTree() == numNodes);
+        report("checkTreeReachability",
+                graph.checkTreeReachability() == numNodes);
+    }
+
+    // Lays out the tree {parent} sequentially and with each of
+    // PARALLELISMS, and checks that the layouts are identical.
+    private static void checkParallel(String name, int[] parent) {
+        System.out.println("Laying out " + name + " of " + parent.length
+                + " nodes ...");
+        H3Graph sequential = H3TestGraphs.buildGraph(parent);
+        new H3GraphLayout(false, 1).layoutHyperbolic(sequential, false);
+
+        for (int i = 0; i < PARALLELISMS.length; i++) {
+            H3Graph parallel = H3TestGraphs.buildGraph(parent);
+            new H3GraphLayout(false, PARALLELISMS[i])
+                    .layoutHyperbolic(parallel, false);
+            checkIdentical(name + ", parallelism " + PARALLELISMS[i],
+                    sequential, parallel, parent.length);
+        }
+    }
+
+    private static void checkIdentical(String name, H3Graph lhs,
+                                       H3Graph rhs, int numNodes) {
+        Point4d p = new Point4d();
+        Point4d q = new Point4d();
+
+        boolean identical = true;
+        for (int i = 0; identical && i < numNodes; i++) {
+            lhs.getNodeLayoutCoordinates(i, p);
+            rhs.getNodeLayoutCoordinates(i, q);
+            identical = (Double.doubleToLongBits(p.x)
+                    == Double.doubleToLongBits(q.x)
+                    && Double.doubleToLongBits(p.y)
+                    == Double.doubleToLongBits(q.y)
+                    && Double.doubleToLongBits(p.z)
+                    == Double.doubleToLongBits(q.z)
+                    && Double.doubleToLongBits(p.w)
+                    == Double.doubleToLongBits(q.w));
+        }
+        report(name + ": sequential and parallel layouts identical",
+                identical);
+    }
+
+    private static void checkVisibility(H3Graph graph, int numNodes) {
+        graph.pruneSubtreeVisibility(1);
+        report("pruneSubtreeVisibility",
+                graph.checkNodeVisible(0)
+                        && !graph.checkNodeVisible(numNodes - 1));
+
+        graph.widenSubtreeVisibility(1);
+        report("widenSubtreeVisibility",
+                graph.checkNodeVisible(numNodes - 1));
+
+        graph.pruneVisibilityToNeighborhood(0, 10);
+        report("pruneVisibilityToNeighborhood",
+                graph.checkNodeVisible(10)
+                        && !graph.checkNodeVisible(11));
+
+        graph.widenVisibility();
+    }
+
+    private static void report(String check, boolean passed) {
+        System.out.println((passed ? "PASSED: " : "FAILED: ") + check);
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final long SEED = 20021104L;
+    private static final int[] PARALLELISMS = { 2, 8 };
+
+    private static int s_numFailures = 0;
+}
@@ -0,0 +1,125 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.caida.libsea.*;
+
+// Checks that H3GraphLoader populates the links of a graph identically
+// with any parallelism.  The graph is a power-law tree, whose hub nodes
+// have many children, plus many nontree links, so that most nodes have
+// both kinds of links.  The time taken to load the graph at each
+// parallelism is printed.
+//
+// Usage: H3GraphLoaderTester [numNodes]
+public class H3GraphLoaderTester {
+    public static void main(String[] args) throws Exception {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 300000);
+
+        File file = File.createTempFile("walrus", ".graph");
+        file.deleteOnExit();
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            int[] parent = H3TestGraphs.makePowerLawTree(numNodes, 51L);
+            H3TestGraphs.writeLibSeaGraph(parent, numNodes, 52L, out);
+        } finally {
+            out.close();
+        }
+
+        Graph backingGraph = parseWithLibSea(file);
+        H3Graph expected = H3GraphFile.read(file).load("tree");
+
+        boolean passed = true;
+        for (int parallelism = 1; parallelism <= 8; parallelism *= 2) {
+            H3GraphLoader loader = new H3GraphLoader(parallelism);
+            long startTime = System.currentTimeMillis();
+            H3Graph graph = loader.load(backingGraph, "tree");
+            long loadTime = System.currentTimeMillis() - startTime;
+
+            boolean identical = sameGraph(expected, graph);
+            passed &= identical;
+            System.out.println((identical ? "PASSED" : "FAILED")
+                    + ": load with parallelism " + parallelism
+                    + " matches; time[" + loadTime + "]");
+        }
+
+        boolean rejected = false;
+        try {
+            new H3GraphLoader(0);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        System.out.println((rejected ? "PASSED" : "FAILED")
+                + ": parallelism 0 rejected");
+
+        if (!passed || !rejected) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean sameGraph(H3Graph a, H3Graph b) {
+        if (a.getNumNodes() != b.getNumNodes()
+                || a.getNumTreeLinks() != b.getNumTreeLinks()
+                || a.getNumNontreeLinks() != b.getNumNontreeLinks()
+                || a.getRootNode() != b.getRootNode()) {
+            return false;
+        }
+
+        for (int i = 0; i < a.getNumNodes(); i++) {
+            if (a.getNodeID(i) != b.getNodeID(i)
+                    || a.getNodeParentLink(i) != b.getNodeParentLink(i)
+                    || a.getNodeChildIndex(i) != b.getNodeChildIndex(i)
+                    || a.getNodeNontreeIndex(i) != b.getNodeNontreeIndex(i)
+                    || a.getNodeLinksEndIndex(i)
+                    != b.getNodeLinksEndIndex(i)) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < a.getTotalNumLinks(); i++) {
+            if (a.getLinkID(i) != b.getLinkID(i)
+                    || a.getLinkSource(i) != b.getLinkSource(i)
+                    || a.getLinkDestination(i) != b.getLinkDestination(i)
+                    || a.checkTreeLink(i) != b.checkTreeLink(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Graph parseWithLibSea(File file) throws Exception {
+        Reader reader = new BufferedReader(new FileReader(file));
+        try {
+            GraphBuilder builder = GraphFactory.makeImmutableGraph();
+            new GraphFileParser(new GraphFileLexer(reader)).file(builder);
+            return builder.endConstruction();
+        } finally {
+            reader.close();
+        }
+    }
+}
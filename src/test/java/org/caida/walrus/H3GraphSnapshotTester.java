@@ -0,0 +1,195 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.caida.libsea.*;
+import org.jogamp.vecmath.Point4d;
+
+// Round-trip test of H3GraphSnapshot.  Lays out a random LibSea graph with
+// nontree links, saves it with its layout, and reads the snapshot back;
+// every node and link array must come back unchanged.  The time taken to
+// parse, load, and lay out the graph is printed next to the time taken to
+// read the snapshot.
+//
+// Usage: H3GraphSnapshotTester [numNodes]
+public class H3GraphSnapshotTester {
+    public static void main(String[] args) throws Exception {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 100000);
+
+        int[] parent = H3TestGraphs.makePowerLawTree(numNodes, 21L);
+
+        File graphFile = File.createTempFile("walrus", ".graph");
+        File snapshotFile = File.createTempFile("walrus", ".h3snap");
+        graphFile.deleteOnExit();
+        snapshotFile.deleteOnExit();
+
+        Writer out = new BufferedWriter(new FileWriter(graphFile));
+        try {
+            H3TestGraphs.writeLibSeaGraph(parent, numNodes / 10, 22L, out);
+        } finally {
+            out.close();
+        }
+
+        long startTime = System.currentTimeMillis();
+        H3Graph expected = loadGraph(graphFile);
+        new H3GraphLayout(false, 1).layoutHyperbolic(expected, false);
+        long loadTime = System.currentTimeMillis() - startTime;
+
+        for (int i = 0; i < numNodes; i += 3) {
+            expected.setNodeColor(i, 0x123456 + i);
+        }
+        for (int i = 0; i < expected.getTotalNumLinks(); i += 5) {
+            expected.setLinkColor(i, 0x654321 + i);
+        }
+
+        startTime = System.currentTimeMillis();
+        H3GraphSnapshot.write(expected, "tree", snapshotFile);
+        long writeTime = System.currentTimeMillis() - startTime;
+
+        startTime = System.currentTimeMillis();
+        H3GraphSnapshot snapshot = H3GraphSnapshot.read(snapshotFile);
+        long readTime = System.currentTimeMillis() - startTime;
+
+        System.out.println("parse+load+layout.time[" + loadTime
+                + "] snapshotWrite.time[" + writeTime
+                + "] snapshotRead.time[" + readTime
+                + "] size[" + (snapshotFile.length() / 1024) + "K]");
+
+        boolean identical = snapshot.getSpanningTree().equals("tree")
+                && H3GraphSnapshot.isSnapshot(snapshotFile)
+                && !H3GraphSnapshot.isSnapshot(graphFile)
+                && sameGraph(expected, snapshot.getGraph());
+
+        boolean badNameRejected =
+                checkBadNameLength(snapshotFile, -1)
+                && checkBadNameLength(snapshotFile, Integer.MAX_VALUE);
+
+        RandomAccessFile raf = new RandomAccessFile(snapshotFile, "rw");
+        try {
+            raf.setLength(raf.length() / 2);
+        } finally {
+            raf.close();
+        }
+
+        boolean rejected = checkRejected(snapshotFile);
+
+        System.out.println((identical ? "PASSED" : "FAILED")
+                + ": snapshot matches laid-out graph");
+        System.out.println((badNameRejected ? "PASSED" : "FAILED")
+                + ": bad spanning tree name length rejected");
+        System.out.println((rejected ? "PASSED" : "FAILED")
+                + ": truncated snapshot rejected");
+        if (!identical || !badNameRejected || !rejected) {
+            System.exit(1);
+        }
+    }
+
+    // Overwrites the length of the spanning tree name, the sixth int of
+    // the little-endian header, with {length}, and checks that reading the
+    // snapshot fails with an IOException.  Restores the length afterwards.
+    private static boolean checkBadNameLength(File file, int length)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(NAME_LENGTH_OFFSET);
+            int original = Integer.reverseBytes(raf.readInt());
+            raf.seek(NAME_LENGTH_OFFSET);
+            raf.writeInt(Integer.reverseBytes(length));
+            try {
+                return checkRejected(file);
+            } finally {
+                raf.seek(NAME_LENGTH_OFFSET);
+                raf.writeInt(Integer.reverseBytes(original));
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static boolean checkRejected(File file) {
+        try {
+            H3GraphSnapshot.read(file);
+        } catch (IOException e) {
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean sameGraph(H3Graph a, H3Graph b) {
+        if (a.getNumNodes() != b.getNumNodes()
+                || a.getNumTreeLinks() != b.getNumTreeLinks()
+                || a.getNumNontreeLinks() != b.getNumNontreeLinks()
+                || a.getRootNode() != b.getRootNode()) {
+            return false;
+        }
+
+        Point4d p = new Point4d();
+        Point4d q = new Point4d();
+        for (int i = 0; i < a.getNumNodes(); i++) {
+            a.getNodeLayoutCoordinates(i, p);
+            b.getNodeLayoutCoordinates(i, q);
+            if (!p.equals(q)
+                    || a.getNodeID(i) != b.getNodeID(i)
+                    || a.getNodeParentLink(i) != b.getNodeParentLink(i)
+                    || a.getNodeChildIndex(i) != b.getNodeChildIndex(i)
+                    || a.getNodeNontreeIndex(i) != b.getNodeNontreeIndex(i)
+                    || a.getNodeLinksEndIndex(i) != b.getNodeLinksEndIndex(i)
+                    || a.getNodeColor(i) != b.getNodeColor(i)) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < a.getTotalNumLinks(); i++) {
+            if (a.getLinkID(i) != b.getLinkID(i)
+                    || a.getLinkSource(i) != b.getLinkSource(i)
+                    || a.getLinkDestination(i) != b.getLinkDestination(i)
+                    || a.getLinkColor(i) != b.getLinkColor(i)
+                    || a.checkTreeLink(i) != b.checkTreeLink(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static H3Graph loadGraph(File file) throws Exception {
+        Reader reader = new BufferedReader(new FileReader(file));
+        try {
+            GraphBuilder builder = GraphFactory.makeImmutableGraph();
+            new GraphFileParser(new GraphFileLexer(reader)).file(builder);
+            return new H3GraphLoader().load(builder.endConstruction(), "tree");
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Offset of the length of the spanning tree name; see H3GraphSnapshot.
+    private static final long NAME_LENGTH_OFFSET = 20;
+}
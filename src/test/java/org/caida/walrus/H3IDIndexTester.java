@@ -0,0 +1,185 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Checks H3IDIndex against binary search on the sorted IDs, which is how
+// H3GraphLoader used to map IDs, for dense IDs (as read from a file),
+// dense IDs in shuffled order, and sparse IDs spanning the whole int
+// range.  Every ID must map to its index, IDs that aren't present must
+// map to -1, and duplicate IDs must be rejected.  The time taken to look
+// up the endpoints of a link list is printed for both mappings.
+//
+// Usage: H3IDIndexTester [numNodes]
+public class H3IDIndexTester {
+    public static void main(String[] args) {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+
+        Random random = new Random(41L);
+        boolean passed = true;
+
+        passed &= check("empty", new int[0], true, random);
+        passed &= check("single", new int[] { -7 }, true, random);
+
+        int[] dense = new int[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            dense[i] = i;
+        }
+        passed &= check("dense", dense, true, random);
+
+        int[] shuffled = new int[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            shuffled[i] = 1000 + 2 * i;
+        }
+        shuffle(shuffled, random);
+        passed &= check("dense shuffled", shuffled, true, random);
+
+        int[] sparse = makeSparseIDs(numNodes, random);
+        passed &= check("sparse", sparse, false, random);
+
+        boolean rejected = false;
+        try {
+            new H3IDIndex(new int[] { 5, 3, 5 });
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        try {
+            new H3IDIndex(new int[] { 5, Integer.MAX_VALUE, 5 });
+            rejected = false;
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        System.out.println((rejected ? "PASSED" : "FAILED")
+                + ": duplicate IDs rejected");
+
+        compareCosts("dense", dense, random);
+        compareCosts("sparse", sparse, random);
+
+        if (!passed || !rejected) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean check(String description, int[] ids,
+                                 boolean dense, Random random) {
+        H3IDIndex index = new H3IDIndex(ids);
+        boolean passed = (index.getSize() == ids.length
+                && index.isDense() == dense);
+
+        for (int i = 0; i < ids.length; i++) {
+            passed &= (index.getIndex(ids[i]) == i);
+        }
+
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < 100000; i++) {
+            int id = (i < 4 ? EDGE_IDS[i] : random.nextInt());
+            boolean present = (Arrays.binarySearch(sorted, id) >= 0);
+            passed &= (present || index.getIndex(id) == -1);
+        }
+
+        System.out.println((passed ? "PASSED" : "FAILED") + ": "
+                + description + " IDs map correctly");
+        return passed;
+    }
+
+    // Looks up the endpoints of 4 random links per node, as H3GraphLoader
+    // does when populating the links of a graph.
+    private static void compareCosts(String description, int[] ids,
+                                     Random random) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+
+        int[] endpoints = new int[4 * ids.length];
+        for (int i = 0; i < endpoints.length; i++) {
+            endpoints[i] = sorted[random.nextInt(sorted.length)];
+        }
+
+        long startTime = System.currentTimeMillis();
+        H3IDIndex index = new H3IDIndex(sorted);
+        long buildTime = System.currentTimeMillis() - startTime;
+
+        long binarySearchTime = 0;
+        long indexTime = 0;
+        long sum = 0;
+        for (int trial = 0; trial < 3; trial++) {
+            startTime = System.currentTimeMillis();
+            for (int i = 0; i < endpoints.length; i++) {
+                sum += Arrays.binarySearch(sorted, endpoints[i]);
+            }
+            binarySearchTime = System.currentTimeMillis() - startTime;
+
+            startTime = System.currentTimeMillis();
+            for (int i = 0; i < endpoints.length; i++) {
+                sum -= index.getIndex(endpoints[i]);
+            }
+            indexTime = System.currentTimeMillis() - startTime;
+        }
+
+        System.out.println(description + ": binarySearch.time["
+                + binarySearchTime + "] index.time[" + indexTime
+                + "] index.build[" + buildTime + "] for "
+                + endpoints.length + " lookups"
+                + (sum == 0 ? "" : " (MISMATCH)"));
+    }
+
+    // Returns distinct random IDs, including the extreme int values, in
+    // random order.
+    private static int[] makeSparseIDs(int numIDs, Random random) {
+        int[] candidates = new int[numIDs + numIDs / 100 + 2];
+        candidates[0] = Integer.MIN_VALUE;
+        candidates[1] = Integer.MAX_VALUE;
+        for (int i = 2; i < candidates.length; i++) {
+            candidates[i] = random.nextInt();
+        }
+        Arrays.sort(candidates);
+
+        int numDistinct = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (i == 0 || candidates[i] != candidates[i - 1]) {
+                candidates[numDistinct++] = candidates[i];
+            }
+        }
+
+        // Keep both extremes, which sort to either end.
+        int[] retval = Arrays.copyOf(candidates, numIDs);
+        if (numIDs > 1) {
+            retval[numIDs - 1] = Integer.MAX_VALUE;
+        }
+        shuffle(retval, random);
+        return retval;
+    }
+
+    private static void shuffle(int[] ids, Random random) {
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = ids[i];
+            ids[i] = ids[j];
+            ids[j] = t;
+        }
+    }
+
+    private static final int[] EDGE_IDS = {
+        Integer.MIN_VALUE, Integer.MAX_VALUE, -1, 0
+    };
+}
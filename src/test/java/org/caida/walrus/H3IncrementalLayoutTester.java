@@ -0,0 +1,361 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point4d;
+
+import java.util.Random;
+
+// Checks H3Graph.reparentNode() and H3GraphLayout.updateHyperbolicLayout().
+// Each round moves some random subtrees to new parents along nontree
+// links, which changes radii, angles and depths, and the updated layout
+// must match a full layout of a graph edited the same way exactly, for both
+// absolute and relative layouts.  The links must still form valid
+// segments after each round.
+//
+// Usage: H3IncrementalLayoutTester [numNodes [numRounds [movesPerRound]]]
+public class H3IncrementalLayoutTester {
+    public static void main(String[] args) {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+        int numRounds = (args.length > 1 ? Integer.parseInt(args[1]) : 5);
+        int numMoves = (args.length > 2 ? Integer.parseInt(args[2]) : 50);
+
+        checkUpdates("random tree",
+                H3TestGraphs.makeRandomTree(numNodes, 42L),
+                numRounds, numMoves, false, 1);
+        checkUpdates("power-law tree",
+                H3TestGraphs.makePowerLawTree(numNodes, 42L),
+                numRounds, numMoves, false, 3);
+        checkUpdates("random tree, relative layout",
+                H3TestGraphs.makeRandomTree(numNodes, 43L),
+                numRounds, numMoves, true, 1);
+        checkSingleMove();
+        checkReparent();
+        checkArguments();
+        timeUpdate(10 * numNodes, numMoves);
+
+        if (s_numFailures > 0) {
+            System.out.println(s_numFailures + " check(s) FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks PASSED");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Lays out the tree {parent} with the given {parallelism}, then updates
+    // the layout through {numRounds} rounds of {numMoves} moves each.  A
+    // second graph gets the same moves and a full layout in each round.
+    private static void checkUpdates(String name, int[] parent,
+                                     int numRounds, int numMoves,
+                                     boolean relative, int parallelism) {
+        System.out.println("Updating layout of " + name + " of "
+                + parent.length + " nodes ...");
+
+        int[][] moves = planMoves(parent, numRounds * numMoves,
+                new Random(7L));
+        H3Graph graph = buildGraph(parent, moves);
+        H3Graph expected = buildGraph(parent, moves);
+        H3GraphLayout.LayoutState state =
+                layout(new H3GraphLayout(false, parallelism), graph,
+                        relative);
+
+        H3GraphLayout layout = new H3GraphLayout(false, 1);
+        for (int round = 1; round <= numRounds; round++) {
+            int[] nodes = new int[numMoves];
+            int[] parents = new int[numMoves];
+            for (int i = 0; i < numMoves; i++) {
+                nodes[i] = moves[0][(round - 1) * numMoves + i];
+                parents[i] = moves[1][(round - 1) * numMoves + i];
+                expected.reparentNode(nodes[i], parents[i]);
+            }
+            layout(layout, expected, relative);
+
+            double[] before = getCoordinates(graph);
+            H3GraphLayout.LayoutState retval =
+                    layout.updateHyperbolicLayout(graph, state, nodes,
+                            parents);
+
+            String round_ = name + ", round " + round;
+            report(round_ + ": update returns the same state",
+                    retval == state);
+            report(round_ + ": links form valid segments",
+                    checkSegments(graph));
+            report(round_ + ": spanning tree reaches all nodes",
+                    graph.checkSpanningTree() == graph.getNumNodes());
+            if (relative) {
+                report(round_ + ": relative frames match full layout",
+                        graph.hasRelativeLayout()
+                        && checkSameFrames(expected, graph));
+                report(round_ + ": layout coordinates left as they were",
+                        checkSameCoordinates(before, getCoordinates(graph)));
+                layout.composeLayoutCoordinates(graph, state);
+            } else {
+                report(round_ + ": no relative layout",
+                        !graph.hasRelativeLayout());
+            }
+            report(round_ + ": layout coordinates match full layout",
+                    checkSameCoordinates(getCoordinates(expected),
+                            getCoordinates(graph)));
+        }
+    }
+
+    // Moves a single leaf deep in a path to a node of different depth
+    // parity, which leaves the rest of the path in place.
+    private static void checkSingleMove() {
+        System.out.println("Moving a leaf of a path ...");
+        int[] parent = H3TestGraphs.makePath(1000);
+        int leaf = parent.length - 1;
+        int[][] moves = { { leaf }, { parent[leaf] - 1 } };
+        H3Graph graph = buildGraph(parent, moves);
+        H3GraphLayout layout = new H3GraphLayout(false, 1);
+        H3GraphLayout.LayoutState state = layout.layoutHyperbolic(graph,
+                false);
+
+        // Re-parent the last node from node 998 to node 997.
+        layout.updateHyperbolicLayout(graph, state, moves[0], moves[1]);
+
+        H3Graph expected = buildGraph(parent, moves);
+        expected.reparentNode(moves[0][0], moves[1][0]);
+        layout.layoutHyperbolic(expected, false);
+        report("moved leaf matches full layout",
+                checkSameCoordinates(getCoordinates(expected),
+                        getCoordinates(graph)));
+    }
+
+    // Moves a child from the middle of the children of node 0 to node 1,
+    // and back.
+    private static void checkReparent() {
+        // 0 -> 1, 2, 3, 4, with nontree links 1 -> 3 and 0 -> 2.
+        int[] parent = { -1, 0, 0, 0, 0 };
+        H3Graph graph = H3TestGraphs.buildGraph(parent,
+                new int[] { 1, 0 }, new int[] { 3, 2 });
+
+        report("reparentNode() returns the old parent",
+                graph.reparentNode(3, 1) == 0);
+        report("moved node is the last child of its new parent",
+                graph.getNodeParent(3) == 1
+                && graph.getLinkDestination(graph.getNodeNontreeIndex(1) - 1)
+                   == 3);
+        report("other children keep their order",
+                graph.getNodeNontreeIndex(0) - graph.getNodeChildIndex(0) == 3
+                && graph.getLinkDestination(graph.getNodeChildIndex(0)) == 1
+                && graph.getLinkDestination(graph.getNodeChildIndex(0) + 1)
+                   == 2
+                && graph.getLinkDestination(graph.getNodeChildIndex(0) + 2)
+                   == 4);
+        report("old tree link becomes a nontree link",
+                graph.getLinkDestination(graph.getNodeNontreeIndex(0)) == 3
+                && graph.getLinkID(graph.getNodeNontreeIndex(0)) == 2);
+        report("links form valid segments after a move",
+                checkSegments(graph));
+
+        report("moving to the same parent changes nothing",
+                graph.reparentNode(3, 1) == 1 && checkSegments(graph));
+        report("moving back restores the tree",
+                graph.reparentNode(3, 0) == 1 && graph.getNodeParent(3) == 0
+                && graph.getNodeNontreeIndex(1) == graph.getNodeChildIndex(1)
+                && checkSegments(graph)
+                && graph.checkSpanningTree() == parent.length);
+    }
+
+    private static void checkArguments() {
+        int[] parent = H3TestGraphs.makeRandomTree(100, 1L);
+        H3Graph graph = H3TestGraphs.buildGraph(parent);
+        H3Graph other = H3TestGraphs.buildGraph(
+                H3TestGraphs.makeRandomTree(101, 1L));
+        H3GraphLayout layout = new H3GraphLayout(false, 1);
+        H3GraphLayout.LayoutState state = layout.layoutHyperbolic(graph,
+                false);
+
+        report("state of another graph rejected",
+                checkRejected(layout, other, state, new int[] { 1 },
+                        new int[] { 0 }));
+        report("nodes without parents rejected",
+                checkRejected(layout, graph, state, new int[] { 1 },
+                        new int[0]));
+        report("moving the root rejected",
+                checkRejected(layout, graph, state, new int[] { 0 },
+                        new int[] { 1 }));
+        report("moving into its own subtree rejected",
+                checkRejected(layout, graph, state, new int[] { 1 },
+                        new int[] { 1 }));
+
+        int node = parent.length - 1;
+        int newParent = (parent[node] == 0 ? 1 : 0);
+        report("moving without a nontree link rejected",
+                checkRejected(layout, graph, state, new int[] { node },
+                        new int[] { newParent }));
+    }
+
+    private static boolean checkRejected(H3GraphLayout layout,
+                                         H3Graph graph,
+                                         H3GraphLayout.LayoutState state,
+                                         int[] nodes, int[] parents) {
+        try {
+            layout.updateHyperbolicLayout(graph, state, nodes, parents);
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+        return false;
+    }
+
+    // Times an update of a relative layout, which takes time proportional
+    // to the changed region, against a full layout.
+    private static void timeUpdate(int numNodes, int numMoves) {
+        int[] parent = H3TestGraphs.makePowerLawTree(numNodes, 5L);
+        int[][] moves = planMoves(parent, numMoves, new Random(11L));
+        H3Graph graph = buildGraph(parent, moves);
+        H3GraphLayout layout = new H3GraphLayout(false, 1);
+
+        long start = System.nanoTime();
+        H3GraphLayout.LayoutState state =
+                layout.layoutHyperbolicRelative(graph);
+        long fullTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        layout.updateHyperbolicLayout(graph, state, moves[0], moves[1]);
+        long updateTime = System.nanoTime() - start;
+
+        System.out.println("Relative layout of " + numNodes + " nodes: "
+                + (fullTime / 1000000) + " ms; update after " + numMoves
+                + " moves: " + (updateTime / 1000000) + " ms");
+    }
+
+    private static H3GraphLayout.LayoutState layout(H3GraphLayout layout,
+                                                    H3Graph graph,
+                                                    boolean relative) {
+        return (relative ? layout.layoutHyperbolicRelative(graph)
+                : layout.layoutHyperbolic(graph, false));
+    }
+
+    // Plans {numMoves} moves of random nodes of the tree {parent}, with
+    // their subtrees, to random new parents, and returns the nodes and the
+    // new parents.  A node only ever moves to a node with a smaller number,
+    // which keeps the tree rooted at node 0 after each move, since every
+    // parent already has a smaller number.
+    private static int[][] planMoves(int[] parent, int numMoves,
+                                     Random random) {
+        int[] nodes = new int[numMoves];
+        int[] parents = new int[numMoves];
+        for (int i = 0; i < numMoves; i++) {
+            nodes[i] = 1 + random.nextInt(parent.length - 1);
+            parents[i] = random.nextInt(nodes[i]);
+        }
+        return new int[][] { nodes, parents };
+    }
+
+    // Builds the tree {parent} with a nontree link for each of the {moves}
+    // to travel along.
+    private static H3Graph buildGraph(int[] parent, int[][] moves) {
+        return H3TestGraphs.buildGraph(parent, moves[1], moves[0]);
+    }
+
+    private static double[] getCoordinates(H3Graph graph) {
+        double[] retval = new double[4 * graph.getNumNodes()];
+        Point4d p = new Point4d();
+        for (int node = 0; node < graph.getNumNodes(); node++) {
+            graph.getNodeLayoutCoordinates(node, p);
+            retval[4 * node] = p.x;
+            retval[4 * node + 1] = p.y;
+            retval[4 * node + 2] = p.z;
+            retval[4 * node + 3] = p.w;
+        }
+        return retval;
+    }
+
+    // Unlike ==, treats NaNs, which a layout without extended precision
+    // leaves deep in large trees, as the same.
+    private static boolean checkSameCoordinates(double[] expected,
+                                                double[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            if (Double.compare(expected[i], actual[i]) != 0) {
+                System.out.println("node " + (i / 4) + ": expected "
+                        + expected[i] + ", found " + actual[i]);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean checkSameFrames(H3Graph expected,
+                                           H3Graph actual) {
+        Matrix4d m = new Matrix4d();
+        Matrix4d n = new Matrix4d();
+        for (int node = 0; node < expected.getNumNodes(); node++) {
+            expected.getNodeRelativeFrame(node, m);
+            actual.getNodeRelativeFrame(node, n);
+            if (!m.equals(n)) {
+                System.out.println("node " + node + ": frames differ");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Checks that the links of each node form its segments, as
+    // H3RerootTester does.
+    private static boolean checkSegments(H3Graph graph) {
+        int numLinks = graph.getTotalNumLinks();
+        boolean[] seen = new boolean[numLinks];
+        int numTreeLinks = 0;
+        for (int node = 0; node < graph.getNumNodes(); node++) {
+            int start = graph.getNodeChildIndex(node);
+            int nontree = graph.getNodeNontreeIndex(node);
+            int end = graph.getNodeLinksEndIndex(node);
+            for (int i = start; i < end; i++) {
+                if (seen[i] || graph.getLinkSource(i) != node
+                        || graph.checkTreeLink(i) != (i < nontree)) {
+                    System.out.println("node " + node + ": bad link " + i);
+                    return false;
+                }
+                seen[i] = true;
+            }
+            numTreeLinks += nontree - start;
+
+            int link = graph.getNodeParentLink(node);
+            if ((node == graph.getRootNode()) != (link == -1)
+                    || (link != -1
+                        && graph.getLinkDestination(link) != node)) {
+                System.out.println("node " + node + ": bad parent link "
+                        + link);
+                return false;
+            }
+        }
+        return numTreeLinks == graph.getNumTreeLinks();
+    }
+
+    private static void report(String check, boolean passed) {
+        System.out.println((passed ? "PASSED: " : "FAILED: ") + check);
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static int s_numFailures = 0;
+}
@@ -0,0 +1,270 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point4d;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+// Checks H3LayoutCache: a cached layout must load into a freshly built
+// graph exactly as it was computed, with a LayoutState that can still be
+// updated; entries must only be found for the same tree and parameters;
+// damaged entries must be dropped; and the least recently used entries
+// must be evicted once the cache is full.
+//
+// Usage: H3LayoutCacheTester [numNodes]
+public class H3LayoutCacheTester {
+    public static void main(String[] args) throws IOException {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+
+        File directory = Files.createTempDirectory("walrus-cache").toFile();
+        try {
+            checkLoad(directory, numNodes, false);
+            checkLoad(directory, numNodes, true);
+            checkKeys(numNodes);
+            checkDamagedEntry(directory, numNodes);
+            checkEviction(directory);
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+
+        if (s_numFailures > 0) {
+            System.out.println(s_numFailures + " check(s) FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks PASSED");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static void checkLoad(File directory, int numNodes,
+                                  boolean relative) throws IOException {
+        String name = (relative ? "relative layout" : "layout");
+        System.out.println("Caching " + name + " of " + numNodes
+                + " nodes ...");
+
+        int[] parent = H3TestGraphs.makeRandomTree(numNodes, 42L);
+        String parameters = H3LayoutCache.formatParameters(relative,
+                false, false);
+        H3LayoutCache cache = new H3LayoutCache(directory, Long.MAX_VALUE);
+        H3GraphLayout layout = new H3GraphLayout(false, 1);
+
+        // The nontree link lets the last node move to the root below.
+        int[] nontreeSource = { 0 };
+        int[] nontreeTarget = { numNodes - 1 };
+        H3Graph graph = H3TestGraphs.buildGraph(parent, nontreeSource,
+                nontreeTarget);
+        report(name + ": not cached at first",
+                cache.load(graph, layout, parameters) == null);
+
+        H3GraphLayout.LayoutState state = (relative
+                ? layout.layoutHyperbolicRelative(graph)
+                : layout.layoutHyperbolic(graph, false));
+        cache.store(graph, layout, state, parameters);
+
+        H3Graph loaded = H3TestGraphs.buildGraph(parent, nontreeSource,
+                nontreeTarget);
+        H3GraphLayout.LayoutState loadedState =
+                cache.load(loaded, layout, parameters);
+        report(name + ": cached after store", loadedState != null);
+        if (loadedState == null) {
+            return;
+        }
+
+        report(name + ": coordinates match",
+                checkSameCoordinates(graph, loaded));
+        report(name + ": relative layout restored",
+                loaded.hasRelativeLayout() == relative
+                && (!relative || checkSameFrames(graph, loaded)));
+
+        // The loaded state must be as good as the computed one: updating
+        // both after the same move must give the same layout.
+        int[] nodes = { numNodes - 1 };
+        int[] parents = { 0 };
+        layout.updateHyperbolicLayout(graph, state, nodes, parents);
+        layout.updateHyperbolicLayout(loaded, loadedState, nodes, parents);
+        if (relative) {
+            layout.composeLayoutCoordinates(graph, state);
+            layout.composeLayoutCoordinates(loaded, loadedState);
+        }
+        report(name + ": loaded state updates like the original",
+                checkSameCoordinates(graph, loaded)
+                && (!relative || checkSameFrames(graph, loaded)));
+    }
+
+    private static void checkKeys(int numNodes) {
+        int[] parent = H3TestGraphs.makeRandomTree(numNodes, 42L);
+        H3Graph graph = H3TestGraphs.buildGraph(parent);
+        H3Graph same = H3TestGraphs.buildGraph(parent);
+        String parameters = H3LayoutCache.formatParameters(false, false,
+                false);
+        String key = H3LayoutCache.computeKey(graph, parameters);
+
+        report("same tree has same key",
+                key.equals(H3LayoutCache.computeKey(same, parameters)));
+        report("other parameters have other key",
+                !key.equals(H3LayoutCache.computeKey(graph,
+                        H3LayoutCache.formatParameters(false, true,
+                                false))));
+
+        parent[numNodes - 1] = (parent[numNodes - 1] + 1) % (numNodes - 1);
+        H3Graph other = H3TestGraphs.buildGraph(parent);
+        report("other tree has other key",
+                !key.equals(H3LayoutCache.computeKey(other, parameters)));
+    }
+
+    private static void checkDamagedEntry(File directory, int numNodes)
+            throws IOException {
+        int[] parent = H3TestGraphs.makeRandomTree(numNodes, 44L);
+        String parameters = H3LayoutCache.formatParameters(false, false,
+                false);
+        H3LayoutCache cache = new H3LayoutCache(directory, Long.MAX_VALUE);
+        H3GraphLayout layout = new H3GraphLayout(false, 1);
+
+        H3Graph graph = H3TestGraphs.buildGraph(parent);
+        cache.store(graph, layout, layout.layoutHyperbolic(graph, false),
+                parameters);
+
+        File entry = new File(directory,
+                H3LayoutCache.computeKey(graph, parameters) + ".h3lc");
+        RandomAccessFile raf = new RandomAccessFile(entry, "rw");
+        try {
+            raf.setLength(raf.length() - 8);
+        } finally {
+            raf.close();
+        }
+
+        H3Graph loaded = H3TestGraphs.buildGraph(parent);
+        report("truncated entry not loaded",
+                cache.load(loaded, layout, parameters) == null);
+        report("truncated entry deleted", !entry.exists());
+    }
+
+    // Stores three layouts of similar size in a cache with room for two,
+    // using the first in between, so the second must be the one evicted.
+    private static void checkEviction(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        for (File file : files) {
+            file.delete();
+        }
+
+        int numNodes = 1000;
+        String parameters = H3LayoutCache.formatParameters(false, false,
+                false);
+        H3GraphLayout layout = new H3GraphLayout(false, 1);
+        H3Graph[] graphs = new H3Graph[3];
+        for (int i = 0; i < graphs.length; i++) {
+            graphs[i] = H3TestGraphs.buildGraph(
+                    H3TestGraphs.makeRandomTree(numNodes, 100L + i));
+        }
+
+        long entrySize = 52 + 60L * numNodes;
+        H3LayoutCache cache = new H3LayoutCache(directory,
+                2 * entrySize + entrySize / 2);
+
+        long time = System.currentTimeMillis() - 100000;
+        storeAt(cache, layout, graphs[0], parameters, time);
+        storeAt(cache, layout, graphs[1], parameters, time + 1000);
+
+        // Modification times may only have a resolution of seconds.
+        report("first entry found",
+                cache.load(graphs[0], layout, parameters) != null);
+        cache.store(graphs[2], layout,
+                layout.layoutHyperbolic(graphs[2], false), parameters);
+
+        report("least recently used entry evicted",
+                cache.load(graphs[1], layout, parameters) == null);
+        report("recently used entry kept",
+                cache.load(graphs[0], layout, parameters) != null);
+        report("new entry kept",
+                cache.load(graphs[2], layout, parameters) != null);
+    }
+
+    // Stores the layout of {graph}, and makes it look last used at {time}.
+    private static void storeAt(H3LayoutCache cache, H3GraphLayout layout,
+                                H3Graph graph, String parameters,
+                                long time) throws IOException {
+        cache.store(graph, layout, layout.layoutHyperbolic(graph, false),
+                parameters);
+        new File(cache.getDirectory(),
+                H3LayoutCache.computeKey(graph, parameters) + ".h3lc")
+                .setLastModified(time);
+    }
+
+    private static boolean checkSameCoordinates(H3Graph expected,
+                                                H3Graph actual) {
+        Point4d p = new Point4d();
+        Point4d q = new Point4d();
+        for (int node = 0; node < expected.getNumNodes(); node++) {
+            expected.getNodeLayoutCoordinates(node, p);
+            actual.getNodeLayoutCoordinates(node, q);
+            if (Double.compare(p.x, q.x) != 0
+                    || Double.compare(p.y, q.y) != 0
+                    || Double.compare(p.z, q.z) != 0
+                    || Double.compare(p.w, q.w) != 0) {
+                System.out.println("node " + node + ": expected " + p
+                        + ", found " + q);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean checkSameFrames(H3Graph expected,
+                                           H3Graph actual) {
+        Matrix4d m = new Matrix4d();
+        Matrix4d n = new Matrix4d();
+        for (int node = 0; node < expected.getNumNodes(); node++) {
+            expected.getNodeRelativeFrame(node, m);
+            actual.getNodeRelativeFrame(node, n);
+            if (!m.equals(n)) {
+                System.out.println("node " + node + ": frames differ");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void report(String check, boolean passed) {
+        System.out.println((passed ? "PASSED: " : "FAILED: ") + check);
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static int s_numFailures = 0;
+}
@@ -0,0 +1,102 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.caida.libsea.*;
+import org.jogamp.vecmath.Point4d;
+
+// End-to-end test of the headless layout mode.  Writes a random LibSea
+// graph, lays it out with H3LayoutMain, and reads the layout file back
+// into a freshly loaded copy of the graph, which must then have exactly
+// the coordinates of a direct layout.
+//
+// Usage: H3LayoutMainTester [numNodes]
+public class H3LayoutMainTester {
+    public static void main(String[] args) throws Exception {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 50000);
+
+        int[] parent = H3TestGraphs.makePowerLawTree(numNodes, 11L);
+
+        File graphFile = File.createTempFile("walrus", ".graph");
+        File layoutFile = File.createTempFile("walrus", ".layout");
+        graphFile.deleteOnExit();
+        layoutFile.deleteOnExit();
+
+        Writer out = new BufferedWriter(new FileWriter(graphFile));
+        try {
+            H3TestGraphs.writeLibSeaGraph(parent, numNodes / 10, 12L, out);
+        } finally {
+            out.close();
+        }
+
+        new H3LayoutMain(2).run(graphFile, layoutFile, null, false, true);
+
+        H3Graph expected = loadGraph(graphFile);
+        new H3GraphLayout(false, 1).layoutHyperbolic(expected, false);
+
+        H3Graph actual = loadGraph(graphFile);
+        H3LayoutFile.read(actual, layoutFile);
+
+        boolean identical = true;
+        Point4d p = new Point4d();
+        Point4d q = new Point4d();
+        for (int i = 0; identical && i < numNodes; i++) {
+            expected.getNodeLayoutCoordinates(i, p);
+            actual.getNodeLayoutCoordinates(i, q);
+            identical = p.equals(q);
+        }
+
+        boolean rejected = false;
+        try {
+            H3LayoutFile.read(H3TestGraphs.buildGraph
+                    (H3TestGraphs.makePath(numNodes + 1)), layoutFile);
+        } catch (java.io.IOException e) {
+            rejected = true;
+        }
+
+        System.out.println((identical ? "PASSED" : "FAILED")
+                + ": layout file matches direct layout");
+        System.out.println((rejected ? "PASSED" : "FAILED")
+                + ": layout file rejected for a different graph");
+        if (!identical || !rejected) {
+            System.exit(1);
+        }
+    }
+
+    private static H3Graph loadGraph(File file) throws Exception {
+        Reader reader = new BufferedReader(new FileReader(file));
+        try {
+            GraphBuilder builder = GraphFactory.makeImmutableGraph();
+            new GraphFileParser(new GraphFileLexer(reader)).file(builder);
+            return new H3GraphLoader().load(builder.endConstruction(), "tree");
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.jogamp.vecmath.Point4d;
+
+// Checks the load phases reported through H3LoadMonitor.  Reading,
+// loading, and laying out a random graph, sequentially and in parallel,
+// must report each phase starting and finishing in order with all of its
+// work done, and must give the same H3Graph and layout as without a
+// monitor.  The time and rate of each phase are printed.
+//
+// Cancelling at the start of parsing, halfway through parsing, while
+// populating the links, and while laying out must stop the load with a
+// CancellationException, and must not leave the read-ahead thread
+// running.
+//
+// Usage: H3LoadMonitorTester [numNodes]
+public class H3LoadMonitorTester {
+    public static void main(String[] args) throws Exception {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 300000);
+
+        File file = File.createTempFile("walrus", ".graph");
+        file.deleteOnExit();
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            int[] parent = H3TestGraphs.makePowerLawTree(numNodes, 41L);
+            H3TestGraphs.writeLibSeaGraph(parent, numNodes / 5, 42L, out);
+        } finally {
+            out.close();
+        }
+
+        H3Graph expected = H3GraphFile.read(file, 1).load("tree");
+        new H3GraphLayout(false, 1).layoutHyperbolic(expected, false);
+
+        boolean passed = true;
+        for (int parallelism = 1; parallelism <= 4; parallelism *= 4) {
+            passed &= checkPhases(file, parallelism, expected);
+            passed &= checkCancelled(file, parallelism, "at start of parse",
+                                     H3LoadMonitor.PARSE, false);
+            passed &= checkCancelled(file, parallelism, "halfway through parse",
+                                     H3LoadMonitor.PARSE, true);
+            passed &= checkCancelled(file, parallelism, "while linking",
+                                     H3LoadMonitor.LINKS, false);
+            passed &= checkCancelled(file, parallelism, "while laying out",
+                                     H3LoadMonitor.LAYOUT, false);
+        }
+
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean checkPhases(File file, int parallelism,
+                                       H3Graph expected) throws Exception {
+        H3LoadMonitor monitor = new H3LoadMonitor();
+        RecordingListener listener = new RecordingListener();
+        monitor.addListener(listener);
+
+        H3Graph graph = H3GraphFile.read(file, parallelism, monitor)
+                .load("tree", monitor);
+        new H3GraphLayout(false, parallelism)
+                .layoutHyperbolic(graph, false, monitor);
+
+        String[] names = { H3LoadMonitor.READ, H3LoadMonitor.PARSE,
+                           H3LoadMonitor.MAP_IDS, H3LoadMonitor.LINKS,
+                           H3LoadMonitor.LAYOUT };
+        long[] totals = { file.length(), file.length(),
+                          graph.getNumNodes(), graph.getTotalNumLinks(),
+                          graph.getNumNodes() };
+
+        boolean passed = (listener.started.size() == names.length
+                          && listener.finished.size() == names.length);
+        for (int i = 0; passed && i < names.length; i++) {
+            H3LoadMonitor.Phase phase = listener.started.get(i);
+            passed &= phase.getName().equals(names[i])
+                    && listener.finished.contains(phase)
+                    && phase.isFinished()
+                    && phase.getTotal() == totals[i]
+                    && phase.getDone() == totals[i];
+            System.out.println("  " + phase.getName() + ".time["
+                    + phase.getElapsedTime() + "] " + phase.getName()
+                    + ".rate[" + Math.round(phase.getRate()) + " "
+                    + phase.getUnits() + "/s]");
+        }
+        passed &= !listener.progressAfterFinish;
+        passed &= sameGraph(expected, graph) && sameLayout(expected, graph);
+
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": phases reported in order at parallelism "
+                + parallelism + " (" + listener.numProgress
+                + " progress reports)");
+        return passed;
+    }
+
+    // Cancels the load when the phase {name} starts or, if {halfway},
+    // from another thread once half of its work is done.
+    private static boolean checkCancelled(File file, int parallelism,
+                                          String description, String name,
+                                          boolean halfway)
+            throws Exception {
+        H3LoadMonitor monitor = new H3LoadMonitor();
+        CancellingListener listener =
+                new CancellingListener(monitor, name, halfway);
+        monitor.addListener(listener);
+
+        boolean cancelled = false;
+        try {
+            H3Graph graph = H3GraphFile.read(file, parallelism, monitor)
+                    .load("tree", monitor);
+            new H3GraphLayout(false, parallelism)
+                    .layoutHyperbolic(graph, false, monitor);
+        } catch (CancellationException e) {
+            cancelled = true;
+        }
+
+        boolean passed = cancelled && listener.cancelledPhase != null
+                && !listener.cancelledPhase.isFinished()
+                && !isReadAheadRunning();
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": cancelled " + description + " at parallelism "
+                + parallelism);
+        return passed;
+    }
+
+    private static boolean isReadAheadRunning() throws Exception {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("walrus-read-ahead")) {
+                thread.join(1000);
+                if (thread.isAlive()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean sameGraph(H3Graph a, H3Graph b) {
+        if (a.getNumNodes() != b.getNumNodes()
+                || a.getTotalNumLinks() != b.getTotalNumLinks()
+                || a.getRootNode() != b.getRootNode()) {
+            return false;
+        }
+
+        for (int i = 0; i < a.getNumNodes(); i++) {
+            if (a.getNodeID(i) != b.getNodeID(i)
+                    || a.getNodeChildIndex(i) != b.getNodeChildIndex(i)
+                    || a.getNodeNontreeIndex(i) != b.getNodeNontreeIndex(i)
+                    || a.getNodeLinksEndIndex(i)
+                    != b.getNodeLinksEndIndex(i)) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < a.getTotalNumLinks(); i++) {
+            if (a.getLinkID(i) != b.getLinkID(i)
+                    || a.getLinkDestination(i) != b.getLinkDestination(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Nodes that couldn't be laid out have NaN coordinates, which must
+    // match as well.
+    private static boolean sameLayout(H3Graph a, H3Graph b) {
+        Point4d p = new Point4d();
+        Point4d q = new Point4d();
+        for (int i = 0; i < a.getNumNodes(); i++) {
+            a.getNodeLayoutCoordinates(i, p);
+            b.getNodeLayoutCoordinates(i, q);
+            if (Double.compare(p.x, q.x) != 0
+                    || Double.compare(p.y, q.y) != 0
+                    || Double.compare(p.z, q.z) != 0
+                    || Double.compare(p.w, q.w) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class RecordingListener implements H3LoadListener {
+        public synchronized void phaseStarted(H3LoadMonitor.Phase phase) {
+            started.add(phase);
+        }
+
+        public synchronized void phaseProgress(H3LoadMonitor.Phase phase) {
+            ++numProgress;
+            progressAfterFinish |= finished.contains(phase);
+        }
+
+        public synchronized void phaseFinished(H3LoadMonitor.Phase phase) {
+            finished.add(phase);
+        }
+
+        public final List<H3LoadMonitor.Phase> started =
+                new ArrayList<H3LoadMonitor.Phase>();
+        public final List<H3LoadMonitor.Phase> finished =
+                new ArrayList<H3LoadMonitor.Phase>();
+        public int numProgress = 0;
+        public boolean progressAfterFinish = false;
+    }
+
+    private static class CancellingListener implements H3LoadListener {
+        public CancellingListener(H3LoadMonitor monitor, String name,
+                                  boolean halfway) {
+            m_monitor = monitor;
+            m_name = name;
+            m_halfway = halfway;
+        }
+
+        public void phaseStarted(H3LoadMonitor.Phase phase) {
+            if (!phase.getName().equals(m_name)) {
+                return;
+            }
+
+            if (m_halfway) {
+                Thread watcher = new Thread(() -> {
+                    while (!phase.isFinished()) {
+                        if (phase.getDone() >= phase.getTotal() / 2) {
+                            cancel(phase);
+                            return;
+                        }
+                        Thread.yield();
+                    }
+                });
+                watcher.setDaemon(true);
+                watcher.start();
+            } else {
+                cancel(phase);
+            }
+        }
+
+        public void phaseProgress(H3LoadMonitor.Phase phase) {
+        }
+
+        public void phaseFinished(H3LoadMonitor.Phase phase) {
+        }
+
+        private void cancel(H3LoadMonitor.Phase phase) {
+            cancelledPhase = phase;
+            m_monitor.cancel();
+        }
+
+        public volatile H3LoadMonitor.Phase cancelledPhase;
+
+        private final H3LoadMonitor m_monitor;
+        private final String m_name;
+        private final boolean m_halfway;
+    }
+}
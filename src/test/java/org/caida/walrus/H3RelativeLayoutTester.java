@@ -0,0 +1,321 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point3d;
+import org.jogamp.vecmath.Point4d;
+
+// Checks relative layouts, in which each node is placed relative to the
+// coordinate system of its parent.  The transformer, composing these
+// placements outward from the starting node, must draw the same picture as
+// a transformer working on the absolute layout coordinates derived from
+// them.  Deep down a caterpillar tree, where the absolute coordinates run
+// out of double precision, the nodes around any starting node must still
+// come out
+// finite and in the right places.
+//
+// Usage: H3RelativeLayoutTester [numNodes [spineLength]]
+public class H3RelativeLayoutTester {
+    public static void main(String[] args) {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+        int spineLength = (args.length > 1 ? Integer.parseInt(args[1]) : 2000);
+
+        checkLayout(numNodes);
+        checkTransformer(numNodes);
+        checkDeepTree(spineLength);
+
+        if (s_numFailures > 0) {
+            System.out.println(s_numFailures + " check(s) FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks PASSED");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The children of the root are placed exactly where the absolute
+    // layout puts them; the rest of the tree may be rotated about the axes
+    // from parents to children, but stays finite.
+    private static void checkLayout(int numNodes) {
+        System.out.println("Laying out random tree of " + numNodes
+                + " nodes ...");
+        int[] parent = H3TestGraphs.makeRandomTree(numNodes, 42L);
+
+        H3Graph absolute = H3TestGraphs.buildGraph(parent);
+        H3Graph relative = H3TestGraphs.buildGraph(parent);
+        new H3GraphLayout(false, 1).layoutHyperbolic(absolute, false);
+        new H3GraphLayout(false, 1).layoutHyperbolicRelative(relative);
+
+        report("layoutHyperbolic has no relative layout",
+                !absolute.hasRelativeLayout());
+        report("layoutHyperbolicRelative has a relative layout",
+                relative.hasRelativeLayout());
+        report("all layout coordinates finite",
+                relative.checkLayoutCoordinates() == numNodes);
+
+        Point4d p = new Point4d();
+        Point4d q = new Point4d();
+        boolean same = true;
+        int root = relative.getRootNode();
+        for (int i = relative.getNodeChildIndex(root);
+             same && i < relative.getNodeNontreeIndex(root); i++) {
+            int child = relative.getLinkDestination(i);
+            absolute.getNodeLayoutCoordinates(child, p);
+            relative.getNodeLayoutCoordinates(child, q);
+            p.project(p);
+            q.project(q);
+            same = close(p, q);
+        }
+        report("children of the root placed as in the absolute layout", same);
+
+        H3Graph parallel = H3TestGraphs.buildGraph(parent);
+        new H3GraphLayout(false, 2).layoutHyperbolicRelative(parallel);
+        boolean identical = true;
+        for (int i = 0; identical && i < numNodes; i++) {
+            relative.getNodeLayoutCoordinates(i, p);
+            parallel.getNodeLayoutCoordinates(i, q);
+            identical = p.equals(q);
+        }
+        report("parallel relative layout identical", identical);
+
+        new H3GraphLayout(false, 1).layoutHyperbolic(relative, false);
+        report("layoutHyperbolic discards the relative layout",
+                !relative.hasRelativeLayout());
+    }
+
+    // Runs a transformer on the relative layout and another on the
+    // absolute coordinates derived from it through the same transforms.
+    private static void checkTransformer(int numNodes) {
+        System.out.println("Transforming random tree of " + numNodes
+                + " nodes ...");
+        int[] parent = H3TestGraphs.makeRandomTree(numNodes, 7L);
+
+        H3Graph relativeGraph =
+                H3TestGraphs.buildGraph(parent, numNodes / 10, 7L);
+        H3Graph absoluteGraph =
+                H3TestGraphs.buildGraph(parent, numNodes / 10, 7L);
+        new H3GraphLayout(false, 1).layoutHyperbolicRelative(relativeGraph);
+        new H3GraphLayout(false, 1).layoutHyperbolicRelative(absoluteGraph);
+        absoluteGraph.clearRelativeLayout();
+
+        int queueSize = numNodes + relativeGraph.getTotalNumLinks();
+        H3RenderQueue relativeQueue = new H3RenderQueue(queueSize);
+        H3RenderQueue absoluteQueue = new H3RenderQueue(queueSize);
+
+        // A parallelism above 1 must be ignored for the relative layout.
+        H3Transformer relative =
+                new H3Transformer(relativeGraph, relativeQueue, true, 2);
+        H3Transformer absolute =
+                new H3Transformer(absoluteGraph, absoluteQueue, true, 1);
+        new Thread(relative).start();
+        new Thread(absolute).start();
+
+        compare("identity", relativeGraph, relativeQueue,
+                absoluteGraph, absoluteQueue);
+
+        // Bring a node far from the root to the center, so that the
+        // starting node of the traversal moves away from the root.
+        int farNode = numNodes - 1;
+        Point4d source = new Point4d();
+        absolute.transformNode(farNode, source);
+        Point4d origin = new Point4d(0.0, 0.0, 0.0, 1.0);
+        Point4d dest = new Point4d(0.3, -0.2, 0.1, 1.0);
+        Matrix4d[] transforms = {
+            H3Transform.buildTranslation(source, origin),
+            H3Transform.buildXRotation(0.7),
+            H3Transform.buildTranslation(origin, dest),
+            H3Transform.buildZRotation(-1.3),
+        };
+
+        Point4d p = new Point4d();
+        Point4d q = new Point4d();
+        for (int i = 0; i < transforms.length; i++) {
+            relative.transform(transforms[i]);
+            absolute.transform(transforms[i]);
+            compare("transform " + i, relativeGraph, relativeQueue,
+                    absoluteGraph, absoluteQueue);
+
+            relative.transformNode(farNode, p);
+            absolute.transformNode(farNode, q);
+            p.project(p);
+            q.project(q);
+            report("transform " + i + ": transformNode agrees", close(p, q));
+        }
+
+        H3Transformer.Position position = relative.getPosition();
+        report("starting node moved away from the root",
+                position.startingNode != relativeGraph.getRootNode());
+
+        relative.shutdown();
+        absolute.shutdown();
+    }
+
+    // Centers the display on nodes deep down a caterpillar: a path, the
+    // spine, with LEAVES_PER_NODE leaves hanging off every node.  The
+    // leaves make the steps along the spine long enough that the absolute
+    // layout runs out of double precision within a few hundred levels.
+    private static void checkDeepTree(int spineLength) {
+        int numNodes = spineLength * (LEAVES_PER_NODE + 1);
+        System.out.println("Laying out caterpillar of " + numNodes
+                + " nodes ...");
+        int[] parent = new int[numNodes];
+        for (int i = 0; i < spineLength; i++) {
+            parent[i] = i - 1;
+            for (int j = 0; j < LEAVES_PER_NODE; j++) {
+                parent[spineLength + i * LEAVES_PER_NODE + j] = i;
+            }
+        }
+
+        H3Graph absolute = H3TestGraphs.buildGraph(parent);
+        new H3GraphLayout(false, 1).layoutHyperbolic(absolute, false);
+        System.out.println(absolute.checkLayoutCoordinates() + " of "
+                + numNodes + " nodes have finite absolute coordinates");
+
+        H3Graph graph = H3TestGraphs.buildGraph(parent);
+        new H3GraphLayout(false, 1).layoutHyperbolicRelative(graph);
+
+        H3RenderQueue queue =
+                new H3RenderQueue(numNodes + graph.getTotalNumLinks());
+        H3Transformer transformer = new H3Transformer(graph, queue, true, 1);
+        new Thread(transformer).start();
+        drain(queue);
+
+        // Hyperbolic distance is symmetric, so node + 1 centered on node
+        // lies as far from the center as node centered on node + 1.
+        int[] centers = { spineLength / 2, spineLength - 2 };
+        for (int i = 0; i < centers.length; i++) {
+            int node = centers[i];
+            Point3d p = new Point3d();
+
+            centerOn(transformer, queue, node);
+            graph.getNodeCoordinates(node, p);
+            boolean centered = (p.x == 0.0 && p.y == 0.0 && p.z == 0.0);
+            double childRadius = graph.getNodeRadius(node + 1);
+            boolean finite = checkNeighborhood(graph, spineLength,
+                    node, 20);
+
+            centerOn(transformer, queue, node + 1);
+            double parentRadius = graph.getNodeRadius(node);
+
+            String check = "centered on node " + node;
+            report(check + ": node at the origin", centered);
+            report(check + ": neighborhood finite", finite);
+            report(check + ": distance to child symmetric ("
+                    + childRadius + ")",
+                    childRadius > 0.0 && childRadius < 1.0
+                    && Math.abs(childRadius - parentRadius) < EPSILON);
+        }
+
+        transformer.shutdown();
+    }
+
+    private static void centerOn(H3Transformer transformer,
+                                 H3RenderQueue queue, int node) {
+        H3Transformer.Position position = new H3Transformer.Position();
+        position.startingNode = node;
+        position.transform.setIdentity();
+        transformer.setPosition(position);
+        drain(queue);
+    }
+
+    // Whether the spine nodes within {distance} links of {node} have
+    // finite coordinates strictly inside the unit ball.
+    private static boolean checkNeighborhood(H3Graph graph, int spineLength,
+                                             int node, int distance) {
+        int first = Math.max(node - distance, 0);
+        int last = Math.min(node + distance, spineLength - 1);
+        Point3d p = new Point3d();
+        for (int i = first; i <= last; i++) {
+            graph.getNodeCoordinates(i, p);
+            double radius = graph.getNodeRadius(i);
+            if (!Double.isFinite(p.x) || !Double.isFinite(p.y)
+                    || !Double.isFinite(p.z)
+                    || !(radius > 0.0 && radius <= 1.0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Waits until the transformer has finished filling the queue.
+    private static int drain(H3RenderQueue queue) {
+        long[] buffer = new long[4096];
+        int numElements = 0;
+        int count;
+        while ((count = queue.drainTo(numElements, buffer)) > 0) {
+            numElements += count;
+        }
+        return numElements;
+    }
+
+    // The two transformers may order the render queue slightly differently
+    // where radii agree only to rounding, but must draw the same nodes in
+    // the same places.
+    private static void compare(String check, H3Graph lhsGraph,
+                                H3RenderQueue lhsQueue, H3Graph rhsGraph,
+                                H3RenderQueue rhsQueue) {
+        int lhsCount = drain(lhsQueue);
+        int rhsCount = drain(rhsQueue);
+
+        long[] lhs = new long[lhsCount];
+        lhsQueue.drainTo(0, lhs);
+
+        boolean same = (lhsCount == rhsCount);
+        Point3d p = new Point3d();
+        Point3d q = new Point3d();
+        for (int i = 0; same && i < lhsCount; i++) {
+            if (H3RenderQueue.decodeType(lhs[i])
+                    == H3RenderQueue.Element.TYPE_NODE) {
+                int node = H3RenderQueue.decodeData(lhs[i]);
+                lhsGraph.getNodeCoordinates(node, p);
+                rhsGraph.getNodeCoordinates(node, q);
+                same = p.epsilonEquals(q, EPSILON)
+                        && Math.abs(lhsGraph.getNodeRadius(node)
+                        - rhsGraph.getNodeRadius(node)) < EPSILON;
+            }
+        }
+        report(check + ": " + lhsCount + " elements match", same);
+    }
+
+    private static boolean close(Point4d p, Point4d q) {
+        return p.epsilonEquals(q, EPSILON);
+    }
+
+    private static void report(String check, boolean passed) {
+        System.out.println((passed ? "PASSED: " : "FAILED: ") + check);
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final double EPSILON = 1.0e-9;
+
+    private static final int LEAVES_PER_NODE = 5;
+
+    private static int s_numFailures = 0;
+}
@@ -0,0 +1,149 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+// Stress test for the lock-free H3RenderQueue.  A producer thread fills the
+// queue in batches, as H3Transformer does, while one consumer reads it
+// element by element with get(), another in bulk with drainTo(), and a
+// third in decoded batches with getBatch().  All must see every entry, in
+// order, and then the end of the queue.
+//
+// Usage: H3RenderQueueTester [numElements [numRounds]]
+public class H3RenderQueueTester {
+    public static void main(String[] args) throws InterruptedException {
+        int numElements = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        int numRounds = (args.length > 1 ? Integer.parseInt(args[1]) : 5);
+
+        boolean passed = true;
+        for (int round = 0; round < numRounds; round++) {
+            final H3RenderQueue queue = new H3RenderQueue(numElements);
+            final int n = numElements;
+            final int[] errors = new int[3];
+
+            Thread producer = new Thread(() -> {
+                long[] batch = new long[BATCH_SIZE];
+                int i = 0;
+                while (i < n) {
+                    int count = Math.min(BATCH_SIZE, n - i);
+                    for (int j = 0; j < count; j++) {
+                        batch[j] = encode(i + j);
+                    }
+                    queue.add(count, batch);
+                    i += count;
+
+                    if (i % (50 * BATCH_SIZE) == 0) {
+                        Thread.yield();
+                    }
+                }
+                queue.end();
+            });
+
+            Thread elementConsumer = new Thread(() -> {
+                H3RenderQueue.Element element = new H3RenderQueue.Element();
+                int i = 0;
+                while (queue.get(i, element)) {
+                    if (element.type != i % 3 || element.data != i) {
+                        ++errors[0];
+                    }
+                    ++i;
+                }
+                if (i != n) {
+                    ++errors[0];
+                }
+            });
+
+            Thread bulkConsumer = new Thread(() -> {
+                long[] buffer = new long[777];
+                int i = 0;
+                int count;
+                while ((count = queue.drainTo(i, buffer)) > 0) {
+                    for (int j = 0; j < count; j++) {
+                        if (buffer[j] != encode(i + j)) {
+                            ++errors[1];
+                        }
+                    }
+                    i += count;
+                }
+                if (i != n) {
+                    ++errors[1];
+                }
+            });
+
+            Thread batchConsumer = new Thread(() -> {
+                H3RenderQueue.Batch batch = new H3RenderQueue.Batch(333);
+                int[] next = new int[3];
+                int i = 0;
+                while (queue.getBatch(i, 500, batch)) {
+                    i += batch.getNumElements();
+                    checkRun(batch.nodes, batch.numNodes, 0, next, errors);
+                    checkRun(batch.treeLinks, batch.numTreeLinks, 1, next,
+                            errors);
+                    checkRun(batch.nontreeLinks, batch.numNontreeLinks, 2,
+                            next, errors);
+                }
+                if (i != n) {
+                    ++errors[2];
+                }
+            });
+
+            long startTime = System.currentTimeMillis();
+            elementConsumer.start();
+            bulkConsumer.start();
+            batchConsumer.start();
+            producer.start();
+
+            producer.join();
+            elementConsumer.join();
+            bulkConsumer.join();
+            batchConsumer.join();
+            long duration = System.currentTimeMillis() - startTime;
+
+            System.out.println("round " + round + ": " + duration + " ms, "
+                    + errors[0] + " get() errors, "
+                    + errors[1] + " drainTo() errors, "
+                    + errors[2] + " getBatch() errors");
+            passed &= (errors[0] == 0 && errors[1] == 0 && errors[2] == 0);
+        }
+
+        System.out.println(passed ? "All checks PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    // The entries of type {type} are the values i with i % 3 == type, in
+    // increasing order; next[type] is the one expected next.
+    private static void checkRun(int[] values, int count, int type,
+                                 int[] next, int[] errors) {
+        for (int j = 0; j < count; j++) {
+            if (values[j] != type + 3 * next[type]) {
+                ++errors[2];
+            }
+            ++next[type];
+        }
+    }
+
+    private static long encode(int i) {
+        return ((long) (i % 3) << 32) | i;
+    }
+
+    private static final int BATCH_SIZE = 100;
+}
@@ -0,0 +1,479 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point4d;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Checks H3Graph.rerootSpanningTree() and
+// H3GraphLayout.rerootHyperbolicLayout().  Graphs with nontree links, and
+// with the links of the nodes stored out of node order, are re-rooted at
+// random nodes again and again.  After each re-rooting, the links must
+// still form valid segments, every link must keep its ID, color, and
+// properties, the children of each node must be as documented, and the
+// layout must match a full layout of a graph built from scratch with the
+// new tree.
+//
+// Usage: H3RerootTester [numNodes [numRounds]]
+public class H3RerootTester {
+    public static void main(String[] args) {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+        int numRounds = (args.length > 1 ? Integer.parseInt(args[1]) : 10);
+
+        checkReroots("random tree",
+                H3TestGraphs.makeRandomTree(numNodes, 42L),
+                numRounds, false);
+        checkReroots("power-law tree",
+                H3TestGraphs.makePowerLawTree(numNodes, 42L),
+                numRounds, false);
+        checkReroots("random tree, relative layout",
+                H3TestGraphs.makeRandomTree(numNodes, 43L),
+                numRounds, true);
+        checkReroots("path", H3TestGraphs.makePath(200), numRounds, false);
+        checkSmallCases();
+        checkArguments();
+        timeReroot(10 * numNodes);
+
+        if (s_numFailures > 0) {
+            System.out.println(s_numFailures + " check(s) FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks PASSED");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Re-roots the tree {parent}, with random nontree links, at
+    // {numRounds} random nodes in turn.
+    private static void checkReroots(String name, int[] parent,
+                                     int numRounds, boolean relative) {
+        System.out.println("Re-rooting " + name + " of " + parent.length
+                + " nodes ...");
+
+        Random random = new Random(7L);
+        H3Graph graph = buildGraph(parent, parent.length / 2, random);
+        H3GraphLayout layout = new H3GraphLayout(false, 1);
+        if (relative) {
+            layout.layoutHyperbolicRelative(graph);
+        } else {
+            layout.layoutHyperbolic(graph, false);
+        }
+
+        for (int round = 1; round <= numRounds; round++) {
+            int node = random.nextInt(parent.length);
+            String round_ = name + ", round " + round + " (node " + node
+                    + ")";
+
+            LinkRecord before = new LinkRecord(graph);
+            int[][] children = expectChildren(graph, node);
+            int depth = countDepth(graph, node);
+            layout.rerootHyperbolicLayout(graph, node, false);
+
+            report(round_ + ": new root", graph.getRootNode() == node);
+            report(round_ + ": links form valid segments",
+                    checkSegments(graph));
+            report(round_ + ": spanning tree reaches all nodes",
+                    graph.checkSpanningTree() == graph.getNumNodes());
+            report(round_ + ": links keep their attributes",
+                    before.check(graph, depth));
+            report(round_ + ": children as documented",
+                    checkChildren(graph, children, before));
+
+            H3Graph expected = buildTree(children, node);
+            if (relative) {
+                layout.layoutHyperbolicRelative(expected);
+                report(round_ + ": relative frames match full layout",
+                        graph.hasRelativeLayout()
+                        && checkSameFrames(expected, graph));
+            } else {
+                layout.layoutHyperbolic(expected, false);
+            }
+            report(round_ + ": layout coordinates match full layout",
+                    checkSameCoordinates(expected, graph));
+        }
+    }
+
+    // Re-roots the smallest graphs, where the new root, the old root, or
+    // both have links at the ends of the link arrays.
+    private static void checkSmallCases() {
+        System.out.println("Re-rooting small graphs ...");
+
+        H3Graph graph = H3TestGraphs.buildGraph(new int[] { -1, 0 });
+        report("re-rooting a single link reverses it",
+                graph.rerootSpanningTree(1) == 1
+                && graph.getNodeParent(0) == 1
+                && graph.getNodeParent(1) == -1
+                && checkSegments(graph));
+        report("re-rooting it back restores it",
+                graph.rerootSpanningTree(0) == 1
+                && graph.getNodeParent(1) == 0
+                && checkSegments(graph));
+
+        graph = H3TestGraphs.buildGraph(H3TestGraphs.makePath(5));
+        report("re-rooting a path at its end reverses every link",
+                graph.rerootSpanningTree(4) == 4
+                && graph.getNodeParent(0) == 1
+                && graph.getNodeParent(3) == 4
+                && checkSegments(graph)
+                && graph.checkSpanningTree() == 5);
+
+        report("re-rooting at the root changes nothing",
+                graph.rerootSpanningTree(4) == 0
+                && graph.getRootNode() == 4);
+    }
+
+    private static void checkArguments() {
+        H3Graph graph = H3TestGraphs.buildGraph(
+                H3TestGraphs.makeRandomTree(100, 1L));
+        boolean threw = false;
+        try {
+            graph.rerootSpanningTree(100);
+        } catch (IllegalArgumentException e) {
+            threw = true;
+        }
+        report("node out of range rejected", threw);
+    }
+
+    private static void timeReroot(int numNodes) {
+        int[] parent = H3TestGraphs.makeRandomTree(numNodes, 5L);
+        Random random = new Random(11L);
+        H3Graph graph = buildGraph(parent, numNodes, random);
+
+        long time = 0;
+        int numReroots = 10;
+        for (int i = 0; i < numReroots; i++) {
+            int node = random.nextInt(numNodes);
+            long start = System.nanoTime();
+            graph.rerootSpanningTree(node);
+            time += System.nanoTime() - start;
+        }
+        report("re-rooting a large graph leaves valid segments",
+                checkSegments(graph)
+                && graph.checkSpanningTree() == numNodes);
+        System.out.println("Re-rooting a graph of " + numNodes
+                + " nodes and " + graph.getTotalNumLinks() + " links took "
+                + (time / numReroots / 1000) + " us on average.");
+    }
+
+    // Builds the tree {parent} with {numNontreeLinks} random nontree links
+    // (see H3TestGraphs.buildGraph()), and gives the links random colors
+    // and visibility properties.
+    private static H3Graph buildGraph(int[] parent, int numNontreeLinks,
+                                      Random random) {
+        H3Graph retval = H3TestGraphs.buildGraph(parent, numNontreeLinks,
+                random.nextLong());
+        for (int link = 0; link < retval.getTotalNumLinks(); link++) {
+            retval.setLinkColor(link, random.nextInt(0x1000000));
+            retval.setLinkDisplayability(link, random.nextInt(4) != 0);
+            retval.setLinkSelectivity(link, random.nextInt(4) != 0);
+        }
+        return retval;
+    }
+
+    // Builds a graph holding only the tree with the given children, in
+    // order, with the usual calling sequence of H3Graph.
+    private static H3Graph buildTree(int[][] children, int root) {
+        int numNodes = children.length;
+        H3Graph retval = new H3Graph(numNodes, Math.max(numNodes - 1, 0));
+        int linkID = 0;
+        for (int node = 0; node < numNodes; node++) {
+            retval.setNodeID(node, node);
+            retval.startChildLinks(node);
+            for (int child : children[node]) {
+                retval.addChildLink(node, child, linkID++);
+            }
+            retval.startNontreeLinks(node);
+            retval.endNodeLinks(node);
+        }
+        retval.setRootNode(root);
+        return retval;
+    }
+
+    // Returns the children of each node of {graph} once it's re-rooted at
+    // {node}, as rerootSpanningTree() documents them: each node on the path
+    // from {node} to the root has its former parent in place of its former
+    // child on the path, {node} has its former parent added at the end,
+    // and the root loses its child on the path.
+    private static int[][] expectChildren(H3Graph graph, int node) {
+        int numNodes = graph.getNumNodes();
+        int[][] retval = new int[numNodes][];
+        for (int i = 0; i < numNodes; i++) {
+            int start = graph.getNodeChildIndex(i);
+            int end = graph.getNodeNontreeIndex(i);
+            retval[i] = new int[end - start];
+            for (int j = start; j < end; j++) {
+                retval[i][j - start] = graph.getLinkDestination(j);
+            }
+        }
+
+        int parent = graph.getNodeParent(node);
+        if (parent == -1) {
+            return retval;
+        }
+
+        retval[node] = Arrays.copyOf(retval[node], retval[node].length + 1);
+        retval[node][retval[node].length - 1] = parent;
+
+        int child = node;
+        while (true) {
+            int above = graph.getNodeParent(parent);
+            int[] list = retval[parent];
+            int k = 0;
+            while (list[k] != child) {
+                ++k;
+            }
+
+            if (above == -1) {
+                int[] shorter = new int[list.length - 1];
+                System.arraycopy(list, 0, shorter, 0, k);
+                System.arraycopy(list, k + 1, shorter, k,
+                        list.length - k - 1);
+                retval[parent] = shorter;
+                break;
+            }
+
+            list[k] = above;
+            child = parent;
+            parent = above;
+        }
+        return retval;
+    }
+
+    private static int countDepth(H3Graph graph, int node) {
+        int retval = 0;
+        for (int i = graph.getNodeParent(node); i != -1;
+             i = graph.getNodeParent(i)) {
+            ++retval;
+        }
+        return retval;
+    }
+
+    // Checks that the links of every node lie in the ranges given by its
+    // link indices, have the node as their source, and are tree links
+    // exactly when they're among its child links; that the ranges cover
+    // every link exactly once; and that the parent links agree.
+    private static boolean checkSegments(H3Graph graph) {
+        int numLinks = graph.getTotalNumLinks();
+        boolean[] seen = new boolean[numLinks];
+        int numTreeLinks = 0;
+        for (int node = 0; node < graph.getNumNodes(); node++) {
+            int start = graph.getNodeChildIndex(node);
+            int nontree = graph.getNodeNontreeIndex(node);
+            int end = graph.getNodeLinksEndIndex(node);
+            if (start < 0 || start > nontree || nontree > end
+                    || end > numLinks) {
+                System.out.println("node " + node + ": bad range ["
+                        + start + ", " + nontree + ", " + end + ")");
+                return false;
+            }
+
+            for (int i = start; i < end; i++) {
+                if (seen[i] || graph.getLinkSource(i) != node
+                        || graph.checkTreeLink(i) != (i < nontree)) {
+                    System.out.println("node " + node + ": bad link " + i);
+                    return false;
+                }
+                seen[i] = true;
+            }
+            numTreeLinks += nontree - start;
+
+            int link = graph.getNodeParentLink(node);
+            if ((node == graph.getRootNode()) != (link == -1)
+                    || (link != -1
+                        && (!graph.checkTreeLink(link)
+                            || graph.getLinkDestination(link) != node))) {
+                System.out.println("node " + node + ": bad parent link "
+                        + link);
+                return false;
+            }
+        }
+
+        for (int i = 0; i < numLinks; i++) {
+            if (!seen[i]) {
+                System.out.println("link " + i + " not in any range");
+                return false;
+            }
+        }
+        return numTreeLinks == graph.getNumTreeLinks();
+    }
+
+    private static boolean checkChildren(H3Graph graph, int[][] children,
+                                         LinkRecord before) {
+        for (int node = 0; node < graph.getNumNodes(); node++) {
+            int start = graph.getNodeChildIndex(node);
+            int nontree = graph.getNodeNontreeIndex(node);
+            int end = graph.getNodeLinksEndIndex(node);
+            if (nontree - start != children[node].length) {
+                System.out.println("node " + node + ": expected "
+                        + children[node].length + " children, found "
+                        + (nontree - start));
+                return false;
+            }
+            for (int i = start; i < nontree; i++) {
+                if (graph.getLinkDestination(i) != children[node][i - start]) {
+                    System.out.println("node " + node + ": child "
+                            + (i - start) + " differs");
+                    return false;
+                }
+            }
+
+            // The nontree links don't change, or change order.
+            for (int i = nontree; i < end; i++) {
+                if (before.index[graph.getLinkID(i)]
+                        != before.nontreeStart[node] + (i - nontree)) {
+                    System.out.println("node " + node + ": nontree link "
+                            + (i - nontree) + " differs");
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean checkSameCoordinates(H3Graph expected,
+                                                H3Graph actual) {
+        Point4d p = new Point4d();
+        Point4d q = new Point4d();
+        for (int node = 0; node < expected.getNumNodes(); node++) {
+            expected.getNodeLayoutCoordinates(node, p);
+            actual.getNodeLayoutCoordinates(node, q);
+            if (Double.compare(p.x, q.x) != 0
+                    || Double.compare(p.y, q.y) != 0
+                    || Double.compare(p.z, q.z) != 0
+                    || Double.compare(p.w, q.w) != 0) {
+                System.out.println("node " + node + ": expected " + p
+                        + ", found " + q);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean checkSameFrames(H3Graph expected,
+                                           H3Graph actual) {
+        Matrix4d m = new Matrix4d();
+        Matrix4d n = new Matrix4d();
+        for (int node = 0; node < expected.getNumNodes(); node++) {
+            expected.getNodeRelativeFrame(node, m);
+            actual.getNodeRelativeFrame(node, n);
+            if (!m.equals(n)) {
+                System.out.println("node " + node + ": frames differ");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void report(String check, boolean passed) {
+        System.out.println((passed ? "PASSED: " : "FAILED: ") + check);
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // Records everything about the links of a graph, by link ID, which
+    // must run from 0 to the number of links minus one.
+    private static final class LinkRecord {
+        LinkRecord(H3Graph graph) {
+            int numLinks = graph.getTotalNumLinks();
+            index = new int[numLinks];
+            source = new int[numLinks];
+            destination = new int[numLinks];
+            color = new int[numLinks];
+            properties = new int[numLinks];
+            for (int i = 0; i < numLinks; i++) {
+                int id = graph.getLinkID(i);
+                index[id] = i;
+                source[id] = graph.getLinkSource(i);
+                destination[id] = graph.getLinkDestination(i);
+                color[id] = graph.getLinkColor(i);
+                properties[id] = getProperties(graph, i);
+            }
+
+            int numNodes = graph.getNumNodes();
+            nontreeStart = new int[numNodes];
+            for (int node = 0; node < numNodes; node++) {
+                nontreeStart[node] = graph.getNodeNontreeIndex(node);
+            }
+        }
+
+        // Checks that every link of {graph} is the same as before, except
+        // that exactly {numReversed} tree links point the other way.
+        boolean check(H3Graph graph, int numReversed) {
+            boolean[] seen = new boolean[index.length];
+            int reversed = 0;
+            for (int i = 0; i < index.length; i++) {
+                int id = graph.getLinkID(i);
+                if (id < 0 || id >= index.length || seen[id]) {
+                    System.out.println("link " + i + ": bad ID " + id);
+                    return false;
+                }
+                seen[id] = true;
+
+                int s = graph.getLinkSource(i);
+                int d = graph.getLinkDestination(i);
+                if (s == destination[id] && d == source[id]
+                        && graph.checkTreeLink(i)) {
+                    ++reversed;
+                } else if (s != source[id] || d != destination[id]) {
+                    System.out.println("link " + id + ": endpoints differ");
+                    return false;
+                }
+
+                if (graph.getLinkColor(i) != color[id]
+                        || getProperties(graph, i) != properties[id]) {
+                    System.out.println("link " + id + ": attributes differ");
+                    return false;
+                }
+            }
+            return reversed == numReversed;
+        }
+
+        private static int getProperties(H3Graph graph, int link) {
+            return (graph.checkTreeLink(link) ? 1 : 0)
+                    | (graph.checkLinkVisible(link) ? 2 : 0)
+                    | (graph.checkLinkDisplayable(link) ? 4 : 0)
+                    | (graph.checkLinkSelected(link) ? 8 : 0);
+        }
+
+        final int[] index;
+        final int[] source;
+        final int[] destination;
+        final int[] color;
+        final int[] properties;
+        final int[] nontreeStart;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static int s_numFailures = 0;
+}
@@ -0,0 +1,324 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+// Checks the breadth-first spanning trees of H3SpanningTreeBuilder against
+// a plain sequential breadth-first search, on random graphs (with
+// self-loops and parallel links) large enough that some levels are
+// expanded bottom up.  The tree must cover the graph, reach every node at
+// its least depth through the first link from the previous level, and be
+// the same for any number of threads.  A disconnected graph must get a
+// virtual root above the roots of its components, and H3GraphFile and
+// H3GraphLoader must build the same graph from a file.  The time taken to
+// build the tree of the largest graph is printed.
+//
+// Usage: H3SpanningTreeBuilderTester [numNodes [numLinks]]
+public class H3SpanningTreeBuilderTester {
+    public static void main(String[] args) throws Exception {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        int numLinks = (args.length > 1 ? Integer.parseInt(args[1])
+                        : 10 * numNodes);
+
+        boolean passed = true;
+        passed &= checkDisconnected();
+        passed &= checkSingleNode();
+        passed &= checkRandom("sparse random graph", 100000, 150000, 11L);
+        passed &= checkRandom("dense random graph", 100000, 1000000, 12L);
+        passed &= checkRandom("large random graph", numNodes, numLinks, 13L);
+        passed &= checkFile();
+        passed &= checkRejected();
+
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    // Node 0 reaches 1 and 2; 3 and 4 form a cycle with no way in; 5 is
+    // isolated; and 6 links to 0 but can't be reached.  The components
+    // are searched from 0 (the first node with the most outgoing links),
+    // then 5 and 6, which have no incoming links, and finally 3.
+    private static boolean checkDisconnected() {
+        int[] sources = { 0, 1, 3, 4, 6 };
+        int[] destinations = { 1, 2, 4, 3, 0 };
+        int root = H3SpanningTreeBuilder.findHighestDegreeNode(7, sources);
+        H3Graph graph = new H3SpanningTreeBuilder()
+                .build(7, sources, destinations, root);
+
+        int virtualRoot = graph.getRootNode();
+        boolean passed = (root == 0 && graph.getNumNodes() == 8
+                && virtualRoot == 7 && graph.getNodeID(virtualRoot) == -1
+                && graph.getNumTreeLinks() == 7
+                && graph.getNumNontreeLinks() == 2
+                && graph.checkSpanningTree() == 8
+                && graph.getNodeNumChildren(virtualRoot) == 4);
+
+        int[] expectedRoots = { 0, 5, 6, 3 };
+        int link = graph.getNodeChildIndex(virtualRoot);
+        for (int i = 0; passed && i < expectedRoots.length; i++, link++) {
+            passed = (graph.getLinkDestination(link) == expectedRoots[i]
+                      && graph.getLinkID(link) == -1 - i);
+        }
+
+        // The link 6 -> 0 and the link 4 -> 3 back around the cycle are
+        // nontree links.
+        passed &= (graph.getNodeParent(4) == 3
+                   && !graph.checkTreeLink(graph.getNodeChildIndex(6)));
+
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": disconnected graph gets a virtual root");
+        return passed;
+    }
+
+    private static boolean checkSingleNode() {
+        H3Graph graph = new H3SpanningTreeBuilder(2)
+                .build(1, new int[] { 0 }, new int[] { 0 }, 0);
+        boolean passed = (graph.getNumNodes() == 1
+                && graph.getRootNode() == 0
+                && graph.getNumTreeLinks() == 0
+                && graph.getNumNontreeLinks() == 1
+                && graph.checkSpanningTree() == 1);
+
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": single node with a self-loop");
+        return passed;
+    }
+
+    private static boolean checkRandom(String description, int numNodes,
+                                       int numLinks, long seed) {
+        Random random = new Random(seed);
+        int[] sources = new int[numLinks];
+        int[] destinations = new int[numLinks];
+        for (int i = 0; i < numLinks; i++) {
+            // Skewed toward low-numbered nodes, so degrees vary widely.
+            sources[i] = (int) (numNodes * Math.pow(random.nextDouble(), 2));
+            destinations[i] = random.nextInt(numNodes);
+        }
+        int root = H3SpanningTreeBuilder.findHighestDegreeNode
+                (numNodes, sources);
+
+        long startTime = System.currentTimeMillis();
+        H3Graph expected = new H3SpanningTreeBuilder()
+                .build(numNodes, sources, destinations, root);
+        long duration = System.currentTimeMillis() - startTime;
+        System.out.println(description + ": " + numNodes + " nodes, "
+                + numLinks + " links, built in " + duration + " ms");
+
+        boolean passed = checkTree(expected, numNodes, sources, destinations);
+        for (int parallelism = 2; parallelism <= 8; parallelism *= 2) {
+            startTime = System.currentTimeMillis();
+            H3Graph actual = new H3SpanningTreeBuilder(parallelism)
+                    .build(numNodes, sources, destinations, root);
+            duration = System.currentTimeMillis() - startTime;
+            System.out.println("  parallelism " + parallelism + ": "
+                    + duration + " ms");
+            passed &= sameGraph(expected, actual);
+        }
+
+        System.out.println((passed ? "PASSED" : "FAILED") + ": "
+                + description + " has a minimal breadth-first tree");
+        return passed;
+    }
+
+    // Compares {graph} with a sequential search from the same roots, which
+    // expands the frontier in order of node and the links of each node in
+    // the reverse of their input order, and so reaches each node first
+    // through the link the builder should choose.
+    private static boolean checkTree(H3Graph graph, int numNodes,
+                                     int[] sources, int[] destinations) {
+        int numLinks = sources.length;
+        int total = graph.getNumNodes();
+        if (graph.checkSpanningTree() != total) {
+            return false;
+        }
+
+        int[] roots;
+        if (total > numNodes) {
+            int virtualRoot = graph.getRootNode();
+            roots = new int[graph.getNodeNumChildren(virtualRoot)];
+            for (int i = 0; i < roots.length; i++) {
+                roots[i] = graph.getLinkDestination
+                        (graph.getNodeChildIndex(virtualRoot) + i);
+            }
+        } else {
+            roots = new int[] { graph.getRootNode() };
+        }
+
+        int[] start = new int[numNodes + 1];
+        for (int i = 0; i < numLinks; i++) {
+            ++start[sources[i] + 1];
+        }
+        for (int i = 0; i < numNodes; i++) {
+            start[i + 1] += start[i];
+        }
+        int[] next = Arrays.copyOf(start, numNodes);
+        int[] links = new int[numLinks];
+        for (int i = numLinks - 1; i >= 0; i--) {
+            links[next[sources[i]]++] = i;
+        }
+
+        int[] parentLink = new int[numNodes];
+        Arrays.fill(parentLink, -2);
+        int[] frontier = new int[numNodes];
+        for (int root : roots) {
+            if (parentLink[root] != -2) {
+                return false;
+            }
+            parentLink[root] = -1;
+            frontier[0] = root;
+            int first = 0;
+            int last = 1;
+            while (first < last) {
+                Arrays.sort(frontier, first, last);
+                int end = last;
+                for (int i = first; i < end; i++) {
+                    int u = frontier[i];
+                    for (int j = start[u]; j < start[u + 1]; j++) {
+                        int v = destinations[links[j]];
+                        if (parentLink[v] == -2) {
+                            parentLink[v] = links[j];
+                            frontier[last++] = v;
+                        }
+                    }
+                }
+                first = end;
+            }
+        }
+
+        for (int i = 0; i < numNodes; i++) {
+            int link = graph.getNodeParentLink(i);
+            int expected = parentLink[i];
+            if (graph.getNodeID(i) != i || expected == -2
+                    || (expected == -1
+                        ? link >= 0 && graph.getLinkID(link) >= 0
+                        : graph.getLinkID(link) != expected)) {
+                return false;
+            }
+        }
+
+        boolean[] seen = new boolean[numLinks];
+        for (int i = 0; i < graph.getTotalNumLinks(); i++) {
+            int id = graph.getLinkID(i);
+            if (id >= 0) {
+                if (seen[id] || graph.getLinkSource(i) != sources[id]
+                        || graph.getLinkDestination(i) != destinations[id]) {
+                    return false;
+                }
+                seen[id] = true;
+            }
+        }
+        return true;
+    }
+
+    // H3GraphFile and H3GraphLoader must build the same breadth-first tree
+    // from a file, also when asked for it by name.
+    private static boolean checkFile() throws Exception {
+        int[] parent = H3TestGraphs.makeRandomTree(20000, 21L);
+        File file = File.createTempFile("walrus", ".graph");
+        file.deleteOnExit();
+        Writer out = new FileWriter(file);
+        try {
+            H3TestGraphs.writeLibSeaGraph(parent, 30000, 22L, out);
+        } finally {
+            out.close();
+        }
+
+        H3GraphFile graphFile = H3GraphFile.read(file, 4);
+        H3Graph expected = graphFile.loadBreadthFirst(-1, new H3LoadMonitor());
+        H3Graph named =
+                graphFile.load(H3SpanningTreeBuilder.BREADTH_FIRST_TREE);
+        H3Graph rooted = graphFile.loadBreadthFirst(0, new H3LoadMonitor());
+
+        H3GraphLoader loader = new H3GraphLoader();
+        H3Graph loaded = loader.load(graphFile.getBackingGraph(),
+                H3SpanningTreeBuilder.BREADTH_FIRST_TREE);
+        H3Graph loadedRooted =
+                loader.loadBreadthFirst(graphFile.getBackingGraph(), 0);
+
+        // The nontree links can reach nodes ahead of the tree from the
+        // file, so only the coverage is the same from node 0.
+        boolean passed = sameGraph(expected, named)
+                && sameGraph(expected, loaded)
+                && sameGraph(rooted, loadedRooted)
+                && rooted.getRootNode() == 0
+                && rooted.checkSpanningTree() == rooted.getNumNodes()
+                && expected.checkSpanningTree() == expected.getNumNodes();
+
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": H3GraphFile and H3GraphLoader build the same tree");
+        return passed;
+    }
+
+    private static boolean checkRejected() {
+        boolean passed = true;
+        try {
+            new H3SpanningTreeBuilder().build(3, new int[0], new int[0], 3);
+            passed = false;
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        try {
+            new H3SpanningTreeBuilder(0);
+            passed = false;
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        System.out.println((passed ? "PASSED" : "FAILED")
+                + ": bad root and parallelism rejected");
+        return passed;
+    }
+
+    private static boolean sameGraph(H3Graph a, H3Graph b) {
+        if (a.getNumNodes() != b.getNumNodes()
+                || a.getNumTreeLinks() != b.getNumTreeLinks()
+                || a.getNumNontreeLinks() != b.getNumNontreeLinks()
+                || a.getRootNode() != b.getRootNode()) {
+            return false;
+        }
+
+        for (int i = 0; i < a.getNumNodes(); i++) {
+            if (a.getNodeID(i) != b.getNodeID(i)
+                    || a.getNodeParentLink(i) != b.getNodeParentLink(i)
+                    || a.getNodeChildIndex(i) != b.getNodeChildIndex(i)
+                    || a.getNodeNontreeIndex(i) != b.getNodeNontreeIndex(i)
+                    || a.getNodeLinksEndIndex(i)
+                    != b.getNodeLinksEndIndex(i)) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < a.getTotalNumLinks(); i++) {
+            if (a.getLinkID(i) != b.getLinkID(i)
+                    || a.getLinkSource(i) != b.getLinkSource(i)
+                    || a.getLinkDestination(i) != b.getLinkDestination(i)
+                    || a.checkTreeLink(i) != b.checkTreeLink(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
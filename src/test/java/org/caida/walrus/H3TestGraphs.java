@@ -0,0 +1,319 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+// Synthetic spanning trees for the testers and benchmarks.
+//
+// Every generator returns a parent array, with parent[0] == -1 for the
+// root node, which buildGraph() turns into an H3Graph, holding only tree
+// links or random nontree links as well, and writeLibSeaGraph() into a
+// LibSea graph file.
+public class H3TestGraphs {
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // A path 0 -> 1 -> ... -> numNodes-1; the deepest possible tree.
+    public static int[] makePath(int numNodes) {
+        int[] retval = new int[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            retval[i] = i - 1;
+        }
+        return retval;
+    }
+
+    // A complete tree in which every interior node has {fanout} children.
+    public static int[] makeBalancedTree(int numNodes, int fanout) {
+        int[] retval = new int[numNodes];
+        retval[0] = -1;
+        for (int i = 1; i < numNodes; i++) {
+            retval[i] = (i - 1) / fanout;
+        }
+        return retval;
+    }
+
+    // A random recursive tree: each node attaches to a uniformly chosen
+    // earlier node.  The expected depth is logarithmic.
+    public static int[] makeRandomTree(int numNodes, long seed) {
+        Random random = new Random(seed);
+        int[] retval = new int[numNodes];
+        retval[0] = -1;
+        for (int i = 1; i < numNodes; i++) {
+            retval[i] = random.nextInt(i);
+        }
+        return retval;
+    }
+
+    // A preferential-attachment tree, which has the heavy-tailed degree
+    // distribution of AS-level topologies (see contrib/asGraphGenerator.py):
+    // each node attaches to an earlier node chosen with probability
+    // proportional to that node's degree.
+    public static int[] makePowerLawTree(int numNodes, long seed) {
+        Random random = new Random(seed);
+        int[] retval = new int[numNodes];
+        retval[0] = -1;
+
+        // Every link contributes both endpoints, so picking a uniformly
+        // random endpoint picks a node in proportion to its degree.
+        int[] endpoints = new int[2 * numNodes];
+        int numEndpoints = 0;
+        endpoints[numEndpoints++] = 0;
+
+        for (int i = 1; i < numNodes; i++) {
+            int parent = endpoints[random.nextInt(numEndpoints)];
+            retval[i] = parent;
+            endpoints[numEndpoints++] = parent;
+            endpoints[numEndpoints++] = i;
+        }
+        return retval;
+    }
+
+    // Builds an H3Graph whose spanning tree is given by {parent}.  Node i
+    // of the graph has ID i, and the tree link to node i has ID i - 1.
+    public static H3Graph buildGraph(int[] parent) {
+        int numNodes = parent.length;
+
+        // Gather the children of each node into contiguous runs (CSR).
+        int[] childrenStart = new int[numNodes + 1];
+        for (int i = 0; i < numNodes; i++) {
+            if (parent[i] >= 0) {
+                ++childrenStart[parent[i] + 1];
+            }
+        }
+        for (int i = 0; i < numNodes; i++) {
+            childrenStart[i + 1] += childrenStart[i];
+        }
+
+        int[] next = new int[numNodes];
+        System.arraycopy(childrenStart, 0, next, 0, numNodes);
+        int[] children = new int[Math.max(numNodes - 1, 0)];
+        for (int i = 0; i < numNodes; i++) {
+            if (parent[i] >= 0) {
+                children[next[parent[i]]++] = i;
+            }
+        }
+
+        H3Graph retval = new H3Graph(numNodes, Math.max(numNodes - 1, 0));
+        for (int node = 0; node < numNodes; node++) {
+            retval.setNodeID(node, node);
+            retval.startChildLinks(node);
+            for (int i = childrenStart[node];
+                 i < childrenStart[node + 1]; i++) {
+                int child = children[i];
+                retval.addChildLink(node, child, child - 1);
+            }
+            retval.startNontreeLinks(node);
+            retval.endNodeLinks(node);
+        }
+        retval.setRootNode(0);
+
+        return retval;
+    }
+
+    // Builds an H3Graph whose spanning tree is given by {parent}, plus
+    // {numNontreeLinks} random nontree links.  The links of the nodes are
+    // stored in a random order of the nodes, with H3Graph.setNodeLinks(),
+    // rather than in node order.  Node i has ID i, and link i has ID i.
+    public static H3Graph buildGraph(int[] parent, int numNontreeLinks,
+                                     long seed) {
+        Random random = new Random(seed);
+        int numNodes = parent.length;
+        int[] nontreeSource = new int[numNontreeLinks];
+        int[] nontreeTarget = new int[numNontreeLinks];
+        for (int i = 0; i < numNontreeLinks; i++) {
+            nontreeSource[i] = random.nextInt(numNodes);
+            nontreeTarget[i] = random.nextInt(numNodes);
+        }
+
+        int[] order = new int[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            order[i] = i;
+        }
+        for (int i = numNodes - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+
+        return buildGraph(parent, nontreeSource, nontreeTarget, order);
+    }
+
+    // Builds an H3Graph whose spanning tree is given by {parent}, plus a
+    // nontree link from nontreeSource[i] to nontreeTarget[i] for each i,
+    // with the links of the nodes stored in node order.  Node i has ID i,
+    // and link i has ID i.
+    public static H3Graph buildGraph(int[] parent, int[] nontreeSource,
+                                     int[] nontreeTarget) {
+        int[] order = new int[parent.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        return buildGraph(parent, nontreeSource, nontreeTarget, order);
+    }
+
+    // Writes the tree given by {parent}, plus {numNontreeLinks} random
+    // nontree links, as a LibSea graph with a single spanning tree
+    // qualifier named `tree'.  Link i - 1 is the tree link to node i, and
+    // the nontree links follow the tree links.
+    public static void writeLibSeaGraph(int[] parent, int numNontreeLinks,
+                                        long seed, Writer out)
+            throws IOException {
+        int numNodes = parent.length;
+        int numTreeLinks = Math.max(numNodes - 1, 0);
+        int numLinks = numTreeLinks + numNontreeLinks;
+
+        out.write("Graph\n{\n");
+        out.write("  @name=\"test\";\n");
+        out.write("  @description=\"\";\n");
+        out.write("  @numNodes=" + numNodes + ";\n");
+        out.write("  @numLinks=" + numLinks + ";\n");
+        out.write("  @numPaths=0;\n");
+        out.write("  @numPathLinks=0;\n");
+
+        out.write("  @links=[\n");
+        Random random = new Random(seed);
+        for (int i = 0; i < numLinks; i++) {
+            int source;
+            int destination;
+            if (i < numTreeLinks) {
+                source = parent[i + 1];
+                destination = i + 1;
+            } else {
+                source = random.nextInt(numNodes);
+                destination = random.nextInt(numNodes - 1);
+                if (destination >= source) {
+                    ++destination;
+                }
+            }
+            out.write("    { " + source + "; " + destination + "; }"
+                    + (i + 1 < numLinks ? ",\n" : "\n"));
+        }
+        out.write("  ];\n");
+        out.write("  @paths=;\n");
+
+        out.write("  @enumerations=;\n");
+        out.write("  @attributeDefinitions=[\n");
+        out.write("    {\n");
+        out.write("      @name=$root;\n");
+        out.write("      @type=bool;\n");
+        out.write("      @default=|| false ||;\n");
+        out.write("      @nodeValues=[ { 0; T; } ];\n");
+        out.write("      @linkValues=;\n");
+        out.write("      @pathValues=;\n");
+        out.write("    },\n");
+        out.write("    {\n");
+        out.write("      @name=$tree_link;\n");
+        out.write("      @type=bool;\n");
+        out.write("      @default=|| false ||;\n");
+        out.write("      @nodeValues=;\n");
+        if (numTreeLinks > 0) {
+            out.write("      @linkValues=[\n");
+            for (int i = 0; i < numTreeLinks; i++) {
+                out.write("        { " + i + "; T; }"
+                        + (i + 1 < numTreeLinks ? ",\n" : "\n"));
+            }
+            out.write("      ];\n");
+        } else {
+            out.write("      @linkValues=;\n");
+        }
+        out.write("      @pathValues=;\n");
+        out.write("    }\n");
+        out.write("  ];\n");
+
+        out.write("  @qualifiers=[\n");
+        out.write("    {\n");
+        out.write("      @type=$spanning_tree;\n");
+        out.write("      @name=$tree;\n");
+        out.write("      @description=;\n");
+        out.write("      @attributes=[\n");
+        out.write("        { 0; $root; },\n");
+        out.write("        { 1; $tree_link; }\n");
+        out.write("      ];\n");
+        out.write("    }\n");
+        out.write("  ];\n");
+
+        out.write("  @filters=;\n");
+        out.write("  @selectors=;\n");
+        out.write("  @displays=;\n");
+        out.write("  @presentations=;\n");
+        out.write("  @presentationMenus=;\n");
+        out.write("  @displayMenus=;\n");
+        out.write("  @selectorMenus=;\n");
+        out.write("  @filterMenus=;\n");
+        out.write("  @attributeMenus=;\n");
+        out.write("}\n");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Stores the links of the nodes in the given {order} of the nodes.
+    private static H3Graph buildGraph(int[] parent, int[] nontreeSource,
+                                      int[] nontreeTarget, int[] order) {
+        int numNodes = parent.length;
+        int numNontreeLinks = nontreeSource.length;
+        int[] numTree = new int[numNodes];
+        int[] numNontree = new int[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            if (parent[i] >= 0) {
+                ++numTree[parent[i]];
+            }
+        }
+        for (int i = 0; i < numNontreeLinks; i++) {
+            ++numNontree[nontreeSource[i]];
+        }
+
+        H3Graph retval = new H3Graph(numNodes,
+                Math.max(numNodes - 1, 0) + numNontreeLinks);
+        int[] nextTree = new int[numNodes];
+        int[] nextNontree = new int[numNodes];
+        int next = 0;
+        for (int node : order) {
+            retval.setNodeID(node, node);
+            int nontree = next + numTree[node];
+            int end = nontree + numNontree[node];
+            retval.setNodeLinks(node, next, nontree, end);
+            nextTree[node] = next;
+            nextNontree[node] = nontree;
+            next = end;
+        }
+        for (int i = 0; i < numNodes; i++) {
+            if (parent[i] >= 0) {
+                int link = nextTree[parent[i]]++;
+                retval.setChildLink(link, parent[i], i, link);
+            }
+        }
+        for (int i = 0; i < numNontreeLinks; i++) {
+            int link = nextNontree[nontreeSource[i]]++;
+            retval.setNontreeLink(link, nontreeSource[i], nontreeTarget[i],
+                    link);
+        }
+        retval.endLinks();
+        retval.setRootNode(0);
+        return retval;
+    }
+}
@@ -0,0 +1,120 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import mpfun.DoubleDouble;
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point4d;
+
+import java.util.Random;
+
+// Checks the double-double H3Point4d/H3Matrix4d kernel on points close to
+// the sphere at infinity, as produced by the layout of deep trees.  A
+// hyperbolic translation from one such point to another must carry the
+// first onto the second, with errors smaller than those of the double
+// precision kernel by roughly the 16 extra digits.  H3TransformMPBench
+// times the two kernels.
+//
+// Usage: H3TransformMPTester
+public class H3TransformMPTester {
+    public static void main(String[] args) {
+        Random random = new Random(SEED);
+        H3Point4d[] points = new H3Point4d[NUM_POINTS];
+        for (int i = 0; i < NUM_POINTS; i++) {
+            // The translations between points this close to the sphere
+            // are so badly conditioned that closer ones would be out of
+            // reach of double-double arithmetic as well.
+            double r = 1.0 - Math.pow(10.0, -1.0 - 6.0 * random.nextDouble());
+            double theta = Math.PI * random.nextDouble();
+            double phi = 2.0 * Math.PI * random.nextDouble();
+            points[i] = new H3Point4d(r * Math.sin(theta) * Math.cos(phi),
+                    r * Math.sin(theta) * Math.sin(phi),
+                    r * Math.cos(theta), 1.0);
+        }
+
+        double maxError = 0.0;
+        double maxDoubleError = 0.0;
+        for (int i = 0; i + 1 < NUM_POINTS; i++) {
+            H3Point4d p = new H3Point4d(points[i]);
+            H3Transform.buildTranslation(points[i], points[i + 1])
+                    .transform(p);
+            maxError = Math.max(maxError, error(p, points[i + 1]));
+
+            Point4d pd = toDouble(points[i]);
+            Matrix4d md = H3Transform.buildTranslation
+                    (pd, toDouble(points[i + 1]));
+            md.transform(pd);
+            maxDoubleError = Math.max(maxDoubleError,
+                    error(new H3Point4d(pd), points[i + 1]));
+        }
+
+        System.out.println("maximum error " + maxError
+                + " (double precision: " + maxDoubleError + ")");
+        report("translations exact to about 30 digits",
+                maxError < 1.0e-14 * maxDoubleError);
+
+        if (s_numFailures > 0) {
+            System.out.println(s_numFailures + " check(s) FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks PASSED");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The largest difference between the Euclidean coordinates of {p} and
+    // {q}.
+    private static double error(H3Point4d p, H3Point4d q) {
+        return Math.max(error(p.x, p.w, q.x, q.w),
+                Math.max(error(p.y, p.w, q.y, q.w),
+                        error(p.z, p.w, q.z, q.w)));
+    }
+
+    private static double error(DoubleDouble a, DoubleDouble aw,
+                                DoubleDouble b, DoubleDouble bw) {
+        DoubleDouble x = new DoubleDouble(a).divide(aw);
+        DoubleDouble y = new DoubleDouble(b).divide(bw);
+        return x.subtract(y).abs().doubleValue();
+    }
+
+    private static Point4d toDouble(H3Point4d p) {
+        return new Point4d(p.x.doubleValue(), p.y.doubleValue(),
+                p.z.doubleValue(), p.w.doubleValue());
+    }
+
+    private static void report(String check, boolean passed) {
+        System.out.println((passed ? "PASSED: " : "FAILED: ") + check);
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final long SEED = 20021104L;
+    private static final int NUM_POINTS = 1000;
+
+    private static int s_numFailures = 0;
+}
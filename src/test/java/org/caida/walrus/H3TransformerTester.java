@@ -0,0 +1,155 @@
+//
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+//
+// ######END_HEADER######
+//
+package org.caida.walrus;
+
+import org.jogamp.vecmath.Matrix4d;
+import org.jogamp.vecmath.Point3d;
+import org.jogamp.vecmath.Point4d;
+
+// Checks that the parallel H3Transformer produces exactly what the
+// sequential one does.  Two copies of a random tree are laid out and moved
+// through the same sequence of transforms, one by a sequential transformer
+// and one by a transformer with helper threads.  After each transform, the
+// render queues must hold the same elements in the same order, and every
+// node drawn must have identical coordinates and radius.
+//
+// Usage: H3TransformerTester [numNodes [parallelism]]
+public class H3TransformerTester {
+    public static void main(String[] args) {
+        int numNodes = (args.length > 0 ? Integer.parseInt(args[0]) : 200000);
+        int parallelism = (args.length > 1 ? Integer.parseInt(args[1]) : 4);
+
+        System.out.println("Building random tree of " + numNodes + " nodes ...");
+        int[] parent = H3TestGraphs.makeRandomTree(numNodes, 42L);
+
+        H3Graph sequentialGraph = H3TestGraphs.buildGraph(parent);
+        H3Graph parallelGraph = H3TestGraphs.buildGraph(parent);
+        new H3GraphLayout(false, 1).layoutHyperbolic(sequentialGraph, false);
+        new H3GraphLayout(false, 1).layoutHyperbolic(parallelGraph, false);
+
+        int queueSize = numNodes + sequentialGraph.getTotalNumLinks();
+        H3RenderQueue sequentialQueue = new H3RenderQueue(queueSize);
+        H3RenderQueue parallelQueue = new H3RenderQueue(queueSize);
+
+        H3Transformer sequential =
+                new H3Transformer(sequentialGraph, sequentialQueue, true, 1);
+        H3Transformer parallel = new H3Transformer(parallelGraph,
+                parallelQueue, true, parallelism);
+        new Thread(sequential).start();
+        new Thread(parallel).start();
+
+        compare("identity", sequentialGraph, sequentialQueue,
+                parallelGraph, parallelQueue);
+
+        Point4d source = new Point4d(0.0, 0.0, 0.0, 1.0);
+        Point4d dest = new Point4d(0.3, -0.2, 0.1, 1.0);
+        Matrix4d[] transforms = {
+            H3Transform.buildTranslation(source, dest),
+            H3Transform.buildXRotation(0.7),
+            H3Transform.buildTranslation(dest, source),
+            H3Transform.buildZRotation(-1.3),
+        };
+
+        for (int i = 0; i < transforms.length; i++) {
+            long startTime = System.nanoTime();
+            sequential.transform(transforms[i]);
+            drain(sequentialQueue);
+            long sequentialTime = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            parallel.transform(transforms[i]);
+            drain(parallelQueue);
+            long parallelTime = System.nanoTime() - startTime;
+
+            System.out.println("transform " + i + ": sequential "
+                    + sequentialTime / 1000000 + " ms, parallel "
+                    + parallelTime / 1000000 + " ms");
+
+            compare("transform " + i, sequentialGraph, sequentialQueue,
+                    parallelGraph, parallelQueue);
+        }
+
+        sequential.shutdown();
+        parallel.shutdown();
+
+        if (s_numFailures > 0) {
+            System.out.println(s_numFailures + " check(s) FAILED");
+            System.exit(1);
+        }
+        System.out.println("All checks PASSED");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Waits until the transformer has finished filling the queue.
+    private static int drain(H3RenderQueue queue) {
+        long[] buffer = new long[4096];
+        int numElements = 0;
+        int count;
+        while ((count = queue.drainTo(numElements, buffer)) > 0) {
+            numElements += count;
+        }
+        return numElements;
+    }
+
+    private static void compare(String check, H3Graph lhsGraph,
+                                H3RenderQueue lhsQueue, H3Graph rhsGraph,
+                                H3RenderQueue rhsQueue) {
+        int lhsCount = drain(lhsQueue);
+        int rhsCount = drain(rhsQueue);
+
+        long[] lhs = new long[lhsCount];
+        long[] rhs = new long[rhsCount];
+        lhsQueue.drainTo(0, lhs);
+        rhsQueue.drainTo(0, rhs);
+
+        boolean identical = (lhsCount == rhsCount);
+        Point3d p = new Point3d();
+        Point3d q = new Point3d();
+        for (int i = 0; identical && i < lhsCount; i++) {
+            identical = (lhs[i] == rhs[i]);
+            if (identical && H3RenderQueue.decodeType(lhs[i])
+                    == H3RenderQueue.Element.TYPE_NODE) {
+                int node = H3RenderQueue.decodeData(lhs[i]);
+                lhsGraph.getNodeCoordinates(node, p);
+                rhsGraph.getNodeCoordinates(node, q);
+                identical = p.equals(q) && lhsGraph.getNodeRadius(node)
+                        == rhsGraph.getNodeRadius(node);
+            }
+        }
+        report(check + ": " + lhsCount + " elements identical", identical);
+    }
+
+    private static void report(String check, boolean passed) {
+        System.out.println((passed ? "PASSED: " : "FAILED: ") + check);
+        if (!passed) {
+            ++s_numFailures;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static int s_numFailures = 0;
+}